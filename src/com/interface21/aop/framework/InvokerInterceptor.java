@@ -16,13 +16,22 @@ import org.aopalliance.intercept.MethodInvocation;
  * invokes a local target object using reflection.
  * This should always be the last interceptor in the chain.
  * It does not invoke proceed() on the MethodInvocation. 
+ *
+ * <p>The target can either be a fixed object, or be obtained
+ * from a TargetSource for each invocation. In the latter case,
+ * getTarget() returns null, as there is no single target.
+ *
  * @author Rod Johnson
  * @version $Id$
+ * @see TargetSource
  */
 public class InvokerInterceptor implements MethodInterceptor, ProxyInterceptor {
 
 	/** Target invoked using reflection */	
 	private Object target;
+
+	/** Source of per-invocation targets, if any */
+	private TargetSource targetSource;
 	
 	public InvokerInterceptor() {
 	}
@@ -30,29 +39,51 @@ public class InvokerInterceptor implements MethodInterceptor, ProxyInterceptor {
 	public InvokerInterceptor(Object target) {
 		this.target = target;
 	}
+
+	public InvokerInterceptor(TargetSource targetSource) {
+		this.targetSource = targetSource;
+	}
 	
 	public void setTarget(Object target) {
 		this.target = target;
+		this.targetSource = null;
 	}
 	
+	/**
+	 * Return the fixed target, or null if the target
+	 * is obtained from a TargetSource on each invocation.
+	 */
 	public Object getTarget() {
 		return this.target;
 	}
 
+	/**
+	 * Set the TargetSource to obtain a target from for each invocation.
+	 * Replaces any fixed target.
+	 */
+	public void setTargetSource(TargetSource targetSource) {
+		this.targetSource = targetSource;
+		this.target = null;
+	}
+
+	public TargetSource getTargetSource() {
+		return this.targetSource;
+	}
+
 	/**
 	 * @see org.aopalliance.intercept.MethodInterceptor#invoke(MethodInvocation)
 	 */
 	public Object invoke(MethodInvocation invocation) throws Throwable {
-		
-		// Set the target on the invocation
-		if (invocation instanceof MethodInvocationImpl) {
-			((MethodInvocationImpl) invocation).setTarget(this.target);
-		}
-		
-		// Use reflection to invoke the method
+		TargetSource targetSource = this.targetSource;
+		Object target = (targetSource != null) ? targetSource.getTarget() : this.target;
 		try {
-			Object rval = invocation.getMethod().invoke(this.target, invocation.getArguments());
-			return rval;
+			// Set the target on the invocation
+			if (invocation instanceof MethodInvocationImpl) {
+				((MethodInvocationImpl) invocation).setTarget(target);
+			}
+
+			// Use reflection to invoke the method
+			return invocation.getMethod().invoke(target, invocation.getArguments());
 		}
 		catch (InvocationTargetException ex) {
 			// Invoked method threw a checked exception. 
@@ -63,6 +94,11 @@ public class InvokerInterceptor implements MethodInterceptor, ProxyInterceptor {
 		catch (IllegalAccessException ex) {
 			throw new AspectException("Couldn't access method " + invocation.getMethod() + ", ", ex);
 		}
+		finally {
+			if (targetSource != null) {
+				targetSource.releaseTarget(target);
+			}
+		}
 	}
 
 }
@@ -41,6 +41,10 @@ import com.interface21.core.OrderComparator;
  * implement the Ordered interface. An interceptor name list may not conclude
  * with a global "xxx*" pattern, as global interceptors cannot invoke targets.
  *
+ * <p>If the last entry in the list is a TargetSource, such as a pool of
+ * non-threadsafe prototype instances, the InvokerInterceptor that is added
+ * obtains a target from it on each invocation.
+ *
  * <p>Creates a J2SE proxy when proxy interfaces are given, a CGLIB proxy for the
  * actual target class if not. Note that the latter will only work if the target class
  * does not have final methods, as a dynamic subclass will be created at runtime.
@@ -183,6 +187,9 @@ public class ProxyFactoryBean extends DefaultProxyConfig implements FactoryBean,
 				if (bean instanceof MethodPointcut) {
 					pc2 = (MethodPointcut) bean;
 				}
+				else if (bean instanceof TargetSource) {
+					pc2 = new AlwaysInvoked(new InvokerInterceptor((TargetSource) bean));
+				}
 				else {
 					// The special case when the object was a target
 					// object, not an invoker or pointcut.
@@ -244,6 +251,10 @@ public class ProxyFactoryBean extends DefaultProxyConfig implements FactoryBean,
 		else if (next instanceof Interceptor) {
 			addInterceptor((Interceptor) next);
 		}
+		else if (next instanceof TargetSource) {
+			// Targets will be obtained from the TargetSource on each invocation
+			addInterceptor(new InvokerInterceptor((TargetSource) next));
+		}
 		else {
 			// It's not a pointcut or interceptor.
 			// It's a bean that needs an invoker around it.
@@ -0,0 +1,45 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.framework;
+
+/**
+ * Strategy interface used by InvokerInterceptor to obtain the target
+ * of an invocation. Allows targets to be pooled, bound to threads or
+ * swapped at runtime, rather than fixed in the proxy configuration.
+ *
+ * <p>Each call to getTarget() is matched by exactly one call to
+ * releaseTarget() with the same object, once the invocation has
+ * completed, whether normally or with an exception.
+ *
+ * @version $Id$
+ * @see InvokerInterceptor#setTargetSource
+ * @see com.interface21.aop.target.PoolingTargetSource
+ * @see com.interface21.aop.target.ThreadLocalTargetSource
+ * @see com.interface21.aop.target.HotSwappableTargetSource
+ */
+public interface TargetSource {
+
+	/**
+	 * Return the type of targets returned by this TargetSource,
+	 * or null if not known in advance.
+	 */
+	Class getTargetClass();
+
+	/**
+	 * Return a target instance for the current invocation.
+	 * @return the target object, which contains the joinpoint
+	 * @throws Exception if the target object can't be obtained
+	 */
+	Object getTarget() throws Exception;
+
+	/**
+	 * Release the given target object obtained from getTarget().
+	 * @param target object obtained from a call to getTarget()
+	 * @throws Exception if the object can't be released
+	 */
+	void releaseTarget(Object target) throws Exception;
+
+}
@@ -0,0 +1,269 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.framework.autoproxy;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.aopalliance.intercept.AttributeRegistry;
+import org.aopalliance.intercept.Interceptor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.interface21.aop.framework.AlwaysInvoked;
+import com.interface21.aop.framework.AopConfigException;
+import com.interface21.aop.framework.AopUtils;
+import com.interface21.aop.framework.InvokerInterceptor;
+import com.interface21.aop.framework.MethodPointcut;
+import com.interface21.aop.framework.ProxyFactory;
+import com.interface21.aop.framework.StaticMethodPointcut;
+import com.interface21.beans.BeansException;
+import com.interface21.beans.factory.BeanFactory;
+import com.interface21.beans.factory.BeanFactoryAware;
+import com.interface21.beans.factory.support.BeanPostProcessor;
+import com.interface21.core.Ordered;
+
+/**
+ * BeanPostProcessor that wraps beans with AOP proxies as they are created,
+ * selecting them by bean name pattern and/or type. This avoids the need for
+ * a ProxyFactoryBean definition per proxied bean.
+ *
+ * <p>The interceptors and pointcuts named by interceptorNames are resolved once,
+ * and the resulting chain is shared by all proxies this creator produces.
+ * Beans whose methods none of the pointcuts apply to are not proxied at all:
+ * this is determined once per bean class.
+ *
+ * <p>Bean name patterns can be literal names or "xxx*" / "*xxx" wildcards,
+ * e.g. "*Dao" or "service*". Proxies implement all interfaces of the target
+ * class, or are CGLIB subclasses if the target doesn't implement any.
+ *
+ * <p>Only beans created after this post-processor has been registered are
+ * proxied: application contexts register BeanPostProcessors before
+ * instantiating any other singletons.
+ *
+ * @version $Id$
+ * @see #setBeanNames
+ * @see #setBeanTypes
+ * @see #setInterceptorNames
+ */
+public class AutoProxyCreator implements BeanPostProcessor, BeanFactoryAware, Ordered {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private int order = Integer.MAX_VALUE;
+
+	private String[] beanNames;
+
+	private Class[] beanTypes;
+
+	private String[] interceptorNames;
+
+	private AttributeRegistry attributeRegistry;
+
+	private boolean exposeInvocation;
+
+	private BeanFactory beanFactory;
+
+	/** Shared pointcut chain, resolved on first use */
+	private MethodPointcut[] pointcuts;
+
+	/** Map from target class to Boolean: whether any pointcut applies */
+	private final Map matchCache = new HashMap();
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Set the names of the beans to proxy. Entries can be literal
+	 * bean names or "xxx*" and "*xxx" wildcards.
+	 */
+	public void setBeanNames(String[] beanNames) {
+		this.beanNames = beanNames;
+	}
+
+	/**
+	 * Set the fully qualified names of the types to proxy: each bean
+	 * that is an instance of one of these classes or interfaces is proxied.
+	 */
+	public void setBeanTypes(String[] typeNames) throws ClassNotFoundException {
+		this.beanTypes = new Class[typeNames.length];
+		for (int i = 0; i < typeNames.length; i++) {
+			this.beanTypes[i] = Class.forName(typeNames[i]);
+		}
+	}
+
+	/**
+	 * Set the names of the Interceptor and MethodPointcut beans to apply,
+	 * in invocation order. Unlike with ProxyFactoryBean, the list must not
+	 * contain a target: the target is the bean being post-processed.
+	 */
+	public void setInterceptorNames(String[] interceptorNames) {
+		this.interceptorNames = interceptorNames;
+	}
+
+	/**
+	 * Set the attribute registry for the proxies, and for evaluating
+	 * pointcuts when checking whether to proxy a bean.
+	 */
+	public void setAttributeRegistry(AttributeRegistry attributeRegistry) {
+		this.attributeRegistry = attributeRegistry;
+	}
+
+	/**
+	 * Set whether the proxies should expose the invocation to the AopContext class.
+	 */
+	public void setExposeInvocation(boolean exposeInvocation) {
+		this.exposeInvocation = exposeInvocation;
+	}
+
+	public void setBeanFactory(BeanFactory beanFactory) {
+		if (this.interceptorNames == null || this.interceptorNames.length == 0)
+			throw new AopConfigException("interceptorNames are required");
+		if (this.beanNames == null && this.beanTypes == null)
+			throw new AopConfigException("Either beanNames or beanTypes are required");
+		this.beanFactory = beanFactory;
+	}
+
+	public Object postProcessBean(Object bean, String name) throws BeansException {
+		if (!isCandidate(bean, name)) {
+			return bean;
+		}
+		MethodPointcut[] pointcuts = getPointcuts();
+		Set interfaceSet = AopUtils.findAllImplementedInterfaces(bean.getClass());
+		Class[] interfaces = (Class[]) interfaceSet.toArray(new Class[interfaceSet.size()]);
+		if (!isMatch(bean.getClass(), interfaces, pointcuts)) {
+			if (logger.isDebugEnabled())
+				logger.debug("Not proxying bean '" + name + "': no pointcut applies to its methods");
+			return bean;
+		}
+
+		ProxyFactory proxyFactory = new ProxyFactory(interfaces);
+		proxyFactory.setAttributeRegistry(this.attributeRegistry);
+		proxyFactory.setExposeInvocation(this.exposeInvocation);
+		for (int i = 0; i < pointcuts.length; i++) {
+			proxyFactory.addMethodPointcut(pointcuts[i]);
+		}
+		proxyFactory.addInterceptor(new InvokerInterceptor(bean));
+		if (logger.isDebugEnabled())
+			logger.debug("Creating auto-proxy for bean '" + name + "'");
+		return proxyFactory.getProxy();
+	}
+
+	/**
+	 * Return whether the given bean is selected by name or type.
+	 * Interceptor beans used by this creator are never proxied.
+	 */
+	protected boolean isCandidate(Object bean, String name) {
+		if (Arrays.asList(this.interceptorNames).contains(name)) {
+			return false;
+		}
+		if (this.beanNames != null) {
+			for (int i = 0; i < this.beanNames.length; i++) {
+				if (isMatch(name, this.beanNames[i])) {
+					return true;
+				}
+			}
+		}
+		if (this.beanTypes != null) {
+			for (int i = 0; i < this.beanTypes.length; i++) {
+				if (this.beanTypes[i].isInstance(bean)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return if the given bean name matches the mapped name.
+	 * The default implementation checks for direct, "xxx*" and "*xxx" matches.
+	 * Can be overridden in subclasses.
+	 * @param beanName the bean name to check
+	 * @param mappedName the name in the configured list of names
+	 * @return if the names match
+	 */
+	protected boolean isMatch(String beanName, String mappedName) {
+		return beanName.equals(mappedName) ||
+		    (mappedName.endsWith("*") && beanName.startsWith(mappedName.substring(0, mappedName.length() - 1))) ||
+		    (mappedName.startsWith("*") && beanName.endsWith(mappedName.substring(1)));
+	}
+
+	/**
+	 * Resolve the shared pointcut chain from the interceptor bean names.
+	 */
+	private synchronized MethodPointcut[] getPointcuts() {
+		if (this.pointcuts == null) {
+			MethodPointcut[] pointcuts = new MethodPointcut[this.interceptorNames.length];
+			for (int i = 0; i < this.interceptorNames.length; i++) {
+				Object next = this.beanFactory.getBean(this.interceptorNames[i]);
+				if (next instanceof MethodPointcut) {
+					pointcuts[i] = (MethodPointcut) next;
+				}
+				else if (next instanceof MethodInterceptor) {
+					pointcuts[i] = new AlwaysInvoked((MethodInterceptor) next);
+				}
+				else {
+					throw new AopConfigException("Bean '" + this.interceptorNames[i] + "' must be of type " +
+					                             MethodPointcut.class.getName() + " or " + Interceptor.class.getName());
+				}
+			}
+			logger.info("Resolved interceptor chain " + Arrays.asList(this.interceptorNames) + " for auto-proxying");
+			this.pointcuts = pointcuts;
+		}
+		return this.pointcuts;
+	}
+
+	/**
+	 * Return whether any of the given pointcuts applies to a method the proxy
+	 * would expose: a method of the given interfaces or, if there are none, a
+	 * public method of the target class. Determined once per target class.
+	 */
+	private boolean isMatch(Class targetClass, Class[] interfaces, MethodPointcut[] pointcuts) {
+		synchronized (this.matchCache) {
+			Boolean match = (Boolean) this.matchCache.get(targetClass);
+			if (match == null) {
+				boolean matched = false;
+				if (interfaces.length > 0) {
+					for (int i = 0; i < interfaces.length && !matched; i++) {
+						matched = isMatch(interfaces[i].getMethods(), pointcuts);
+					}
+				}
+				else {
+					matched = isMatch(targetClass.getMethods(), pointcuts);
+				}
+				match = matched ? Boolean.TRUE : Boolean.FALSE;
+				this.matchCache.put(targetClass, match);
+			}
+			return match.booleanValue();
+		}
+	}
+
+	private boolean isMatch(Method[] methods, MethodPointcut[] pointcuts) {
+		for (int i = 0; i < pointcuts.length; i++) {
+			if (!(pointcuts[i] instanceof StaticMethodPointcut)) {
+				// Can't tell in advance
+				return true;
+			}
+			StaticMethodPointcut pc = (StaticMethodPointcut) pointcuts[i];
+			for (int j = 0; j < methods.length; j++) {
+				if (methods[j].getDeclaringClass() != Object.class && pc.applies(methods[j], this.attributeRegistry)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+}
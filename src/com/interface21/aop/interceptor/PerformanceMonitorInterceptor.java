@@ -13,10 +13,13 @@ import com.interface21.util.StopWatch;
  *
  * <p>Presently logs information using Commons Logging, at "info" level.
  * Could make this much more sophisticated, storing information etc.
+ * For production use, consider SamplingPerformanceMonitorInterceptor,
+ * which records statistics rather than logging each invocation.
  *
  * @author Rod Johnson
  * @author Dmitriy Kopylenko
  * @version $Id$
+ * @see SamplingPerformanceMonitorInterceptor
  */
 public class PerformanceMonitorInterceptor implements MethodInterceptor {
 
@@ -0,0 +1,148 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.interceptor;
+
+import com.interface21.util.ResponseTimeHistogram;
+
+/**
+ * Performance statistics for one monitored method: invocation and
+ * error counts, throughput and a histogram of sampled response times.
+ *
+ * <p>Updates are not synchronized, to keep monitoring overhead minimal:
+ * under heavy concurrency, counts may be slightly lower than exact.
+ *
+ * @version $Id$
+ * @see PerformanceStatisticsRegistry
+ */
+public class PerformanceStatistics {
+
+	private final String name;
+
+	private final ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+
+	private long startTime = System.currentTimeMillis();
+
+	private long invocationCount;
+
+	private long errorCount;
+
+	/**
+	 * Create new statistics for the given name.
+	 * @param name the name of the monitored method
+	 */
+	public PerformanceStatistics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Count an invocation, returning the new invocation count.
+	 */
+	final long invoked() {
+		return ++this.invocationCount;
+	}
+
+	/**
+	 * Count an invocation that threw an exception.
+	 */
+	final void failed() {
+		this.errorCount++;
+	}
+
+	/**
+	 * Record the response time of a sampled invocation.
+	 */
+	final void recordResponseTime(long time) {
+		this.histogram.recordResponseTime(time);
+	}
+
+	/**
+	 * Return the number of invocations, including unsampled ones.
+	 */
+	public long getInvocationCount() {
+		return invocationCount;
+	}
+
+	/**
+	 * Return the number of invocations that threw an exception.
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * Return the number of invocations whose response time was recorded.
+	 */
+	public long getSampleCount() {
+		return this.histogram.getCount();
+	}
+
+	/**
+	 * Return the average number of invocations per second
+	 * since these statistics were created or last reset.
+	 */
+	public double getThroughput() {
+		long elapsed = System.currentTimeMillis() - this.startTime;
+		return (elapsed > 0) ? this.invocationCount * 1000.0 / elapsed : 0;
+	}
+
+	public long getAverageTime() {
+		return this.histogram.getAverageResponseTimeMillis();
+	}
+
+	public long getMaxTime() {
+		return this.histogram.getWorstResponseTimeMillis();
+	}
+
+	/**
+	 * Return the median sampled response time in milliseconds.
+	 */
+	public long getMedianTime() {
+		return this.histogram.getMedian();
+	}
+
+	/**
+	 * Return the 99th percentile of sampled response times in milliseconds.
+	 */
+	public long get99thPercentileTime() {
+		return this.histogram.getPercentile(0.99);
+	}
+
+	/**
+	 * Return the 99.9th percentile of sampled response times in milliseconds.
+	 */
+	public long get999thPercentileTime() {
+		return this.histogram.getPercentile(0.999);
+	}
+
+	/**
+	 * Return the given percentile of sampled response times in milliseconds.
+	 * @param fraction fraction between 0 and 1, e.g. 0.95
+	 */
+	public long getPercentileTime(double fraction) {
+		return this.histogram.getPercentile(fraction);
+	}
+
+	/**
+	 * Clear all counts and recorded times.
+	 */
+	public void reset() {
+		this.histogram.reset();
+		this.invocationCount = 0;
+		this.errorCount = 0;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	public String toString() {
+		return this.name + ": invocations=" + getInvocationCount() + "; errors=" + getErrorCount() +
+		    "; throughput=" + ((long) (getThroughput() * 100)) / 100.0 + "/s; median=" + getMedianTime() +
+		    "ms; 99%=" + get99thPercentileTime() + "ms; 99.9%=" + get999thPercentileTime() + "ms; max=" + getMaxTime() + "ms";
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.interceptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of PerformanceStatistics by method name, populated by
+ * SamplingPerformanceMonitorInterceptors. Typically defined as a bean
+ * shared by all monitoring interceptors of an application, so that it
+ * can be queried by management or reporting components.
+ *
+ * @version $Id$
+ * @see SamplingPerformanceMonitorInterceptor#setStatisticsRegistry
+ */
+public class PerformanceStatisticsRegistry {
+
+	/** Map from method name to PerformanceStatistics */
+	private final Map statisticsMap = new HashMap();
+
+	/**
+	 * Return the statistics for the given name, creating them if necessary.
+	 * @param name name of the monitored method
+	 */
+	public PerformanceStatistics getOrCreateStatistics(String name) {
+		synchronized (this.statisticsMap) {
+			PerformanceStatistics stats = (PerformanceStatistics) this.statisticsMap.get(name);
+			if (stats == null) {
+				stats = new PerformanceStatistics(name);
+				this.statisticsMap.put(name, stats);
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * Return the statistics for the given name.
+	 * @param name name of the monitored method, e.g. "com.mycompany.MyService.myMethod"
+	 * @return the statistics, or null if the method hasn't been invoked
+	 */
+	public PerformanceStatistics getStatistics(String name) {
+		synchronized (this.statisticsMap) {
+			return (PerformanceStatistics) this.statisticsMap.get(name);
+		}
+	}
+
+	/**
+	 * Return all statistics, sorted by name.
+	 */
+	public PerformanceStatistics[] getAllStatistics() {
+		List stats = null;
+		synchronized (this.statisticsMap) {
+			stats = new ArrayList(this.statisticsMap.values());
+		}
+		Collections.sort(stats, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return ((PerformanceStatistics) o1).getName().compareTo(((PerformanceStatistics) o2).getName());
+			}
+		});
+		return (PerformanceStatistics[]) stats.toArray(new PerformanceStatistics[stats.size()]);
+	}
+
+	/**
+	 * Reset all statistics.
+	 */
+	public void reset() {
+		PerformanceStatistics[] stats = getAllStatistics();
+		for (int i = 0; i < stats.length; i++) {
+			stats[i].reset();
+		}
+	}
+
+	/**
+	 * Return a report with one line per monitored method.
+	 */
+	public String toString() {
+		PerformanceStatistics[] stats = getAllStatistics();
+		StringBuffer sb = new StringBuffer("PerformanceStatisticsRegistry: ");
+		sb.append(stats.length).append(" monitored methods");
+		for (int i = 0; i < stats.length; i++) {
+			sb.append('\n').append(stats[i]);
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Performance monitor interceptor suitable for production use.
+ * Unlike PerformanceMonitorInterceptor, it doesn't log anything per
+ * invocation but records statistics in a PerformanceStatisticsRegistry:
+ * invocation and error counts for every call, and response time
+ * percentiles for a configurable sample of calls.
+ *
+ * <p>Statistics are registered under the fully qualified method name plus
+ * parameter types, e.g. "com.mycompany.MyService.getItem(int)", so that
+ * overloaded methods are recorded separately.
+ *
+ * <p>Recording doesn't allocate objects: statistics are looked up per method
+ * in a local map, under a lock that is only held for the lookup itself.
+ *
+ * @version $Id$
+ * @see PerformanceMonitorInterceptor
+ * @see PerformanceStatisticsRegistry
+ */
+public class SamplingPerformanceMonitorInterceptor implements MethodInterceptor {
+
+	private PerformanceStatisticsRegistry statisticsRegistry = new PerformanceStatisticsRegistry();
+
+	private int sampleInterval = 1;
+
+	/** Map from Method to PerformanceStatistics, guarded by its own lock */
+	private final Map statisticsCache = new HashMap();
+
+	/**
+	 * Set the registry to record statistics in. Default is a registry
+	 * private to this interceptor.
+	 */
+	public void setStatisticsRegistry(PerformanceStatisticsRegistry statisticsRegistry) {
+		synchronized (this.statisticsCache) {
+			this.statisticsRegistry = statisticsRegistry;
+			this.statisticsCache.clear();
+		}
+	}
+
+	public PerformanceStatisticsRegistry getStatisticsRegistry() {
+		return statisticsRegistry;
+	}
+
+	/**
+	 * Set how often the response time is measured: every nth invocation
+	 * of each method. Default is 1, i.e. every invocation.
+	 */
+	public void setSampleInterval(int sampleInterval) {
+		if (sampleInterval < 1)
+			throw new IllegalArgumentException("sampleInterval must be at least 1");
+		this.sampleInterval = sampleInterval;
+	}
+
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		PerformanceStatistics stats = getStatistics(invocation.getMethod());
+		boolean sampled = (stats.invoked() % this.sampleInterval == 0);
+		long startTime = (sampled ? System.currentTimeMillis() : 0);
+		try {
+			return invocation.proceed();
+		}
+		catch (Throwable ex) {
+			stats.failed();
+			throw ex;
+		}
+		finally {
+			if (sampled) {
+				stats.recordResponseTime(System.currentTimeMillis() - startTime);
+			}
+		}
+	}
+
+	/**
+	 * Return the statistics for the given method, looking them up
+	 * in the registry and caching them on its first invocation.
+	 */
+	private PerformanceStatistics getStatistics(Method method) {
+		synchronized (this.statisticsCache) {
+			PerformanceStatistics stats = (PerformanceStatistics) this.statisticsCache.get(method);
+			if (stats == null) {
+				stats = this.statisticsRegistry.getOrCreateStatistics(getStatisticsName(method));
+				this.statisticsCache.put(method, stats);
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * Return the name to register the statistics for the given method under:
+	 * the fully qualified method name plus parameter types.
+	 */
+	protected String getStatisticsName(Method method) {
+		StringBuffer buf = new StringBuffer(method.getDeclaringClass().getName());
+		buf.append('.').append(method.getName()).append('(');
+		Class[] paramTypes = method.getParameterTypes();
+		for (int i = 0; i < paramTypes.length; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			Class paramType = paramTypes[i];
+			int dimensions = 0;
+			while (paramType.isArray()) {
+				paramType = paramType.getComponentType();
+				dimensions++;
+			}
+			buf.append(paramType.getName());
+			for (int j = 0; j < dimensions; j++) {
+				buf.append("[]");
+			}
+		}
+		return buf.append(')').toString();
+	}
+
+}
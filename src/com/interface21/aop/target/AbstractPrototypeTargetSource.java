@@ -0,0 +1,87 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.target;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.interface21.aop.framework.AopConfigException;
+import com.interface21.aop.framework.TargetSource;
+import com.interface21.beans.BeansException;
+import com.interface21.beans.factory.BeanFactory;
+import com.interface21.beans.factory.BeanFactoryAware;
+
+/**
+ * Base class for TargetSource implementations that create new
+ * instances of a prototype bean from the owning BeanFactory.
+ * Subclasses decide how such instances are shared between invocations,
+ * e.g. through a pool or one instance per thread.
+ *
+ * <p>The target bean must be defined as prototype ("singleton=false"):
+ * otherwise there is no point in using such a TargetSource.
+ *
+ * @version $Id$
+ * @see #setTargetBeanName
+ */
+public abstract class AbstractPrototypeTargetSource implements TargetSource, BeanFactoryAware {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	/** Name of the prototype target bean */
+	private String targetBeanName;
+
+	/** Owning BeanFactory that creates the target instances */
+	private BeanFactory beanFactory;
+
+	/** Class of the targets, determined on creation of the first instance */
+	private Class targetClass;
+
+	/**
+	 * Set the name of the target bean in the factory. This bean must
+	 * be a prototype, as each call to newPrototypeInstance() is expected
+	 * to return an independent instance.
+	 */
+	public void setTargetBeanName(String targetBeanName) {
+		this.targetBeanName = targetBeanName;
+	}
+
+	public String getTargetBeanName() {
+		return targetBeanName;
+	}
+
+	/**
+	 * Checks the target bean definition. Subclasses that eagerly create
+	 * instances should override this method, invoking the superclass
+	 * implementation first.
+	 * @see com.interface21.beans.factory.BeanFactoryAware#setBeanFactory
+	 */
+	public void setBeanFactory(BeanFactory beanFactory) throws Exception {
+		if (this.targetBeanName == null)
+			throw new AopConfigException("targetBeanName is required");
+		if (beanFactory.isSingleton(this.targetBeanName))
+			throw new AopConfigException("Cannot use TargetSource with singleton bean '" + this.targetBeanName +
+			                             "': target bean must be a prototype");
+		this.beanFactory = beanFactory;
+	}
+
+	public Class getTargetClass() {
+		return targetClass;
+	}
+
+	/**
+	 * Obtain a new instance of the prototype bean from the owning BeanFactory.
+	 */
+	protected Object newPrototypeInstance() throws BeansException {
+		if (logger.isDebugEnabled())
+			logger.debug("Creating new target from bean '" + this.targetBeanName + "'");
+		Object target = this.beanFactory.getBean(this.targetBeanName);
+		if (this.targetClass == null) {
+			this.targetClass = target.getClass();
+		}
+		return target;
+	}
+
+}
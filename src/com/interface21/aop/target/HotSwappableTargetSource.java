@@ -0,0 +1,64 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.target;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.interface21.aop.framework.AopConfigException;
+import com.interface21.aop.framework.TargetSource;
+
+/**
+ * TargetSource holding a single target that can be replaced while
+ * proxies are in use. Invocations that have already obtained the old
+ * target complete against it; all subsequent invocations see the new one.
+ *
+ * @version $Id$
+ * @see #swap
+ */
+public class HotSwappableTargetSource implements TargetSource {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	/** Current target, guarded by this object's monitor */
+	private Object target;
+
+	/**
+	 * Create a new HotSwappableTargetSource with the given initial target.
+	 * @param initialTarget initial target object
+	 */
+	public HotSwappableTargetSource(Object initialTarget) {
+		if (initialTarget == null)
+			throw new AopConfigException("Target object must not be null");
+		this.target = initialTarget;
+	}
+
+	public synchronized Class getTargetClass() {
+		return this.target.getClass();
+	}
+
+	public synchronized Object getTarget() {
+		return this.target;
+	}
+
+	public void releaseTarget(Object target) {
+	}
+
+	/**
+	 * Atomically replace the target object.
+	 * @param newTarget new target object
+	 * @return the previous target object
+	 */
+	public synchronized Object swap(Object newTarget) {
+		if (newTarget == null)
+			throw new AopConfigException("Target object must not be null");
+		Object oldTarget = this.target;
+		this.target = newTarget;
+		logger.info("Swapped target [" + oldTarget + "] for [" + newTarget + "]");
+		return oldTarget;
+	}
+
+}
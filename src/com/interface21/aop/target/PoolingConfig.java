@@ -0,0 +1,63 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.target;
+
+/**
+ * Configuration and utilisation metrics of a pool of target objects.
+ * Counters are cumulative since the pool was created.
+ * @version $Id$
+ * @see PoolingTargetSource
+ */
+public interface PoolingConfig {
+
+	/**
+	 * Return the maximum number of instances the pool will create.
+	 */
+	int getMaxSize();
+
+	/**
+	 * Return the number of instances created eagerly on initialization.
+	 */
+	int getMinSize();
+
+	/**
+	 * Return the number of instances currently borrowed by invocations.
+	 */
+	int getActiveCount();
+
+	/**
+	 * Return the number of instances currently idle in the pool.
+	 */
+	int getIdleCount();
+
+	/**
+	 * Return the largest number of instances that have been borrowed
+	 * at the same time.
+	 */
+	int getPeakActiveCount();
+
+	/**
+	 * Return how many times an instance has been borrowed from the pool.
+	 */
+	long getBorrowCount();
+
+	/**
+	 * Return how many borrowers had to wait for an instance to be released.
+	 */
+	long getWaitCount();
+
+	/**
+	 * Return the total time in milliseconds borrowers spent waiting.
+	 */
+	long getTotalWaitTime();
+
+	/**
+	 * Return how many borrowers gave up because no instance became
+	 * available within the maximum wait time.
+	 */
+	long getTimeoutCount();
+
+}
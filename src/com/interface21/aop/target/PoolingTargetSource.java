@@ -0,0 +1,271 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.target;
+
+import java.util.LinkedList;
+
+import org.aopalliance.intercept.AspectException;
+
+import com.interface21.aop.framework.AopConfigException;
+import com.interface21.beans.factory.BeanFactory;
+import com.interface21.beans.factory.DisposableBean;
+
+/**
+ * TargetSource that keeps a bounded pool of prototype instances, so that
+ * non-threadsafe targets can serve concurrent callers without serializing
+ * every invocation on a single instance.
+ *
+ * <p>Up to maxSize instances are created on demand; minSize instances are
+ * created eagerly when the BeanFactory is set. When all instances are busy,
+ * callers wait up to maxWait milliseconds for one to be released.
+ * Instances are handed out last-in-first-out, to keep the most recently
+ * used ones warm.
+ *
+ * <p>Utilisation metrics are available through the PoolingConfig interface,
+ * e.g. by referencing this bean from a monitoring component.
+ *
+ * @version $Id$
+ */
+public class PoolingTargetSource extends AbstractPrototypeTargetSource implements PoolingConfig, DisposableBean {
+
+	private int maxSize = 8;
+
+	private int minSize = 0;
+
+	private long maxWait = -1;
+
+	/** Idle instances, most recently released last */
+	private final LinkedList idle = new LinkedList();
+
+	/** Number of instances created and not destroyed, including reserved slots */
+	private int size;
+
+	private int activeCount;
+
+	private int peakActiveCount;
+
+	private long borrowCount;
+
+	private long waitCount;
+
+	private long totalWaitTime;
+
+	private long timeoutCount;
+
+	private boolean destroyed;
+
+	/**
+	 * Set the maximum number of instances. Default is 8.
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Set the number of instances to create on initialization. Default is 0.
+	 */
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds to wait for an instance
+	 * when the pool is exhausted. 0 means fail immediately, a negative
+	 * value means wait indefinitely. Default is -1.
+	 */
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * Validates the pool configuration and creates the minimum
+	 * number of instances.
+	 */
+	public void setBeanFactory(BeanFactory beanFactory) throws Exception {
+		if (this.maxSize < 1)
+			throw new AopConfigException("maxSize must be at least 1");
+		if (this.minSize < 0 || this.minSize > this.maxSize)
+			throw new AopConfigException("minSize must be between 0 and maxSize");
+		super.setBeanFactory(beanFactory);
+		logger.info("Initializing pool for bean '" + getTargetBeanName() + "' with " + this.minSize +
+		            " to " + this.maxSize + " instances");
+		for (int i = 0; i < this.minSize; i++) {
+			Object target = newPrototypeInstance();
+			synchronized (this.idle) {
+				this.idle.add(target);
+				this.size++;
+			}
+		}
+	}
+
+	public Object getTarget() throws Exception {
+		synchronized (this.idle) {
+			if (this.destroyed)
+				throw new AspectException("Pool for bean '" + getTargetBeanName() + "' has been destroyed");
+			long waitStart = 0;
+			while (this.idle.isEmpty() && this.size >= this.maxSize) {
+				if (this.maxWait == 0) {
+					this.timeoutCount++;
+					throw new AspectException("Pool for bean '" + getTargetBeanName() + "' exhausted: " +
+					                          this.maxSize + " instances in use");
+				}
+				long now = System.currentTimeMillis();
+				if (waitStart == 0) {
+					waitStart = now;
+					this.waitCount++;
+				}
+				long timeout = 0;
+				if (this.maxWait > 0) {
+					timeout = this.maxWait - (now - waitStart);
+					if (timeout <= 0) {
+						this.timeoutCount++;
+						this.totalWaitTime += now - waitStart;
+						throw new AspectException("Pool for bean '" + getTargetBeanName() + "' exhausted: no instance " +
+						                          "released within " + this.maxWait + " ms");
+					}
+				}
+				this.idle.wait(timeout);
+				if (this.destroyed)
+					throw new AspectException("Pool for bean '" + getTargetBeanName() + "' has been destroyed");
+			}
+			if (waitStart != 0) {
+				this.totalWaitTime += System.currentTimeMillis() - waitStart;
+			}
+			this.borrowCount++;
+			this.activeCount++;
+			if (this.activeCount > this.peakActiveCount) {
+				this.peakActiveCount = this.activeCount;
+			}
+			if (!this.idle.isEmpty()) {
+				return this.idle.removeLast();
+			}
+			// Reserve a slot; the instance itself is created outside the lock
+			this.size++;
+		}
+
+		try {
+			return newPrototypeInstance();
+		}
+		catch (RuntimeException ex) {
+			synchronized (this.idle) {
+				this.size--;
+				this.activeCount--;
+				this.idle.notify();
+			}
+			throw ex;
+		}
+	}
+
+	public void releaseTarget(Object target) throws Exception {
+		synchronized (this.idle) {
+			this.activeCount--;
+			if (!this.destroyed) {
+				this.idle.add(target);
+				this.idle.notify();
+				return;
+			}
+			this.size--;
+		}
+		// Pool already destroyed: dispose of the returning instance
+		destroyTarget(target);
+	}
+
+	/**
+	 * Destroy all idle instances. Instances still in use
+	 * are destroyed when they are released.
+	 */
+	public void destroy() throws Exception {
+		Object[] targets = null;
+		synchronized (this.idle) {
+			this.destroyed = true;
+			targets = this.idle.toArray();
+			this.idle.clear();
+			this.size -= targets.length;
+			this.idle.notifyAll();
+		}
+		logger.info("Destroying pool for bean '" + getTargetBeanName() + "'");
+		for (int i = 0; i < targets.length; i++) {
+			destroyTarget(targets[i]);
+		}
+	}
+
+	/**
+	 * Destroy the given instance if it implements DisposableBean.
+	 */
+	protected void destroyTarget(Object target) {
+		if (target instanceof DisposableBean) {
+			try {
+				((DisposableBean) target).destroy();
+			}
+			catch (Exception ex) {
+				logger.error("destroy() on pooled target threw an exception", ex);
+			}
+		}
+	}
+
+	public int getActiveCount() {
+		synchronized (this.idle) {
+			return activeCount;
+		}
+	}
+
+	public int getIdleCount() {
+		synchronized (this.idle) {
+			return this.idle.size();
+		}
+	}
+
+	public int getPeakActiveCount() {
+		synchronized (this.idle) {
+			return peakActiveCount;
+		}
+	}
+
+	public long getBorrowCount() {
+		synchronized (this.idle) {
+			return borrowCount;
+		}
+	}
+
+	public long getWaitCount() {
+		synchronized (this.idle) {
+			return waitCount;
+		}
+	}
+
+	public long getTotalWaitTime() {
+		synchronized (this.idle) {
+			return totalWaitTime;
+		}
+	}
+
+	public long getTimeoutCount() {
+		synchronized (this.idle) {
+			return timeoutCount;
+		}
+	}
+
+	public String toString() {
+		synchronized (this.idle) {
+			return "PoolingTargetSource for bean '" + getTargetBeanName() + "': active=" + this.activeCount +
+			    ", idle=" + this.idle.size() + ", max=" + this.maxSize + ", borrowed=" + this.borrowCount +
+			    ", waited=" + this.waitCount + ", timeouts=" + this.timeoutCount;
+		}
+	}
+
+}
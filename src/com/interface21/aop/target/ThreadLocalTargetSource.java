@@ -0,0 +1,84 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.target;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.interface21.beans.factory.DisposableBean;
+
+/**
+ * TargetSource that binds one prototype instance to each thread,
+ * creating it on the thread's first invocation. Non-threadsafe targets
+ * can thus be used without any locking or pooling, at the expense of
+ * one instance per calling thread.
+ *
+ * <p>Instances are destroyed when this TargetSource is destroyed,
+ * if they implement DisposableBean.
+ *
+ * @version $Id$
+ */
+public class ThreadLocalTargetSource extends AbstractPrototypeTargetSource implements DisposableBean {
+
+	private final ThreadLocal targetInThread = new ThreadLocal();
+
+	/** All targets created, for destruction */
+	private final List targets = new ArrayList();
+
+	public Object getTarget() {
+		Object target = this.targetInThread.get();
+		if (target == null) {
+			target = newPrototypeInstance();
+			this.targetInThread.set(target);
+			synchronized (this.targets) {
+				this.targets.add(target);
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * No need to release the target: it stays bound to the thread.
+	 */
+	public void releaseTarget(Object target) {
+	}
+
+	/**
+	 * Destroy all targets created by this TargetSource.
+	 * Threads that invoke the proxy afterwards will still use their
+	 * existing target.
+	 */
+	public void destroy() throws Exception {
+		Object[] targetsToDestroy = null;
+		synchronized (this.targets) {
+			targetsToDestroy = this.targets.toArray();
+			this.targets.clear();
+		}
+		logger.info("Destroying " + targetsToDestroy.length + " thread-bound targets of bean '" +
+		            getTargetBeanName() + "'");
+		for (int i = 0; i < targetsToDestroy.length; i++) {
+			if (targetsToDestroy[i] instanceof DisposableBean) {
+				try {
+					((DisposableBean) targetsToDestroy[i]).destroy();
+				}
+				catch (Exception ex) {
+					logger.error("destroy() on thread-bound target threw an exception", ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the number of target instances created, i.e. the number
+	 * of distinct threads that have invoked the proxy.
+	 */
+	public int getObjectCount() {
+		synchronized (this.targets) {
+			return this.targets.size();
+		}
+	}
+
+}
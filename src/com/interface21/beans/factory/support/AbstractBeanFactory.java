@@ -81,6 +81,9 @@ public abstract class AbstractBeanFactory implements HierarchicalBeanFactory {
 	/** Map from alias to canonical bean name */
 	private Map aliasMap = new HashMap();
 
+	/** BeanPostProcessors to apply to new bean instances */
+	private List beanPostProcessors = new ArrayList();
+
 
 	//---------------------------------------------------------------------
 	// Constructors
@@ -105,6 +108,23 @@ public abstract class AbstractBeanFactory implements HierarchicalBeanFactory {
 		return parentBeanFactory;
 	}
 
+	/**
+	 * Add a new BeanPostProcessor that will get applied to beans created
+	 * by this factory. Post-processors are applied in registration order.
+	 * @param beanPostProcessor the post-processor to register
+	 */
+	public void addBeanPostProcessor(BeanPostProcessor beanPostProcessor) {
+		this.beanPostProcessors.add(beanPostProcessor);
+	}
+
+	/**
+	 * Return the list of BeanPostProcessors that will get applied
+	 * to beans created with this factory.
+	 */
+	public List getBeanPostProcessors() {
+		return beanPostProcessors;
+	}
+
 
 	//---------------------------------------------------------------------
 	// Implementation of BeanFactory interface
@@ -303,7 +323,29 @@ public abstract class AbstractBeanFactory implements HierarchicalBeanFactory {
 		PropertyValues pvs = mergedBeanDefinition.getPropertyValues();
 		applyPropertyValues(instanceWrapper, pvs, name, newlyCreatedBeans);
 		callLifecycleMethodsIfNecessary(bean, name, mergedBeanDefinition, instanceWrapper);
-		return bean;
+		return applyBeanPostProcessors(bean, name);
+	}
+
+	/**
+	 * Apply all registered BeanPostProcessors to the given new bean instance.
+	 * FactoryBeans and BeanPostProcessors are returned unchanged.
+	 * @param bean the new bean instance
+	 * @param name the name of the bean
+	 * @return the bean instance to use, either the original or a wrapped one
+	 */
+	private Object applyBeanPostProcessors(Object bean, String name) throws BeansException {
+		if (bean instanceof FactoryBean || bean instanceof BeanPostProcessor) {
+			return bean;
+		}
+		Object result = bean;
+		for (int i = 0; i < this.beanPostProcessors.size(); i++) {
+			BeanPostProcessor processor = (BeanPostProcessor) this.beanPostProcessors.get(i);
+			result = processor.postProcessBean(result, name);
+			if (result == null) {
+				throw new FatalBeanException("BeanPostProcessor [" + processor + "] returned null for bean '" + name + "'");
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -0,0 +1,39 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.beans.factory.support;
+
+import com.interface21.beans.BeansException;
+
+/**
+ * Allows for custom modification of new bean instances, e.g. wrapping
+ * them with AOP proxies. Post-processors are registered with an
+ * AbstractBeanFactory, and are applied to each bean it creates,
+ * after its lifecycle methods have been invoked.
+ *
+ * <p>Application contexts detect BeanPostProcessor beans in their bean
+ * definitions and register them with their bean factory before any
+ * other beans are created.
+ *
+ * <p>Note that FactoryBeans and BeanPostProcessors themselves
+ * are not post-processed.
+ *
+ * @version $Id$
+ * @see AbstractBeanFactory#addBeanPostProcessor
+ * @see com.interface21.aop.framework.autoproxy.AutoProxyCreator
+ */
+public interface BeanPostProcessor {
+
+	/**
+	 * Apply this post-processor to the given new bean instance, after its
+	 * properties have been set and its lifecycle methods have been invoked.
+	 * @param bean the new bean instance
+	 * @param name the name of the bean
+	 * @return the bean instance to use, either the original or a wrapped one
+	 * @throws BeansException in case of errors
+	 */
+	Object postProcessBean(Object bean, String name) throws BeansException;
+
+}
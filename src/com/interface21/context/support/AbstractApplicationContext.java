@@ -16,9 +16,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -31,6 +34,7 @@ import org.apache.commons.logging.LogFactory;
 import com.interface21.beans.BeansException;
 import com.interface21.beans.factory.BeanFactory;
 import com.interface21.beans.factory.NoSuchBeanDefinitionException;
+import com.interface21.beans.factory.support.BeanPostProcessor;
 import com.interface21.beans.factory.support.BeanFactoryUtils;
 import com.interface21.beans.factory.support.ListableBeanFactoryImpl;
 import com.interface21.context.ApplicationContext;
@@ -44,6 +48,7 @@ import com.interface21.context.MessageSource;
 import com.interface21.context.MessageSourceResolvable;
 import com.interface21.context.NestingMessageSource;
 import com.interface21.context.NoSuchMessageException;
+import com.interface21.core.OrderComparator;
 import com.interface21.util.StringUtils;
 
 
@@ -222,6 +227,9 @@ public abstract class AbstractApplicationContext implements ApplicationContext {
 		// invoke configurers that can override values in the bean definitions
 		invokeContextConfigurers();
 
+		// register post-processors that get applied to new bean instances
+		registerBeanPostProcessors();
+
 		// load options bean for this context
 		loadOptions();
 
@@ -262,6 +270,25 @@ public abstract class AbstractApplicationContext implements ApplicationContext {
 		}
 	}
 
+	/**
+	 * Instantiate all BeanPostProcessor beans and register them with the bean
+	 * factory, sorted by their order value if they implement the Ordered interface.
+	 * Must be called before any application beans are instantiated.
+	 */
+	private void registerBeanPostProcessors() {
+		String[] beanNames = getBeanDefinitionNames(BeanPostProcessor.class);
+		List processors = new ArrayList(beanNames.length);
+		for (int i = 0; i < beanNames.length; i++) {
+			processors.add(getBean(beanNames[i]));
+		}
+		Collections.sort(processors, new OrderComparator());
+		for (Iterator it = processors.iterator(); it.hasNext();) {
+			BeanPostProcessor processor = (BeanPostProcessor) it.next();
+			logger.info("Registering BeanPostProcessor [" + processor + "]");
+			getBeanFactory().addBeanPostProcessor(processor);
+		}
+	}
+
 	/**
 	 * Load the options bean.
 	 * The BeanFactory must be loaded before this method is called.
@@ -0,0 +1,26 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.core;
+
+/**
+ * Simple task executor interface that abstracts the execution
+ * of a Runnable, e.g. in a thread pool of an application server.
+ * Allows for plugging in any threading strategy.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see com.interface21.jdbc.core.JdbcTemplate#setTaskExecutor
+ */
+public interface TaskExecutor {
+
+	/**
+	 * Execute the given task, typically asynchronously.
+	 * @param task the Runnable to execute
+	 * @throws RuntimeException if the task cannot be accepted
+	 */
+	void execute(Runnable task);
+
+}
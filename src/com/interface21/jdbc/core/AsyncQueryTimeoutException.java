@@ -0,0 +1,29 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import com.interface21.dao.DataAccessResourceFailureException;
+
+/**
+ * Exception thrown when the result of an asynchronous JDBC operation
+ * is not available within the given time.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see QueryFuture#get(long)
+ * @see JdbcTemplate#awaitAll
+ */
+public class AsyncQueryTimeoutException extends DataAccessResourceFailureException {
+
+	/**
+	 * Constructor for AsyncQueryTimeoutException.
+	 * @param msg message
+	 */
+	public AsyncQueryTimeoutException(String msg) {
+		super(msg, null);
+	}
+
+}
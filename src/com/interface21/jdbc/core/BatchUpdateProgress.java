@@ -0,0 +1,96 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+/**
+ * Running totals of a streaming batch update: rows and chunks executed,
+ * rows affected, and throughput. Returned by JdbcTemplate's streaming
+ * batchUpdate methods, and passed to BatchUpdateProgressListeners.
+ *
+ * <p>Thread-safe, as parallel partitions update the same instance.
+ *
+ * @version $Id$
+ * @see JdbcTemplate#batchUpdate(String, java.util.Iterator, ItemPreparedStatementSetter, int, int, BatchUpdateProgressListener)
+ * @see BatchUpdateProgressListener
+ */
+public class BatchUpdateProgress {
+
+	private final long startTime = System.currentTimeMillis();
+
+	private long endTime;
+
+	private long rowCount;
+
+	private long chunkCount;
+
+	private long updateCount;
+
+	BatchUpdateProgress() {
+	}
+
+	/**
+	 * Add an executed chunk to the totals.
+	 * @param counts the update counts returned by executeBatch
+	 */
+	synchronized void chunkCompleted(int rows, int[] counts) {
+		this.rowCount += rows;
+		this.chunkCount++;
+		for (int i = 0; i < counts.length; i++) {
+			// ignore SUCCESS_NO_INFO and EXECUTE_FAILED
+			if (counts[i] > 0) {
+				this.updateCount += counts[i];
+			}
+		}
+	}
+
+	synchronized void finished() {
+		this.endTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Return the number of rows executed so far.
+	 */
+	public synchronized long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Return the number of chunks executed so far.
+	 */
+	public synchronized long getChunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * Return the number of rows affected, as far as reported by the driver.
+	 * Drivers may not return counts for batched statements.
+	 */
+	public synchronized long getUpdateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * Return the time elapsed since the batch update started,
+	 * or its total duration if it has finished.
+	 */
+	public synchronized long getElapsedMillis() {
+		return (this.endTime != 0 ? this.endTime : System.currentTimeMillis()) - this.startTime;
+	}
+
+	/**
+	 * Return the average throughput in rows per second.
+	 */
+	public synchronized double getRowsPerSecond() {
+		long elapsed = getElapsedMillis();
+		return (elapsed > 0 ? this.rowCount * 1000.0 / elapsed : 0.0);
+	}
+
+	public synchronized String toString() {
+		return this.rowCount + " rows in " + this.chunkCount + " chunks, " + this.updateCount + " rows affected, " +
+		    getElapsedMillis() + " ms (" + (long) getRowsPerSecond() + " rows/sec)";
+	}
+
+}
@@ -0,0 +1,26 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+/**
+ * Callback interface notified after each chunk of a streaming batch update,
+ * for example to report progress of a long-running data load.
+ *
+ * <p>With parallel partitions, notifications come from the worker threads,
+ * one at a time.
+ *
+ * @version $Id$
+ * @see JdbcTemplate#batchUpdate(String, java.util.Iterator, ItemPreparedStatementSetter, int, int, BatchUpdateProgressListener)
+ */
+public interface BatchUpdateProgressListener {
+
+	/**
+	 * Called after a chunk has been executed and, if applicable, committed.
+	 * @param progress the progress of the overall batch update so far
+	 */
+	void chunkCompleted(BatchUpdateProgress progress);
+
+}
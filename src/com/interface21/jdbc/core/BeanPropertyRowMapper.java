@@ -0,0 +1,373 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.interface21.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * RowMapper that maps each row to a new instance of a JavaBean class,
+ * setting a bean property for each column with a matching name.
+ *
+ * <p>Column names are matched to property names case-insensitively,
+ * ignoring underscores: FIRST_NAME and firstname both map to "firstName".
+ * Columns without matching writable property are ignored.
+ *
+ * <p>The bindings are resolved once, from the ResultSetMetaData of the first
+ * row: each column is then read with the ResultSet getter for the property
+ * type, by column index, and written with the cached setter method. There is
+ * no per-row name lookup or BeanWrapper. The bindings are checked against the
+ * columns of each new ResultSet, and each thread remembers which ResultSet its
+ * current bindings belong to. Hence a mapper can be reused by many executions
+ * of queries with the same or different columns, also concurrently.
+ *
+ * <p>SQL NULL leaves primitive properties at their default value, and sets
+ * null for all other properties.
+ *
+ * @version $Id$
+ * @see JdbcTemplate#queryForIterator
+ * @see com.interface21.jdbc.object.ReflectionExtractionSqlQuery
+ */
+public class BeanPropertyRowMapper implements RowMapper {
+
+	private static final int TYPE_OBJECT = 0;
+	private static final int TYPE_STRING = 1;
+	private static final int TYPE_INT = 2;
+	private static final int TYPE_LONG = 3;
+	private static final int TYPE_DOUBLE = 4;
+	private static final int TYPE_FLOAT = 5;
+	private static final int TYPE_SHORT = 6;
+	private static final int TYPE_BYTE = 7;
+	private static final int TYPE_BOOLEAN = 8;
+	private static final int TYPE_BIG_DECIMAL = 9;
+	private static final int TYPE_TIMESTAMP = 10;
+	private static final int TYPE_DATE = 11;
+	private static final int TYPE_TIME = 12;
+	private static final int TYPE_BYTES = 13;
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final Class mappedClass;
+
+	/** Map from normalized property name to PropertyDescriptor */
+	private final Map propertyDescriptors = new HashMap();
+
+	/** Bindings for the columns of the last ResultSet, replaced as a whole */
+	private volatile ResolvedBindings resolvedBindings;
+
+	/** Per thread: CurrentBindings for the ResultSet that is being mapped */
+	private final ThreadLocal currentBindings = new ThreadLocal();
+
+	/**
+	 * Create a new BeanPropertyRowMapper for the given class.
+	 * @param mappedClass a JavaBean class with a public no-arg constructor
+	 * @throws InvalidDataAccessApiUsageException if the class can't be
+	 * instantiated or introspected
+	 */
+	public BeanPropertyRowMapper(Class mappedClass) throws InvalidDataAccessApiUsageException {
+		if (mappedClass.isInterface() || Modifier.isAbstract(mappedClass.getModifiers())) {
+			throw new InvalidDataAccessApiUsageException("Mapped class [" + mappedClass.getName() + "] must be concrete");
+		}
+		try {
+			mappedClass.getConstructor(new Class[0]);
+			BeanInfo beanInfo = Introspector.getBeanInfo(mappedClass);
+			PropertyDescriptor[] pds = beanInfo.getPropertyDescriptors();
+			for (int i = 0; i < pds.length; i++) {
+				if (pds[i].getWriteMethod() != null) {
+					this.propertyDescriptors.put(normalizeName(pds[i].getName()), pds[i]);
+				}
+			}
+		}
+		catch (NoSuchMethodException ex) {
+			throw new InvalidDataAccessApiUsageException("Mapped class [" + mappedClass.getName() +
+			                                             "] has no public no-arg constructor");
+		}
+		catch (IntrospectionException ex) {
+			throw new InvalidDataAccessApiUsageException("Cannot introspect mapped class [" + mappedClass.getName() +
+			                                             "]: " + ex.getMessage());
+		}
+		this.mappedClass = mappedClass;
+	}
+
+	/**
+	 * Return the class that rows are mapped to.
+	 */
+	public Class getMappedClass() {
+		return mappedClass;
+	}
+
+	public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+		ResolvedBindings resolved = null;
+		if (rowNum > 0) {
+			CurrentBindings current = (CurrentBindings) this.currentBindings.get();
+			if (current != null && current.resultSet.get() == rs) {
+				resolved = current.bindings;
+			}
+		}
+		if (resolved == null) {
+			resolved = resolveBindings(rs);
+			this.currentBindings.set(new CurrentBindings(rs, resolved));
+		}
+		ColumnBinding[] bindings = resolved.bindings;
+		Object bean = null;
+		try {
+			bean = this.mappedClass.newInstance();
+		}
+		catch (InstantiationException ex) {
+			throw new InvalidDataAccessApiUsageException("Cannot instantiate mapped class [" +
+			                                             this.mappedClass.getName() + "]: " + ex.getMessage());
+		}
+		catch (IllegalAccessException ex) {
+			throw new InvalidDataAccessApiUsageException("Cannot instantiate mapped class [" +
+			                                             this.mappedClass.getName() + "]: " + ex.getMessage());
+		}
+		for (int i = 0; i < bindings.length; i++) {
+			ColumnBinding binding = bindings[i];
+			Object value = getColumnValue(rs, binding.columnIndex, binding.type);
+			if (value != null || !binding.primitive) {
+				try {
+					binding.writeMethod.invoke(bean, new Object[] {value});
+				}
+				catch (IllegalArgumentException ex) {
+					throw new InvalidDataAccessApiUsageException("Cannot set property '" + binding.propertyName +
+					                                             "' of mapped class [" + this.mappedClass.getName() +
+					                                             "] to value [" + value + "]");
+				}
+				catch (IllegalAccessException ex) {
+					throw new InvalidDataAccessApiUsageException("Cannot access setter for property '" +
+					                                             binding.propertyName + "': " + ex.getMessage());
+				}
+				catch (InvocationTargetException ex) {
+					throw new InvalidDataAccessApiUsageException("Setter for property '" + binding.propertyName +
+					                                             "' threw exception: " + ex.getTargetException());
+				}
+			}
+		}
+		return bean;
+	}
+
+	/**
+	 * Return the bindings for the columns of the given ResultSet,
+	 * reusing the current bindings if the columns are the same.
+	 */
+	private ResolvedBindings resolveBindings(ResultSet rs) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+		String[] labels = new String[rsmd.getColumnCount()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = rsmd.getColumnName(i + 1);
+		}
+		ResolvedBindings resolved = this.resolvedBindings;
+		if (resolved != null && Arrays.equals(labels, resolved.columnLabels)) {
+			return resolved;
+		}
+
+		List bindingList = new ArrayList(labels.length);
+		for (int i = 0; i < labels.length; i++) {
+			PropertyDescriptor pd = (PropertyDescriptor) this.propertyDescriptors.get(normalizeName(labels[i]));
+			if (pd != null) {
+				bindingList.add(new ColumnBinding(i + 1, pd));
+			}
+			else if (logger.isDebugEnabled()) {
+				logger.debug("No property found for column '" + labels[i] + "' in mapped class [" +
+				             this.mappedClass.getName() + "]");
+			}
+		}
+		ColumnBinding[] bindings = (ColumnBinding[]) bindingList.toArray(new ColumnBinding[bindingList.size()]);
+		if (logger.isDebugEnabled())
+			logger.debug("Resolved " + bindings.length + " column bindings for mapped class [" +
+			             this.mappedClass.getName() + "]");
+		resolved = new ResolvedBindings(labels, bindings);
+		this.resolvedBindings = resolved;
+		return resolved;
+	}
+
+	/**
+	 * Normalize the given column or property name for matching:
+	 * lower case, without underscores.
+	 */
+	private static String normalizeName(String name) {
+		StringBuffer sb = new StringBuffer(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c != '_') {
+				sb.append(Character.toLowerCase(c));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Determine the type code for reading values of the given property type.
+	 */
+	private static int getTypeCode(Class type) {
+		if (type.equals(String.class)) {
+			return TYPE_STRING;
+		}
+		else if (type.equals(int.class) || type.equals(Integer.class)) {
+			return TYPE_INT;
+		}
+		else if (type.equals(long.class) || type.equals(Long.class)) {
+			return TYPE_LONG;
+		}
+		else if (type.equals(double.class) || type.equals(Double.class)) {
+			return TYPE_DOUBLE;
+		}
+		else if (type.equals(float.class) || type.equals(Float.class)) {
+			return TYPE_FLOAT;
+		}
+		else if (type.equals(short.class) || type.equals(Short.class)) {
+			return TYPE_SHORT;
+		}
+		else if (type.equals(byte.class) || type.equals(Byte.class)) {
+			return TYPE_BYTE;
+		}
+		else if (type.equals(boolean.class) || type.equals(Boolean.class)) {
+			return TYPE_BOOLEAN;
+		}
+		else if (type.equals(BigDecimal.class)) {
+			return TYPE_BIG_DECIMAL;
+		}
+		else if (type.equals(java.util.Date.class) || type.equals(java.sql.Timestamp.class)) {
+			return TYPE_TIMESTAMP;
+		}
+		else if (type.equals(java.sql.Date.class)) {
+			return TYPE_DATE;
+		}
+		else if (type.equals(java.sql.Time.class)) {
+			return TYPE_TIME;
+		}
+		else if (type.equals(byte[].class)) {
+			return TYPE_BYTES;
+		}
+		return TYPE_OBJECT;
+	}
+
+	/**
+	 * Read the given column with the getter for the given type code.
+	 * @return the value, or null for SQL NULL
+	 */
+	private static Object getColumnValue(ResultSet rs, int index, int type) throws SQLException {
+		Object value = null;
+		switch (type) {
+			case TYPE_STRING:
+				return rs.getString(index);
+			case TYPE_INT:
+				value = new Integer(rs.getInt(index));
+				break;
+			case TYPE_LONG:
+				value = new Long(rs.getLong(index));
+				break;
+			case TYPE_DOUBLE:
+				value = new Double(rs.getDouble(index));
+				break;
+			case TYPE_FLOAT:
+				value = new Float(rs.getFloat(index));
+				break;
+			case TYPE_SHORT:
+				value = new Short(rs.getShort(index));
+				break;
+			case TYPE_BYTE:
+				value = new Byte(rs.getByte(index));
+				break;
+			case TYPE_BOOLEAN:
+				value = (rs.getBoolean(index) ? Boolean.TRUE : Boolean.FALSE);
+				break;
+			case TYPE_BIG_DECIMAL:
+				return rs.getBigDecimal(index);
+			case TYPE_TIMESTAMP:
+				return rs.getTimestamp(index);
+			case TYPE_DATE:
+				return rs.getDate(index);
+			case TYPE_TIME:
+				return rs.getTime(index);
+			case TYPE_BYTES:
+				return rs.getBytes(index);
+			default:
+				return rs.getObject(index);
+		}
+		// primitive getters return 0 or false for SQL NULL
+		return (rs.wasNull() ? null : value);
+	}
+
+
+	/**
+	 * Column bindings together with the column labels they were resolved for.
+	 */
+	private static class ResolvedBindings {
+
+		private final String[] columnLabels;
+
+		private final ColumnBinding[] bindings;
+
+		private ResolvedBindings(String[] columnLabels, ColumnBinding[] bindings) {
+			this.columnLabels = columnLabels;
+			this.bindings = bindings;
+		}
+	}
+
+
+	/**
+	 * Bindings in use by a thread, together with the ResultSet they apply to.
+	 * The ResultSet is only weakly referenced, to not keep it after the query.
+	 */
+	private static class CurrentBindings {
+
+		private final WeakReference resultSet;
+
+		private final ResolvedBindings bindings;
+
+		private CurrentBindings(ResultSet resultSet, ResolvedBindings bindings) {
+			this.resultSet = new WeakReference(resultSet);
+			this.bindings = bindings;
+		}
+	}
+
+
+	/**
+	 * Binding of a column index to a bean property.
+	 */
+	private static class ColumnBinding {
+
+		private final int columnIndex;
+
+		private final String propertyName;
+
+		private final Method writeMethod;
+
+		private final int type;
+
+		private final boolean primitive;
+
+		private ColumnBinding(int columnIndex, PropertyDescriptor pd) {
+			this.columnIndex = columnIndex;
+			this.propertyName = pd.getName();
+			this.writeMethod = pd.getWriteMethod();
+			this.type = getTypeCode(pd.getPropertyType());
+			this.primitive = pd.getPropertyType().isPrimitive();
+		}
+	}
+
+}
@@ -0,0 +1,818 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.interface21.beans.SortDefinition;
+import com.interface21.dao.InvalidDataAccessApiUsageException;
+import com.interface21.util.SortableList;
+
+/**
+ * In-memory query result stored column by column, as read by
+ * ColumnarResultSetExtracter. Numeric columns are held in primitive arrays,
+ * String columns are dictionary-encoded (each distinct value is stored once,
+ * rows hold int codes), and SQL NULL is tracked in a bitmap per column.
+ * This needs a fraction of the heap of a List of beans or Object arrays.
+ *
+ * <p>Rows are accessed by index, in the current sort order. Sorting just
+ * reorders an index array, the column data itself is never moved. Simple
+ * aggregates like sums and group counts are computed on the primitive values.
+ *
+ * <p>asList returns a List of Row views that can serve as source of a
+ * PagedListHolder, including sorting by column name, and as model for
+ * views like AbstractExcelView and AbstractPdfView.
+ *
+ * <p>Not thread-safe for sorting: sort a result before sharing it,
+ * or use one result per user as with PagedListHolder.
+ *
+ * @version $Id$
+ * @see ColumnarResultSetExtracter
+ * @see #asList
+ * @see com.interface21.util.PagedListHolder
+ */
+public class ColumnarResult {
+
+	private final String[] columnNames;
+
+	private final Column[] columns;
+
+	private final int rowCount;
+
+	/** Physical row index for each logical row, or null for natural order */
+	private int[] order;
+
+	ColumnarResult(String[] columnNames, Column[] columns, int rowCount) {
+		this.columnNames = columnNames;
+		this.columns = columns;
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * Return the number of rows.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Return the number of columns.
+	 */
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	/**
+	 * Return the column names, as reported by the ResultSetMetaData.
+	 */
+	public String[] getColumnNames() {
+		return columnNames;
+	}
+
+	/**
+	 * Return the index (from 0) of the column with the given name,
+	 * ignoring case.
+	 * @throws InvalidDataAccessApiUsageException if there is no such column
+	 */
+	public int getColumnIndex(String columnName) throws InvalidDataAccessApiUsageException {
+		for (int i = 0; i < this.columnNames.length; i++) {
+			if (this.columnNames[i].equalsIgnoreCase(columnName)) {
+				return i;
+			}
+		}
+		throw new InvalidDataAccessApiUsageException("No column '" + columnName + "' in result");
+	}
+
+	/**
+	 * Return whether the given value is SQL NULL.
+	 * @param row index of the row (from 0) in the current sort order
+	 * @param column index of the column (from 0)
+	 */
+	public boolean isNull(int row, int column) {
+		return this.columns[column].isNull(physicalRow(row));
+	}
+
+	/**
+	 * Return the given value as int, or 0 for SQL NULL.
+	 * Only supported for integer columns.
+	 */
+	public int getInt(int row, int column) {
+		return this.columns[column].getInt(physicalRow(row));
+	}
+
+	/**
+	 * Return the given value as long, or 0 for SQL NULL.
+	 * Only supported for integer columns.
+	 */
+	public long getLong(int row, int column) {
+		return this.columns[column].getLong(physicalRow(row));
+	}
+
+	/**
+	 * Return the given value as double, or 0 for SQL NULL.
+	 * Only supported for numeric columns.
+	 */
+	public double getDouble(int row, int column) {
+		return this.columns[column].getDouble(physicalRow(row));
+	}
+
+	/**
+	 * Return the given value as String, or null for SQL NULL.
+	 */
+	public String getString(int row, int column) {
+		Object value = getObject(row, column);
+		return (value != null ? value.toString() : null);
+	}
+
+	/**
+	 * Return the given value as object, or null for SQL NULL.
+	 * Numeric values are returned as Integer, Long or Double.
+	 */
+	public Object getObject(int row, int column) {
+		int physicalRow = physicalRow(row);
+		Column col = this.columns[column];
+		return (col.isNull(physicalRow) ? null : col.getObject(physicalRow));
+	}
+
+	/**
+	 * Sort the rows by the given column. SQL NULL values sort first
+	 * in ascending order. The sort is stable, so sorting by several
+	 * columns one after another sorts by the last one first.
+	 * @param columnName name of the column to sort by
+	 * @param ascending whether to sort in ascending order
+	 * @param ignoreCase whether to ignore case of String values
+	 */
+	public void sort(String columnName, boolean ascending, boolean ignoreCase) {
+		Column column = this.columns[getColumnIndex(columnName)];
+		int[] order = getOrder();
+		mergeSort(order, (int[]) order.clone(), 0, order.length, column, ascending, ignoreCase);
+		this.order = order;
+	}
+
+	/**
+	 * Return the sum of the non-null values of the given numeric column,
+	 * as Long for integer columns and Double for floating point columns.
+	 */
+	public Number sum(String columnName) {
+		Column column = this.columns[getColumnIndex(columnName)];
+		Aggregate aggregate = new Aggregate(column.isIntegral());
+		for (int i = 0; i < this.rowCount; i++) {
+			aggregate.add(column, i);
+		}
+		return aggregate.getSum();
+	}
+
+	/**
+	 * Return the number of rows for each distinct value of the given column.
+	 * @return Map from value to Integer count, sorted by value with
+	 * null first
+	 */
+	public Map groupCount(String groupColumnName) {
+		Column groupColumn = this.columns[getColumnIndex(groupColumnName)];
+		Map groups = new TreeMap(NullsFirstComparator.INSTANCE);
+		for (int i = 0; i < this.rowCount; i++) {
+			Object key = (groupColumn.isNull(i) ? null : groupColumn.getObject(i));
+			int[] count = (int[]) groups.get(key);
+			if (count == null) {
+				count = new int[1];
+				groups.put(key, count);
+			}
+			count[0]++;
+		}
+		for (Iterator it = groups.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry) it.next();
+			entry.setValue(new Integer(((int[]) entry.getValue())[0]));
+		}
+		return groups;
+	}
+
+	/**
+	 * Return the sum of the given numeric column for each distinct value
+	 * of the group column.
+	 * @return Map from group value to Long or Double sum, sorted by group
+	 * value with null first
+	 * @see #sum
+	 */
+	public Map groupSum(String groupColumnName, String valueColumnName) {
+		Column groupColumn = this.columns[getColumnIndex(groupColumnName)];
+		Column valueColumn = this.columns[getColumnIndex(valueColumnName)];
+		Map groups = new TreeMap(NullsFirstComparator.INSTANCE);
+		for (int i = 0; i < this.rowCount; i++) {
+			Object key = (groupColumn.isNull(i) ? null : groupColumn.getObject(i));
+			Aggregate aggregate = (Aggregate) groups.get(key);
+			if (aggregate == null) {
+				aggregate = new Aggregate(valueColumn.isIntegral());
+				groups.put(key, aggregate);
+			}
+			aggregate.add(valueColumn, i);
+		}
+		for (Iterator it = groups.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry) it.next();
+			entry.setValue(((Aggregate) entry.getValue()).getSum());
+		}
+		return groups;
+	}
+
+	/**
+	 * Return a List view of the rows in the current sort order, with a Row
+	 * for each element. The List supports sorting via SortableList, with
+	 * the column name as property, so it can be used as PagedListHolder source.
+	 * Collections.sort works too, as set on the list reorders rows.
+	 * @see Row
+	 * @see com.interface21.util.PagedListHolder#setSource
+	 */
+	public List asList() {
+		return new RowList();
+	}
+
+	private int physicalRow(int row) {
+		if (row < 0 || row >= this.rowCount) {
+			throw new IndexOutOfBoundsException("Row index " + row + " out of bounds, row count is " + this.rowCount);
+		}
+		return (this.order != null ? this.order[row] : row);
+	}
+
+	private int[] getOrder() {
+		if (this.order == null) {
+			int[] order = new int[this.rowCount];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			this.order = order;
+		}
+		return this.order;
+	}
+
+	/**
+	 * Stable merge sort of the given range of physical row indexes.
+	 * On return, the range of dest is sorted; src is used as scratch space
+	 * and must contain the same values as dest on entry.
+	 */
+	private static void mergeSort(int[] dest, int[] src, int low, int high, Column column,
+	                              boolean ascending, boolean ignoreCase) {
+		int length = high - low;
+		if (length < 2) {
+			return;
+		}
+		int mid = (low + high) >> 1;
+		mergeSort(src, dest, low, mid, column, ascending, ignoreCase);
+		mergeSort(src, dest, mid, high, column, ascending, ignoreCase);
+		for (int i = low, p = low, q = mid; i < high; i++) {
+			if (q >= high || (p < mid && compare(column, src[p], src[q], ascending, ignoreCase) <= 0)) {
+				dest[i] = src[p++];
+			}
+			else {
+				dest[i] = src[q++];
+			}
+		}
+	}
+
+	private static int compare(Column column, int row1, int row2, boolean ascending, boolean ignoreCase) {
+		int result = 0;
+		boolean null1 = column.isNull(row1);
+		boolean null2 = column.isNull(row2);
+		if (null1 || null2) {
+			result = (null1 ? (null2 ? 0 : -1) : 1);
+		}
+		else {
+			result = column.compare(row1, row2, ignoreCase);
+		}
+		return (ascending ? result : -result);
+	}
+
+
+	/**
+	 * View of one row of a ColumnarResult. Stays bound to the same row
+	 * when the result is resorted.
+	 */
+	public final class Row {
+
+		private final int physicalRow;
+
+		private Row(int physicalRow) {
+			this.physicalRow = physicalRow;
+		}
+
+		/**
+		 * Return the value of the given column, or null for SQL NULL.
+		 * @param column index of the column (from 0)
+		 */
+		public Object getObject(int column) {
+			Column col = columns[column];
+			return (col.isNull(this.physicalRow) ? null : col.getObject(this.physicalRow));
+		}
+
+		/**
+		 * Return the value of the given column, or null for SQL NULL.
+		 */
+		public Object getObject(String columnName) {
+			return getObject(getColumnIndex(columnName));
+		}
+
+		/**
+		 * Return the value of the given column as String, or null for SQL NULL.
+		 */
+		public String getString(String columnName) {
+			Object value = getObject(columnName);
+			return (value != null ? value.toString() : null);
+		}
+
+		/**
+		 * Return the value of the given numeric column as double, or 0 for SQL NULL.
+		 */
+		public double getDouble(String columnName) {
+			return columns[getColumnIndex(columnName)].getDouble(this.physicalRow);
+		}
+
+		/**
+		 * Return all values of this row, in column order.
+		 */
+		public Object[] getValues() {
+			Object[] values = new Object[columns.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getObject(i);
+			}
+			return values;
+		}
+
+		public String toString() {
+			StringBuffer sb = new StringBuffer("Row ").append(this.physicalRow).append(": ");
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				sb.append(columnNames[i]).append('=').append(getObject(i));
+			}
+			return sb.toString();
+		}
+	}
+
+
+	/**
+	 * List of Row views in the current sort order.
+	 */
+	private class RowList extends AbstractList implements SortableList {
+
+		public Object get(int index) {
+			return new Row(physicalRow(index));
+		}
+
+		/**
+		 * Place the given row at the given position, as done by Collections.sort.
+		 */
+		public Object set(int index, Object element) {
+			Object previous = get(index);
+			getOrder()[index] = ((Row) element).physicalRow;
+			return previous;
+		}
+
+		public int size() {
+			return rowCount;
+		}
+
+		public void sort(SortDefinition sortDefinition) {
+			ColumnarResult.this.sort(sortDefinition.getProperty(), sortDefinition.isAscending(),
+			                         sortDefinition.isIgnoreCase());
+		}
+	}
+
+
+	/**
+	 * Sum of the non-null values of a column, for all or some rows.
+	 */
+	private static class Aggregate {
+
+		private final boolean integral;
+
+		private long longSum;
+
+		private double doubleSum;
+
+		private Aggregate(boolean integral) {
+			this.integral = integral;
+		}
+
+		private void add(Column column, int row) {
+			if (!column.isNull(row)) {
+				if (this.integral) {
+					this.longSum += column.getLong(row);
+				}
+				else {
+					this.doubleSum += column.getDouble(row);
+				}
+			}
+		}
+
+		private Number getSum() {
+			return (this.integral ? (Number) new Long(this.longSum) : (Number) new Double(this.doubleSum));
+		}
+	}
+
+
+	/**
+	 * Comparator for group keys, sorting null first.
+	 */
+	private static class NullsFirstComparator implements Comparator {
+
+		private static final NullsFirstComparator INSTANCE = new NullsFirstComparator();
+
+		public int compare(Object o1, Object o2) {
+			if (o1 == null || o2 == null) {
+				return (o1 == null ? (o2 == null ? 0 : -1) : 1);
+			}
+			return ((Comparable) o1).compareTo(o2);
+		}
+	}
+
+
+	/**
+	 * Storage of one column: a growable array of values plus a null bitmap.
+	 * Subclasses hold the values in a type-specific array.
+	 */
+	abstract static class Column {
+
+		private long[] nulls = new long[1];
+
+		protected int capacity;
+
+		protected Column(int capacity) {
+			this.capacity = capacity;
+		}
+
+		/**
+		 * Read the value of the given row from the current row of the ResultSet.
+		 * @param rs the ResultSet to read from
+		 * @param index the index (from 1) of the column in the ResultSet
+		 * @param row the index of the row to store
+		 */
+		final void read(ResultSet rs, int index, int row) throws SQLException {
+			ensureCapacity(row + 1);
+			readValue(rs, index, row);
+			if (rs.wasNull()) {
+				setNull(row);
+			}
+		}
+
+		final void setNull(int row) {
+			int word = row >> 6;
+			if (word >= this.nulls.length) {
+				long[] newNulls = new long[Math.max(word + 1, this.nulls.length * 2)];
+				System.arraycopy(this.nulls, 0, newNulls, 0, this.nulls.length);
+				this.nulls = newNulls;
+			}
+			this.nulls[word] |= (1L << row);
+		}
+
+		final boolean isNull(int row) {
+			int word = row >> 6;
+			return (word < this.nulls.length && (this.nulls[word] & (1L << row)) != 0);
+		}
+
+		/**
+		 * Return whether the values are integers, to be summed as long.
+		 */
+		boolean isIntegral() {
+			return false;
+		}
+
+		int getInt(int row) {
+			throw new InvalidDataAccessApiUsageException("Column does not contain int values");
+		}
+
+		long getLong(int row) {
+			throw new InvalidDataAccessApiUsageException("Column does not contain integer values");
+		}
+
+		double getDouble(int row) {
+			throw new InvalidDataAccessApiUsageException("Column does not contain numeric values");
+		}
+
+		/**
+		 * Read a value with the ResultSet getter for this column's type.
+		 */
+		abstract void readValue(ResultSet rs, int index, int row) throws SQLException;
+
+		/**
+		 * Make room for at least the given number of rows.
+		 */
+		abstract void ensureCapacity(int rows);
+
+		/**
+		 * Release unused capacity after all rows have been added.
+		 */
+		abstract void trimToSize(int rows);
+
+		/**
+		 * Return the value of the given non-null row.
+		 */
+		abstract Object getObject(int row);
+
+		/**
+		 * Compare the values of the given non-null rows.
+		 */
+		abstract int compare(int row1, int row2, boolean ignoreCase);
+
+		protected int newCapacity(int rows) {
+			return Math.max(rows, this.capacity * 2);
+		}
+	}
+
+
+	static class IntColumn extends Column {
+
+		private int[] values;
+
+		IntColumn(int capacity) {
+			super(capacity);
+			this.values = new int[capacity];
+		}
+
+		void readValue(ResultSet rs, int index, int row) throws SQLException {
+			this.values[row] = rs.getInt(index);
+		}
+
+		void ensureCapacity(int rows) {
+			if (rows > this.capacity) {
+				this.capacity = newCapacity(rows);
+				int[] newValues = new int[this.capacity];
+				System.arraycopy(this.values, 0, newValues, 0, this.values.length);
+				this.values = newValues;
+			}
+		}
+
+		void trimToSize(int rows) {
+			if (rows < this.capacity) {
+				int[] newValues = new int[rows];
+				System.arraycopy(this.values, 0, newValues, 0, rows);
+				this.values = newValues;
+				this.capacity = rows;
+			}
+		}
+
+		boolean isIntegral() {
+			return true;
+		}
+
+		int getInt(int row) {
+			return this.values[row];
+		}
+
+		long getLong(int row) {
+			return this.values[row];
+		}
+
+		double getDouble(int row) {
+			return this.values[row];
+		}
+
+		Object getObject(int row) {
+			return new Integer(this.values[row]);
+		}
+
+		int compare(int row1, int row2, boolean ignoreCase) {
+			int v1 = this.values[row1];
+			int v2 = this.values[row2];
+			return (v1 < v2 ? -1 : (v1 == v2 ? 0 : 1));
+		}
+	}
+
+
+	static class LongColumn extends Column {
+
+		private long[] values;
+
+		LongColumn(int capacity) {
+			super(capacity);
+			this.values = new long[capacity];
+		}
+
+		void readValue(ResultSet rs, int index, int row) throws SQLException {
+			this.values[row] = rs.getLong(index);
+		}
+
+		void ensureCapacity(int rows) {
+			if (rows > this.capacity) {
+				this.capacity = newCapacity(rows);
+				long[] newValues = new long[this.capacity];
+				System.arraycopy(this.values, 0, newValues, 0, this.values.length);
+				this.values = newValues;
+			}
+		}
+
+		void trimToSize(int rows) {
+			if (rows < this.capacity) {
+				long[] newValues = new long[rows];
+				System.arraycopy(this.values, 0, newValues, 0, rows);
+				this.values = newValues;
+				this.capacity = rows;
+			}
+		}
+
+		boolean isIntegral() {
+			return true;
+		}
+
+		long getLong(int row) {
+			return this.values[row];
+		}
+
+		double getDouble(int row) {
+			return this.values[row];
+		}
+
+		Object getObject(int row) {
+			return new Long(this.values[row]);
+		}
+
+		int compare(int row1, int row2, boolean ignoreCase) {
+			long v1 = this.values[row1];
+			long v2 = this.values[row2];
+			return (v1 < v2 ? -1 : (v1 == v2 ? 0 : 1));
+		}
+	}
+
+
+	static class DoubleColumn extends Column {
+
+		private double[] values;
+
+		DoubleColumn(int capacity) {
+			super(capacity);
+			this.values = new double[capacity];
+		}
+
+		void readValue(ResultSet rs, int index, int row) throws SQLException {
+			this.values[row] = rs.getDouble(index);
+		}
+
+		void ensureCapacity(int rows) {
+			if (rows > this.capacity) {
+				this.capacity = newCapacity(rows);
+				double[] newValues = new double[this.capacity];
+				System.arraycopy(this.values, 0, newValues, 0, this.values.length);
+				this.values = newValues;
+			}
+		}
+
+		void trimToSize(int rows) {
+			if (rows < this.capacity) {
+				double[] newValues = new double[rows];
+				System.arraycopy(this.values, 0, newValues, 0, rows);
+				this.values = newValues;
+				this.capacity = rows;
+			}
+		}
+
+		double getDouble(int row) {
+			return this.values[row];
+		}
+
+		Object getObject(int row) {
+			return new Double(this.values[row]);
+		}
+
+		int compare(int row1, int row2, boolean ignoreCase) {
+			double v1 = this.values[row1];
+			double v2 = this.values[row2];
+			return (v1 < v2 ? -1 : (v1 == v2 ? 0 : 1));
+		}
+	}
+
+
+	/**
+	 * Dictionary-encoded String column: each distinct value is stored once.
+	 */
+	static class StringColumn extends Column {
+
+		private int[] codes;
+
+		private final List dictionary = new ArrayList();
+
+		/** Map from String value to Integer code, only used while adding rows */
+		private Map codeMap = new HashMap();
+
+		StringColumn(int capacity) {
+			super(capacity);
+			this.codes = new int[capacity];
+		}
+
+		void readValue(ResultSet rs, int index, int row) throws SQLException {
+			String value = rs.getString(index);
+			if (value == null) {
+				return;
+			}
+			Integer code = (Integer) this.codeMap.get(value);
+			if (code == null) {
+				code = new Integer(this.dictionary.size());
+				this.dictionary.add(value);
+				this.codeMap.put(value, code);
+			}
+			this.codes[row] = code.intValue();
+		}
+
+		/**
+		 * Return the number of distinct values.
+		 */
+		int getDictionarySize() {
+			return this.dictionary.size();
+		}
+
+		void ensureCapacity(int rows) {
+			if (rows > this.capacity) {
+				this.capacity = newCapacity(rows);
+				int[] newCodes = new int[this.capacity];
+				System.arraycopy(this.codes, 0, newCodes, 0, this.codes.length);
+				this.codes = newCodes;
+			}
+		}
+
+		void trimToSize(int rows) {
+			if (rows < this.capacity) {
+				int[] newCodes = new int[rows];
+				System.arraycopy(this.codes, 0, newCodes, 0, rows);
+				this.codes = newCodes;
+				this.capacity = rows;
+			}
+			this.codeMap = null;
+			((ArrayList) this.dictionary).trimToSize();
+		}
+
+		Object getObject(int row) {
+			return this.dictionary.get(this.codes[row]);
+		}
+
+		int compare(int row1, int row2, boolean ignoreCase) {
+			if (this.codes[row1] == this.codes[row2]) {
+				return 0;
+			}
+			String v1 = (String) getObject(row1);
+			String v2 = (String) getObject(row2);
+			return (ignoreCase ? v1.compareToIgnoreCase(v2) : v1.compareTo(v2));
+		}
+	}
+
+
+	/**
+	 * Column of other values, as returned by the JDBC driver.
+	 */
+	static class ObjectColumn extends Column {
+
+		private Object[] values;
+
+		ObjectColumn(int capacity) {
+			super(capacity);
+			this.values = new Object[capacity];
+		}
+
+		void readValue(ResultSet rs, int index, int row) throws SQLException {
+			this.values[row] = rs.getObject(index);
+		}
+
+		void ensureCapacity(int rows) {
+			if (rows > this.capacity) {
+				this.capacity = newCapacity(rows);
+				Object[] newValues = new Object[this.capacity];
+				System.arraycopy(this.values, 0, newValues, 0, this.values.length);
+				this.values = newValues;
+			}
+		}
+
+		void trimToSize(int rows) {
+			if (rows < this.capacity) {
+				Object[] newValues = new Object[rows];
+				System.arraycopy(this.values, 0, newValues, 0, rows);
+				this.values = newValues;
+				this.capacity = rows;
+			}
+		}
+
+		double getDouble(int row) {
+			Object value = this.values[row];
+			if (value instanceof Number) {
+				return ((Number) value).doubleValue();
+			}
+			return (value == null ? 0.0 : super.getDouble(row));
+		}
+
+		Object getObject(int row) {
+			return this.values[row];
+		}
+
+		int compare(int row1, int row2, boolean ignoreCase) {
+			return ((Comparable) this.values[row1]).compareTo(this.values[row2]);
+		}
+	}
+
+}
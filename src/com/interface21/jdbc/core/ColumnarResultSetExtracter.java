@@ -0,0 +1,147 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * ResultSetExtracter that reads a whole ResultSet into a ColumnarResult,
+ * for large reporting queries whose results are kept in memory.
+ *
+ * <p>The storage of each column is chosen once from the ResultSetMetaData:
+ * <ul>
+ * <li>INTEGER, SMALLINT, TINYINT and BIT: int array
+ * <li>BIGINT: long array
+ * <li>DOUBLE, FLOAT and REAL: double array
+ * <li>NUMERIC and DECIMAL without scale: int or long array, depending on precision
+ * <li>CHAR, VARCHAR and LONGVARCHAR: dictionary-encoded Strings
+ * <li>everything else: the objects returned by ResultSet.getObject
+ * </ul>
+ * Each column is read with the getter for its storage type, by index.
+ *
+ * <p>A new instance is needed for each query execution. Usage:
+ * <code>
+ * ColumnarResultSetExtracter rse = new ColumnarResultSetExtracter();<br>
+ * jdbcTemplate.doWithResultSetFromStaticQuery("SELECT ...", rse);<br>
+ * PagedListHolder holder = new PagedListHolder(rse.getResult().asList());
+ * </code>
+ *
+ * @version $Id$
+ * @see ColumnarResult
+ * @see JdbcTemplate#doWithResultSetFromStaticQuery
+ * @see JdbcTemplate#doWithResultSetFromPreparedQuery
+ */
+public class ColumnarResultSetExtracter implements ResultSetExtracter {
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+	private static final int MAX_INT_PRECISION = 9;
+
+	private static final int MAX_LONG_PRECISION = 18;
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final int initialCapacity;
+
+	private ColumnarResult result;
+
+	/**
+	 * Create a new extracter with a default initial capacity.
+	 */
+	public ColumnarResultSetExtracter() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Create a new extracter.
+	 * @param rowsExpected the number of rows expected, to size
+	 * the column arrays (they grow as needed)
+	 */
+	public ColumnarResultSetExtracter(int rowsExpected) {
+		this.initialCapacity = Math.max(rowsExpected, 1);
+	}
+
+	public void extractData(ResultSet rs) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int columnCount = rsmd.getColumnCount();
+		String[] columnNames = new String[columnCount];
+		ColumnarResult.Column[] columns = new ColumnarResult.Column[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			columnNames[i] = rsmd.getColumnName(i + 1);
+			columns[i] = createColumn(rsmd, i + 1);
+		}
+
+		int row = 0;
+		while (rs.next()) {
+			for (int i = 0; i < columnCount; i++) {
+				columns[i].read(rs, i + 1, row);
+			}
+			row++;
+		}
+
+		for (int i = 0; i < columnCount; i++) {
+			columns[i].trimToSize(row);
+		}
+		if (logger.isDebugEnabled())
+			logger.debug("Read " + row + " rows with " + columnCount + " columns into columnar result");
+		this.result = new ColumnarResult(columnNames, columns, row);
+	}
+
+	/**
+	 * Create the storage for the given column, based on its SQL type.
+	 * @param rsmd the metadata of the ResultSet
+	 * @param index the index (from 1) of the column
+	 */
+	private ColumnarResult.Column createColumn(ResultSetMetaData rsmd, int index) throws SQLException {
+		switch (rsmd.getColumnType(index)) {
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+			case Types.BIT:
+				return new ColumnarResult.IntColumn(this.initialCapacity);
+			case Types.BIGINT:
+				return new ColumnarResult.LongColumn(this.initialCapacity);
+			case Types.DOUBLE:
+			case Types.FLOAT:
+			case Types.REAL:
+				return new ColumnarResult.DoubleColumn(this.initialCapacity);
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				// precision 0 means unknown, e.g. with Oracle NUMBER
+				int precision = rsmd.getPrecision(index);
+				if (rsmd.getScale(index) == 0 && precision > 0) {
+					if (precision <= MAX_INT_PRECISION) {
+						return new ColumnarResult.IntColumn(this.initialCapacity);
+					}
+					if (precision <= MAX_LONG_PRECISION) {
+						return new ColumnarResult.LongColumn(this.initialCapacity);
+					}
+				}
+				return new ColumnarResult.ObjectColumn(this.initialCapacity);
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+				return new ColumnarResult.StringColumn(this.initialCapacity);
+			default:
+				return new ColumnarResult.ObjectColumn(this.initialCapacity);
+		}
+	}
+
+	/**
+	 * Return the result read by extractData.
+	 * @return the result, or null if extractData hasn't been called
+	 */
+	public ColumnarResult getResult() {
+		return result;
+	}
+
+}
@@ -8,6 +8,9 @@ import java.sql.ResultSet;
  * Default implementation of the ColumnExtractor interface. Tested
  * in Oracle 8 and Access. As it isn't a critical part of the
  * JDBC framework in this package, it has not been tested more rigorously.
+ * <p>Code that extracts many values of the same type should rather select
+ * a TypedColumnExtractor once, avoiding the type lookup per value.
+ * @see TypedColumnExtractor
  * @author  Rod Johnson
  * @since May 2, 2001
  */
@@ -47,47 +50,14 @@ public class DefaultColumnExtractor implements ColumnExtractor {
         return extractColumn(null, i, requiredType, rs);
     }
     
-	// Can do this with type maps?
-	
-	
     /** Private method to extract by either column name or index, depending on whether or not
-     * column name is null. Implements extraction and conversion logic used by both public methods.
+     * column name is null. Delegates to the TypedColumnExtractor for the required type,
+     * which implements the conversion logic used by both public methods.
+     * @see TypedColumnExtractor#forType
      */
     private Object extractColumn(String columnName, int i, Class requiredType, ResultSet rs) throws SQLException {
-        Object value = null;       
-        //JDBC 2.0 !?
-        if (requiredType.equals(Integer.class) || requiredType.equals(int.class)) {
-            value = new Integer((columnName != null) ? rs.getInt(columnName) : rs.getInt(i));
-        }
-        else if (requiredType.equals(java.math.BigDecimal.class)) {
-            value = (columnName != null) ? rs.getBigDecimal(columnName) : rs.getBigDecimal(i);
-        }
-        else if (requiredType.equals(java.util.Date.class) || requiredType.equals(java.sql.Date.class)) {
-            value = (columnName != null) ? rs.getDate(columnName) : rs.getDate(i);
-        }
-        else if (requiredType.equals(Long.class) || requiredType.equals(long.class)) {
-            long l = (columnName != null) ? rs.getLong( columnName ) : rs.getLong(i);
-            value = new Long(l);
-        }
-		 else if (requiredType.equals(float.class) || requiredType.equals(java.lang.Float.class)) {
-			 // Otherwise will do as double
-            float f = (columnName != null) ? rs.getFloat(columnName) : rs.getFloat(i);
-			value = new Float(f);
-        }
-        else if (requiredType.equals(Boolean.class) || requiredType.equals(boolean.class)) {
-            // Recognise column string values of Y/y, T/t, and TRUE/true as booleans
-            value = (columnName != null) ? rs.getObject(columnName) : rs.getObject(i);
-            if (value instanceof String) {
-                String sval = ((String) value).toLowerCase();
-                value = new Boolean("true".equals(sval) || "t".equals(sval) || "y".equals(sval));
-            }
-        }
-        else {
-            // Use the JDBC driver's default behaviour
-            // It just _might_ work
-            value = (columnName != null) ? rs.getObject(columnName) : rs.getObject(i);
-        }
-        return value;
+        TypedColumnExtractor extractor = TypedColumnExtractor.forType(requiredType);
+        return (columnName != null) ? extractor.extractColumn(rs, columnName) : extractor.extractColumn(rs, i);
     }   // extractColumn
     
 }	// class DefaultColumnExtractor
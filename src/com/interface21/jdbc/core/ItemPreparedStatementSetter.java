@@ -0,0 +1,35 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Callback interface used by JdbcTemplate's streaming batch update method.
+ * Sets values on a PreparedStatement for one item taken from an Iterator,
+ * so that the number of rows doesn't need to be known in advance.
+ *
+ * <p>When partitions are executed in parallel, this method is called by
+ * several threads concurrently, for different PreparedStatements.
+ * Implementations must be thread-safe in that case.
+ *
+ * @version $Id$
+ * @see JdbcTemplate#batchUpdate(String, java.util.Iterator, ItemPreparedStatementSetter, int)
+ */
+public interface ItemPreparedStatementSetter {
+
+	/**
+	 * Set values on the given PreparedStatement for the given item.
+	 * @param ps PreparedStatement we'll invoke setter methods on
+	 * @param item the item returned by the Iterator
+	 * @throws SQLException there is no need to catch SQLExceptions
+	 * that may be thrown in the implementation of this method.
+	 * The JdbcTemplate class will handle them.
+	 */
+	void setValues(PreparedStatement ps, Object item) throws SQLException;
+
+}
@@ -4,7 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.sql.DataSource;
@@ -27,9 +27,6 @@ import com.interface21.dao.InvalidDataAccessResourceUsageException;
  */
 public class JdbcHelper {
 
-	/** Column extractor to use */
-	private ColumnExtractor columnExtractor;
-
 	private JdbcTemplate jdbcTemplate;
 
 	/**
@@ -37,7 +34,6 @@ public class JdbcHelper {
 	 * @param dataSource DataSource to use
 	 */
 	public JdbcHelper(DataSource dataSource) {
-		columnExtractor = new DefaultColumnExtractor();
 		jdbcTemplate = new JdbcTemplate(dataSource);
 	}
 
@@ -75,70 +71,141 @@ public class JdbcHelper {
 
 	/**
 	 * Run the given SQL SELECT to return a ResultSet of an array of IDs.
-	 * @param sql SQL function, such as SELECT MAX(USER_ID) FROM USERS.
-	 * Must return only one row.
+	 * The IDs are read with ResultSet.getInt into the array, without
+	 * creating an object per row.
+	 * @param sql SQL query such as SELECT USER_ID FROM USERS WHERE ACTIVE = ?
 	 * @param params prepared statement parameters
-	 * @throws DataAccessException if there is a problem executing the function
+	 * @throws DataAccessException if there is a problem executing the query
+	 */
+	public int[] getIDs(String sql, Object[] params) throws DataAccessException {
+		IntIDsHandler idsh = new IntIDsHandler();
+		jdbcTemplate.query(new IDsStatementCreator(sql, params), idsh);
+		return idsh.getIDs();
+	}
+
+	/**
+	 * Run the given SQL SELECT to return a ResultSet of an array of long IDs.
+	 * The IDs are read with ResultSet.getLong into the array, without
+	 * creating an object per row.
+	 * @param sql SQL query such as SELECT USER_ID FROM USERS WHERE ACTIVE = ?
+	 * @param params prepared statement parameters
+	 * @throws DataAccessException if there is a problem executing the query
 	 */
-	public int[] getIDs(final String sql, final Object[] params) throws DataAccessException {
-		Object[] os = getIDs(sql, Integer.class, params);
-		int[] is = new int[os.length];
-		for (int i = 0; i < is.length; i++)
-			is[i] = ((Integer) os[i]).intValue();
-		return is;
+	public long[] getLongIDs(String sql, Object[] params) throws DataAccessException {
+		LongIDsHandler idsh = new LongIDsHandler();
+		jdbcTemplate.query(new IDsStatementCreator(sql, params), idsh);
+		return idsh.getIDs();
 	}
 
 	/**
 	 * Run the given SQL SELECT to return a ResultSet of an array of IDs.
-	 * @param sql SQL function, such as SELECT MAX(USER_ID) FROM USERS.
-	 * Must return only one row.
+	 * @param sql SQL query such as SELECT USER_ID FROM USERS WHERE ACTIVE = ?
 	 * @param requiredType the class we need to extract the results as
 	 * @param params prepared statement parameters
-	 * @throws DataAccessException if there is a problem executing the function
+	 * @throws DataAccessException if there is a problem executing the query
 	 */
-	public Object[] getIDs(final String sql, final Class requiredType, final Object[] params) throws DataAccessException {
+	public Object[] getIDs(String sql, Class requiredType, Object[] params) throws DataAccessException {
+		final TypedColumnExtractor extractor = TypedColumnExtractor.forType(requiredType);
+		final List l = new ArrayList();
+		jdbcTemplate.query(new IDsStatementCreator(sql, params), new RowCallbackHandler() {
+			public void processRow(ResultSet rs) throws SQLException {
+				l.add(extractor.extractColumn(rs, 1));
+			}
+		});
+		return l.toArray();
+	}
 
-		class IDsHandler extends RowCountCallbackHandler implements PreparedStatementCreator {
 
-			private List l = new LinkedList();
+	/**
+	 * PreparedStatementCreator for ID queries, setting the parameters as objects.
+	 */
+	private static class IDsStatementCreator implements PreparedStatementCreator {
 
-			public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
-				PreparedStatement ps = conn.prepareStatement(sql);
-				// Don't prepare if no params
-				if (params != null)
-					for (int i = 0; i < params.length; i++) {
-						ps.setObject(i + 1, params[i]);
-					}
-				return ps;
-			}
+		private final String sql;
 
-			protected void processRow(ResultSet rs, int rowNum) throws SQLException {
-				l.add(columnExtractor.extractColumn(1, requiredType, rs));
-			}
+		private final Object[] params;
+
+		public IDsStatementCreator(String sql, Object[] params) {
+			this.sql = sql;
+			this.params = params;
+		}
 
-			public Object[] getIDs() {
-				return l.toArray();
+		public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
+			PreparedStatement ps = conn.prepareStatement(sql);
+			// Don't prepare if no params
+			if (params != null)
+				for (int i = 0; i < params.length; i++) {
+					ps.setObject(i + 1, params[i]);
+				}
+			return ps;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+	}
+
+
+	/**
+	 * Collects the first column as ints, in a growing array.
+	 */
+	private static class IntIDsHandler implements RowCallbackHandler {
+
+		private int[] ids = new int[16];
+
+		private int count;
+
+		public void processRow(ResultSet rs) throws SQLException {
+			if (count == ids.length) {
+				int[] newIds = new int[count * 2];
+				System.arraycopy(ids, 0, newIds, 0, count);
+				ids = newIds;
 			}
+			ids[count++] = rs.getInt(1);
+		}
 
-			public String getSql() {
-				return sql;
+		public int[] getIDs() {
+			int[] result = new int[count];
+			System.arraycopy(ids, 0, result, 0, count);
+			return result;
+		}
+	}
+
+
+	/**
+	 * Collects the first column as longs, in a growing array.
+	 */
+	private static class LongIDsHandler implements RowCallbackHandler {
+
+		private long[] ids = new long[16];
+
+		private int count;
+
+		public void processRow(ResultSet rs) throws SQLException {
+			if (count == ids.length) {
+				long[] newIds = new long[count * 2];
+				System.arraycopy(ids, 0, newIds, 0, count);
+				ids = newIds;
 			}
+			ids[count++] = rs.getLong(1);
 		}
 
-		IDsHandler idsh = new IDsHandler();
-		jdbcTemplate.query(idsh, idsh);
-		return idsh.getIDs();
+		public long[] getIDs() {
+			long[] result = new long[count];
+			System.arraycopy(ids, 0, result, 0, count);
+			return result;
+		}
 	}
 
 
 	private class FunctionHandler extends RowCountCallbackHandler {
 
 		private Object obj;
-		private Class requiredType;
+		private TypedColumnExtractor extractor;
 		private String sql;
 
 		public FunctionHandler(String sql, Class requiredType) {
-			this.requiredType = requiredType;
+			this.extractor = TypedColumnExtractor.forType(requiredType);
 			this.sql = sql;
 		}
 
@@ -149,7 +216,7 @@ public class JdbcHelper {
 		protected void processRow(ResultSet rs, int rowNum) throws SQLException {
 			if (rowNum > 0)
 				throw new InvalidDataAccessResourceUsageException("runSQLFunction retrieved more than one row for sql [" + sql + "]: probably not a valid SQL function");
-			obj = columnExtractor.extractColumn(1, requiredType, rs);
+			obj = extractor.extractColumn(rs, 1);
 		}
 
 		public Object getFunctionValue() {
@@ -11,12 +11,18 @@
 
 package com.interface21.jdbc.core;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import javax.sql.DataSource;
 
@@ -24,9 +30,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.interface21.beans.factory.InitializingBean;
+import com.interface21.core.TaskExecutor;
 import com.interface21.dao.DataAccessException;
 import com.interface21.dao.InvalidDataAccessApiUsageException;
 import com.interface21.jdbc.datasource.DataSourceUtils;
+import com.interface21.jdbc.datasource.PoolingDataSource;
+import com.interface21.transaction.support.TransactionMonitor;
 
 /**
  * <b>This is the central class in this package.</b>
@@ -54,6 +63,19 @@ import com.interface21.jdbc.datasource.DataSourceUtils;
  * <a href="http://www.amazon.com/exec/obidos/tg/detail/-/1861007841/">Expert One-On-One J2EE Design and Development</a>
  * by Rod Johnson (Wrox, 2002).
  *
+ * <p>Fetch size, maximum number of rows and query timeout can be specified for
+ * all statements executed by a template instance. For scanning large result sets
+ * in constant memory, streaming results can be activated: this sets the driver-
+ * specific fetch size that makes the driver fetch rows from a cursor on demand
+ * rather than reading the entire result set into memory.
+ *
+ * <p>Independent queries and updates can be executed asynchronously, each on
+ * its own connection, via queryAsync and updateAsync, or in parallel via
+ * queryInParallel.
+ *
+ * <p>Execution statistics per SQL statement can be recorded by a SqlMonitor,
+ * e.g. shared by all templates of an application.
+ *
  * <p>Because this class is parameterizable by the callback interfaces and the
  * SQLExceptionTranslater interface, it isn't necessary to subclass it.
  * All SQL issued by this class is logged.
@@ -83,6 +105,33 @@ public class JdbcTemplate implements InitializingBean {
 		}
 	};
 
+	/**
+	 * Fetch size to use for streaming results if no explicit fetch size
+	 * has been specified.
+	 * @see #setStreamingResults
+	 */
+	public static final int DEFAULT_STREAMING_FETCH_SIZE = 100;
+
+	/**
+	 * Default maximum number of updates to group into one JDBC batch.
+	 * @see #setUpdateBatchSize
+	 */
+	public static final int DEFAULT_UPDATE_BATCH_SIZE = 100;
+
+	/**
+	 * Update count returned for an update that has been queued in write-behind
+	 * mode: the actual count is only known when the queue gets flushed.
+	 * Same value as JDBC 3.0's Statement.SUCCESS_NO_INFO.
+	 * @see #setWriteBehindUpdates
+	 */
+	public static final int UPDATE_COUNT_DEFERRED = -2;
+
+	/**
+	 * Update count that JDBC 3.0 drivers report for a failed statement
+	 * in a batch (Statement.EXECUTE_FAILED).
+	 */
+	private static final int EXECUTE_FAILED = -3;
+
 
 	protected final Log logger = LogFactory.getLog(getClass());
 
@@ -98,6 +147,45 @@ public class JdbcTemplate implements InitializingBean {
 	/** Helper to translate SQL exceptions to DataAccessExceptions */
 	private SQLExceptionTranslater exceptionTranslater;
 
+	/** Number of rows to fetch per round trip, 0 for the driver default */
+	private int fetchSize = 0;
+
+	/** Maximum number of rows to return from queries, 0 for no limit */
+	private int maxRows = 0;
+
+	/** Query timeout in seconds, 0 for no timeout */
+	private int queryTimeout = 0;
+
+	/** Whether to let the driver stream query results */
+	private boolean streamingResults = false;
+
+	/** Database product name, determined lazily for streaming results */
+	private String databaseProductName;
+
+	/** Maximum number of updates with the same SQL to execute as one batch */
+	private int updateBatchSize = DEFAULT_UPDATE_BATCH_SIZE;
+
+	/** Whether to defer updates within transactions until commit */
+	private boolean writeBehindUpdates = false;
+
+	/** Whether the driver supports batch updates, determined lazily */
+	private Boolean batchUpdatesSupported;
+
+	/** Executor for asynchronous operations, or null for a new thread each */
+	private TaskExecutor taskExecutor;
+
+	/** Maximum number of concurrent asynchronous operations, 0 for the default */
+	private int asyncConcurrencyLimit = 0;
+
+	/** Asynchronous operations waiting for a free slot, guarded by itself */
+	private final LinkedList pendingAsyncOperations = new LinkedList();
+
+	/** Number of asynchronous operations running, guarded by pendingAsyncOperations */
+	private int activeAsyncOperations = 0;
+
+	/** Recorder of execution statistics per SQL, or null */
+	private SqlMonitor sqlMonitor;
+
 
 	/**
 	 * Construct a new JdbcTemplate for bean usage.
@@ -160,6 +248,182 @@ public class JdbcTemplate implements InitializingBean {
 		this.exceptionTranslater = exceptionTranslater;
 	}
 
+	/**
+	 * Set the number of rows that the driver should fetch per round trip
+	 * for queries. Default is 0, meaning to use the driver's default.
+	 * <p>Larger values reduce the number of round trips for large result
+	 * sets, e.g. compared to the Oracle default of 10 rows.
+	 * @see java.sql.Statement#setFetchSize
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Return the fetch size specified for this template.
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Set the maximum number of rows that queries should return: further rows
+	 * are silently dropped by the driver. Default is 0, meaning no limit.
+	 * @see java.sql.Statement#setMaxRows
+	 */
+	public void setMaxRows(int maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * Return the maximum number of rows specified for this template.
+	 */
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	/**
+	 * Set the number of seconds the driver should wait for statements
+	 * executed by this template. Default is 0, meaning no timeout.
+	 * @see java.sql.Statement#setQueryTimeout
+	 */
+	public void setQueryTimeout(int queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	/**
+	 * Return the query timeout specified for this template.
+	 */
+	public int getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	/**
+	 * Set whether query results should be streamed by the driver rather than
+	 * read into memory completely. Default is false.
+	 * <p>On MySQL, this uses the special fetch size Integer.MIN_VALUE that switches
+	 * the driver to row-by-row streaming; note that no other statements can be
+	 * issued on the same connection while such a result set is open. On other
+	 * databases, this sets the specified fetch size or DEFAULT_STREAMING_FETCH_SIZE,
+	 * which makes the driver fetch rows from a server-side cursor on demand.
+	 * PostgreSQL only uses cursors for fetching within a transaction.
+	 * @see #setFetchSize
+	 * @see #DEFAULT_STREAMING_FETCH_SIZE
+	 */
+	public void setStreamingResults(boolean streamingResults) {
+		this.streamingResults = streamingResults;
+	}
+
+	/**
+	 * Return whether query results are streamed by the driver.
+	 */
+	public boolean isStreamingResults() {
+		return streamingResults;
+	}
+
+	/**
+	 * Set the maximum number of consecutive updates with the same SQL that
+	 * update(PreparedStatementCreator[]) executes as one JDBC batch.
+	 * Default is DEFAULT_UPDATE_BATCH_SIZE; 1 or less switches batching off.
+	 * @see #update(PreparedStatementCreator[])
+	 * @see #DEFAULT_UPDATE_BATCH_SIZE
+	 */
+	public void setUpdateBatchSize(int updateBatchSize) {
+		this.updateBatchSize = updateBatchSize;
+	}
+
+	/**
+	 * Return the maximum number of updates grouped into one JDBC batch.
+	 */
+	public int getUpdateBatchSize() {
+		return updateBatchSize;
+	}
+
+	/**
+	 * Set whether to defer single updates within a transaction, queueing them
+	 * per transaction and executing them as JDBC batches right before commit,
+	 * or before any other statement that this class executes on the same
+	 * DataSource. Saves a round trip per update. Default is false.
+	 * <p>Requires a transaction with a thread-bound connection and active
+	 * transaction synchronization, e.g. DataSourceTransactionManager with
+	 * "transactionSynchronization" set to true; else updates are executed
+	 * right away. Only applies to update(PreparedStatementCreator) calls with
+	 * creators that implement PreparedStatementSetter, like those returned by
+	 * PreparedStatementCreatorFactory. Queued updates return
+	 * UPDATE_COUNT_DEFERRED; WriteBehindQueue.flush returns the actual counts.
+	 * @see #update(PreparedStatementCreator)
+	 * @see #UPDATE_COUNT_DEFERRED
+	 * @see WriteBehindQueue
+	 * @see com.interface21.transaction.support.AbstractPlatformTransactionManager#setTransactionSynchronization
+	 */
+	public void setWriteBehindUpdates(boolean writeBehindUpdates) {
+		this.writeBehindUpdates = writeBehindUpdates;
+	}
+
+	/**
+	 * Return whether updates within transactions are deferred until commit.
+	 */
+	public boolean isWriteBehindUpdates() {
+		return writeBehindUpdates;
+	}
+
+	/**
+	 * Set the TaskExecutor to run asynchronous operations with, e.g. a thread
+	 * pool of the application server. Default is to start a new daemon thread
+	 * for each operation.
+	 * @see #queryAsync
+	 * @see #updateAsync
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Return the TaskExecutor to run asynchronous operations with.
+	 */
+	public TaskExecutor getTaskExecutor() {
+		return taskExecutor;
+	}
+
+	/**
+	 * Set the maximum number of asynchronous operations that this template runs
+	 * concurrently; further operations wait until one of them has finished.
+	 * Default is the maximum pool size of a PoolingDataSource, else no limit.
+	 * @see com.interface21.jdbc.datasource.PoolingDataSource#setMaxSize
+	 */
+	public void setAsyncConcurrencyLimit(int asyncConcurrencyLimit) {
+		this.asyncConcurrencyLimit = asyncConcurrencyLimit;
+	}
+
+	/**
+	 * Return the maximum number of concurrent asynchronous operations,
+	 * 0 meaning no limit.
+	 */
+	public int getAsyncConcurrencyLimit() {
+		if (this.asyncConcurrencyLimit > 0) {
+			return this.asyncConcurrencyLimit;
+		}
+		if (this.dataSource instanceof PoolingDataSource) {
+			return ((PoolingDataSource) this.dataSource).getMaxSize();
+		}
+		return 0;
+	}
+
+	/**
+	 * Set a SqlMonitor to record execution statistics for all statements
+	 * executed by this template. Default is none.
+	 */
+	public void setSqlMonitor(SqlMonitor sqlMonitor) {
+		this.sqlMonitor = sqlMonitor;
+	}
+
+	/**
+	 * Return the SqlMonitor that records execution statistics, if any.
+	 */
+	public SqlMonitor getSqlMonitor() {
+		return sqlMonitor;
+	}
+
 	/**
 	 * Return the exception translater for this instance.
 	 * Creates a default one for the specified DataSource if none set.
@@ -223,18 +487,24 @@ public class JdbcTemplate implements InitializingBean {
 		if (containsBindVariables(sql))
 			throw new InvalidDataAccessApiUsageException("Cannot execute '" + sql + "' as a static query: it contains bind variables");
 
+		WriteBehindQueue.flush(this.dataSource);
 		Connection con = null;
 		Statement s = null;
 		ResultSet rs = null;
+		long startTime = 0;
 		try {
 			con = DataSourceUtils.getConnection(this.dataSource);
 			s = con.createStatement();
+			applyQuerySettings(s, con);
+			TransactionMonitor.statementExecuted(sql);
+			startTime = System.currentTimeMillis();
 			rs = s.executeQuery(sql);
 
 			if (logger.isInfoEnabled())
 				logger.info("Executing static SQL query '" + sql + "' using a java.sql.Statement");
 
 			rse.extractData(rs);
+			recordStatements(sql, 1, startTime, getRowCount(rse), false);
 
 			SQLWarning warning = s.getWarnings();
 			rs.close();
@@ -243,6 +513,9 @@ public class JdbcTemplate implements InitializingBean {
 			throwExceptionOnWarningIfNotIgnoringWarnings(warning);
 		}
 		catch (SQLException ex) {
+			if (startTime != 0) {
+				recordStatements(sql, 1, startTime, -1, true);
+			}
 			throw getExceptionTranslater().translate("JdbcTemplate.query(sql)", sql, ex);
 		}
 		finally {
@@ -271,16 +544,22 @@ public class JdbcTemplate implements InitializingBean {
 	 * @throws DataAccessException if there is any problem
 	 */
 	public void doWithResultSetFromPreparedQuery(PreparedStatementCreator psc, ResultSetExtracter rse) throws DataAccessException {
+		WriteBehindQueue.flush(this.dataSource);
 		Connection con = null;
 		ResultSet rs = null;
+		long startTime = 0;
 		try {
 			con = DataSourceUtils.getConnection(this.dataSource);
 			PreparedStatement ps = psc.createPreparedStatement(con);
+			applyQuerySettings(ps, con);
 			if (logger.isInfoEnabled())
 				logger.info("Executing SQL query using PreparedStatement: [" + psc + "]");
+			TransactionMonitor.statementExecuted(psc.getSql());
+			startTime = System.currentTimeMillis();
 			rs = ps.executeQuery();
 
 			rse.extractData(rs);
+			recordStatements(psc.getSql(), 1, startTime, getRowCount(rse), false);
 
 			SQLWarning warning = ps.getWarnings();
 			rs.close();
@@ -288,6 +567,9 @@ public class JdbcTemplate implements InitializingBean {
 			throwExceptionOnWarningIfNotIgnoringWarnings(warning);
 		}
 		catch (SQLException ex) {
+			if (startTime != 0) {
+				recordStatements(psc.getSql(), 1, startTime, -1, true);
+			}
 			throw getExceptionTranslater().translate("JdbcTemplate.query(psc) with PreparedStatementCreator [" + psc + "]", null, ex);
 		}
 		finally {
@@ -333,6 +615,56 @@ public class JdbcTemplate implements InitializingBean {
 		}
 	}
 
+	/**
+	 * Query using a prepared statement, returning an iterator that maps
+	 * rows on demand instead of processing all rows within this call.
+	 * Allows for processing large result sets in constant memory,
+	 * in particular in combination with streaming results.
+	 * <p>The connection is obtained via DataSourceUtils, so a connection bound
+	 * to the thread (e.g. by DataSourceTransactionManager) is used if available.
+	 * It is held until the iterator is exhausted or closed: callers that might
+	 * not exhaust the iterator must call close in a finally block.
+	 * @param psc Callback handler that can create a PreparedStatement
+	 * given a Connection
+	 * @param rowMapper object that will map each row to a result object
+	 * @return the iterator over the mapped results
+	 * @throws DataAccessException if the query fails
+	 * @see ResultIterator#close
+	 * @see #setStreamingResults
+	 */
+	public ResultIterator queryForIterator(PreparedStatementCreator psc, RowMapper rowMapper) throws DataAccessException {
+		WriteBehindQueue.flush(this.dataSource);
+		Connection con = DataSourceUtils.getConnection(this.dataSource);
+		PreparedStatement ps = null;
+		boolean opened = false;
+		long startTime = 0;
+		try {
+			ps = psc.createPreparedStatement(con);
+			applyQuerySettings(ps, con);
+			if (logger.isInfoEnabled())
+				logger.info("Executing SQL query for iteration using PreparedStatement: [" + psc + "]");
+			TransactionMonitor.statementExecuted(psc.getSql());
+			startTime = System.currentTimeMillis();
+			ResultSet rs = ps.executeQuery();
+			recordStatements(psc.getSql(), 1, startTime, -1, false);
+			ResultIterator iterator = new ResultSetIterator(con, ps, rs, rowMapper, psc);
+			opened = true;
+			return iterator;
+		}
+		catch (SQLException ex) {
+			if (startTime != 0) {
+				recordStatements(psc.getSql(), 1, startTime, -1, true);
+			}
+			throw getExceptionTranslater().translate("JdbcTemplate.queryForIterator(psc) with PreparedStatementCreator [" + psc + "]", null, ex);
+		}
+		finally {
+			if (!opened) {
+				closeStatementAfterFailure(ps);
+				DataSourceUtils.closeConnectionIfNecessary(con, this.dataSource);
+			}
+		}
+	}
+
 	/**
 	 * Return whether the given SQL String contains bind variables
 	 */
@@ -354,36 +686,66 @@ public class JdbcTemplate implements InitializingBean {
 
 	/**
 	 * Issue an update using a PreparedStatementCreator to provide SQL and any required
-	 * parameters
+	 * parameters. In write-behind mode, the update may get queued until commit.
 	 * @param psc helper: callback object that provides SQL and any necessary parameters
-	 * @return the number of rows affected
+	 * @return the number of rows affected, or UPDATE_COUNT_DEFERRED if queued
 	 * @throws DataAccessException if there is any problem issuing the update
+	 * @see #setWriteBehindUpdates
 	 */
 	public int update(PreparedStatementCreator psc) throws DataAccessException {
+		if (this.writeBehindUpdates && psc instanceof PreparedStatementSetter && psc.getSql() != null &&
+		    WriteBehindQueue.enqueue(this, psc)) {
+			if (logger.isDebugEnabled())
+				logger.debug("Queued SQL update for write-behind: [" + psc + "]");
+			return UPDATE_COUNT_DEFERRED;
+		}
 		return update(new PreparedStatementCreator[]{psc})[0];
 	}
 
 	/**
 	 * Issue multiple updates using multiple PreparedStatementCreators to provide SQL and any required
-	 * parameters
+	 * parameters.
+	 * <p>Consecutive creators that return the same SQL and implement PreparedStatementSetter,
+	 * like those returned by PreparedStatementCreatorFactory, are executed as JDBC batches of
+	 * up to updateBatchSize statements, if the driver supports batch updates. The update count
+	 * of each statement is still returned; in case of a failure, the exception message
+	 * identifies the batch and, if the driver reports it, the index of the failing statement.
 	 * @param pscs array of helpers: callback object that provides SQL and any necessary parameters
 	 * @return an array of the number of rows affected by each statement
 	 * @throws DataAccessException if there is any problem issuing the update
+	 * @see #setUpdateBatchSize
 	 */
 	public int[] update(PreparedStatementCreator[] pscs) throws DataAccessException {
+		WriteBehindQueue.flush(this.dataSource);
 		Connection con = null;
 		int index = 0;
+		int batchEnd = -1;
+		long startTime = 0;
 		try {
 			con = DataSourceUtils.getConnection(this.dataSource);
 			int[] retvals = new int[pscs.length];
-			for (index = 0; index < retvals.length; index++) {
-				PreparedStatement ps = pscs[index].createPreparedStatement(con);
-				if(logger.isInfoEnabled())
-					logger.info("Executing SQL update using PreparedStatement: [" + pscs[index] + "]");
-				retvals[index] = ps.executeUpdate();
-				if (logger.isInfoEnabled())
-					logger.info("JDBCTemplate: update affected " + retvals[index] + " rows");
-				ps.close();
+			while (index < retvals.length) {
+				batchEnd = findBatchEnd(pscs, index);
+				if (batchEnd - index > 1 && supportsBatchUpdates(con)) {
+					executeBatch(con, pscs, index, batchEnd, retvals);
+					index = batchEnd;
+				}
+				else {
+					batchEnd = -1;
+					PreparedStatement ps = pscs[index].createPreparedStatement(con);
+					applyUpdateSettings(ps);
+					if (logger.isInfoEnabled())
+						logger.info("Executing SQL update using PreparedStatement: [" + pscs[index] + "]");
+					TransactionMonitor.statementExecuted(pscs[index].getSql());
+					startTime = System.currentTimeMillis();
+					retvals[index] = ps.executeUpdate();
+					recordStatements(pscs[index].getSql(), 1, startTime, retvals[index], false);
+					startTime = 0;
+					if (logger.isInfoEnabled())
+						logger.info("JDBCTemplate: update affected " + retvals[index] + " rows");
+					ps.close();
+					index++;
+				}
 			}
 
 			// Don't worry about warnings, as we're more likely to get exception on updates
@@ -391,14 +753,117 @@ public class JdbcTemplate implements InitializingBean {
 			return retvals;
 		}
 		catch (SQLException ex) {
-			throw getExceptionTranslater().translate("processing update " +
-			                                         (index + 1) + " of " + pscs.length + "; update was [" + pscs[index] + "]", null, ex);
+			String task = null;
+			if (batchEnd != -1) {
+				task = "processing batched updates " + (index + 1) + " to " + batchEnd + " of " + pscs.length;
+				int failedIndex = getFailedBatchIndex(ex, batchEnd - index);
+				if (failedIndex != -1) {
+					index += failedIndex;
+					task += "; failed update was " + (index + 1);
+				}
+			}
+			else {
+				task = "processing update " + (index + 1) + " of " + pscs.length;
+				if (startTime != 0) {
+					recordStatements(pscs[index].getSql(), 1, startTime, -1, true);
+				}
+			}
+			throw getExceptionTranslater().translate(task + "; update was [" + pscs[index] + "]", null, ex);
 		}
 		finally {
 			DataSourceUtils.closeConnectionIfNecessary(con, this.dataSource);
 		}
 	}
 
+	/**
+	 * Determine the end of the batch starting at the given index: the index after
+	 * the last consecutive batchable creator with the same SQL, within updateBatchSize.
+	 */
+	private int findBatchEnd(PreparedStatementCreator[] pscs, int start) {
+		if (this.updateBatchSize <= 1 || !(pscs[start] instanceof PreparedStatementSetter) || pscs[start].getSql() == null) {
+			return start + 1;
+		}
+		String sql = pscs[start].getSql();
+		int end = start + 1;
+		while (end < pscs.length && end - start < this.updateBatchSize &&
+		       pscs[end] instanceof PreparedStatementSetter && sql.equals(pscs[end].getSql())) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Execute the updates from start to end as one JDBC batch,
+	 * storing their update counts in the given array.
+	 */
+	private void executeBatch(Connection con, PreparedStatementCreator[] pscs, int start, int end, int[] retvals)
+	    throws SQLException {
+		String sql = pscs[start].getSql();
+		if (logger.isInfoEnabled())
+			logger.info("Executing SQL batch update of " + (end - start) + " statements: [" + sql + "]");
+		PreparedStatement ps = con.prepareStatement(sql);
+		try {
+			applyUpdateSettings(ps);
+			for (int i = start; i < end; i++) {
+				((PreparedStatementSetter) pscs[i]).setValues(ps);
+				ps.addBatch();
+			}
+			TransactionMonitor.statementExecuted(sql);
+			long startTime = System.currentTimeMillis();
+			int[] counts = null;
+			try {
+				counts = ps.executeBatch();
+			}
+			catch (SQLException ex) {
+				recordStatements(sql, end - start, startTime, -1, true);
+				throw ex;
+			}
+			recordStatements(sql, end - start, startTime, countAffectedRows(counts), false);
+			System.arraycopy(counts, 0, retvals, start, Math.min(counts.length, end - start));
+		}
+		finally {
+			ps.close();
+		}
+	}
+
+	/**
+	 * Determine whether the driver supports batch updates, once per template.
+	 */
+	private synchronized boolean supportsBatchUpdates(Connection con) throws SQLException {
+		if (this.batchUpdatesSupported == null) {
+			this.batchUpdatesSupported = con.getMetaData().supportsBatchUpdates() ? Boolean.TRUE : Boolean.FALSE;
+			if (!this.batchUpdatesSupported.booleanValue()) {
+				logger.info("JDBC driver does not support batch updates: executing updates one by one");
+			}
+		}
+		return this.batchUpdatesSupported.booleanValue();
+	}
+
+	/**
+	 * Determine the index of the failed statement within a batch from the given
+	 * exception, if it's a BatchUpdateException reporting it.
+	 * @param ex the exception thrown by executeBatch
+	 * @param batchSize the number of statements in the batch
+	 * @return the index within the batch, or -1 if not determinable
+	 */
+	private int getFailedBatchIndex(SQLException ex, int batchSize) {
+		if (ex instanceof BatchUpdateException) {
+			int[] counts = ((BatchUpdateException) ex).getUpdateCounts();
+			if (counts != null) {
+				for (int i = 0; i < counts.length; i++) {
+					if (counts[i] == EXECUTE_FAILED) {
+						return i;
+					}
+				}
+				// driver stopped at the first failure
+				if (counts.length < batchSize) {
+					return counts.length;
+				}
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * Issue an update using a PreparedStatementSetter to set bind parameters,
 	 * with given SQL. Simpler than using a PreparedStatementCreator
@@ -416,17 +881,7 @@ public class JdbcTemplate implements InitializingBean {
 			return update(sql);
 		}
 
-		return update(new PreparedStatementCreator() {
-			public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
-				PreparedStatement ps = conn.prepareStatement(sql);
-				pss.setValues(ps);
-				return ps;
-			}
-
-			public String getSql() {
-				return sql;
-			}
-		});
+		return update(new SimplePreparedStatementCreator(sql, pss));
 	}
 
 	/**
@@ -440,22 +895,31 @@ public class JdbcTemplate implements InitializingBean {
 	 * @throws DataAccessException if there is any problem issuing the update
 	 */
 	public int[] batchUpdate(String sql, BatchPreparedStatementSetter setter) throws DataAccessException {
+		WriteBehindQueue.flush(this.dataSource);
 		Connection con = null;
+		long startTime = 0;
 		try {
 			con = DataSourceUtils.getConnection(this.dataSource);
 			PreparedStatement ps = con.prepareStatement(sql);
+			applyUpdateSettings(ps);
 			int batchSize = setter.getBatchSize();
 			for (int i = 0; i < batchSize; i++) {
 				setter.setValues(ps, i);
 				ps.addBatch();
 			}
 
+			TransactionMonitor.statementExecuted(sql);
+			startTime = System.currentTimeMillis();
 			int[] retvals = ps.executeBatch();
+			recordStatements(sql, batchSize, startTime, countAffectedRows(retvals), false);
 
 			ps.close();
 			return retvals;
 		}
 		catch (SQLException ex) {
+			if (startTime != 0) {
+				recordStatements(sql, setter.getBatchSize(), startTime, -1, true);
+			}
 			throw getExceptionTranslater().translate("processing batch update " +
 			                                         " with size=" + setter.getBatchSize() + "; update was [" + sql + "]", sql, ex);
 		}
@@ -464,6 +928,385 @@ public class JdbcTemplate implements InitializingBean {
 		}
 	}
 
+	/**
+	 * Issue a streaming batch update for the items returned by the given Iterator,
+	 * executing and flushing a JDBC batch every chunkSize items.
+	 * @see #batchUpdate(String, Iterator, ItemPreparedStatementSetter, int, int, BatchUpdateProgressListener)
+	 */
+	public BatchUpdateProgress batchUpdate(String sql, Iterator items, ItemPreparedStatementSetter setter, int chunkSize)
+	    throws DataAccessException {
+		return batchUpdate(sql, items, setter, chunkSize, 1, null);
+	}
+
+	/**
+	 * Issue a streaming batch update for the items returned by the given Iterator,
+	 * executing and flushing a JDBC batch every chunkSize items. Only one chunk
+	 * of items is held in memory per partition, so the Iterator can lazily produce
+	 * any number of rows, for example by reading an input file.
+	 * <p>If there is no transaction for the DataSource and the connection is in
+	 * auto-commit mode, each chunk is committed as a whole. If a chunk fails,
+	 * it is rolled back, but previous chunks remain committed: the exception
+	 * message states how many rows have been executed successfully. Within a
+	 * transaction, all chunks take part in the transaction.
+	 * <p>With more than one partition, chunks are executed in parallel on separate
+	 * connections, with each partition taking the next chunk of items from the
+	 * Iterator when it's done with its current one. This is only possible
+	 * outside of a transaction. Items are not executed in Iterator order then,
+	 * and the setter is called concurrently.
+	 * @param sql defining PreparedStatement that will be reused.
+	 * All statements in the batch will use the same SQL.
+	 * @param items Iterator returning the items to set values for
+	 * @param setter object to set parameters for each item
+	 * @param chunkSize the number of items to execute in one JDBC batch
+	 * @param partitions the number of connections to use in parallel
+	 * @param listener listener to notify after each chunk (can be null)
+	 * @return the final totals of the batch update
+	 * @throws DataAccessException if there is any problem issuing the update
+	 */
+	public BatchUpdateProgress batchUpdate(String sql, Iterator items, ItemPreparedStatementSetter setter, int chunkSize,
+	                                       int partitions, BatchUpdateProgressListener listener) throws DataAccessException {
+		if (chunkSize < 1 || partitions < 1) {
+			throw new InvalidDataAccessApiUsageException("chunkSize and partitions must be at least 1");
+		}
+		if (partitions > 1 && DataSourceUtils.getThreadObjectManager().getThreadObject(this.dataSource) != null) {
+			throw new InvalidDataAccessApiUsageException("Cannot execute batch update partitions in parallel " +
+			                                             "within a transaction");
+		}
+		WriteBehindQueue.flush(this.dataSource);
+		if (logger.isInfoEnabled())
+			logger.info("Executing streaming SQL batch update in chunks of " + chunkSize + " rows" +
+			            (partitions > 1 ? " with " + partitions + " partitions" : "") + ": [" + sql + "]");
+
+		StreamingBatch batch = new StreamingBatch(sql, items, setter, chunkSize, listener);
+		Thread[] threads = new Thread[partitions - 1];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(batch, "JdbcTemplate batch partition " + (i + 2));
+			threads[i].start();
+		}
+		// the calling thread executes the first partition
+		batch.run();
+		boolean interrupted = false;
+		for (int i = 0; i < threads.length; i++) {
+			while (threads[i].isAlive()) {
+				try {
+					threads[i].join();
+				}
+				catch (InterruptedException ex) {
+					interrupted = true;
+					batch.stop();
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		BatchUpdateProgress progress = batch.getProgress();
+		progress.finished();
+		Throwable failure = batch.getFailure();
+		if (failure instanceof SQLException) {
+			throw getExceptionTranslater().translate("processing streaming batch update after " + progress.getRowCount() +
+			                                         " successful rows; update was [" + sql + "]", sql, (SQLException) failure);
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (logger.isInfoEnabled())
+			logger.info("Streaming SQL batch update finished: " + progress);
+		return progress;
+	}
+
+	/**
+	 * Execute a query asynchronously, on its own connection from the DataSource.
+	 * Returns immediately; the result is available via the returned QueryFuture.
+	 * <p>Note that the query does not participate in a transaction of the
+	 * calling thread, and thus does not see its uncommitted changes.
+	 * @param psc Callback handler that can create a PreparedStatement
+	 * given a Connection
+	 * @param reader object that will extract and hold the results. It must not
+	 * be shared between concurrent queries.
+	 * @return the QueryFuture, returning the reader's result List
+	 * @see #setTaskExecutor
+	 * @see #setAsyncConcurrencyLimit
+	 */
+	public QueryFuture queryAsync(final PreparedStatementCreator psc, final ResultReader reader) {
+		return submitAsync(new QueryFuture("query " + psc) {
+			Object doExecute() {
+				query(psc, reader);
+				return reader.getResults();
+			}
+		});
+	}
+
+	/**
+	 * Execute an update asynchronously, on its own connection from the
+	 * DataSource, i.e. in auto-commit mode or as defined by the DataSource.
+	 * Returns immediately; the update count is available via the QueryFuture.
+	 * @param psc helper: callback object that provides SQL and any necessary parameters
+	 * @return the QueryFuture, returning the update count as Integer
+	 * @see #setTaskExecutor
+	 * @see #setAsyncConcurrencyLimit
+	 */
+	public QueryFuture updateAsync(final PreparedStatementCreator psc) {
+		return submitAsync(new QueryFuture("update " + psc) {
+			Object doExecute() {
+				return new Integer(update(new PreparedStatementCreator[] {psc})[0]);
+			}
+		});
+	}
+
+	/**
+	 * Execute the given queries in parallel, each on its own connection,
+	 * and wait for all of them to complete. The concurrency is capped by
+	 * the asyncConcurrencyLimit, by default the connection pool size.
+	 * @param pscs Callback handlers that can create PreparedStatements
+	 * @param readers objects that will extract the results, one per query
+	 * @param timeout the maximum time to wait for all queries in milliseconds,
+	 * 0 for no limit
+	 * @return the result Lists of the readers, in the order of the queries
+	 * @throws AsyncQueryTimeoutException if not all queries have completed in time
+	 * @throws DataAccessException if any of the queries failed
+	 * @see #queryAsync
+	 * @see #awaitAll
+	 */
+	public List[] queryInParallel(PreparedStatementCreator[] pscs, ResultReader[] readers, long timeout)
+	    throws DataAccessException {
+		if (pscs.length != readers.length) {
+			throw new InvalidDataAccessApiUsageException("Number of PreparedStatementCreators and ResultReaders must match");
+		}
+		QueryFuture[] futures = new QueryFuture[pscs.length];
+		for (int i = 0; i < pscs.length; i++) {
+			futures[i] = queryAsync(pscs[i], readers[i]);
+		}
+		Object[] results = awaitAll(futures, timeout);
+		List[] lists = new List[results.length];
+		System.arraycopy(results, 0, lists, 0, results.length);
+		return lists;
+	}
+
+	/**
+	 * Wait for all of the given asynchronous operations to complete, within an
+	 * overall timeout. On timeout or failure, operations that have not started
+	 * yet get cancelled; running ones finish in the background.
+	 * @param futures the QueryFutures returned by queryAsync or updateAsync
+	 * @param timeout the maximum time to wait for all operations in milliseconds,
+	 * 0 for no limit
+	 * @return the results of the operations, in the given order
+	 * @throws AsyncQueryTimeoutException if not all operations have completed in time
+	 * @throws DataAccessException if any of the operations failed
+	 */
+	public Object[] awaitAll(QueryFuture[] futures, long timeout) throws DataAccessException {
+		long deadline = (timeout > 0 ? System.currentTimeMillis() + timeout : 0);
+		Object[] results = new Object[futures.length];
+		boolean completed = false;
+		try {
+			for (int i = 0; i < futures.length; i++) {
+				if (deadline > 0) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0 && !futures[i].isDone()) {
+						throw new AsyncQueryTimeoutException((futures.length - i) + " of " + futures.length +
+						                                     " asynchronous operations did not complete within " + timeout + " ms");
+					}
+					results[i] = futures[i].get(Math.max(remaining, 1));
+				}
+				else {
+					results[i] = futures[i].get();
+				}
+			}
+			completed = true;
+			return results;
+		}
+		finally {
+			if (!completed) {
+				for (int i = 0; i < futures.length; i++) {
+					futures[i].cancel();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Start the given asynchronous operation if the concurrency limit allows,
+	 * else queue it until a running operation has finished.
+	 */
+	private QueryFuture submitAsync(QueryFuture future) {
+		int limit = getAsyncConcurrencyLimit();
+		synchronized (this.pendingAsyncOperations) {
+			if (limit > 0 && this.activeAsyncOperations >= limit) {
+				if (logger.isDebugEnabled())
+					logger.debug("Concurrency limit of " + limit + " reached: queueing " + future);
+				this.pendingAsyncOperations.add(future);
+				return future;
+			}
+			this.activeAsyncOperations++;
+		}
+		startAsync(future);
+		return future;
+	}
+
+	/**
+	 * Run the given asynchronous operation via the TaskExecutor or a new thread.
+	 */
+	private void startAsync(final QueryFuture future) {
+		Runnable task = new Runnable() {
+			public void run() {
+				try {
+					future.execute();
+				}
+				finally {
+					asyncOperationFinished();
+				}
+			}
+		};
+		try {
+			if (this.taskExecutor != null) {
+				this.taskExecutor.execute(task);
+			}
+			else {
+				Thread thread = new Thread(task, "JdbcTemplate async operation");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+		catch (RuntimeException ex) {
+			future.setResult(null, ex);
+			asyncOperationFinished();
+		}
+	}
+
+	/**
+	 * Start the next queued asynchronous operation, if any, in the slot
+	 * of an operation that has just finished.
+	 */
+	private void asyncOperationFinished() {
+		QueryFuture next = null;
+		synchronized (this.pendingAsyncOperations) {
+			while (next == null && !this.pendingAsyncOperations.isEmpty()) {
+				QueryFuture candidate = (QueryFuture) this.pendingAsyncOperations.removeFirst();
+				if (!candidate.isCancelled()) {
+					next = candidate;
+				}
+			}
+			if (next == null) {
+				this.activeAsyncOperations--;
+			}
+		}
+		if (next != null) {
+			startAsync(next);
+		}
+	}
+
+	/**
+	 * Apply the fetch size, maximum rows, query timeout and streaming settings
+	 * of this template to the given query statement. Only settings that differ
+	 * from the defaults are applied. The query timeout gets reduced to the
+	 * remaining time of the current transaction, if that has a timeout.
+	 * @param stmt the JDBC Statement to prepare
+	 * @param con the Connection that the Statement was created with
+	 */
+	protected void applyQuerySettings(Statement stmt, Connection con) throws SQLException {
+		if (this.streamingResults) {
+			stmt.setFetchSize(getStreamingFetchSize(con));
+		}
+		else if (this.fetchSize > 0) {
+			stmt.setFetchSize(this.fetchSize);
+		}
+		if (this.maxRows > 0) {
+			stmt.setMaxRows(this.maxRows);
+		}
+		DataSourceUtils.applyTimeout(stmt, this.dataSource, this.queryTimeout);
+	}
+
+	/**
+	 * Apply the query timeout of this template to the given update statement,
+	 * reduced to the remaining time of the current transaction if necessary.
+	 * @param stmt the JDBC Statement to prepare
+	 */
+	protected void applyUpdateSettings(Statement stmt) throws SQLException {
+		DataSourceUtils.applyTimeout(stmt, this.dataSource, this.queryTimeout);
+	}
+
+	/**
+	 * Determine the fetch size that makes the driver stream results.
+	 * Can be overridden for other drivers with special requirements.
+	 * @param con the Connection that the query will be executed on
+	 * @return the fetch size to use
+	 * @see #setStreamingResults
+	 */
+	protected int getStreamingFetchSize(Connection con) throws SQLException {
+		if ("MySQL".equals(getDatabaseProductName(con))) {
+			return Integer.MIN_VALUE;
+		}
+		return (this.fetchSize > 0 ? this.fetchSize : DEFAULT_STREAMING_FETCH_SIZE);
+	}
+
+	/**
+	 * Return the database product name, determined once from the
+	 * metadata of the given Connection.
+	 */
+	private synchronized String getDatabaseProductName(Connection con) throws SQLException {
+		if (this.databaseProductName == null) {
+			this.databaseProductName = con.getMetaData().getDatabaseProductName();
+		}
+		return this.databaseProductName;
+	}
+
+	/**
+	 * Record the execution of the given SQL with the SqlMonitor, if any.
+	 * @param sql the SQL as executed (may be null if unknown)
+	 * @param count the number of executions, e.g. the size of a batch
+	 * @param startTime the time when the execution started
+	 * @param rows the number of rows returned or affected, -1 if unknown
+	 * @param failed whether the execution failed
+	 */
+	private void recordStatements(String sql, int count, long startTime, int rows, boolean failed) {
+		if (this.sqlMonitor != null && sql != null) {
+			this.sqlMonitor.statementsExecuted(sql, count, System.currentTimeMillis() - startTime, rows, failed);
+		}
+	}
+
+	/**
+	 * Return the number of rows that the given extracter has processed,
+	 * or -1 if it doesn't count them.
+	 */
+	private int getRowCount(ResultSetExtracter rse) {
+		return (rse instanceof RowCallbackHandlerResultSetExtracter ?
+		        ((RowCallbackHandlerResultSetExtracter) rse).getRowCount() : -1);
+	}
+
+	/**
+	 * Sum up the given batch update counts, ignoring counts
+	 * that do not specify a number of rows.
+	 */
+	private int countAffectedRows(int[] counts) {
+		int rows = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				rows += counts[i];
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Close the given statement after a failure, logging rather than
+	 * throwing any exception to preserve the original one.
+	 * @param stmt the statement to close (may be null)
+	 */
+	private void closeStatementAfterFailure(Statement stmt) {
+		if (stmt != null) {
+			try {
+				stmt.close();
+			}
+			catch (SQLException ex) {
+				logger.warn("Could not close JDBC statement after failure", ex);
+			}
+		}
+	}
+
 	/**
 	 * Convenience method to throw a JdbcSqlWarningException if we're
 	 * not ignoring warnings
@@ -495,6 +1338,8 @@ public class JdbcTemplate implements InitializingBean {
 		 */
 		private RowCallbackHandler callbackHandler;
 
+		private int rowCount;
+
 		/**
 		 * Construct a new ResultSetExtracter that will use the given
 		 * RowCallbackHandler to process each row.
@@ -510,12 +1355,309 @@ public class JdbcTemplate implements InitializingBean {
 			ReadOnlyResultSet rors = new ReadOnlyResultSet(rs);
 			while (rs.next()) {
 				this.callbackHandler.processRow(rors);
+				this.rowCount++;
 			}
 			//	Since rors is a wrapper around rs, calling the close() method is
 			// forbidden. Since rs is already closed, we only need to make it
 			// null.
 			rors = null;
 		}
+
+		/**
+		 * Return the number of rows processed.
+		 */
+		public int getRowCount() {
+			return rowCount;
+		}
+	}
+
+
+
+	/**
+	 * PreparedStatementCreator for the given SQL, using the given setter
+	 * to set bind parameters. Implements PreparedStatementSetter itself,
+	 * so that it can be batched.
+	 */
+	private static final class SimplePreparedStatementCreator implements PreparedStatementCreator, PreparedStatementSetter {
+
+		private final String sql;
+
+		private final PreparedStatementSetter pss;
+
+		public SimplePreparedStatementCreator(String sql, PreparedStatementSetter pss) {
+			this.sql = sql;
+			this.pss = pss;
+		}
+
+		public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
+			PreparedStatement ps = conn.prepareStatement(this.sql);
+			setValues(ps);
+			return ps;
+		}
+
+		public void setValues(PreparedStatement ps) throws SQLException {
+			this.pss.setValues(ps);
+		}
+
+		public String getSql() {
+			return sql;
+		}
+	}
+
+
+	/**
+	 * State of a streaming batch update, shared by its partitions. Each run
+	 * executes one partition: it takes chunks of items from the Iterator until
+	 * it is exhausted or another partition has failed.
+	 */
+	private class StreamingBatch implements Runnable {
+
+		private final String sql;
+
+		private final Iterator items;
+
+		private final ItemPreparedStatementSetter setter;
+
+		private final int chunkSize;
+
+		private final BatchUpdateProgressListener listener;
+
+		private final BatchUpdateProgress progress = new BatchUpdateProgress();
+
+		/** First failure of any partition, or null */
+		private Throwable failure;
+
+		private boolean stopped;
+
+		private StreamingBatch(String sql, Iterator items, ItemPreparedStatementSetter setter, int chunkSize,
+		                       BatchUpdateProgressListener listener) {
+			this.sql = sql;
+			this.items = items;
+			this.setter = setter;
+			this.chunkSize = chunkSize;
+			this.listener = listener;
+		}
+
+		public void run() {
+			Connection con = null;
+			boolean commitPerChunk = false;
+			try {
+				con = DataSourceUtils.getConnection(dataSource);
+				commitPerChunk = !DataSourceUtils.isConnectionBoundToThread(con, dataSource) && con.getAutoCommit();
+				if (commitPerChunk) {
+					con.setAutoCommit(false);
+				}
+				PreparedStatement ps = con.prepareStatement(this.sql);
+				try {
+					applyUpdateSettings(ps);
+					List chunk = new ArrayList(this.chunkSize);
+					while (nextChunk(chunk)) {
+						for (int i = 0; i < chunk.size(); i++) {
+							this.setter.setValues(ps, chunk.get(i));
+							ps.addBatch();
+						}
+						TransactionMonitor.statementExecuted(this.sql);
+						long startTime = System.currentTimeMillis();
+						int[] counts = null;
+						try {
+							counts = ps.executeBatch();
+						}
+						catch (SQLException ex) {
+							recordStatements(this.sql, chunk.size(), startTime, -1, true);
+							throw ex;
+						}
+						recordStatements(this.sql, chunk.size(), startTime, countAffectedRows(counts), false);
+						if (commitPerChunk) {
+							con.commit();
+						}
+						this.progress.chunkCompleted(chunk.size(), counts);
+						if (logger.isDebugEnabled())
+							logger.debug("Executed chunk of " + chunk.size() + " rows: " + this.progress);
+						if (this.listener != null) {
+							synchronized (this.progress) {
+								this.listener.chunkCompleted(this.progress);
+							}
+						}
+					}
+				}
+				finally {
+					ps.close();
+				}
+			}
+			catch (Throwable ex) {
+				if (commitPerChunk) {
+					try {
+						con.rollback();
+					}
+					catch (SQLException rbex) {
+						logger.warn("Could not roll back failed chunk of batch update", rbex);
+					}
+				}
+				setFailure(ex);
+			}
+			finally {
+				if (commitPerChunk) {
+					try {
+						con.setAutoCommit(true);
+					}
+					catch (SQLException ex) {
+						logger.warn("Could not reset auto-commit after batch update", ex);
+					}
+				}
+				try {
+					DataSourceUtils.closeConnectionIfNecessary(con, dataSource);
+				}
+				catch (RuntimeException ex) {
+					setFailure(ex);
+				}
+			}
+		}
+
+		/**
+		 * Fill the given list with the next chunk of items.
+		 * @return whether there are any items to execute
+		 */
+		private synchronized boolean nextChunk(List chunk) {
+			chunk.clear();
+			while (!this.stopped && chunk.size() < this.chunkSize && this.items.hasNext()) {
+				chunk.add(this.items.next());
+			}
+			return !chunk.isEmpty();
+		}
+
+		private synchronized void setFailure(Throwable ex) {
+			if (this.failure == null) {
+				this.failure = ex;
+			}
+			else {
+				logger.warn("Batch update partition failed after previous failure", ex);
+			}
+			this.stopped = true;
+		}
+
+		/**
+		 * Let all partitions stop after their current chunk.
+		 */
+		private synchronized void stop() {
+			this.stopped = true;
+		}
+
+		private synchronized Throwable getFailure() {
+			return failure;
+		}
+
+		private BatchUpdateProgress getProgress() {
+			return progress;
+		}
+	}
+
+
+	/**
+	 * ResultIterator implementation that keeps the JDBC resources of a query
+	 * open until it is exhausted or closed. Uses a ReadOnlyResultSet to
+	 * ensure that the RowMapper doesn't navigate the underlying ResultSet.
+	 */
+	private final class ResultSetIterator implements ResultIterator {
+
+		private final Connection con;
+
+		private final PreparedStatement ps;
+
+		private final ResultSet rs;
+
+		private final ReadOnlyResultSet rors;
+
+		private final RowMapper rowMapper;
+
+		private final PreparedStatementCreator psc;
+
+		private int rowNum = 0;
+
+		/** Whether the ResultSet has been advanced to a row not returned yet */
+		private boolean rowFetched = false;
+
+		private boolean closed = false;
+
+		public ResultSetIterator(Connection con, PreparedStatement ps, ResultSet rs,
+		                         RowMapper rowMapper, PreparedStatementCreator psc) {
+			this.con = con;
+			this.ps = ps;
+			this.rs = rs;
+			this.rors = new ReadOnlyResultSet(rs);
+			this.rowMapper = rowMapper;
+			this.psc = psc;
+		}
+
+		public boolean hasNext() throws DataAccessException {
+			if (this.closed) {
+				return false;
+			}
+			if (!this.rowFetched) {
+				try {
+					this.rowFetched = this.rs.next();
+				}
+				catch (SQLException ex) {
+					closeAfterFailure();
+					throw translate(ex);
+				}
+				if (!this.rowFetched) {
+					close();
+				}
+			}
+			return this.rowFetched;
+		}
+
+		public Object next() throws DataAccessException {
+			if (!hasNext()) {
+				throw new NoSuchElementException("No more rows for query [" + this.psc + "]");
+			}
+			this.rowFetched = false;
+			try {
+				return this.rowMapper.mapRow(this.rors, this.rowNum++);
+			}
+			catch (SQLException ex) {
+				closeAfterFailure();
+				throw translate(ex);
+			}
+			catch (RuntimeException ex) {
+				closeAfterFailure();
+				throw ex;
+			}
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("ResultIterator does not support remove");
+		}
+
+		public void close() throws DataAccessException {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			try {
+				SQLWarning warning = this.ps.getWarnings();
+				this.rs.close();
+				this.ps.close();
+				throwExceptionOnWarningIfNotIgnoringWarnings(warning);
+			}
+			catch (SQLException ex) {
+				throw translate(ex);
+			}
+			finally {
+				DataSourceUtils.closeConnectionIfNecessary(this.con, dataSource);
+			}
+		}
+
+		private void closeAfterFailure() {
+			this.closed = true;
+			closeStatementAfterFailure(this.ps);
+			DataSourceUtils.closeConnectionIfNecessary(this.con, dataSource);
+		}
+
+		private DataAccessException translate(SQLException ex) {
+			return getExceptionTranslater().translate("JdbcTemplate.queryForIterator(psc) with PreparedStatementCreator [" +
+			                                          this.psc + "]", null, ex);
+		}
 	}
 
 }
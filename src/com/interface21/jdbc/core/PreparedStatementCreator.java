@@ -23,7 +23,14 @@ import java.sql.SQLException;
  * with SQLExceptions that may be thrown from operations they
  * attempt. The JdbcTemplate class will catch and handle
  * SQLExceptions appropriately.
+ *
+ * <p>Implementations that also implement PreparedStatementSetter, setting
+ * their parameters on a given PreparedStatement for their SQL, allow
+ * JdbcTemplate to execute consecutive updates with the same SQL as one
+ * JDBC batch.
  * @author Rod Johnson
+ * @see PreparedStatementSetter
+ * @see JdbcTemplate#update(PreparedStatementCreator[])
  */
 public interface PreparedStatementCreator {
 
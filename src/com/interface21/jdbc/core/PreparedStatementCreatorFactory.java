@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -118,19 +119,22 @@ public class PreparedStatementCreatorFactory {
 	// Factory methods
 	//---------------------------------------------------------------------
 	/**
-	 * Return a new PreparedStatementCreator given these parameters
+	 * Return a new PreparedStatementCreator given these parameters.
+	 * The parameters are copied, as the creator may be executed later,
+	 * e.g. with write-behind, when the caller has reused the array.
 	 * @param params parameter array. May be null.
 	 */
 	public PreparedStatementCreator newPreparedStatementCreator(Object[] params) {
-		return new PreparedStatementCreatorImpl((params != null) ? Arrays.asList(params) : new LinkedList());
+		return new PreparedStatementCreatorImpl((params != null) ? Arrays.asList((Object[]) params.clone()) : new LinkedList());
 	}
 	
 	/**
 	 * Return a new PreparedStatementCreator instance given this parameters.
+	 * The parameters are copied, like the ones of the array variant.
 	 * @param params List of parameters. May be null.
 	 */
 	public PreparedStatementCreator newPreparedStatementCreator(List params) {
-		return new PreparedStatementCreatorImpl(params != null ? params : new LinkedList());
+		return new PreparedStatementCreatorImpl(params != null ? (List) new ArrayList(params) : new LinkedList());
 	}
 	
 
@@ -138,9 +142,10 @@ public class PreparedStatementCreatorFactory {
 	// Inner classes
 	//---------------------------------------------------------------------
 	/**
-	 * PreparedStatementCreator implementation returned by this class
+	 * PreparedStatementCreator implementation returned by this class.
+	 * Also implements PreparedStatementSetter to allow for batching.
 	 */
-	private class PreparedStatementCreatorImpl implements PreparedStatementCreator {
+	private class PreparedStatementCreatorImpl implements PreparedStatementCreator, PreparedStatementSetter {
 		private List parameters;
 		
 		/**
@@ -154,7 +159,11 @@ public class PreparedStatementCreatorFactory {
 		
 		public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
 			PreparedStatement ps = conn.prepareStatement(sql);
+			setValues(ps);
+			return ps;
+		}
 
+		public void setValues(PreparedStatement ps) throws SQLException {
 			// Set arguments: does nothing if there are no parameters
 			for (int i = 0; i < parameters.size(); i++) {
 				SqlParameter declaredParameter = (SqlParameter) PreparedStatementCreatorFactory.this.declaredParameters.get(i);
@@ -179,7 +188,6 @@ public class PreparedStatementCreatorFactory {
 					}
 				}
 			}
-			return ps;
 		}
 
 		public String getSql() {
@@ -0,0 +1,169 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import com.interface21.dao.DataAccessResourceFailureException;
+
+/**
+ * Result of an asynchronous JDBC operation, as returned by JdbcTemplate's
+ * queryAsync and updateAsync methods. Allows for waiting for the operation,
+ * and for cancelling it as long as it has not started yet.
+ *
+ * <p>Thread-safe: any thread can wait for the result.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see JdbcTemplate#queryAsync
+ * @see JdbcTemplate#updateAsync
+ * @see JdbcTemplate#awaitAll
+ */
+public abstract class QueryFuture {
+
+	private static final int PENDING = 0;
+
+	private static final int RUNNING = 1;
+
+	private static final int DONE = 2;
+
+	private static final int CANCELLED = 3;
+
+	private final String description;
+
+	private int state = PENDING;
+
+	private Object result;
+
+	private Throwable failure;
+
+	QueryFuture(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * Perform the actual operation, on the executing thread.
+	 * @return the result of the operation
+	 */
+	abstract Object doExecute();
+
+	/**
+	 * Execute the operation and store its result or failure,
+	 * unless it has been cancelled.
+	 */
+	void execute() {
+		synchronized (this) {
+			if (this.state != PENDING) {
+				return;
+			}
+			this.state = RUNNING;
+		}
+		try {
+			setResult(doExecute(), null);
+		}
+		catch (Throwable ex) {
+			setResult(null, ex);
+		}
+	}
+
+	/**
+	 * Store the given result or failure and wake up waiting threads.
+	 */
+	synchronized void setResult(Object result, Throwable failure) {
+		if (this.state == DONE || this.state == CANCELLED) {
+			return;
+		}
+		this.result = result;
+		this.failure = failure;
+		this.state = DONE;
+		notifyAll();
+	}
+
+	/**
+	 * Cancel the operation if it has not started yet.
+	 * @return whether the operation has been cancelled,
+	 * false if it is already running or done
+	 */
+	public synchronized boolean cancel() {
+		if (this.state != PENDING) {
+			return (this.state == CANCELLED);
+		}
+		this.state = CANCELLED;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Return whether the operation has been cancelled.
+	 */
+	public synchronized boolean isCancelled() {
+		return (this.state == CANCELLED);
+	}
+
+	/**
+	 * Return whether the operation has completed, successfully or not,
+	 * or has been cancelled.
+	 */
+	public synchronized boolean isDone() {
+		return (this.state == DONE || this.state == CANCELLED);
+	}
+
+	/**
+	 * Wait for the operation to complete and return its result.
+	 * @return the result, e.g. a List of result objects for a query
+	 * or an Integer update count for an update
+	 * @throws com.interface21.dao.DataAccessException or other RuntimeException
+	 * if thrown by the operation
+	 */
+	public Object get() {
+		return get(0);
+	}
+
+	/**
+	 * Wait for the operation to complete and return its result.
+	 * @param timeout the maximum time to wait in milliseconds, 0 for no limit
+	 * @return the result, e.g. a List of result objects for a query
+	 * or an Integer update count for an update
+	 * @throws AsyncQueryTimeoutException if the operation did not
+	 * complete in time, or has been cancelled
+	 * @throws com.interface21.dao.DataAccessException or other RuntimeException
+	 * if thrown by the operation
+	 */
+	public synchronized Object get(long timeout) {
+		long deadline = (timeout > 0 ? System.currentTimeMillis() + timeout : 0);
+		while (this.state == PENDING || this.state == RUNNING) {
+			long waitTime = 0;
+			if (deadline > 0) {
+				waitTime = deadline - System.currentTimeMillis();
+				if (waitTime <= 0) {
+					throw new AsyncQueryTimeoutException("Asynchronous operation [" + this.description +
+					                                     "] did not complete within " + timeout + " ms");
+				}
+			}
+			try {
+				wait(waitTime);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new DataAccessResourceFailureException("Interrupted while waiting for asynchronous operation [" +
+				                                             this.description + "]", ex);
+			}
+		}
+		if (this.state == CANCELLED) {
+			throw new AsyncQueryTimeoutException("Asynchronous operation [" + this.description + "] has been cancelled");
+		}
+		if (this.failure instanceof RuntimeException) {
+			throw (RuntimeException) this.failure;
+		}
+		if (this.failure instanceof Error) {
+			throw (Error) this.failure;
+		}
+		return this.result;
+	}
+
+	public String toString() {
+		return "QueryFuture for [" + this.description + "]";
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.util.Iterator;
+
+import com.interface21.dao.DataAccessException;
+
+/**
+ * Iterator over query results that maps rows on demand, keeping the
+ * underlying JDBC resources open until the results are exhausted.
+ *
+ * <p>The JDBC ResultSet and Statement are released automatically when hasNext
+ * returns false, or when mapping a row fails. Code that may stop iterating
+ * early must call close in a finally block, else the connection will leak.
+ * The iterator is not thread-safe, and doesn't support remove.
+ *
+ * <p>hasNext and next throw DataAccessExceptions if reading the
+ * ResultSet fails, translated like all other JdbcTemplate exceptions.
+ *
+ * @version $Id$
+ * @see JdbcTemplate#queryForIterator
+ */
+public interface ResultIterator extends Iterator {
+
+	/**
+	 * Release the underlying JDBC resources. Can be called multiple times;
+	 * the iterator doesn't return any further results after it's been closed.
+	 * @throws DataAccessException if closing the resources fails
+	 */
+	void close() throws DataAccessException;
+
+}
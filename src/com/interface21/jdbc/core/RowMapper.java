@@ -0,0 +1,31 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Callback interface that maps a single row of a ResultSet to an object.
+ * Used by JdbcTemplate's iterator-based query method, where results are
+ * mapped on demand rather than collected by a RowCallbackHandler.
+ * @version $Id$
+ * @see JdbcTemplate#queryForIterator
+ */
+public interface RowMapper {
+
+	/**
+	 * Map the current row of the given ResultSet to an object.
+	 * This method should not call next() on the ResultSet.
+	 * @param rs the ResultSet, positioned at the row to map
+	 * @param rowNum the number of the current row, starting at 0
+	 * @return the result object for the current row
+	 * @throws SQLException if a SQLException is encountered getting
+	 * column values (that is, there's no need to catch SQLException)
+	 */
+	Object mapRow(ResultSet rs, int rowNum) throws SQLException;
+
+}
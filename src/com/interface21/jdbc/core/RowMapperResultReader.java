@@ -0,0 +1,51 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adapter implementation of the ResultReader interface that delegates
+ * to a RowMapper which is supposed to create an object for each row.
+ * Each object is added to the results List of this ResultReader.
+ *
+ * <p>Useful for the typical case of one object per row in the database
+ * table, e.g. for JdbcTemplate's queryAsync and queryInParallel methods.
+ * An instance holds the results of one query and must not be reused.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see RowMapper
+ * @see JdbcTemplate#queryAsync
+ */
+public class RowMapperResultReader implements ResultReader {
+
+	private final RowMapper rowMapper;
+
+	private final List results = new ArrayList();
+
+	private int rowNum = 0;
+
+	/**
+	 * Create a new RowMapperResultReader.
+	 * @param rowMapper the RowMapper which creates an object for each row
+	 */
+	public RowMapperResultReader(RowMapper rowMapper) {
+		this.rowMapper = rowMapper;
+	}
+
+	public void processRow(ResultSet rs) throws SQLException {
+		this.results.add(this.rowMapper.mapRow(rs, this.rowNum++));
+	}
+
+	public List getResults() {
+		return results;
+	}
+
+}
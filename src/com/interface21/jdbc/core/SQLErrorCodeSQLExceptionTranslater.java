@@ -10,6 +10,7 @@
 package com.interface21.jdbc.core;
 
 import java.sql.SQLException;
+import java.util.Arrays;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -23,55 +24,144 @@ import com.interface21.dao.DataIntegrityViolationException;
  * than SQLState implementation, but vendor specific. The JdbcTemplate class
  * enables error handling to be parameterized without making application's
  * dependent on a particular RDBMS.
+ *
+ * <p>The String codes of the SQLErrorCodes are compiled into a sorted int table
+ * when set, so translation is a binary search on the vendor code, without
+ * allocation. Changes to a SQLErrorCodes instance after it has been set are
+ * not picked up: call setSqlErrorCodes again.
  * @author Rod Johnson
  * @author Thomas Risberg
  */
 public class SQLErrorCodeSQLExceptionTranslater implements SQLExceptionTranslater {
 
+	private static final byte BAD_SQL_GRAMMAR = 1;
+
+	private static final byte DATA_INTEGRITY_VIOLATION = 2;
+
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	/** Error codes available to subclasses */
 	protected SQLErrorCodes sqlErrorCodes;
 
+	/** Compiled form of the error codes, replaced as a whole */
+	private volatile CodeTable codeTable;
+
+	/** Fallback for error codes that aren't mapped */
+	private final SQLStateSQLExceptionTranslater sqlStateTranslater = new SQLStateSQLExceptionTranslater();
+
 	public SQLErrorCodeSQLExceptionTranslater() {
-		this.sqlErrorCodes = new SQLErrorCodes();		
+		setSqlErrorCodes(new SQLErrorCodes());
 	}
 
 	public SQLErrorCodeSQLExceptionTranslater(SQLErrorCodes sec) {
-		this.sqlErrorCodes = sec;		
+		setSqlErrorCodes(sec);
+	}
+
+	/**
+	 * Create a translater for the given error codes, with their already
+	 * compiled table. Used by SQLExceptionTranslaterFactory, to compile
+	 * the codes of each database product only once.
+	 */
+	SQLErrorCodeSQLExceptionTranslater(SQLErrorCodes sec, CodeTable codeTable) {
+		this.sqlErrorCodes = sec;
+		this.codeTable = codeTable;
 	}
 
 	/**
 	 * set the error codes to be used for translation
 	 */
 	public void setSqlErrorCodes(SQLErrorCodes sec) {
-		this.sqlErrorCodes = sec;		
+		this.sqlErrorCodes = sec;
+		this.codeTable = new CodeTable(sec);
 	}
 
 	/**
 	 * @see SQLExceptionTranslater#translate(String, String, SQLException)
 	 */
 	public DataAccessException translate(String task, String sql, SQLException sqlex) {
-
-		String errorCode = Integer.toString(sqlex.getErrorCode());
-		if (java.util.Arrays.binarySearch(sqlErrorCodes.getBadSqlGrammarCodes(), errorCode) >= 0) {
-			logTranslation(task, sql, sqlex);
-			return new BadSqlGrammarException(task, sql, sqlex);
-		}
-		if (java.util.Arrays.binarySearch(sqlErrorCodes.getDataIntegrityViolationCodes() , errorCode) >= 0) {
-			logTranslation(task, sql, sqlex);
-			return new DataIntegrityViolationException(task + ": " + sqlex.getMessage(), sqlex);
+		switch (this.codeTable.getCategory(sqlex.getErrorCode())) {
+			case BAD_SQL_GRAMMAR:
+				logTranslation(task, sql, sqlex);
+				return new BadSqlGrammarException(task, sql, sqlex);
+			case DATA_INTEGRITY_VIOLATION:
+				logTranslation(task, sql, sqlex);
+				return new DataIntegrityViolationException(task + ": " + sqlex.getMessage(), sqlex);
 		}
 
 		// We couldn't identify it more precisely - let's hand it over to the SQLState Translater.
 		logger.warn("Unable to translate SQLException with errorCode=" + sqlex.getErrorCode() + 
 						", will now try the SQLState Translater");
-		SQLStateSQLExceptionTranslater lastResort = new SQLStateSQLExceptionTranslater();
-		return lastResort.translate(task, sql, sqlex);
+		return this.sqlStateTranslater.translate(task, sql, sqlex);
 	}
 
 	private void logTranslation(String task, String sql, SQLException sqlex) {
 		logger.warn("Translating SQLException with SQLState='" + sqlex.getSQLState() + "' and errorCode=" + sqlex.getErrorCode() + 
 						" and message=" + sqlex.getMessage() + "; sql was '" + sql + "'");
 	}
-}
\ No newline at end of file
+
+
+	/**
+	 * Sorted table from int error code to category. Codes listed for
+	 * both categories count as bad SQL grammar, as they always did.
+	 * Immutable, so it can be shared by translaters for the same codes.
+	 */
+	static class CodeTable {
+
+		private static final Log logger = LogFactory.getLog(CodeTable.class);
+
+		private final int[] codes;
+
+		private final byte[] categories;
+
+		CodeTable(SQLErrorCodes sec) {
+			String[] badSqlGrammarCodes = sec.getBadSqlGrammarCodes();
+			String[] dataIntegrityViolationCodes = sec.getDataIntegrityViolationCodes();
+			int max = (badSqlGrammarCodes != null ? badSqlGrammarCodes.length : 0) +
+			    (dataIntegrityViolationCodes != null ? dataIntegrityViolationCodes.length : 0);
+			// code in the upper 32 bits, category in the lower ones: sorts by code, then category
+			long[] entries = new long[max];
+			int count = addEntries(badSqlGrammarCodes, BAD_SQL_GRAMMAR, entries, 0);
+			count = addEntries(dataIntegrityViolationCodes, DATA_INTEGRITY_VIOLATION, entries, count);
+			Arrays.sort(entries, 0, count);
+			int[] codes = new int[count];
+			byte[] categories = new byte[count];
+			int size = 0;
+			for (int i = 0; i < count; i++) {
+				int code = (int) (entries[i] >> 32);
+				if (size == 0 || codes[size - 1] != code) {
+					codes[size] = code;
+					categories[size] = (byte) entries[i];
+					size++;
+				}
+			}
+			this.codes = new int[size];
+			System.arraycopy(codes, 0, this.codes, 0, size);
+			this.categories = new byte[size];
+			System.arraycopy(categories, 0, this.categories, 0, size);
+		}
+
+		private int addEntries(String[] codes, byte category, long[] entries, int count) {
+			if (codes != null) {
+				for (int i = 0; i < codes.length; i++) {
+					try {
+						entries[count++] = ((long) Integer.parseInt(codes[i].trim()) << 32) | category;
+					}
+					catch (NumberFormatException ex) {
+						count--;
+						logger.warn("Ignoring non-numeric SQL error code '" + codes[i] + "'");
+					}
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Return the category of the given error code, or 0 if not mapped.
+		 */
+		private byte getCategory(int errorCode) {
+			int index = Arrays.binarySearch(this.codes, errorCode);
+			return (index >= 0 ? this.categories[index] : 0);
+		}
+	}
+
+}
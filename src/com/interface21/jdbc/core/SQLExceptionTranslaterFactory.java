@@ -16,6 +16,7 @@ import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import javax.sql.DataSource;
 
@@ -37,6 +38,11 @@ import com.interface21.util.ClassLoaderUtils;
  * Reads the default file in this package if not overridden by a file
  * in the root of the classpath (e.g. in the WEB-INF/classes directory).
  *
+ * <p>The database product of a DataSource is cached, so it is only detected
+ * once per DataSource rather than for every JdbcTemplate. The error codes of
+ * each product are only compiled once; each call still returns a separate
+ * translater, so configuring one does not affect other templates.
+ *
  * @author Thomas Risberg
    @version $Id$
  */
@@ -78,6 +84,12 @@ public class SQLExceptionTranslaterFactory {
 	*/
 	private Map rdbmsErrorCodes;
 
+	/** Map from DataSource to database product name, weak to not keep DataSources alive */
+	private final Map productNameCache = new WeakHashMap();
+
+	/** Map from database product name to compiled error code table */
+	private final Map productCodeTables = new HashMap();
+
 	/**
 	 * Not public to enforce Singleton design pattern.
 	 */
@@ -115,8 +127,16 @@ public class SQLExceptionTranslaterFactory {
 	/**
 	 * Return SQLExceptionTranslater for the given DataSource,
 	 * evaluating DatabaseProductName from DatabaseMetaData.
+	 * The product name is cached per DataSource, unless the metadata
+	 * could not be read.
 	 */
 	public SQLExceptionTranslater getDefaultTranslater(DataSource ds) {
+		synchronized (this.productNameCache) {
+			if (this.productNameCache.containsKey(ds)) {
+				return getTranslater((String) this.productNameCache.get(ds));
+			}
+		}
+
 		logger.info("Initializing default SQL exception translater");
 		Connection con = DataSourceUtils.getConnection(ds);
 		if (con != null) {
@@ -128,13 +148,11 @@ public class SQLExceptionTranslaterFactory {
 					// special check for DB2
 					if (dbName != null && dbName.startsWith("DB2/"))
 						dbName = "DB2";
-					if (dbName != null) {
-						SQLErrorCodes sec = (SQLErrorCodes) rdbmsErrorCodes.get(dbName);
-						if (sec != null)
-							return new SQLErrorCodeSQLExceptionTranslater(sec);
+					synchronized (this.productNameCache) {
+						this.productNameCache.put(ds, dbName);
 					}
+					return getTranslater(dbName);
 				}
-				// could not find the database among the defined ones
 			}
 			catch (SQLException se) {
 				// this is bad - we probably lost the connection
@@ -147,6 +165,28 @@ public class SQLExceptionTranslaterFactory {
 		return new SQLStateSQLExceptionTranslater();
 	}
 
+	/**
+	 * Return a new translater for the given database product,
+	 * using the error code table compiled for the product.
+	 * @param dbName the database product name (can be null)
+	 */
+	private SQLExceptionTranslater getTranslater(String dbName) {
+		SQLErrorCodes sec = (dbName != null ? (SQLErrorCodes) this.rdbmsErrorCodes.get(dbName) : null);
+		if (sec == null) {
+			// could not find the database among the defined ones
+			return new SQLStateSQLExceptionTranslater();
+		}
+		SQLErrorCodeSQLExceptionTranslater.CodeTable codeTable = null;
+		synchronized (this.productCodeTables) {
+			codeTable = (SQLErrorCodeSQLExceptionTranslater.CodeTable) this.productCodeTables.get(dbName);
+			if (codeTable == null) {
+				codeTable = new SQLErrorCodeSQLExceptionTranslater.CodeTable(sec);
+				this.productCodeTables.put(dbName, codeTable);
+			}
+		}
+		return new SQLErrorCodeSQLExceptionTranslater(sec, codeTable);
+	}
+
 	/**
 	 * Return plain SQLErrorCodes instance for the given database.
 	 */
@@ -0,0 +1,361 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.interface21.context.ApplicationContext;
+import com.interface21.context.support.ApplicationObjectSupport;
+
+/**
+ * Records execution statistics per SQL statement: execution and error counts,
+ * total and maximum execution time, and rows returned or affected. Statements
+ * are aggregated by their normalized SQL, i.e. with literals replaced by
+ * placeholders, so that SQL with inlined values does not create an entry per
+ * value.
+ *
+ * <p>Activated by setting an instance as "sqlMonitor" on a JdbcTemplate or an
+ * RdbmsOperation like SqlQuery or StoredProcedure. One instance can be shared
+ * by all templates and operations of an application, typically defined as bean
+ * in the application context. publishReport publishes the most expensive and
+ * the most frequent statements as SqlStatisticsEvent to the context.
+ *
+ * <p>Recording takes two timestamps, a lookup of the SQL string in one of
+ * several independently locked caches, and an update of the statistics under
+ * their own lock, so that threads executing different statements rarely
+ * contend. SQL strings that are not cached get normalized outside of any lock.
+ * Only the first execution of a new statement locks the monitor as a whole.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see JdbcTemplate#setSqlMonitor
+ * @see com.interface21.jdbc.object.RdbmsOperation#setSqlMonitor
+ * @see SqlStatisticsEvent
+ */
+public class SqlMonitor extends ApplicationObjectSupport {
+
+	/** Normalized SQL for statements beyond maxStatements */
+	public static final String OTHER_STATEMENTS = "[other]";
+
+	/** Number of independently locked parts of the SQL string cache */
+	private static final int CACHE_STRIPES = 16;
+
+	/**
+	 * Normalize the given SQL for aggregation: collapse whitespace,
+	 * and replace string and numeric literals with a "?" placeholder.
+	 * @param sql the SQL as executed
+	 * @return the normalized SQL
+	 */
+	public static String normalizeSql(String sql) {
+		StringBuffer buf = new StringBuffer(sql.length());
+		boolean whitespace = false;
+		int i = 0;
+		while (i < sql.length()) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				whitespace = true;
+				i++;
+				continue;
+			}
+			if (whitespace && buf.length() > 0) {
+				buf.append(' ');
+			}
+			whitespace = false;
+			if (c == '\'') {
+				// skip string literal, including escaped quotes
+				i++;
+				while (i < sql.length()) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+							i++;
+						}
+						else {
+							break;
+						}
+					}
+					i++;
+				}
+				i++;
+				buf.append('?');
+			}
+			else if (Character.isDigit(c) &&
+			         (buf.length() == 0 || !isIdentifierPart(buf.charAt(buf.length() - 1)))) {
+				// skip numeric literal, but not digits within identifiers
+				while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+					i++;
+				}
+				buf.append('?');
+			}
+			else {
+				buf.append(c);
+				i++;
+			}
+		}
+		return buf.toString();
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return (Character.isLetterOrDigit(c) || c == '_');
+	}
+
+
+	private int maxStatements = 1000;
+
+	private int reportSize = 10;
+
+	/**
+	 * SQL as executed -> SqlStatistics, striped by hash code of the SQL.
+	 * Each stripe is guarded by its own lock.
+	 */
+	private final Map[] statisticsBySql = new Map[CACHE_STRIPES];
+
+	/** Normalized SQL -> SqlStatistics, guarded by the lock of this object */
+	private Map statistics = new HashMap();
+
+	/**
+	 * Create a new SqlMonitor.
+	 */
+	public SqlMonitor() {
+		for (int i = 0; i < CACHE_STRIPES; i++) {
+			this.statisticsBySql[i] = new HashMap();
+		}
+	}
+
+	/**
+	 * Set the maximum number of distinct normalized statements to keep
+	 * statistics for. Further statements are recorded as OTHER_STATEMENTS.
+	 * Default is 1000.
+	 * @see #OTHER_STATEMENTS
+	 */
+	public void setMaxStatements(int maxStatements) {
+		this.maxStatements = maxStatements;
+	}
+
+	/**
+	 * Return the maximum number of distinct statements to keep statistics for.
+	 */
+	public int getMaxStatements() {
+		return maxStatements;
+	}
+
+	/**
+	 * Set the number of statements to include in each list of a published
+	 * report. Default is 10.
+	 * @see #publishReport
+	 */
+	public void setReportSize(int reportSize) {
+		this.reportSize = reportSize;
+	}
+
+	/**
+	 * Return the number of statements to include in a published report.
+	 */
+	public int getReportSize() {
+		return reportSize;
+	}
+
+	/**
+	 * Record the execution of the given SQL.
+	 * @param sql the SQL as executed
+	 * @param time the duration of the execution in milliseconds
+	 * @param rows the number of rows returned or affected, -1 if unknown
+	 * @param failed whether the execution failed
+	 */
+	public void statementExecuted(String sql, long time, int rows, boolean failed) {
+		statementsExecuted(sql, 1, time, rows, failed);
+	}
+
+	/**
+	 * Record multiple executions of the given SQL, e.g. a JDBC batch.
+	 * @param sql the SQL as executed
+	 * @param count the number of executions
+	 * @param time the duration of all executions in milliseconds
+	 * @param rows the number of rows affected by all executions, -1 if unknown
+	 * @param failed whether the executions failed
+	 */
+	public void statementsExecuted(String sql, int count, long time, int rows, boolean failed) {
+		Map cache = getCacheStripe(sql);
+		SqlStatistics stats = null;
+		synchronized (cache) {
+			stats = (SqlStatistics) cache.get(sql);
+		}
+		if (stats == null) {
+			stats = lookupStatistics(sql);
+		}
+		stats.executed(count, time, rows, failed);
+	}
+
+	private Map getCacheStripe(String sql) {
+		return this.statisticsBySql[(sql.hashCode() & 0x7fffffff) % CACHE_STRIPES];
+	}
+
+	/**
+	 * Determine the statistics for the given SQL as executed, and cache them
+	 * for further lookups. SQL strings are only cached up to about twice
+	 * maxStatements, as SQL with inlined values may yield an unlimited number
+	 * of strings.
+	 */
+	private SqlStatistics lookupStatistics(String sql) {
+		String normalizedSql = normalizeSql(sql);
+		synchronized (this) {
+			SqlStatistics stats = (SqlStatistics) this.statistics.get(normalizedSql);
+			if (stats == null) {
+				if (this.statistics.size() >= this.maxStatements) {
+					normalizedSql = OTHER_STATEMENTS;
+					stats = (SqlStatistics) this.statistics.get(normalizedSql);
+				}
+				if (stats == null) {
+					stats = new SqlStatistics(normalizedSql);
+					this.statistics.put(normalizedSql, stats);
+				}
+			}
+			// cache under the monitor lock, so that a concurrent reset cannot interfere
+			Map cache = getCacheStripe(sql);
+			synchronized (cache) {
+				if (cache.size() < (2 * this.maxStatements + CACHE_STRIPES - 1) / CACHE_STRIPES) {
+					cache.put(sql, stats);
+				}
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * Return a snapshot of the statistics for the given SQL.
+	 * @param sql the SQL, either as executed or normalized
+	 * @return the statistics, or null if no such statement has been recorded
+	 */
+	public SqlStatistics getStatistics(String sql) {
+		String normalizedSql = normalizeSql(sql);
+		SqlStatistics stats = null;
+		synchronized (this) {
+			stats = (SqlStatistics) this.statistics.get(normalizedSql);
+		}
+		return (stats != null ? new SqlStatistics(stats) : null);
+	}
+
+	/**
+	 * Return the statements with the highest total execution time,
+	 * i.e. the statements that cost the most overall.
+	 * @param count the maximum number of statements to return
+	 * @return snapshots of the statistics, most expensive first
+	 */
+	public SqlStatistics[] getTopStatementsByTotalTime(int count) {
+		return getTopStatements(count, StatisticsComparator.TOTAL_TIME);
+	}
+
+	/**
+	 * Return the statements with the longest single execution.
+	 * @param count the maximum number of statements to return
+	 * @return snapshots of the statistics, slowest first
+	 */
+	public SqlStatistics[] getTopStatementsByMaxTime(int count) {
+		return getTopStatements(count, StatisticsComparator.MAX_TIME);
+	}
+
+	/**
+	 * Return the most frequently executed statements.
+	 * @param count the maximum number of statements to return
+	 * @return snapshots of the statistics, most frequent first
+	 */
+	public SqlStatistics[] getTopStatementsByExecutionCount(int count) {
+		return getTopStatements(count, StatisticsComparator.EXECUTION_COUNT);
+	}
+
+	private SqlStatistics[] getTopStatements(int count, Comparator comparator) {
+		List current = null;
+		synchronized (this) {
+			current = new ArrayList(this.statistics.values());
+		}
+		List list = new ArrayList(current.size());
+		for (Iterator it = current.iterator(); it.hasNext();) {
+			list.add(new SqlStatistics((SqlStatistics) it.next()));
+		}
+		Collections.sort(list, comparator);
+		List top = list.subList(0, Math.min(count, list.size()));
+		return (SqlStatistics[]) top.toArray(new SqlStatistics[top.size()]);
+	}
+
+	/**
+	 * Publish the reportSize most expensive and most frequent statements
+	 * as SqlStatisticsEvent to the application context, e.g. to be called
+	 * periodically by a timer or on demand by a management interface.
+	 * @return the published event
+	 * @throws IllegalStateException if not running in an application context
+	 * @see #setReportSize
+	 */
+	public SqlStatisticsEvent publishReport() {
+		ApplicationContext ctx = getApplicationContext();
+		if (ctx == null) {
+			throw new IllegalStateException("SqlMonitor needs to run in an ApplicationContext to publish reports");
+		}
+		SqlStatisticsEvent event = new SqlStatisticsEvent(this, getTopStatementsByTotalTime(this.reportSize),
+		                                                  getTopStatementsByExecutionCount(this.reportSize));
+		ctx.publishEvent(event);
+		return event;
+	}
+
+	/**
+	 * Discard all statistics recorded so far.
+	 */
+	public synchronized void reset() {
+		this.statistics = new HashMap();
+		for (int i = 0; i < CACHE_STRIPES; i++) {
+			synchronized (this.statisticsBySql[i]) {
+				this.statisticsBySql[i].clear();
+			}
+		}
+	}
+
+
+	/**
+	 * Orders statistics descending by one of their values,
+	 * and by SQL for equal values.
+	 */
+	private static class StatisticsComparator implements Comparator {
+
+		private static final StatisticsComparator TOTAL_TIME = new StatisticsComparator(0);
+
+		private static final StatisticsComparator MAX_TIME = new StatisticsComparator(1);
+
+		private static final StatisticsComparator EXECUTION_COUNT = new StatisticsComparator(2);
+
+		private final int value;
+
+		private StatisticsComparator(int value) {
+			this.value = value;
+		}
+
+		public int compare(Object o1, Object o2) {
+			SqlStatistics stats1 = (SqlStatistics) o1;
+			SqlStatistics stats2 = (SqlStatistics) o2;
+			long value1 = getValue(stats1);
+			long value2 = getValue(stats2);
+			if (value1 != value2) {
+				return (value1 > value2 ? -1 : 1);
+			}
+			return stats1.getSql().compareTo(stats2.getSql());
+		}
+
+		private long getValue(SqlStatistics stats) {
+			switch (this.value) {
+				case 0:
+					return stats.getTotalTime();
+				case 1:
+					return stats.getMaxTime();
+				default:
+					return stats.getExecutionCount();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+/**
+ * Execution statistics for one normalized SQL string, as recorded by a
+ * SqlMonitor: execution and error counts, total and maximum execution time,
+ * and the number of rows returned or affected. Instances returned by
+ * SqlMonitor are snapshots, i.e. they do not change with further executions.
+ *
+ * <p>Updates and snapshots synchronize on the instance, so that the lock is
+ * only shared by executions of the same statement.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see SqlMonitor#getStatistics
+ */
+public class SqlStatistics {
+
+	private final String sql;
+
+	private long executionCount;
+
+	private long errorCount;
+
+	private long totalTime;
+
+	private long maxTime;
+
+	private long rowCount;
+
+	SqlStatistics(String sql) {
+		this.sql = sql;
+	}
+
+	/**
+	 * Create a snapshot of the given statistics.
+	 */
+	SqlStatistics(SqlStatistics other) {
+		this.sql = other.sql;
+		synchronized (other) {
+			this.executionCount = other.executionCount;
+			this.errorCount = other.errorCount;
+			this.totalTime = other.totalTime;
+			this.maxTime = other.maxTime;
+			this.rowCount = other.rowCount;
+		}
+	}
+
+	/**
+	 * Record the given number of executions, e.g. the statements of a batch.
+	 * @param count the number of executions
+	 * @param time the duration of the executions in milliseconds
+	 * @param rows the number of rows returned or affected, -1 if unknown
+	 * @param failed whether the executions failed
+	 */
+	final synchronized void executed(int count, long time, int rows, boolean failed) {
+		this.executionCount += count;
+		if (failed) {
+			this.errorCount++;
+		}
+		this.totalTime += time;
+		if (time > this.maxTime) {
+			this.maxTime = time;
+		}
+		if (rows > 0) {
+			this.rowCount += rows;
+		}
+	}
+
+	/**
+	 * Return the normalized SQL string that these statistics apply to.
+	 * @see SqlMonitor#normalizeSql
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Return the number of executions, including failed ones.
+	 * Each statement of a batch counts as one execution.
+	 */
+	public long getExecutionCount() {
+		return executionCount;
+	}
+
+	/**
+	 * Return the number of failed executions.
+	 * A failed batch counts as one error.
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * Return the total execution time in milliseconds.
+	 * For queries, this includes the processing of the result rows.
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * Return the average execution time in milliseconds.
+	 */
+	public long getAverageTime() {
+		return (this.executionCount > 0 ? this.totalTime / this.executionCount : 0);
+	}
+
+	/**
+	 * Return the longest execution time in milliseconds.
+	 * A batch is measured as one execution.
+	 */
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Return the total number of rows returned by a query or affected by an
+	 * update, as far as known: rows processed by a ResultSetExtracter other than
+	 * a RowCallbackHandler and rows of a ResultIterator are not counted.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	public String toString() {
+		return "[" + this.sql + "]: executions=" + this.executionCount + ", errors=" + this.errorCount +
+		    ", averageTime=" + getAverageTime() + "ms, maxTime=" + this.maxTime + "ms, rows=" + this.rowCount;
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import com.interface21.context.ApplicationEvent;
+
+/**
+ * Event published by a SqlMonitor, reporting the statements with the highest
+ * total execution time and the most frequently executed statements.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see SqlMonitor#publishReport
+ */
+public class SqlStatisticsEvent extends ApplicationEvent {
+
+	private final SqlStatistics[] mostExpensiveStatements;
+
+	private final SqlStatistics[] mostFrequentStatements;
+
+	/**
+	 * Create a new SqlStatisticsEvent.
+	 * @param source the SqlMonitor that published the event
+	 * @param mostExpensiveStatements statistics ordered by total time
+	 * @param mostFrequentStatements statistics ordered by execution count
+	 */
+	public SqlStatisticsEvent(Object source, SqlStatistics[] mostExpensiveStatements,
+	                          SqlStatistics[] mostFrequentStatements) {
+		super(source);
+		this.mostExpensiveStatements = mostExpensiveStatements;
+		this.mostFrequentStatements = mostFrequentStatements;
+	}
+
+	/**
+	 * Return the statements with the highest total execution time,
+	 * most expensive first.
+	 */
+	public SqlStatistics[] getMostExpensiveStatements() {
+		return mostExpensiveStatements;
+	}
+
+	/**
+	 * Return the most frequently executed statements, most frequent first.
+	 */
+	public SqlStatistics[] getMostFrequentStatements() {
+		return mostFrequentStatements;
+	}
+
+	public String toString() {
+		StringBuffer buf = new StringBuffer("SqlStatisticsEvent: most expensive statements");
+		for (int i = 0; i < this.mostExpensiveStatements.length; i++) {
+			buf.append("\n  ").append(this.mostExpensiveStatements[i]);
+		}
+		buf.append("\nmost frequent statements");
+		for (int i = 0; i < this.mostFrequentStatements.length; i++) {
+			buf.append("\n  ").append(this.mostFrequentStatements[i]);
+		}
+		return buf.toString();
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Extracts column values of one required type from a ResultSet,
+ * with the ResultSet getter for that type. Callers select an extractor
+ * once per query via forType, instead of determining the conversion
+ * for every column of every row.
+ *
+ * <p>The conversions are the ones that DefaultColumnExtractor has always
+ * applied, which now delegates to this class.
+ *
+ * @version $Id$
+ * @see #forType
+ * @see DefaultColumnExtractor
+ */
+public abstract class TypedColumnExtractor {
+
+	/** Extracts Integers via ResultSet.getInt */
+	public static final TypedColumnExtractor INTEGER = new TypedColumnExtractor() {
+		public Object extractColumn(ResultSet rs, int index) throws SQLException {
+			return new Integer(rs.getInt(index));
+		}
+		public Object extractColumn(ResultSet rs, String columnName) throws SQLException {
+			return new Integer(rs.getInt(columnName));
+		}
+	};
+
+	/** Extracts Longs via ResultSet.getLong */
+	public static final TypedColumnExtractor LONG = new TypedColumnExtractor() {
+		public Object extractColumn(ResultSet rs, int index) throws SQLException {
+			return new Long(rs.getLong(index));
+		}
+		public Object extractColumn(ResultSet rs, String columnName) throws SQLException {
+			return new Long(rs.getLong(columnName));
+		}
+	};
+
+	/** Extracts Floats via ResultSet.getFloat */
+	public static final TypedColumnExtractor FLOAT = new TypedColumnExtractor() {
+		public Object extractColumn(ResultSet rs, int index) throws SQLException {
+			return new Float(rs.getFloat(index));
+		}
+		public Object extractColumn(ResultSet rs, String columnName) throws SQLException {
+			return new Float(rs.getFloat(columnName));
+		}
+	};
+
+	/** Extracts BigDecimals via ResultSet.getBigDecimal */
+	public static final TypedColumnExtractor BIG_DECIMAL = new TypedColumnExtractor() {
+		public Object extractColumn(ResultSet rs, int index) throws SQLException {
+			return rs.getBigDecimal(index);
+		}
+		public Object extractColumn(ResultSet rs, String columnName) throws SQLException {
+			return rs.getBigDecimal(columnName);
+		}
+	};
+
+	/** Extracts java.sql.Dates via ResultSet.getDate */
+	public static final TypedColumnExtractor DATE = new TypedColumnExtractor() {
+		public Object extractColumn(ResultSet rs, int index) throws SQLException {
+			return rs.getDate(index);
+		}
+		public Object extractColumn(ResultSet rs, String columnName) throws SQLException {
+			return rs.getDate(columnName);
+		}
+	};
+
+	/**
+	 * Extracts Booleans, recognizing String column values of Y/y, T/t
+	 * and TRUE/true as true. Other values are returned as the driver
+	 * returns them.
+	 */
+	public static final TypedColumnExtractor BOOLEAN = new TypedColumnExtractor() {
+		public Object extractColumn(ResultSet rs, int index) throws SQLException {
+			return toBoolean(rs.getObject(index));
+		}
+		public Object extractColumn(ResultSet rs, String columnName) throws SQLException {
+			return toBoolean(rs.getObject(columnName));
+		}
+		private Object toBoolean(Object value) {
+			if (value instanceof String) {
+				String sval = ((String) value).toLowerCase();
+				return ("true".equals(sval) || "t".equals(sval) || "y".equals(sval)) ? Boolean.TRUE : Boolean.FALSE;
+			}
+			return value;
+		}
+	};
+
+	/** Returns the JDBC driver's default object via ResultSet.getObject */
+	public static final TypedColumnExtractor OBJECT = new TypedColumnExtractor() {
+		public Object extractColumn(ResultSet rs, int index) throws SQLException {
+			return rs.getObject(index);
+		}
+		public Object extractColumn(ResultSet rs, String columnName) throws SQLException {
+			return rs.getObject(columnName);
+		}
+	};
+
+	/** Map from required type to TypedColumnExtractor */
+	private static final Map extractors = new HashMap();
+
+	static {
+		extractors.put(Integer.class, INTEGER);
+		extractors.put(int.class, INTEGER);
+		extractors.put(Long.class, LONG);
+		extractors.put(long.class, LONG);
+		extractors.put(Float.class, FLOAT);
+		extractors.put(float.class, FLOAT);
+		extractors.put(BigDecimal.class, BIG_DECIMAL);
+		extractors.put(java.util.Date.class, DATE);
+		extractors.put(java.sql.Date.class, DATE);
+		extractors.put(Boolean.class, BOOLEAN);
+		extractors.put(boolean.class, BOOLEAN);
+	}
+
+	/**
+	 * Return the extractor for the given required type.
+	 * Types without specific extractor use OBJECT.
+	 * @param requiredType class of the objects to extract
+	 * @return the extractor (never null)
+	 */
+	public static TypedColumnExtractor forType(Class requiredType) {
+		TypedColumnExtractor extractor = (TypedColumnExtractor) extractors.get(requiredType);
+		return (extractor != null ? extractor : OBJECT);
+	}
+
+	/**
+	 * Extract the given column from the current row of the given ResultSet.
+	 * @param rs ResultSet to extract the column value from
+	 * @param index index (from 1) of the column
+	 * @throws SQLException if there is any problem getting the column value
+	 */
+	public abstract Object extractColumn(ResultSet rs, int index) throws SQLException;
+
+	/**
+	 * Extract the given column from the current row of the given ResultSet.
+	 * @param rs ResultSet to extract the column value from
+	 * @param columnName name of the column
+	 * @throws SQLException if there is any problem getting the column value
+	 */
+	public abstract Object extractColumn(ResultSet rs, String columnName) throws SQLException;
+
+}
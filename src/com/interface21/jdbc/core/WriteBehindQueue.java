@@ -0,0 +1,148 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.interface21.dao.DataAccessException;
+import com.interface21.jdbc.datasource.DataSourceUtils;
+import com.interface21.transaction.support.TransactionSynchronizationAdapter;
+import com.interface21.transaction.support.TransactionSynchronizationManager;
+import com.interface21.util.ThreadObjectManager;
+
+/**
+ * Queue of JDBC updates whose execution is deferred until the end of the
+ * current transaction, for JdbcTemplate's write-behind mode. There is at most
+ * one queue per transactional connection, i.e. per DataSource and transaction:
+ * a suspended transaction keeps its own queue.
+ *
+ * <p>The queue gets flushed right before transaction commit, via transaction
+ * synchronization, and by any JdbcTemplate or StoredProcedure operation on the
+ * same DataSource that executes right away, e.g. a query that might read the
+ * updated rows. Consecutive updates with the same SQL are executed as one JDBC
+ * batch; updates are never reordered. On rollback, queued updates are discarded.
+ *
+ * <p>Note: Data access code that bypasses JdbcTemplate, like Hibernate, does
+ * not see queued updates, unless flush is called explicitly before.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see JdbcTemplate#setWriteBehindUpdates
+ * @see com.interface21.transaction.support.TransactionPhaseSynchronization#beforeCommit
+ */
+public class WriteBehindQueue extends TransactionSynchronizationAdapter {
+
+	private static final Log logger = LogFactory.getLog(WriteBehindQueue.class);
+
+	/**
+	 * Per-thread mappings: ConnectionHolder -> WriteBehindQueue
+	 */
+	private static final ThreadObjectManager threadObjectManager = new ThreadObjectManager("JDBC write-behind queues");
+
+	private static final int[] NO_UPDATE_COUNTS = new int[0];
+
+	/**
+	 * Queue the given update for execution at the end of the current
+	 * transaction, if there is a transaction with synchronization for the
+	 * template's DataSource.
+	 * @param jdbcTemplate the template to execute the update with on flush
+	 * @param psc the update, which needs to be a PreparedStatementCreator
+	 * returning its SQL and implementing PreparedStatementSetter
+	 * @return whether the update has been queued; else it has to be executed
+	 * right away
+	 */
+	static boolean enqueue(JdbcTemplate jdbcTemplate, PreparedStatementCreator psc) {
+		Object connectionHolder = DataSourceUtils.getThreadObjectManager().getThreadObject(jdbcTemplate.getDataSource());
+		if (connectionHolder == null || !TransactionSynchronizationManager.isActive()) {
+			return false;
+		}
+		WriteBehindQueue queue = (WriteBehindQueue) threadObjectManager.getThreadObject(connectionHolder);
+		if (queue == null) {
+			queue = new WriteBehindQueue(jdbcTemplate, connectionHolder);
+			threadObjectManager.bindThreadObject(connectionHolder, queue);
+			TransactionSynchronizationManager.register(queue);
+		}
+		queue.updates.add(psc);
+		return true;
+	}
+
+	/**
+	 * Execute the updates queued for the given DataSource in the current thread.
+	 * Called by JdbcTemplate before executing any statement right away.
+	 * @param ds the DataSource to flush the updates for
+	 * @return the number of rows affected by each update, in the order
+	 * in which they have been queued (empty if none queued)
+	 * @throws DataAccessException if there is any problem issuing the updates
+	 */
+	public static int[] flush(DataSource ds) throws DataAccessException {
+		WriteBehindQueue queue = getQueue(ds);
+		return (queue != null ? queue.flush() : NO_UPDATE_COUNTS);
+	}
+
+	/**
+	 * Return the number of updates currently queued for the given
+	 * DataSource in the current thread.
+	 */
+	public static int getQueuedUpdateCount(DataSource ds) {
+		WriteBehindQueue queue = getQueue(ds);
+		return (queue != null ? queue.updates.size() : 0);
+	}
+
+	/**
+	 * Return the queue for the current transaction of the given DataSource, if any.
+	 */
+	private static WriteBehindQueue getQueue(DataSource ds) {
+		Object connectionHolder = DataSourceUtils.getThreadObjectManager().getThreadObject(ds);
+		return (connectionHolder != null ? (WriteBehindQueue) threadObjectManager.getThreadObject(connectionHolder) : null);
+	}
+
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final Object connectionHolder;
+
+	private final List updates = new ArrayList();
+
+	private WriteBehindQueue(JdbcTemplate jdbcTemplate, Object connectionHolder) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.connectionHolder = connectionHolder;
+	}
+
+	/**
+	 * Execute all queued updates as batches, emptying the queue before,
+	 * so that the execution does not trigger a nested flush.
+	 */
+	private int[] flush() throws DataAccessException {
+		if (this.updates.isEmpty()) {
+			return NO_UPDATE_COUNTS;
+		}
+		PreparedStatementCreator[] pscs = (PreparedStatementCreator[])
+		    this.updates.toArray(new PreparedStatementCreator[this.updates.size()]);
+		this.updates.clear();
+		if (logger.isDebugEnabled())
+			logger.debug("Flushing " + pscs.length + " write-behind updates");
+		return this.jdbcTemplate.update(pscs);
+	}
+
+	public void beforeCommit() throws DataAccessException {
+		flush();
+	}
+
+	public void afterCompletion(int status) {
+		threadObjectManager.removeThreadObject(this.connectionHolder);
+		if (!this.updates.isEmpty()) {
+			logger.debug("Discarding " + this.updates.size() + " write-behind updates after rollback");
+			this.updates.clear();
+		}
+	}
+
+}
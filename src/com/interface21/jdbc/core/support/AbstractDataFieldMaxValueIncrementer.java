@@ -210,13 +210,13 @@ public abstract class AbstractDataFieldMaxValueIncrementer implements DataFieldM
 	 * @see com.interface21.jdbc.core.DataFieldMaxValueIncrementer#nextValue(java.lang.Class)
 	 */
 	public final Object nextValue(Class keyClass) throws DataAccessException {
-		if (int.class.getName().equals(keyClass.getName()) || Integer.class.getName().equals(keyClass.getName()))
+		if (keyClass == int.class || keyClass == Integer.class)
 			return new Integer(incrementIntValue());
-		else if (long.class.getName().equals(keyClass.getName()) || Long.class.getName().equals(keyClass.getName()))
+		else if (keyClass == long.class || keyClass == Long.class)
 			return new Long(incrementLongValue());
-		else if (double.class.getName().equals(keyClass.getName()) || Double.class.getName().equals(keyClass.getName()))
+		else if (keyClass == double.class || keyClass == Double.class)
 			return new Double(incrementDoubleValue());
-		else if (String.class.getName().equals(keyClass.getName()))
+		else if (keyClass == String.class)
 			return incrementStringValue();
 		else
 			throw new IllegalArgumentException("Invalid key class");
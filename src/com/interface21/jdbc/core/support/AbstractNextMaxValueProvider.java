@@ -2,27 +2,70 @@ package com.interface21.jdbc.core.support;
 
 import java.sql.Types;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import com.interface21.core.InternalErrorException;
+import com.interface21.dao.DataAccessException;
+import com.interface21.dao.DataAccessResourceFailureException;
 import com.interface21.jdbc.object.SqlFunction;
 import com.interface21.jdbc.util.JdbcUtils;
 
 /**
- * Abstract implementation of Classes NextMaxValueProvider used as 
+ * Abstract implementation of Classes NextMaxValueProvider used as
  * inner Class by several NextMaxValueProvider classes.
- * It translates the key in different types: long, int, double and String. 
- * Subclasses should provide implementations of protected abstract method getNextKey(int).
+ * It translates the key in different types: long, int, double and String.
+ *
+ * <p>Keys are served from blocks that subclasses reserve with a fixed number
+ * of statements per block rather than per key, via the reserveBlock template
+ * method.
+ * Handing out a key from the current block only takes a short critical
+ * section that never spans database access: a thread that finds the block
+ * exhausted reserves the next one outside of the lock, while other threads
+ * wait for it instead of hitting the database as well.
+ *
+ * <p>If a prefetch threshold is set, the next block is reserved in a
+ * background thread as soon as the current block runs down to that number of
+ * remaining keys, so that callers normally never wait for the database.
+ * Note that the background thread does not participate in any transaction
+ * of the calling thread.
+ *
  * @author <a href="mailto:jp.pawlak@tiscali.fr">Jean-Pierre Pawlak</a>
  * @author <a href="mailto:isabelle@meta-logix.com">Isabelle Muszynski</a>
  * @version $Id$
+ * @see #reserveBlock
+ * @see #setPrefetchThreshold
  */
 public abstract class AbstractNextMaxValueProvider {
 
+	private final Log providerLogger = LogFactory.getLog(AbstractNextMaxValueProvider.class);
+
 	/** Should the string result pre pre-pended with zeroes */
 	protected boolean prefixWithZero;
 
 	/** The length to which the string result should be pre-pended with zeroes */
 	protected int paddingLength;
 
+	/** Number of remaining keys at which to prefetch the next block, 0 for none */
+	private int prefetchThreshold = 0;
+
+	private final Object blockMonitor = new Object();
+
+	/** The block that keys are currently served from */
+	private KeyBlock currentBlock;
+
+	/** Index of the next key to serve from the current block */
+	private int nextIndex;
+
+	/** Block reserved in advance, to be served when the current one is exhausted */
+	private KeyBlock prefetchedBlock;
+
+	/** Whether a block is being reserved, by a caller or in the background */
+	private boolean reserving;
+
+	/** Incremented on reset, to discard blocks reserved for the old definition */
+	private int generation;
+
 	public int getNextIntValue() {
 		return (int)getNextKey(Types.INTEGER);
 	}
@@ -36,7 +79,7 @@ public abstract class AbstractNextMaxValueProvider {
 	}
 
 	public String getNextStringValue() {
-		String s = new Integer((int)getNextKey(Types.INTEGER)).toString();
+		String s = Integer.toString((int)getNextKey(Types.INTEGER));
 		if (prefixWithZero) {
 			int len = s.length();
 			if (len < paddingLength + 1) {
@@ -58,14 +101,140 @@ public abstract class AbstractNextMaxValueProvider {
 		this.prefixWithZero = prefixWithZero;
 		this.paddingLength = length;
 	}
-	
+
+	/**
+	 * Set the number of remaining keys in the current block at which the next
+	 * block gets reserved in a background thread. Default is 0, reserving
+	 * blocks on demand only.
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.prefetchThreshold = prefetchThreshold;
+	}
+
+	/**
+	 * Return the number of remaining keys at which the next block gets prefetched.
+	 */
+	public int getPrefetchThreshold() {
+		return prefetchThreshold;
+	}
+
 	/**
-	 * Give the key to use as a long.
+	 * Give the key to use as a long, served from the current block.
+	 * Reserves a new block via reserveBlock if necessary.
 	 * @param type The Sql type of the key in the database.
 	 * @return The key to use as a long. It will eventually be converted later
 	 * in another format by the public concrete methods of this class.
 	 */
-	abstract protected long getNextKey(int type);
+	protected long getNextKey(int type) throws DataAccessException {
+		while (true) {
+			int reservingGeneration;
+			synchronized (this.blockMonitor) {
+				while (true) {
+					if (this.currentBlock != null && this.nextIndex < this.currentBlock.size()) {
+						long key = this.currentBlock.getKey(this.nextIndex++);
+						if (this.prefetchThreshold > 0 && !this.reserving && this.prefetchedBlock == null &&
+								this.currentBlock.size() - this.nextIndex <= this.prefetchThreshold) {
+							startPrefetch();
+						}
+						return key;
+					}
+					if (this.prefetchedBlock != null) {
+						this.currentBlock = this.prefetchedBlock;
+						this.prefetchedBlock = null;
+						this.nextIndex = 0;
+					}
+					else if (this.reserving) {
+						try {
+							this.blockMonitor.wait();
+						}
+						catch (InterruptedException ex) {
+							Thread.currentThread().interrupt();
+							throw new DataAccessResourceFailureException("Interrupted while waiting for key block", ex);
+						}
+					}
+					else {
+						break;
+					}
+				}
+				this.reserving = true;
+				reservingGeneration = this.generation;
+			}
+			// reserve the next block outside of the lock
+			KeyBlock block = null;
+			try {
+				block = reserveBlock();
+			}
+			finally {
+				blockReserved(block, reservingGeneration);
+			}
+		}
+	}
+
+	/**
+	 * Reserve the next block in a background thread.
+	 * To be called with the block monitor held.
+	 */
+	private void startPrefetch() {
+		this.reserving = true;
+		final int reservingGeneration = this.generation;
+		Thread prefetcher = new Thread() {
+			public void run() {
+				KeyBlock block = null;
+				try {
+					block = reserveBlock();
+				}
+				catch (RuntimeException ex) {
+					// callers will reserve the block themselves and see the exception
+					providerLogger.warn("Could not prefetch key block", ex);
+				}
+				finally {
+					blockReserved(block, reservingGeneration);
+				}
+			}
+		};
+		prefetcher.setDaemon(true);
+		prefetcher.start();
+	}
+
+	/**
+	 * Make a reserved block available for serving, and wake up waiting callers.
+	 * @param block the reserved block, or null if the reservation failed
+	 * @param reservingGeneration the generation that the block was reserved for
+	 */
+	private void blockReserved(KeyBlock block, int reservingGeneration) {
+		synchronized (this.blockMonitor) {
+			this.reserving = false;
+			if (block != null && reservingGeneration == this.generation) {
+				if (providerLogger.isDebugEnabled())
+					providerLogger.debug("Reserved block of " + block.size() + " keys starting with " + block.getKey(0));
+				this.prefetchedBlock = block;
+			}
+			this.blockMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Discard the current and any prefetched block, for example after the
+	 * incrementer definition changed. Blocks that are being reserved at the
+	 * time will be discarded too.
+	 */
+	protected void reset() {
+		synchronized (this.blockMonitor) {
+			this.generation++;
+			this.currentBlock = null;
+			this.prefetchedBlock = null;
+			this.nextIndex = 0;
+		}
+	}
+
+	/**
+	 * Reserve the next block of keys, with as few statements as possible.
+	 * Can be called by a background thread, concurrently with callers of getNextKey
+	 * that are served from the current block, but not concurrently with itself.
+	 * @return the reserved block (must contain at least one key)
+	 * @throws DataAccessException if the block could not be reserved
+	 */
+	protected abstract KeyBlock reserveBlock() throws DataAccessException;
 
 	/**
 	 * @param sqlf	The compiled SqlFunction
@@ -94,7 +263,52 @@ public abstract class AbstractNextMaxValueProvider {
 			default:
 				throw new InternalErrorException("Unhandled SQL type: " + type);
 		}
-		return fLong;	
+		return fLong;
+	}
+
+
+	/**
+	 * Block of reserved keys: either a contiguous range,
+	 * or the individual keys that the database returned.
+	 */
+	protected static class KeyBlock {
+
+		private final long first;
+
+		private final int size;
+
+		private final long[] keys;
+
+		/**
+		 * Create a block for the contiguous range of keys
+		 * from first to first + size - 1.
+		 */
+		public KeyBlock(long first, int size) {
+			if (size < 1)
+				throw new InvalidMaxValueIncrementerApiUsageException("Key block must contain at least one key");
+			this.first = first;
+			this.size = size;
+			this.keys = null;
+		}
+
+		/**
+		 * Create a block for the given keys, to be served in the given order.
+		 */
+		public KeyBlock(long[] keys) {
+			if (keys.length < 1)
+				throw new InvalidMaxValueIncrementerApiUsageException("Key block must contain at least one key");
+			this.first = keys[0];
+			this.size = keys.length;
+			this.keys = keys;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public long getKey(int index) {
+			return (this.keys != null ? this.keys[index] : this.first + index);
+		}
 	}
 
 }
@@ -35,6 +35,19 @@ import com.interface21.jdbc.datasource.DataSourceUtils;
  * is rolled back, the unused values will never be served. The maximum hole size in
  * numbering is consequently the value of cacheSize.
  *
+ * <p>Each block of cacheSize keys is reserved with three statements: a query
+ * for the current maximum value, an insert of the block's maximum value, and
+ * a delete of the older values, instead of an insert and a query per key.
+ * Setting a prefetchThreshold reserves the next block in the background
+ * before the current one runs out.
+ *
+ * <p>Reading the maximum and inserting the new one is not atomic: if a
+ * concurrent process reserves the same block first, the insert violates
+ * the identity column, and the reservation is retried with the new maximum
+ * value. Retries continue as long as concurrent reservations advance the
+ * maximum; if it does not advance, the reservation fails after
+ * MAX_RESERVATION_ATTEMPTS attempts.
+ *
  * @author Isabelle Muszynski
  * @author Jean-Pierre Pawlak
  * @author Thomas Risberg
@@ -43,9 +56,13 @@ import com.interface21.jdbc.datasource.DataSourceUtils;
 
 public class HsqlMaxValueIncrementer extends AbstractDataFieldMaxValueIncrementer {
 
-	protected final Log logger = LogFactory.getLog(getClass());
+	/** Number of attempts to reserve a block while the maximum value does not advance */
+	public static final int MAX_RESERVATION_ATTEMPTS = 5;
 
-	private long[] valueCache = null;
+	/** HSQL error code for a violation of a unique index */
+	private static final int HSQL_UNIQUE_VIOLATION_CODE = -104;
+
+	protected final Log logger = LogFactory.getLog(getClass());
 
 	private NextMaxValueProvider nextMaxValueProvider;
 
@@ -115,6 +132,14 @@ public class HsqlMaxValueIncrementer extends AbstractDataFieldMaxValueIncremente
 		this.nextMaxValueProvider.setPrefixWithZero(prefixWithZero, length);
 	}
 
+	/**
+	 * Set the number of remaining cached keys at which the next block of keys
+	 * gets reserved in a background thread. Default is 0, for no prefetching.
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.nextMaxValueProvider.setPrefetchThreshold(prefetchThreshold);
+	}
+
 	/**
 	 * @see com.interface21.jdbc.core.support.AbstractDataFieldMaxValueIncrementer#incrementIntValue()
 	 */
@@ -148,90 +173,116 @@ public class HsqlMaxValueIncrementer extends AbstractDataFieldMaxValueIncremente
 	// job of getting the sequence.nextVal value
 	private class NextMaxValueProvider extends AbstractNextMaxValueProvider {
 
-		/** The Sql string for updating the sequence value */
-		private String insertSql;
+		/** The Sql string for retrieving the current sequence value */
+		private String maxSql;
 
-		/** The Sql string for retrieving the new sequence value */
-		private String valueSql;
+		/** The Sql string prefix for inserting a new sequence value */
+		private String insertSql;
 
-		/** The Sql string for removing old sequence values */
+		/** The Sql string prefix for removing old sequence values */
 		private String deleteSql;
 
-		/** The next id to serve */
-		private int nextValueIx = -1;
+		/** The number of keys to reserve per block */
+		private int blockSize;
 
-		synchronized protected long getNextKey(int type) throws DataAccessException {
+		protected long getNextKey(int type) throws DataAccessException {
 			if (isDirty()) {
 				initPrepare();
 			}
-			if (nextValueIx < 0 || nextValueIx >= getCacheSize()) {
-				/*
-				* Need to use straight JDBC code because we need to make sure that the insert and select
-				* are performed on the same connection (otherwise we can't be sure that last_insert_id()
-				* returned the correct value)
-				*/
-				Connection con = null;
-				Statement st = null;
-				ResultSet rs = null;
-				try {
-					con = DataSourceUtils.getConnection(getDataSource());
-					st = con.createStatement();
-					valueCache = new long[getCacheSize()];
-					nextValueIx = 0;
-					for (int i = 0; i < getCacheSize(); i++) {
-						st.executeUpdate(insertSql);
-						rs = st.executeQuery(valueSql);
-						if (rs.next()) {
-							valueCache[i] = rs.getLong(1);
+			return super.getNextKey(type);
+		}
+
+		/**
+		 * Reserves the next cacheSize keys by inserting the current maximum value
+		 * plus cacheSize into the sequence table, rather than inserting one row
+		 * per key. The identity column rejects a concurrent reservation of the
+		 * same block, in which case the reservation is retried with the new
+		 * maximum value.
+		 */
+		protected KeyBlock reserveBlock() throws DataAccessException {
+			Connection con = null;
+			Statement st = null;
+			ResultSet rs = null;
+			try {
+				con = DataSourceUtils.getConnection(getDataSource());
+				st = con.createStatement();
+				long previousMax = -1;
+				int attemptsWithoutProgress = 0;
+				while (true) {
+					rs = st.executeQuery(maxSql);
+					if (!rs.next())
+						throw new InternalErrorException("Could not determine current value of sequence table " + getIncrementerName());
+					long currentMax = rs.getLong(1);
+					rs.close();
+					rs = null;
+					// only count attempts that did not see a concurrent reservation succeed
+					attemptsWithoutProgress = (currentMax == previousMax ? attemptsWithoutProgress + 1 : 1);
+					previousMax = currentMax;
+					long maxValue = currentMax + blockSize;
+					try {
+						st.executeUpdate(insertSql + maxValue + ")");
+					}
+					catch (SQLException ex) {
+						if (isDuplicateKey(ex) && attemptsWithoutProgress < MAX_RESERVATION_ATTEMPTS) {
+							if (logger.isDebugEnabled())
+								logger.debug("Sequence values up to " + maxValue + " reserved concurrently - retrying");
+							continue;
 						}
-						else
-							throw new InternalErrorException("last_insert_id() failed after executing an update");
+						throw ex;
 					}
-					long maxValue = valueCache[(valueCache.length - 1)];
 					st.executeUpdate(deleteSql + maxValue);
-					logger.info("Delete SQL is : " + deleteSql + maxValue);
+					if (logger.isInfoEnabled())
+						logger.info("Reserved sequence values up to " + maxValue);
+					return new KeyBlock(maxValue - blockSize + 1, blockSize);
 				}
-				catch (SQLException ex) {
-					throw new DataAccessResourceFailureException("Could not obtain last_insert_id", ex);
+			}
+			catch (SQLException ex) {
+				throw new DataAccessResourceFailureException("Could not reserve sequence values", ex);
+			}
+			finally {
+				if (null != rs) {
+					try {
+						rs.close();
+					}
+					catch (SQLException e) {
+					}
 				}
-				finally {
-					if (null != rs) {
-						try {
-							rs.close();
-						}
-						catch (SQLException e) {
-						}
+				if (null != st) {
+					try {
+						st.close();
 					}
-					if (null != st) {
-						try {
-							st.close();
-						}
-						catch (SQLException e) {
-						}
-						DataSourceUtils.closeConnectionIfNecessary(con, getDataSource());
+					catch (SQLException e) {
 					}
 				}
+				DataSourceUtils.closeConnectionIfNecessary(con, getDataSource());
 			}
-			if (logger.isInfoEnabled())
-				logger.info("Next sequence value is : " + valueCache[nextValueIx]);
-			return valueCache[nextValueIx++];
 		}
 
-		private void initPrepare() throws InvalidMaxValueIncrementerApiUsageException {
+		/**
+		 * Return whether the given exception indicates that the inserted
+		 * value already exists, i.e. has been reserved concurrently.
+		 */
+		private boolean isDuplicateKey(SQLException ex) {
+			String sqlState = ex.getSQLState();
+			return ((sqlState != null && sqlState.startsWith("23")) || ex.getErrorCode() == HSQL_UNIQUE_VIOLATION_CODE);
+		}
+
+		private synchronized void initPrepare() throws InvalidMaxValueIncrementerApiUsageException {
+			if (!isDirty())
+				return;
 			afterPropertiesSet();
 			if (getIncrementerName() == null)
 				throw new InvalidMaxValueIncrementerApiUsageException("IncrementerName property must be set on " + getClass().getDeclaringClass().getName());
 			if (getColumnName() == null)
 				throw new InvalidMaxValueIncrementerApiUsageException("ColumnName property must be set on " + getClass().getDeclaringClass().getName());
+			maxSql = "select max(" + getColumnName() + ") from " + getIncrementerName();
 			StringBuffer buf = new StringBuffer();
 			buf.append("insert into ");
 			buf.append(getIncrementerName());
-			buf.append(" values(null)");
+			buf.append(" values(");
 			insertSql = buf.toString();
 			if (logger.isInfoEnabled())
 				logger.info("insertSql = " + insertSql);
-			valueSql = "select max(identity()) from " + getIncrementerName();
-			nextValueIx = -1;
 			buf = new StringBuffer();
 			buf.append("delete from ");
 			buf.append(getIncrementerName());
@@ -239,6 +290,8 @@ public class HsqlMaxValueIncrementer extends AbstractDataFieldMaxValueIncremente
 			buf.append(getColumnName());
 			buf.append(" < ");
 			deleteSql = buf.toString();
+			blockSize = getCacheSize();
+			reset();
 			setDirty(false);
 		}
 	}
@@ -37,6 +37,10 @@ import com.interface21.jdbc.datasource.DataSourceUtils;
  * is rolled back, the unused values will never be served. The maximum hole size in
  * numbering is consequently the value of cacheSize.
  *
+ * <p>Each block of cacheSize keys is reserved with a single update. Setting a
+ * prefetchThreshold reserves the next block in the background before the
+ * current one runs out.
+ *
  * @author Isabelle Muszynski
  * @author Jean-Pierre Pawlak
  * @author Thomas Risberg
@@ -115,6 +119,14 @@ public class MySQLMaxValueIncrementer extends AbstractDataFieldMaxValueIncrement
 		this.nextMaxValueProvider.setPrefixWithZero(prefixWithZero, length);
 	}
 
+	/**
+	 * Set the number of remaining cached keys at which the next block of keys
+	 * gets reserved in a background thread. Default is 0, for no prefetching.
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.nextMaxValueProvider.setPrefetchThreshold(prefetchThreshold);
+	}
+
 	/**
 	 * @see com.interface21.jdbc.core.support.AbstractDataFieldMaxValueIncrementer#incrementIntValue()
 	 */
@@ -153,71 +165,68 @@ public class MySQLMaxValueIncrementer extends AbstractDataFieldMaxValueIncrement
 		/** The Sql string for retrieving the new sequence value */
 		private String updateSql = "select last_insert_id()";
 
-		/** The next id to serve */
-		private long nextId = 0;
-
-		/** The max id to serve */
-		private long maxId = 0;
+		/** The number of keys that the insert Sql reserves */
+		private int blockSize;
 
-		synchronized protected long getNextKey(int type) throws DataAccessException {
+		protected long getNextKey(int type) throws DataAccessException {
 			if (isDirty()) {
 				initPrepare();
 			}
-			if (maxId == nextId) {
-				/*
-				* Need to use straight JDBC code because we need to make sure that the insert and select
-				* are performed on the same connection (otherwise we can't be sure that last_insert_id()
-				* returned the correct value)
-				*/
-				Connection con = null;
-				Statement st = null;
-				ResultSet rs = null;
-				try {
-					con = DataSourceUtils.getConnection(getDataSource());
-					st = con.createStatement();
-					// Increment the sequence column
-					st.executeUpdate(insertSql);
-					// Retrieve the new max of the sequence column
-					rs = st.executeQuery(updateSql);
-					if (rs.next()) {
-						maxId = rs.getLong(1);
-						if (logger.isInfoEnabled())
-							logger.info("new maxId is : " + maxId);
+			return super.getNextKey(type);
+		}
+
+		/**
+		 * Reserves the next cacheSize keys by advancing the sequence column by
+		 * cacheSize in a single update, and reading back its new value.
+		 */
+		protected KeyBlock reserveBlock() throws DataAccessException {
+			/*
+			* Need to use straight JDBC code because we need to make sure that the insert and select
+			* are performed on the same connection (otherwise we can't be sure that last_insert_id()
+			* returned the correct value)
+			*/
+			Connection con = null;
+			Statement st = null;
+			ResultSet rs = null;
+			try {
+				con = DataSourceUtils.getConnection(getDataSource());
+				st = con.createStatement();
+				// Increment the sequence column
+				st.executeUpdate(insertSql);
+				// Retrieve the new max of the sequence column
+				rs = st.executeQuery(updateSql);
+				if (!rs.next())
+					throw new InternalErrorException("last_insert_id() failed after executing an update");
+				long maxId = rs.getLong(1);
+				if (logger.isInfoEnabled())
+					logger.info("new maxId is : " + maxId);
+				return new KeyBlock(maxId - blockSize + 1, blockSize);
+			}
+			catch (SQLException ex) {
+				throw new DataAccessResourceFailureException("Could not obtain last_insert_id", ex);
+			}
+			finally {
+				if (null != rs) {
+					try {
+						rs.close();
+					}
+					catch (SQLException e) {
 					}
-					else
-						throw new InternalErrorException("last_insert_id() failed after executing an update");
-					nextId = maxId - getCacheSize();
-					nextId++;
-					if (logger.isInfoEnabled())
-						logger.info("nextId is : " + nextId);
-				}
-				catch (SQLException ex) {
-					throw new DataAccessResourceFailureException("Could not obtain last_insert_id", ex);
 				}
-				finally {
-					if (null != rs) {
-						try {
-							rs.close();
-						}
-						catch (SQLException e) {
-						}
+				if (null != st) {
+					try {
+						st.close();
 					}
-					if (null != st) {
-						try {
-							st.close();
-						}
-						catch (SQLException e) {
-						}
-						DataSourceUtils.closeConnectionIfNecessary(con, getDataSource());
+					catch (SQLException e) {
 					}
 				}
+				DataSourceUtils.closeConnectionIfNecessary(con, getDataSource());
 			}
-			else
-				nextId++;
-			return nextId;
 		}
 
-		private void initPrepare() throws InvalidMaxValueIncrementerApiUsageException {
+		private synchronized void initPrepare() throws InvalidMaxValueIncrementerApiUsageException {
+			if (!isDirty())
+				return;
 			afterPropertiesSet();
 			if (getIncrementerName() == null)
 				throw new InvalidMaxValueIncrementerApiUsageException("IncrementerName property must be set on " + getClass().getDeclaringClass().getName());
@@ -234,8 +243,10 @@ public class MySQLMaxValueIncrementer extends AbstractDataFieldMaxValueIncrement
 			buf.append(getCacheSize());
 			buf.append(")");
 			insertSql = buf.toString();
+			blockSize = getCacheSize();
 			if (logger.isInfoEnabled())
 				logger.info("insertSql = " + insertSql);
+			reset();
 			setDirty(false);
 		}
 	}
@@ -1,17 +1,27 @@
 package com.interface21.jdbc.core.support;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
 import javax.sql.DataSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.interface21.core.InternalErrorException;
 import com.interface21.dao.DataAccessException;
-import com.interface21.jdbc.object.SqlFunction;
+import com.interface21.dao.DataAccessResourceFailureException;
+import com.interface21.jdbc.datasource.DataSourceUtils;
 
 /**
  * Class to retrieve the next value of a given Oracle SEQUENCE 
  * If the cacheSize is set then we will retrive that number of values from sequence and
-*  then serve the intermediate values without querying the database
+*  then serve the intermediate values without querying the database.
+ * The values of a block are retrieved with a single query, selecting NEXTVAL
+ * once per row of ALL_OBJECTS up to cacheSize rows. Setting a prefetchThreshold
+ * retrieves the next block in the background before the current one runs out.
  * @author Dmitriy Kopylenko
  * @author Isabelle Muszynski
  * @author Jean-Pierre Pawlak
@@ -23,8 +33,6 @@ public class OracleSequenceMaxValueIncrementer
 
 	protected final Log logger = LogFactory.getLog(getClass());
 
-	private long[] valueCache = null;
-
     private NextMaxValueProvider nextMaxValueProvider;
 
 	//-----------------------------------------------------------------
@@ -93,6 +101,14 @@ public class OracleSequenceMaxValueIncrementer
 		this.nextMaxValueProvider.setPrefixWithZero(prefixWithZero, length);
 	}
 
+	/**
+	 * Set the number of remaining cached keys at which the next block of keys
+	 * gets reserved in a background thread. Default is 0, for no prefetching.
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.nextMaxValueProvider.setPrefetchThreshold(prefetchThreshold);
+	}
+
 	/**
 	 * @see com.interface21.jdbc.core.support.AbstractDataFieldMaxValueIncrementer#incrementIntValue()
 	 */
@@ -125,33 +141,81 @@ public class OracleSequenceMaxValueIncrementer
 	// job of getting the sequence.nextVal value
 	private class NextMaxValueProvider extends AbstractNextMaxValueProvider {
 
-		/** The next id to serve */
-		private int nextValueIx = -1;
+		/** The Sql string for retrieving a block of sequence values */
+		private String blockSql;
+
+		/** The number of keys to reserve per block */
+		private int blockSize;
 
 		protected long getNextKey(int type) throws DataAccessException {
-			if (isDirty()) { initPrepare(); }
-			if(nextValueIx < 0 || nextValueIx >= getCacheSize()) {
-				SqlFunction sqlf = new SqlFunction(getDataSource(), "SELECT " + getIncrementerName() + ".NEXTVAL FROM DUAL", type);
-				sqlf.compile();
-				valueCache = new long[getCacheSize()];
-				nextValueIx = 0;
-				for (int i = 0; i < getCacheSize(); i++) {
-					valueCache[i] = getLongValue(sqlf, type);
+			if (isDirty()) {
+				initPrepare();
+			}
+			return super.getNextKey(type);
+		}
+
+		/**
+		 * Retrieves the next cacheSize values of the sequence with a single query.
+		 */
+		protected KeyBlock reserveBlock() throws DataAccessException {
+			Connection con = null;
+			Statement st = null;
+			ResultSet rs = null;
+			try {
+				con = DataSourceUtils.getConnection(getDataSource());
+				st = con.createStatement();
+				rs = st.executeQuery(blockSql);
+				long[] keys = new long[blockSize];
+				int count = 0;
+				while (count < blockSize && rs.next()) {
+					keys[count++] = rs.getLong(1);
+				}
+				if (count == 0)
+					throw new InternalErrorException("No value returned by sequence " + getIncrementerName());
+				if (count < blockSize) {
+					// fewer rows than requested: serve what we got
+					long[] fetched = new long[count];
+					System.arraycopy(keys, 0, fetched, 0, count);
+					keys = fetched;
+				}
+				return new KeyBlock(keys);
+			}
+			catch (SQLException ex) {
+				throw new DataAccessResourceFailureException("Could not obtain values of sequence " + getIncrementerName(), ex);
+			}
+			finally {
+				if (null != rs) {
+					try {
+						rs.close();
+					}
+					catch (SQLException e) {
+					}
 				}
+				if (null != st) {
+					try {
+						st.close();
+					}
+					catch (SQLException e) {
+					}
+				}
+				DataSourceUtils.closeConnectionIfNecessary(con, getDataSource());
 			}
-			if (logger.isInfoEnabled())
-				logger.info("Next sequence value is : " + valueCache[nextValueIx]);
-			return valueCache[nextValueIx++];
 		}
-	
-		private void initPrepare() throws InvalidMaxValueIncrementerApiUsageException {
+
+		private synchronized void initPrepare() throws InvalidMaxValueIncrementerApiUsageException {
+			if (!isDirty())
+				return;
 			afterPropertiesSet();
 			if (getIncrementerName() == null)
 				throw new InvalidMaxValueIncrementerApiUsageException("IncrementerName property must be set on " + getClass().getDeclaringClass().getName());
-			nextValueIx = -1;
-			setDirty(false); 			
+			blockSize = getCacheSize();
+			if (blockSize > 1)
+				blockSql = "SELECT " + getIncrementerName() + ".NEXTVAL FROM ALL_OBJECTS WHERE ROWNUM <= " + blockSize;
+			else
+				blockSql = "SELECT " + getIncrementerName() + ".NEXTVAL FROM DUAL";
+			reset();
+			setDirty(false);
 		}
-	
 	}
 
 }
@@ -2,9 +2,12 @@ package com.interface21.jdbc.datasource;
 
 import java.sql.Connection;
 
+import com.interface21.transaction.support.ResourceHolderSupport;
+
 /**
  * Connection holder, wrapping a JDBC Connection.
- * Features rollback-only support for nested JDBC transactions.
+ * Features rollback-only support for nested JDBC transactions,
+ * and a deadline for transactions with a timeout.
  *
  * <p>DataSourceTransactionManager binds instances of this class
  * to the thread, for a given DataSource.
@@ -17,12 +20,10 @@ import java.sql.Connection;
  * @see DataSourceTransactionObject
  * @see DataSourceUtils
  */
-public class ConnectionHolder {
+public class ConnectionHolder extends ResourceHolderSupport {
 
 	private final Connection connection;
 
-	private boolean rollbackOnly;
-
 	public ConnectionHolder(Connection connection) {
 		this.connection = connection;
 	}
@@ -31,12 +32,4 @@ public class ConnectionHolder {
 		return connection;
 	}
 
-	public void setRollbackOnly() {
-		this.rollbackOnly = true;
-	}
-
-	public boolean isRollbackOnly() {
-		return rollbackOnly;
-	}
-
 }
@@ -21,7 +21,8 @@ import com.interface21.transaction.support.AbstractPlatformTransactionManager;
  * PlatformTransactionManager implementation for single data sources.
  * Binds a JDBC connection from the specified data source to the thread,
  * potentially allowing for one thread connection per data source.
- * Supports custom isolation levels but not timeouts.
+ * Supports custom isolation levels, and timeouts that get applied as
+ * JDBC statement timeouts by JdbcTemplate and the RDBMS operation objects.
  *
  * <p>Application code is required to retrieve the JDBC connection via
  * DataSourceUtils.getConnection(DataSource) instead of J2EE's standard
@@ -31,6 +32,16 @@ import com.interface21.transaction.support.AbstractPlatformTransactionManager;
  * If not used with this transaction manager, the lookup strategy
  * behaves exactly like the common one - it can thus be used in any case.
  *
+ * <p>Supports transaction suspension for PROPAGATION_REQUIRES_NEW and
+ * PROPAGATION_NOT_SUPPORTED: the current ConnectionHolder gets unbound from
+ * the thread, and a new transaction uses a separate connection, committing
+ * independently of the suspended one.
+ *
+ * <p>The connection for a new transaction is only fetched when the transaction
+ * begins, i.e. not for non-transactional execution. With a
+ * ReadWriteRoutingDataSource, read-only transactions get a connection
+ * from one of its replicas.
+ *
  * <p>This implementation can be used instead of JtaTransactionManager
  * in the single resource case, as it does not require the container to
  * support JTA. Switching between both is just a matter of configuration,
@@ -40,6 +51,7 @@ import com.interface21.transaction.support.AbstractPlatformTransactionManager;
  * @since 02.05.2003
  * @see DataSourceUtils#getConnection
  * @see SingleConnectionDataSource
+ * @see ReadWriteRoutingDataSource
  * @see com.interface21.util.ThreadObjectManager
  */
 public class DataSourceTransactionManager extends AbstractPlatformTransactionManager implements InitializingBean {
@@ -84,14 +96,13 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 	}
 
 	protected Object doGetTransaction() {
-		if (DataSourceUtils.getThreadObjectManager().hasThreadObject(this.dataSource)) {
+		ConnectionHolder holder = (ConnectionHolder) DataSourceUtils.getThreadObjectManager().getThreadObject(this.dataSource);
+		if (holder != null) {
 			// existing transaction -> use it
-			ConnectionHolder holder = (ConnectionHolder) DataSourceUtils.getThreadObjectManager().getThreadObject(this.dataSource);
 			return new DataSourceTransactionObject(holder);
 		}
-		// no existing transaction -> create new holder
-		ConnectionHolder holder = new ConnectionHolder(DataSourceUtils.getConnection(this.dataSource));
-		return new DataSourceTransactionObject(holder);
+		// no existing transaction -> fetch connection in doBegin, if a transaction gets started
+		return new DataSourceTransactionObject();
 	}
 
 	protected boolean isExistingTransaction(Object transaction) {
@@ -100,13 +111,23 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 	}
 
 	/**
-	 * This implementation sets the isolation level but ignores the timeout.
+	 * This implementation sets the isolation level and read-only flag.
+	 * A timeout gets stored as deadline in the ConnectionHolder: JdbcTemplate
+	 * and the RDBMS operation objects apply the remaining time as query
+	 * timeout to each statement, failing once the deadline has passed.
+	 * @see DataSourceUtils#applyTimeout
 	 */
 	protected void doBegin(Object transaction, TransactionDefinition definition) {
-		if (definition.getTimeout() != TransactionDefinition.TIMEOUT_DEFAULT) {
-			throw new InvalidTimeoutException("DataSourceTransactionManager does not support timeouts", definition.getTimeout());
+		if (definition.getTimeout() < TransactionDefinition.TIMEOUT_DEFAULT) {
+			throw new InvalidTimeoutException("Invalid transaction timeout", definition.getTimeout());
 		}
 		DataSourceTransactionObject txObject = (DataSourceTransactionObject) transaction;
+		if (txObject.getConnectionHolder() == null) {
+			txObject.setConnectionHolder(new ConnectionHolder(getConnectionForTransaction(definition)));
+		}
+		if (definition.getTimeout() != TransactionDefinition.TIMEOUT_DEFAULT) {
+			txObject.getConnectionHolder().setTimeoutInSeconds(definition.getTimeout());
+		}
 		Connection con = txObject.getConnectionHolder().getConnection();
 		logger.debug("Switching JDBC connection [" + con + "] to manual commit");
 		try {
@@ -129,11 +150,56 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 		DataSourceUtils.getThreadObjectManager().bindThreadObject(this.dataSource, txObject.getConnectionHolder());
 	}
 
+	/**
+	 * Fetch the connection for a new transaction with the given definition:
+	 * from a replica for read-only transactions on a ReadWriteRoutingDataSource,
+	 * else via DataSourceUtils.
+	 */
+	protected Connection getConnectionForTransaction(TransactionDefinition definition) {
+		if (definition.isReadOnly() && this.dataSource instanceof ReadWriteRoutingDataSource) {
+			try {
+				return ((ReadWriteRoutingDataSource) this.dataSource).getReadOnlyConnection();
+			}
+			catch (SQLException ex) {
+				throw new CannotGetJdbcConnectionException("Cannot get read-only connection from DataSource " + this.dataSource, ex);
+			}
+		}
+		return DataSourceUtils.getConnection(this.dataSource);
+	}
+
+	protected Object doSuspend(Object transaction) {
+		ConnectionHolder holder = (ConnectionHolder) DataSourceUtils.getThreadObjectManager().getThreadObject(this.dataSource);
+		DataSourceUtils.getThreadObjectManager().removeThreadObject(this.dataSource);
+		return holder;
+	}
+
+	protected void doResume(Object transaction, Object suspendedResources) {
+		ConnectionHolder holder = (ConnectionHolder) suspendedResources;
+		DataSourceUtils.getThreadObjectManager().bindThreadObject(this.dataSource, holder);
+	}
+
+	/**
+	 * This implementation rejects a commit if the transaction's deadline has
+	 * passed, even if no statement has noticed, or if a participating
+	 * operation has marked the ConnectionHolder rollback-only.
+	 */
+	protected void doCheckCommit(TransactionStatus status) {
+		ConnectionHolder holder = ((DataSourceTransactionObject) status.getTransaction()).getConnectionHolder();
+		if (holder.hasTimeout()) {
+			// throws TransactionTimedOutException if the deadline has passed
+			holder.getTimeToLiveInMillis();
+		}
+		if (holder.isRollbackOnly()) {
+			throw new UnexpectedRollbackException("Transaction has been marked rollback-only by a participating operation", null);
+		}
+	}
+
 	protected void doCommit(TransactionStatus status) {
 		DataSourceTransactionObject txObject = (DataSourceTransactionObject) status.getTransaction();
 		if (txObject.getConnectionHolder().isRollbackOnly()) {
-			// nested JDBC transaction demanded rollback-only
-			rollback(status);
+			// marked rollback-only by a beforeCommit callback
+			doRollback(status);
+			throw new UnexpectedRollbackException("Transaction has been marked rollback-only before commit", null);
 		}
 		else {
 			logger.debug("Committing JDBC transaction [" + txObject.getConnectionHolder().getConnection() + "]");
@@ -15,14 +15,29 @@ import com.interface21.jdbc.datasource.ConnectionHolder;
  */
 public class DataSourceTransactionObject {
 
-	private final ConnectionHolder connectionHolder;
+	private ConnectionHolder connectionHolder;
 
 	private Integer previousIsolationLevel;
 
+	/**
+	 * Create a DataSourceTransactionObject for a new transaction,
+	 * whose ConnectionHolder gets set on begin.
+	 */
+	protected DataSourceTransactionObject() {
+	}
+
+	/**
+	 * Create a DataSourceTransactionObject for the given ConnectionHolder,
+	 * typically the one of an existing transaction.
+	 */
 	protected DataSourceTransactionObject(ConnectionHolder connectionHolder) {
 		this.connectionHolder = connectionHolder;
 	}
 
+	protected void setConnectionHolder(ConnectionHolder connectionHolder) {
+		this.connectionHolder = connectionHolder;
+	}
+
 	public ConnectionHolder getConnectionHolder() {
 		return connectionHolder;
 	}
@@ -15,6 +15,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -47,7 +48,7 @@ public abstract class DataSourceUtils {
 	/**
 	 * Per-thread mappings: DataSource -> ConnectionHolder
 	 */
-	private static final ThreadObjectManager threadObjectManager = new ThreadObjectManager();
+	private static final ThreadObjectManager threadObjectManager = new ThreadObjectManager("JDBC Connections");
 
 	/**
 	 * Return the thread object manager for data sources, keeping a
@@ -138,6 +139,32 @@ public abstract class DataSourceUtils {
 		}
 	}
 
+	/**
+	 * Apply the specified timeout to the given JDBC Statement, overridden by
+	 * the remaining time of the current transaction for the DataSource if that
+	 * is shorter. Statements thus never outlive the transaction deadline.
+	 * @param stmt the JDBC Statement to apply the timeout to
+	 * @param ds DataSource that the Statement's connection came from
+	 * @param timeout the timeout to apply in seconds, or 0 for none
+	 * @throws SQLException if thrown by JDBC methods
+	 * @throws com.interface21.transaction.TransactionTimedOutException if the
+	 * transaction has already timed out; it gets marked rollback-only then
+	 * @see ConnectionHolder#getTimeToLiveInSeconds
+	 * @see java.sql.Statement#setQueryTimeout
+	 */
+	public static void applyTimeout(Statement stmt, DataSource ds, int timeout) throws SQLException {
+		ConnectionHolder holder = (ConnectionHolder) getThreadObjectManager().getThreadObject(ds);
+		if (holder != null && holder.hasTimeout()) {
+			int timeToLive = holder.getTimeToLiveInSeconds();
+			if (timeout <= 0 || timeToLive < timeout) {
+				timeout = timeToLive;
+			}
+		}
+		if (timeout > 0) {
+			stmt.setQueryTimeout(timeout);
+		}
+	}
+
 	/**
 	 * Close the given connection if necessary, i.e. if it is not bound to the thread
 	 * and it is not created by a SmartDataSource returning shouldClose=false.
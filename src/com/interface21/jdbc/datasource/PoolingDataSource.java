@@ -0,0 +1,921 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.interface21.beans.factory.DisposableBean;
+import com.interface21.beans.factory.InitializingBean;
+import com.interface21.util.ResponseTimeHistogram;
+
+/**
+ * Connection pool implementation of SmartDataSource, configured via the same
+ * bean properties as DriverManagerDataSource plus pool sizing settings.
+ * Useful outside of a J2EE container, where no container DataSource is available.
+ *
+ * <p>getConnection returns a handle to a pooled physical connection: calling close
+ * on the handle returns the connection to the pool. Hence shouldClose returns true,
+ * and DataSourceUtils and DataSourceTransactionManager work with this class just
+ * like with any other DataSource. Each borrow returns a new handle, so a handle
+ * that has already been closed cannot affect a subsequent user of the connection.
+ * Connections returned in manual commit mode are rolled back and reset. Read-only
+ * flag, transaction isolation and catalog changed by a borrower are restored to
+ * the values that the connection had when it was created; connections that
+ * cannot be reset are discarded. Statements that a borrower left open are closed
+ * when the handle gets closed.
+ *
+ * <p>Idle connections are reused in LIFO order, to keep as few of them warm as
+ * possible. The pool lock is only held for constant-time bookkeeping: physical
+ * connections are created, validated and closed outside of it. When the pool is
+ * exhausted, callers wait in FIFO order: a returned connection is handed directly
+ * to the longest waiting caller rather than to whichever thread arrives next.
+ *
+ * <p>If a validation query is specified, idle connections are tested with it
+ * before being handed out, and silently replaced if the test fails. If a leak
+ * detection threshold is specified, the stack trace of each borrow is captured,
+ * and connections that have been out for longer than the threshold are logged
+ * with their borrow stack whenever the pool is exhausted.
+ *
+ * <p>If a statement cache size is specified, each pooled connection keeps an LRU
+ * cache of its PreparedStatements: prepareStatement returns a cached statement for
+ * the same SQL and result set settings if available, and closing the statement
+ * returns it to the cache. This is transparent to JdbcTemplate and other code
+ * that closes its statements, and avoids re-parsing frequently executed SQL.
+ * Hit and miss counts per SQL statement are available for tuning the cache size.
+ *
+ * @version $Id$
+ * @see #setMaxSize
+ * @see #setValidationQuery
+ * @see #setLeakDetectionThreshold
+ * @see #setStatementCacheSize
+ * @see DataSourceUtils#closeConnectionIfNecessary
+ */
+public class PoolingDataSource extends DriverManagerDataSource implements InitializingBean, DisposableBean {
+
+	private int maxSize = 8;
+
+	private int minSize = 0;
+
+	private int maxIdle = 8;
+
+	private long maxWait = -1;
+
+	private String validationQuery;
+
+	private long leakDetectionThreshold = 0;
+
+	private int statementCacheSize = 0;
+
+	/** Monitor for all pool state below */
+	private final Object poolMonitor = new Object();
+
+	/** Idle PooledConnections, most recently returned first */
+	private final LinkedList idle = new LinkedList();
+
+	/** Borrowed PooledConnections */
+	private final Set active = new HashSet();
+
+	/** Waiting callers, in arrival order */
+	private final LinkedList waiters = new LinkedList();
+
+	/** Number of physical connections, including those being created */
+	private int totalCount;
+
+	private int peakActiveCount;
+
+	private int borrowCount;
+
+	private int waitCount;
+
+	private int timeoutCount;
+
+	private int validationFailureCount;
+
+	private boolean closed;
+
+	/** Histogram of the wait times of callers that found the pool exhausted */
+	private final ResponseTimeHistogram waitTimeHistogram = new ResponseTimeHistogram();
+
+	/** Map from SQL String to StatementCacheStatistics, shared by all statement caches */
+	private final Map statementCacheStatistics = new HashMap();
+
+
+	public PoolingDataSource() {
+	}
+
+	public PoolingDataSource(String driverName, String url, String user, String password)
+	    throws CannotGetJdbcConnectionException {
+		super(driverName, url, user, password);
+	}
+
+	/**
+	 * Set the maximum number of physical connections. Default is 8.
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Set the number of connections to create on initialization. Default is 0.
+	 */
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * Set the maximum number of idle connections to keep: connections
+	 * returned to a pool that already holds that many idle ones are closed.
+	 * Default is 8.
+	 */
+	public void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	/**
+	 * Set the maximum number of milliseconds to wait for a connection when the
+	 * pool is exhausted. Default is -1, meaning to wait indefinitely; 0 means to
+	 * fail immediately.
+	 */
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * Set an SQL query to validate idle connections with before handing them out,
+	 * e.g. "SELECT 1 FROM DUAL" on Oracle. Default is none.
+	 */
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	/**
+	 * Set the number of milliseconds after which a borrowed connection is
+	 * considered leaked. Capturing the borrow stack has a cost on each borrow,
+	 * so this is meant for diagnosis. Default is 0, meaning no leak detection.
+	 * @see #logSuspectedLeaks
+	 */
+	public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	public long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	/**
+	 * Set the maximum number of PreparedStatements to cache per connection.
+	 * Should be at least the number of distinct statements frequently executed.
+	 * Default is 0, meaning no statement caching.
+	 */
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	/**
+	 * Create the initial minSize connections.
+	 */
+	public void afterPropertiesSet() throws SQLException {
+		if (this.maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+		if (this.minSize > this.maxSize) {
+			throw new IllegalArgumentException("minSize must not be greater than maxSize");
+		}
+		List created = new ArrayList(this.minSize);
+		for (int i = 0; i < this.minSize; i++) {
+			created.add(createPooledConnection());
+		}
+		synchronized (this.poolMonitor) {
+			this.idle.addAll(created);
+			this.totalCount += created.size();
+		}
+		logger.info("Initialized connection pool for [" + getUrl() + "] with " + created.size() + " connections");
+	}
+
+
+	/**
+	 * Connection handles get returned to the pool on close.
+	 */
+	public boolean shouldClose(Connection conn) {
+		return true;
+	}
+
+	public Connection getConnection() throws SQLException {
+		PooledConnection pc = null;
+		boolean create = false;
+		Waiter waiter = null;
+		synchronized (this.poolMonitor) {
+			if (this.closed) {
+				throw new SQLException("Connection pool has been closed");
+			}
+			if (this.waiters.isEmpty() && !this.idle.isEmpty()) {
+				pc = (PooledConnection) this.idle.removeFirst();
+			}
+			else if (this.waiters.isEmpty() && this.totalCount < this.maxSize) {
+				this.totalCount++;
+				create = true;
+			}
+			else if (this.maxWait == 0) {
+				this.timeoutCount++;
+				throw new SQLException("Connection pool exhausted: all " + this.maxSize + " connections in use");
+			}
+			else {
+				waiter = new Waiter();
+				this.waiters.addLast(waiter);
+				this.waitCount++;
+			}
+		}
+
+		if (waiter != null) {
+			logSuspectedLeaks();
+			pc = awaitConnection(waiter);
+			create = (pc == null);
+		}
+
+		while (true) {
+			if (create) {
+				try {
+					pc = createPooledConnection();
+				}
+				catch (SQLException ex) {
+					discardSlot();
+					throw ex;
+				}
+				catch (RuntimeException ex) {
+					discardSlot();
+					throw ex;
+				}
+				break;
+			}
+			if (isValid(pc)) {
+				break;
+			}
+			// Keep the slot and replace the connection with a new one
+			closePhysicalConnection(pc);
+			create = true;
+		}
+
+		pc.borrowTime = System.currentTimeMillis();
+		pc.borrowStack = (this.leakDetectionThreshold > 0) ? new Throwable("Connection borrowed from pool") : null;
+		synchronized (this.poolMonitor) {
+			this.active.add(pc);
+			this.borrowCount++;
+			if (this.active.size() > this.peakActiveCount) {
+				this.peakActiveCount = this.active.size();
+			}
+		}
+		return pc.createHandle();
+	}
+
+	/**
+	 * Specifying a custom username and password doesn't make sense with a pool.
+	 * Returns a pooled connection if given the same username and password, though.
+	 */
+	public Connection getConnection(String username, String password) throws SQLException {
+		if (username != null && password != null && username.equals(getUsername()) && password.equals(getPassword())) {
+			return getConnection();
+		}
+		else {
+			throw new SQLException("PoolingDataSource does not support custom username and password");
+		}
+	}
+
+	/**
+	 * Wait until the given waiter is handed a connection or a slot for a new one.
+	 * @return the connection, or null if the caller may create a new one
+	 */
+	private PooledConnection awaitConnection(Waiter waiter) throws SQLException {
+		long startTime = System.currentTimeMillis();
+		long deadline = (this.maxWait > 0) ? startTime + this.maxWait : Long.MAX_VALUE;
+		synchronized (waiter) {
+			try {
+				while (!waiter.served) {
+					long timeToWait = deadline - System.currentTimeMillis();
+					if (timeToWait <= 0) {
+						break;
+					}
+					waiter.wait(this.maxWait > 0 ? timeToWait : 0);
+				}
+			}
+			catch (InterruptedException ex) {
+				// Fall through to check whether we've been served in the meantime
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this.poolMonitor) {
+			if (!waiter.served) {
+				this.waiters.remove(waiter);
+				this.timeoutCount++;
+				throw new SQLException("Timed out after " + (System.currentTimeMillis() - startTime) +
+				                       " ms waiting for pooled connection: all " + this.maxSize + " connections in use");
+			}
+			if (this.closed && waiter.connection == null && !waiter.mayCreate) {
+				throw new SQLException("Connection pool has been closed");
+			}
+		}
+		this.waitTimeHistogram.recordResponseTime(System.currentTimeMillis() - startTime);
+		return waiter.connection;
+	}
+
+	/**
+	 * Return the given connection to the pool: hand it to the longest waiting
+	 * caller, keep it idle, or close it if there are already maxIdle idle ones.
+	 */
+	private void returnConnection(PooledConnection pc) {
+		if (pc.statementCache != null) {
+			pc.statementCache.releaseAll();
+		}
+		boolean reusable = resetConnection(pc);
+		pc.borrowStack = null;
+		synchronized (this.poolMonitor) {
+			this.active.remove(pc);
+			if (reusable && !this.closed) {
+				if (!this.waiters.isEmpty()) {
+					serve((Waiter) this.waiters.removeFirst(), pc);
+					return;
+				}
+				if (this.idle.size() < this.maxIdle) {
+					this.idle.addFirst(pc);
+					return;
+				}
+			}
+		}
+		closePhysicalConnection(pc);
+		discardSlot();
+	}
+
+	/**
+	 * Release the slot of a discarded physical connection, handing it
+	 * to the longest waiting caller if there is one.
+	 */
+	private void discardSlot() {
+		synchronized (this.poolMonitor) {
+			this.totalCount--;
+			if (!this.waiters.isEmpty() && (this.closed || this.totalCount < this.maxSize)) {
+				if (!this.closed) {
+					this.totalCount++;
+				}
+				serve((Waiter) this.waiters.removeFirst(), null);
+			}
+		}
+	}
+
+	/**
+	 * Notify the given waiter. Must be called with the pool monitor held.
+	 * @param pc the connection to hand over, or null to allow the waiter
+	 * to create a new one (or to fail if the pool has been closed)
+	 */
+	private void serve(Waiter waiter, PooledConnection pc) {
+		synchronized (waiter) {
+			waiter.connection = pc;
+			waiter.mayCreate = (pc == null && !this.closed);
+			waiter.served = true;
+			waiter.notify();
+		}
+	}
+
+	/**
+	 * Reset a returned connection to auto-commit mode, rolling back pending work,
+	 * and restore its initial settings if the borrower has changed any of them.
+	 * @return whether the connection can be reused
+	 */
+	private boolean resetConnection(PooledConnection pc) {
+		Connection con = pc.connection;
+		try {
+			if (con.isClosed()) {
+				return false;
+			}
+			if (!con.getAutoCommit()) {
+				con.rollback();
+				con.setAutoCommit(true);
+			}
+			if (pc.settingsChanged) {
+				if (con.isReadOnly() != pc.initialReadOnly) {
+					con.setReadOnly(pc.initialReadOnly);
+				}
+				if (con.getTransactionIsolation() != pc.initialTransactionIsolation) {
+					con.setTransactionIsolation(pc.initialTransactionIsolation);
+				}
+				if (pc.initialCatalog != null && !pc.initialCatalog.equals(con.getCatalog())) {
+					con.setCatalog(pc.initialCatalog);
+				}
+				pc.settingsChanged = false;
+			}
+			return true;
+		}
+		catch (SQLException ex) {
+			logger.warn("Could not reset pooled JDBC connection [" + con + "] - discarding it", ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Execute the validation query, if any, on the given idle connection.
+	 */
+	private boolean isValid(PooledConnection pc) {
+		if (this.validationQuery == null) {
+			return true;
+		}
+		Statement stmt = null;
+		try {
+			stmt = pc.connection.createStatement();
+			stmt.execute(this.validationQuery);
+			return true;
+		}
+		catch (SQLException ex) {
+			synchronized (this.poolMonitor) {
+				this.validationFailureCount++;
+			}
+			logger.info("Validation query failed for pooled JDBC connection [" + pc.connection + "] - replacing it", ex);
+			return false;
+		}
+		finally {
+			if (stmt != null) {
+				try {
+					stmt.close();
+				}
+				catch (SQLException ex) {
+					logger.warn("Could not close validation statement", ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a new physical connection via the DriverManager.
+	 */
+	protected Connection createPhysicalConnection() throws SQLException {
+		if (logger.isDebugEnabled())
+			logger.debug("Creating new pooled JDBC connection: " + getUrl());
+		Connection con = getConnectionFromDriverManager(getUrl(), getUsername(), getPassword());
+		con.setAutoCommit(true);
+		return con;
+	}
+
+	/**
+	 * Create a new physical connection and record its initial settings.
+	 */
+	private PooledConnection createPooledConnection() throws SQLException {
+		Connection con = createPhysicalConnection();
+		try {
+			return new PooledConnection(con);
+		}
+		catch (SQLException ex) {
+			try {
+				con.close();
+			}
+			catch (SQLException ex2) {
+				logger.warn("Could not close new JDBC connection after failure", ex2);
+			}
+			throw ex;
+		}
+	}
+
+	private void closePhysicalConnection(PooledConnection pc) {
+		if (pc.statementCache != null) {
+			pc.statementCache.closeAll();
+		}
+		try {
+			pc.connection.close();
+		}
+		catch (SQLException ex) {
+			logger.warn("Could not close pooled JDBC connection [" + pc.connection + "]", ex);
+		}
+	}
+
+	/**
+	 * Log all connections that have been borrowed for longer than the leak detection
+	 * threshold, with the stack trace of their borrow. Called automatically when the
+	 * pool is exhausted, and on shutdown.
+	 * @return the number of suspected leaks
+	 * @see #setLeakDetectionThreshold
+	 */
+	public int logSuspectedLeaks() {
+		if (this.leakDetectionThreshold <= 0) {
+			return 0;
+		}
+		List borrowed;
+		synchronized (this.poolMonitor) {
+			borrowed = new ArrayList(this.active);
+		}
+		long now = System.currentTimeMillis();
+		int count = 0;
+		for (Iterator it = borrowed.iterator(); it.hasNext();) {
+			PooledConnection pc = (PooledConnection) it.next();
+			Throwable borrowStack = pc.borrowStack;
+			long borrowedFor = now - pc.borrowTime;
+			if (borrowStack != null && borrowedFor > this.leakDetectionThreshold) {
+				logger.warn("Possible connection leak: JDBC connection [" + pc.connection + "] has been borrowed for " +
+				            borrowedFor + " ms", borrowStack);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Close all idle connections and fail all waiting callers.
+	 * Borrowed connections get closed when they are returned.
+	 * <p>As this bean implements DisposableBean, a bean factory will
+	 * automatically invoke this on destruction of its cached singletons.
+	 */
+	public void destroy() {
+		List toClose;
+		synchronized (this.poolMonitor) {
+			this.closed = true;
+			toClose = new ArrayList(this.idle);
+			this.idle.clear();
+			this.totalCount -= toClose.size();
+			while (!this.waiters.isEmpty()) {
+				serve((Waiter) this.waiters.removeFirst(), null);
+			}
+		}
+		logSuspectedLeaks();
+		for (Iterator it = toClose.iterator(); it.hasNext();) {
+			closePhysicalConnection((PooledConnection) it.next());
+		}
+		logger.info("Closed connection pool for [" + getUrl() + "]");
+	}
+
+
+	//---------------------------------------------------------------------
+	// Pool metrics
+	//---------------------------------------------------------------------
+
+	/**
+	 * Return the number of currently borrowed connections.
+	 */
+	public int getActiveCount() {
+		synchronized (this.poolMonitor) {
+			return this.active.size();
+		}
+	}
+
+	/**
+	 * Return the number of currently idle connections.
+	 */
+	public int getIdleCount() {
+		synchronized (this.poolMonitor) {
+			return this.idle.size();
+		}
+	}
+
+	/**
+	 * Return the number of physical connections, borrowed or idle.
+	 */
+	public int getTotalCount() {
+		synchronized (this.poolMonitor) {
+			return this.totalCount;
+		}
+	}
+
+	/**
+	 * Return the highest number of simultaneously borrowed connections.
+	 */
+	public int getPeakActiveCount() {
+		synchronized (this.poolMonitor) {
+			return this.peakActiveCount;
+		}
+	}
+
+	/**
+	 * Return the number of successful getConnection calls.
+	 */
+	public int getBorrowCount() {
+		synchronized (this.poolMonitor) {
+			return this.borrowCount;
+		}
+	}
+
+	/**
+	 * Return the number of callers currently waiting for a connection.
+	 */
+	public int getWaitingCount() {
+		synchronized (this.poolMonitor) {
+			return this.waiters.size();
+		}
+	}
+
+	/**
+	 * Return the number of getConnection calls that found the pool exhausted
+	 * and had to wait.
+	 */
+	public int getWaitCount() {
+		synchronized (this.poolMonitor) {
+			return this.waitCount;
+		}
+	}
+
+	/**
+	 * Return the number of getConnection calls that failed
+	 * because the pool was exhausted.
+	 */
+	public int getTimeoutCount() {
+		synchronized (this.poolMonitor) {
+			return this.timeoutCount;
+		}
+	}
+
+	/**
+	 * Return the number of idle connections that failed validation.
+	 */
+	public int getValidationFailureCount() {
+		synchronized (this.poolMonitor) {
+			return this.validationFailureCount;
+		}
+	}
+
+	/**
+	 * Return the histogram of wait times of callers that found the pool
+	 * exhausted and were eventually served, in milliseconds.
+	 */
+	public ResponseTimeHistogram getWaitTimeHistogram() {
+		return waitTimeHistogram;
+	}
+
+	/**
+	 * Return the statement cache statistics for the given SQL String,
+	 * or null if it hasn't been prepared via a statement cache yet.
+	 * @see #setStatementCacheSize
+	 */
+	public StatementCacheStatistics getStatementCacheStatistics(String sql) {
+		synchronized (this.statementCacheStatistics) {
+			return (StatementCacheStatistics) this.statementCacheStatistics.get(sql);
+		}
+	}
+
+	/**
+	 * Return the statement cache statistics for all SQL Strings prepared
+	 * via a statement cache, sorted by descending number of misses.
+	 */
+	public StatementCacheStatistics[] getAllStatementCacheStatistics() {
+		StatementCacheStatistics[] statistics;
+		synchronized (this.statementCacheStatistics) {
+			statistics = (StatementCacheStatistics[]) this.statementCacheStatistics.values().toArray(
+			    new StatementCacheStatistics[this.statementCacheStatistics.size()]);
+		}
+		Arrays.sort(statistics, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				long misses1 = ((StatementCacheStatistics) o1).getMissCount();
+				long misses2 = ((StatementCacheStatistics) o2).getMissCount();
+				return (misses1 > misses2 ? -1 : (misses1 < misses2 ? 1 : 0));
+			}
+		});
+		return statistics;
+	}
+
+
+	/**
+	 * A physical connection managed by the pool.
+	 */
+	private class PooledConnection {
+
+		private final Connection connection;
+
+		/** Set by the borrowing thread, read by leak detection */
+		private volatile long borrowTime;
+
+		private volatile Throwable borrowStack;
+
+		/** Statement cache for this connection, or null if disabled */
+		private final PreparedStatementCache statementCache;
+
+		/** Settings when created, restored when returned */
+		private final boolean initialReadOnly;
+
+		private final int initialTransactionIsolation;
+
+		private final String initialCatalog;
+
+		/** Whether the current borrower has changed any of the initial settings */
+		private volatile boolean settingsChanged;
+
+		private PooledConnection(Connection connection) throws SQLException {
+			this.connection = connection;
+			this.statementCache = (statementCacheSize > 0) ?
+			    new PreparedStatementCache(statementCacheSize, statementCacheStatistics) : null;
+			this.initialReadOnly = connection.isReadOnly();
+			this.initialTransactionIsolation = connection.getTransactionIsolation();
+			this.initialCatalog = connection.getCatalog();
+		}
+
+		private Connection createHandle() {
+			return (Connection) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
+			                                           new Class[] {Connection.class},
+			                                           new ConnectionHandle(this));
+		}
+	}
+
+
+	/**
+	 * Invocation handler for a single borrow of a pooled connection:
+	 * close returns the connection to the pool, and invalidates the handle.
+	 * Keeps track of the statements created through the handle, to close
+	 * those that are still open when the handle gets closed.
+	 */
+	private class ConnectionHandle implements InvocationHandler {
+
+		private PooledConnection pooledConnection;
+
+		/** Open TrackedStatements, guarded by this */
+		private final Set openStatements = new HashSet();
+
+		private ConnectionHandle(PooledConnection pooledConnection) {
+			this.pooledConnection = pooledConnection;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			PooledConnection pc;
+			synchronized (this) {
+				pc = this.pooledConnection;
+				if (methodName.equals("close")) {
+					this.pooledConnection = null;
+				}
+			}
+			if (methodName.equals("close")) {
+				if (pc != null) {
+					closeOpenStatements();
+					returnConnection(pc);
+				}
+				return null;
+			}
+			if (methodName.equals("isClosed")) {
+				return (pc == null ? Boolean.TRUE : (pc.connection.isClosed() ? Boolean.TRUE : Boolean.FALSE));
+			}
+			if (methodName.equals("toString")) {
+				return "Pooled connection handle [" + (pc != null ? pc.connection.toString() : "closed") + "]";
+			}
+			if (pc == null) {
+				throw new SQLException("Connection handle has already been closed");
+			}
+			if (methodName.equals("prepareStatement") && pc.statementCache != null) {
+				Class[] paramTypes = method.getParameterTypes();
+				if (paramTypes.length == 1) {
+					return pc.statementCache.prepareStatement(pc.connection, (Connection) proxy, (String) args[0],
+					                                          ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				}
+				if (paramTypes.length == 3 && paramTypes[1] == int.class && paramTypes[2] == int.class) {
+					return pc.statementCache.prepareStatement(pc.connection, (Connection) proxy, (String) args[0],
+					                                          ((Integer) args[1]).intValue(), ((Integer) args[2]).intValue());
+				}
+			}
+			if (methodName.equals("setReadOnly") || methodName.equals("setTransactionIsolation") ||
+			    methodName.equals("setCatalog")) {
+				pc.settingsChanged = true;
+			}
+			Object result = null;
+			try {
+				result = method.invoke(pc.connection, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+			if (result instanceof Statement) {
+				TrackedStatement tracked = new TrackedStatement((Statement) result, this, (Connection) proxy);
+				synchronized (this) {
+					this.openStatements.add(tracked);
+				}
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {method.getReturnType()}, tracked);
+			}
+			return result;
+		}
+
+		private synchronized void statementClosed(TrackedStatement tracked) {
+			this.openStatements.remove(tracked);
+		}
+
+		/**
+		 * Close all statements created through this handle that are still open.
+		 */
+		private void closeOpenStatements() {
+			List toClose;
+			synchronized (this) {
+				if (this.openStatements.isEmpty()) {
+					return;
+				}
+				toClose = new ArrayList(this.openStatements);
+				this.openStatements.clear();
+			}
+			if (logger.isDebugEnabled())
+				logger.debug("Closing " + toClose.size() + " statements left open on pooled JDBC connection");
+			for (Iterator it = toClose.iterator(); it.hasNext();) {
+				Statement stmt = ((TrackedStatement) it.next()).statement;
+				try {
+					stmt.close();
+				}
+				catch (SQLException ex) {
+					logger.warn("Could not close JDBC statement left open on pooled connection", ex);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Invocation handler for a statement created through a connection handle:
+	 * unregisters the statement from the handle on close, and exposes the handle
+	 * rather than the physical connection.
+	 */
+	private static class TrackedStatement implements InvocationHandler {
+
+		private final Statement statement;
+
+		private final ConnectionHandle connectionHandle;
+
+		private final Connection handleProxy;
+
+		private TrackedStatement(Statement statement, ConnectionHandle connectionHandle, Connection handleProxy) {
+			this.statement = statement;
+			this.connectionHandle = connectionHandle;
+			this.handleProxy = handleProxy;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			if (methodName.equals("getConnection")) {
+				return this.handleProxy;
+			}
+			if (methodName.equals("close")) {
+				this.connectionHandle.statementClosed(this);
+			}
+			try {
+				return method.invoke(this.statement, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+	}
+
+
+	/**
+	 * A caller waiting for a connection. Its fields are written with
+	 * both the pool monitor and the waiter's own monitor held.
+	 */
+	private static class Waiter {
+
+		private boolean served;
+
+		private PooledConnection connection;
+
+		private boolean mayCreate;
+	}
+
+}
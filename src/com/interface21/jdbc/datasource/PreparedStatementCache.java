@@ -0,0 +1,398 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * LRU cache of PreparedStatements for one physical connection, keyed by SQL,
+ * result set type and result set concurrency. Used by PoolingDataSource.
+ *
+ * <p>Statements are handed out as proxies: close returns the statement to the
+ * cache after clearing its parameters and resetting any fetch size, max rows or
+ * query timeout that the user changed. Each proxy is only valid until closed.
+ * If a cached statement is requested while the same statement is still in use,
+ * for example for a nested query, a new uncached statement is prepared.
+ *
+ * <p>Not thread-safe: a connection, and thus its cache, is only used by one
+ * thread at a time.
+ *
+ * @version $Id$
+ */
+class PreparedStatementCache {
+
+	private static final Log logger = LogFactory.getLog(PreparedStatementCache.class);
+
+	private final int maxSize;
+
+	/** Shared map from SQL String to StatementCacheStatistics */
+	private final Map statisticsMap;
+
+	/** Map from StatementKey to Entry */
+	private final Map entries = new HashMap();
+
+	/** Most recently used entry */
+	private Entry head;
+
+	/** Least recently used entry */
+	private Entry tail;
+
+	/** Uncached entries that are in use */
+	private final List uncachedEntries = new ArrayList();
+
+	/**
+	 * Create a new cache.
+	 * @param maxSize the maximum number of statements to keep
+	 * @param statisticsMap map from SQL String to StatementCacheStatistics,
+	 * shared by all caches of a DataSource and synchronized on itself
+	 */
+	PreparedStatementCache(int maxSize, Map statisticsMap) {
+		this.maxSize = maxSize;
+		this.statisticsMap = statisticsMap;
+	}
+
+	/**
+	 * Return a statement proxy for the given SQL and result set settings,
+	 * reusing a cached statement if possible.
+	 * @param con the physical connection to prepare statements with
+	 * @param handle the connection handle to expose via getConnection
+	 */
+	PreparedStatement prepareStatement(Connection con, Connection handle, String sql,
+	                                   int resultSetType, int resultSetConcurrency) throws SQLException {
+		StatementKey key = new StatementKey(sql, resultSetType, resultSetConcurrency);
+		Entry entry = (Entry) this.entries.get(key);
+		if (entry != null && entry.handle == null) {
+			entry.statistics.hit();
+			moveToHead(entry);
+		}
+		else {
+			StatementCacheStatistics statistics = (entry != null ? entry.statistics : getStatistics(sql));
+			statistics.miss();
+			PreparedStatement ps = null;
+			if (resultSetType == ResultSet.TYPE_FORWARD_ONLY && resultSetConcurrency == ResultSet.CONCUR_READ_ONLY) {
+				ps = con.prepareStatement(sql);
+			}
+			else {
+				ps = con.prepareStatement(sql, resultSetType, resultSetConcurrency);
+			}
+			boolean cached = (entry == null);
+			entry = new Entry(key, ps, statistics, cached);
+			if (cached) {
+				this.entries.put(key, entry);
+				addToHead(entry);
+			}
+			else {
+				this.uncachedEntries.add(entry);
+			}
+		}
+		entry.handle = new StatementHandle(entry, handle);
+		evictIfNecessary();
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+		                                                  new Class[] {PreparedStatement.class}, entry.handle);
+	}
+
+	/**
+	 * Return all statements that are still in use to the cache,
+	 * invalidating their proxies. Called when the connection is returned.
+	 */
+	void releaseAll() {
+		List inUse = new ArrayList(this.uncachedEntries);
+		for (Entry entry = this.head; entry != null; entry = entry.next) {
+			if (entry.handle != null) {
+				inUse.add(entry);
+			}
+		}
+		for (Iterator it = inUse.iterator(); it.hasNext();) {
+			Entry entry = (Entry) it.next();
+			entry.handle.closed = true;
+			release(entry);
+		}
+	}
+
+	/**
+	 * Physically close all cached statements.
+	 * Called before the connection is physically closed.
+	 */
+	void closeAll() {
+		releaseAll();
+		for (Entry entry = this.head; entry != null; entry = entry.next) {
+			closeStatement(entry.statement);
+		}
+		this.entries.clear();
+		this.head = null;
+		this.tail = null;
+	}
+
+	/**
+	 * Return the number of cached statements.
+	 */
+	int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Return a statement to the cache on logical close.
+	 */
+	private void release(Entry entry) {
+		entry.handle = null;
+		if (!entry.cached) {
+			this.uncachedEntries.remove(entry);
+			closeStatement(entry.statement);
+			return;
+		}
+		try {
+			PreparedStatement ps = entry.statement;
+			ps.clearParameters();
+			ps.clearWarnings();
+			if (entry.batched) {
+				ps.clearBatch();
+				entry.batched = false;
+			}
+			if (entry.maxRowsChanged) {
+				ps.setMaxRows(0);
+				entry.maxRowsChanged = false;
+			}
+			if (entry.queryTimeoutChanged) {
+				ps.setQueryTimeout(0);
+				entry.queryTimeoutChanged = false;
+			}
+			if (entry.originalFetchSize >= 0) {
+				ps.setFetchSize(entry.originalFetchSize);
+				entry.originalFetchSize = -1;
+			}
+		}
+		catch (SQLException ex) {
+			logger.warn("Could not reset cached PreparedStatement [" + entry.key.sql + "] - discarding it", ex);
+			remove(entry);
+			closeStatement(entry.statement);
+		}
+	}
+
+	private void evictIfNecessary() {
+		Entry entry = this.tail;
+		while (entry != null && this.entries.size() > this.maxSize) {
+			Entry previous = entry.previous;
+			// statements in use can't be evicted: exceed the maximum size until they're returned
+			if (entry.handle == null) {
+				remove(entry);
+				entry.statistics.evicted();
+				closeStatement(entry.statement);
+			}
+			entry = previous;
+		}
+	}
+
+	private StatementCacheStatistics getStatistics(String sql) {
+		synchronized (this.statisticsMap) {
+			StatementCacheStatistics statistics = (StatementCacheStatistics) this.statisticsMap.get(sql);
+			if (statistics == null) {
+				statistics = new StatementCacheStatistics(sql);
+				this.statisticsMap.put(sql, statistics);
+			}
+			return statistics;
+		}
+	}
+
+	private void addToHead(Entry entry) {
+		entry.previous = null;
+		entry.next = this.head;
+		if (this.head != null) {
+			this.head.previous = entry;
+		}
+		this.head = entry;
+		if (this.tail == null) {
+			this.tail = entry;
+		}
+	}
+
+	private void moveToHead(Entry entry) {
+		if (entry != this.head) {
+			unlink(entry);
+			addToHead(entry);
+		}
+	}
+
+	private void remove(Entry entry) {
+		this.entries.remove(entry.key);
+		unlink(entry);
+		entry.cached = false;
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.previous != null) {
+			entry.previous.next = entry.next;
+		}
+		else {
+			this.head = entry.next;
+		}
+		if (entry.next != null) {
+			entry.next.previous = entry.previous;
+		}
+		else {
+			this.tail = entry.previous;
+		}
+		entry.previous = null;
+		entry.next = null;
+	}
+
+	private void closeStatement(PreparedStatement ps) {
+		try {
+			ps.close();
+		}
+		catch (SQLException ex) {
+			logger.warn("Could not close cached PreparedStatement", ex);
+		}
+	}
+
+
+	/**
+	 * Cache key: SQL plus result set type and concurrency.
+	 */
+	private static class StatementKey {
+
+		private final String sql;
+
+		private final int resultSetType;
+
+		private final int resultSetConcurrency;
+
+		private StatementKey(String sql, int resultSetType, int resultSetConcurrency) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof StatementKey)) {
+				return false;
+			}
+			StatementKey otherKey = (StatementKey) other;
+			return (this.sql.equals(otherKey.sql) && this.resultSetType == otherKey.resultSetType &&
+			        this.resultSetConcurrency == otherKey.resultSetConcurrency);
+		}
+
+		public int hashCode() {
+			return this.sql.hashCode() * 29 + this.resultSetType * 7 + this.resultSetConcurrency;
+		}
+	}
+
+
+	/**
+	 * A prepared statement, linked into the LRU list if cached.
+	 */
+	private static class Entry {
+
+		private final StatementKey key;
+
+		private final PreparedStatement statement;
+
+		private final StatementCacheStatistics statistics;
+
+		private boolean cached;
+
+		/** Handle of the current user, or null if not in use */
+		private StatementHandle handle;
+
+		private boolean batched;
+
+		private boolean maxRowsChanged;
+
+		private boolean queryTimeoutChanged;
+
+		/** Fetch size before the current user changed it, or -1 */
+		private int originalFetchSize = -1;
+
+		private Entry previous;
+
+		private Entry next;
+
+		private Entry(StatementKey key, PreparedStatement statement, StatementCacheStatistics statistics, boolean cached) {
+			this.key = key;
+			this.statement = statement;
+			this.statistics = statistics;
+			this.cached = cached;
+		}
+	}
+
+
+	/**
+	 * Invocation handler for a single use of a statement: close returns
+	 * the statement to the cache, and invalidates the handle.
+	 */
+	private class StatementHandle implements InvocationHandler {
+
+		private final Entry entry;
+
+		private final Connection connectionHandle;
+
+		private boolean closed;
+
+		private StatementHandle(Entry entry, Connection connectionHandle) {
+			this.entry = entry;
+			this.connectionHandle = connectionHandle;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			if (methodName.equals("toString")) {
+				return "Cached statement handle [" + this.entry.key.sql + "]";
+			}
+			if (methodName.equals("close")) {
+				if (!this.closed) {
+					this.closed = true;
+					release(this.entry);
+				}
+				return null;
+			}
+			if (this.closed) {
+				throw new SQLException("Statement handle has already been closed");
+			}
+			if (methodName.equals("getConnection")) {
+				return this.connectionHandle;
+			}
+			else if (methodName.equals("addBatch")) {
+				this.entry.batched = true;
+			}
+			else if (methodName.equals("setMaxRows")) {
+				this.entry.maxRowsChanged = true;
+			}
+			else if (methodName.equals("setQueryTimeout")) {
+				this.entry.queryTimeoutChanged = true;
+			}
+			else if (methodName.equals("setFetchSize") && this.entry.originalFetchSize < 0) {
+				this.entry.originalFetchSize = this.entry.statement.getFetchSize();
+			}
+			try {
+				return method.invoke(this.entry.statement, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,557 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.interface21.beans.factory.DisposableBean;
+import com.interface21.beans.factory.InitializingBean;
+import com.interface21.util.Constants;
+
+/**
+ * DataSource that routes read-only transactions to replica DataSources,
+ * and everything else to a primary DataSource.
+ *
+ * <p>getConnection always returns a connection from the primary DataSource.
+ * DataSourceTransactionManager calls getReadOnlyConnection instead when it
+ * begins a transaction whose definition is read-only, and binds the replica
+ * connection for this DataSource to the thread: JdbcTemplate and other code
+ * that goes through DataSourceUtils then works with the replica for the
+ * rest of the transaction, without knowing about it.
+ *
+ * <p>Replicas are selected round-robin or by least outstanding requests,
+ * i.e. the replica with the fewest connections currently handed out. A replica
+ * whose DataSource fails to return a connection is ejected until it passes the
+ * next health check. If a health check interval is set, a background thread
+ * periodically checks all replicas with an optional validation query, and
+ * ejects replicas whose replication lag (as returned by an optional lag query)
+ * exceeds the maximum lag. If no replica is available, the primary is used.
+ *
+ * @version $Id$
+ * @see DataSourceTransactionManager
+ * @see com.interface21.transaction.TransactionDefinition#isReadOnly
+ * @see #getReadOnlyConnection
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource
+    implements SmartDataSource, InitializingBean, DisposableBean {
+
+	/** Select replicas in turn */
+	public static final int SELECTION_ROUND_ROBIN = 0;
+
+	/** Select the replica with the fewest connections currently handed out */
+	public static final int SELECTION_LEAST_OUTSTANDING = 1;
+
+	private static final Constants constants = new Constants(ReadWriteRoutingDataSource.class);
+
+	private DataSource primaryDataSource;
+
+	private List replicaDataSources;
+
+	private int selectionPolicy = SELECTION_ROUND_ROBIN;
+
+	private String validationQuery;
+
+	private String lagQuery;
+
+	private long maxLag = 0;
+
+	private long healthCheckInterval = 0;
+
+	private Replica[] replicas = new Replica[0];
+
+	/** Monitor for replica selection and outstanding counts */
+	private final Object replicaMonitor = new Object();
+
+	/** Position for round-robin selection */
+	private int nextReplica;
+
+	private HealthChecker healthChecker;
+
+
+	/**
+	 * Set the DataSource for writes and for all non-read-only work.
+	 */
+	public void setPrimaryDataSource(DataSource primaryDataSource) {
+		this.primaryDataSource = primaryDataSource;
+	}
+
+	public DataSource getPrimaryDataSource() {
+		return primaryDataSource;
+	}
+
+	/**
+	 * Set the replica DataSources for read-only transactions.
+	 * @param replicaDataSources List of DataSources
+	 */
+	public void setReplicaDataSources(List replicaDataSources) {
+		this.replicaDataSources = replicaDataSources;
+	}
+
+	public List getReplicaDataSources() {
+		return replicaDataSources;
+	}
+
+	/**
+	 * Set the replica selection policy by the name of the corresponding
+	 * constant in this class, e.g. "SELECTION_LEAST_OUTSTANDING".
+	 * @param constantName name of the constant
+	 * @throws IllegalArgumentException if an invalid constant was specified
+	 * @see #SELECTION_ROUND_ROBIN
+	 * @see #SELECTION_LEAST_OUTSTANDING
+	 */
+	public void setSelectionPolicyName(String constantName) throws IllegalArgumentException {
+		if (constantName == null || !constantName.startsWith("SELECTION_")) {
+			throw new IllegalArgumentException("Only selection constants allowed");
+		}
+		setSelectionPolicy(constants.asInt(constantName));
+	}
+
+	/**
+	 * Set the replica selection policy. Default is SELECTION_ROUND_ROBIN.
+	 */
+	public void setSelectionPolicy(int selectionPolicy) {
+		this.selectionPolicy = selectionPolicy;
+	}
+
+	public int getSelectionPolicy() {
+		return selectionPolicy;
+	}
+
+	/**
+	 * Set a query that health checks execute on each replica,
+	 * e.g. "SELECT 1". A replica passes if the query returns a row.
+	 */
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	/**
+	 * Set a query that returns the replication lag of a replica in seconds,
+	 * as number in the first column of its first row. Used by health checks
+	 * in combination with maxLag.
+	 * @see #setMaxLag
+	 */
+	public void setLagQuery(String lagQuery) {
+		this.lagQuery = lagQuery;
+	}
+
+	public String getLagQuery() {
+		return lagQuery;
+	}
+
+	/**
+	 * Set the maximum replication lag in seconds. Replicas that lag further
+	 * behind are ejected until they catch up. Default is 0, for no lag checks.
+	 * @see #setLagQuery
+	 */
+	public void setMaxLag(long maxLag) {
+		this.maxLag = maxLag;
+	}
+
+	public long getMaxLag() {
+		return maxLag;
+	}
+
+	/**
+	 * Set the interval in milliseconds between background health checks of all
+	 * replicas. Default is 0, for no background checks: replicas are not ejected
+	 * then, but a failing replica is still skipped for the current request.
+	 */
+	public void setHealthCheckInterval(long healthCheckInterval) {
+		this.healthCheckInterval = healthCheckInterval;
+	}
+
+	public long getHealthCheckInterval() {
+		return healthCheckInterval;
+	}
+
+	/**
+	 * Initialize the replicas, and start the health checker thread if needed.
+	 */
+	public void afterPropertiesSet() {
+		if (this.primaryDataSource == null) {
+			throw new IllegalArgumentException("primaryDataSource is required");
+		}
+		if (this.selectionPolicy != SELECTION_ROUND_ROBIN && this.selectionPolicy != SELECTION_LEAST_OUTSTANDING) {
+			throw new IllegalArgumentException("Invalid selection policy: " + this.selectionPolicy);
+		}
+		int count = (this.replicaDataSources != null ? this.replicaDataSources.size() : 0);
+		Replica[] newReplicas = new Replica[count];
+		for (int i = 0; i < count; i++) {
+			newReplicas[i] = new Replica(i, (DataSource) this.replicaDataSources.get(i));
+		}
+		synchronized (this.replicaMonitor) {
+			this.replicas = newReplicas;
+			this.nextReplica = 0;
+		}
+		if (this.healthCheckInterval > 0 && count > 0 && this.healthChecker == null) {
+			this.healthChecker = new HealthChecker();
+			this.healthChecker.start();
+		}
+		logger.info("Initialized read/write routing DataSource with " + count + " replicas");
+	}
+
+	/**
+	 * Stop the health checker thread.
+	 * <p>As this bean implements DisposableBean, a bean factory will
+	 * automatically invoke this on destruction of its cached singletons.
+	 */
+	public void destroy() {
+		if (this.healthChecker != null) {
+			this.healthChecker.shutdown();
+			this.healthChecker = null;
+		}
+	}
+
+
+	/**
+	 * Return a connection from the primary DataSource.
+	 */
+	public Connection getConnection() throws SQLException {
+		return this.primaryDataSource.getConnection();
+	}
+
+	/**
+	 * Return a connection from the primary DataSource.
+	 */
+	public Connection getConnection(String username, String password) throws SQLException {
+		return this.primaryDataSource.getConnection(username, password);
+	}
+
+	/**
+	 * Return a connection for read-only work from one of the available replicas,
+	 * falling back to the primary DataSource if none is available.
+	 * Closing the connection releases it to the replica DataSource.
+	 */
+	public Connection getReadOnlyConnection() throws SQLException {
+		Replica[] currentReplicas;
+		synchronized (this.replicaMonitor) {
+			currentReplicas = this.replicas;
+		}
+		boolean[] tried = new boolean[currentReplicas.length];
+		Replica replica = selectReplica(currentReplicas, tried);
+		while (replica != null) {
+			try {
+				Connection con = replica.dataSource.getConnection();
+				return (Connection) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
+				                                           new Class[] {Connection.class},
+				                                           new ReplicaConnectionHandler(con, replica));
+			}
+			catch (SQLException ex) {
+				release(replica);
+				logger.warn("Could not get connection from replica " + replica.index, ex);
+				if (this.healthChecker != null) {
+					eject(replica, "connection failure: " + ex.getMessage());
+				}
+			}
+			replica = selectReplica(currentReplicas, tried);
+		}
+		if (logger.isDebugEnabled())
+			logger.debug("No replica available for read-only connection - using primary");
+		return getConnection();
+	}
+
+	/**
+	 * Select the next replica according to the selection policy among the
+	 * healthy replicas that haven't been tried yet, and count it as outstanding.
+	 * @return the replica, or null if none left
+	 */
+	private Replica selectReplica(Replica[] candidates, boolean[] tried) {
+		synchronized (this.replicaMonitor) {
+			int count = candidates.length;
+			if (count == 0) {
+				return null;
+			}
+			int start = this.nextReplica++ % count;
+			if (this.nextReplica < 0) {
+				this.nextReplica = 0;
+			}
+			Replica selected = null;
+			for (int i = 0; i < count; i++) {
+				int index = (start + i) % count;
+				Replica candidate = candidates[index];
+				if (!tried[index] && candidate.healthy) {
+					if (this.selectionPolicy == SELECTION_ROUND_ROBIN) {
+						selected = candidate;
+						break;
+					}
+					if (selected == null || candidate.outstanding < selected.outstanding) {
+						selected = candidate;
+					}
+				}
+			}
+			if (selected != null) {
+				tried[selected.index] = true;
+				selected.outstanding++;
+			}
+			return selected;
+		}
+	}
+
+	private void release(Replica replica) {
+		synchronized (this.replicaMonitor) {
+			replica.outstanding--;
+		}
+	}
+
+	private void eject(Replica replica, String reason) {
+		if (replica.healthy) {
+			logger.warn("Ejecting replica " + replica.index + " from read-only routing: " + reason);
+		}
+		replica.healthy = false;
+	}
+
+	/**
+	 * Replica connections need to be closed to release them.
+	 * Primary connections are closed unless the primary DataSource
+	 * is a SmartDataSource that says otherwise.
+	 */
+	public boolean shouldClose(Connection con) {
+		if (Proxy.isProxyClass(con.getClass()) &&
+				Proxy.getInvocationHandler(con) instanceof ReplicaConnectionHandler) {
+			return true;
+		}
+		return (!(this.primaryDataSource instanceof SmartDataSource) ||
+				((SmartDataSource) this.primaryDataSource).shouldClose(con));
+	}
+
+	/**
+	 * Check the health of all replicas: whether they return a connection,
+	 * pass the validation query and don't lag behind more than maxLag.
+	 * Healthy replicas are (re-)admitted, others ejected.
+	 * Called periodically by the health checker thread, if enabled.
+	 */
+	public void checkReplicas() {
+		Replica[] currentReplicas;
+		synchronized (this.replicaMonitor) {
+			currentReplicas = this.replicas;
+		}
+		for (int i = 0; i < currentReplicas.length; i++) {
+			Replica replica = currentReplicas[i];
+			String failure = checkReplica(replica);
+			if (failure != null) {
+				eject(replica, failure);
+			}
+			else if (!replica.healthy) {
+				logger.info("Re-admitting replica " + replica.index + " to read-only routing");
+				replica.healthy = true;
+			}
+		}
+	}
+
+	/**
+	 * Check the given replica.
+	 * @return the reason for failure, or null if healthy
+	 */
+	private String checkReplica(Replica replica) {
+		Connection con = null;
+		Statement stmt = null;
+		try {
+			con = replica.dataSource.getConnection();
+			stmt = con.createStatement();
+			if (this.validationQuery != null) {
+				ResultSet rs = stmt.executeQuery(this.validationQuery);
+				boolean valid = rs.next();
+				rs.close();
+				if (!valid) {
+					return "validation query returned no row";
+				}
+			}
+			if (this.lagQuery != null && this.maxLag > 0) {
+				ResultSet rs = stmt.executeQuery(this.lagQuery);
+				long lag = (rs.next() ? rs.getLong(1) : 0);
+				rs.close();
+				if (lag > this.maxLag) {
+					return "replication lag of " + lag + " seconds exceeds maximum of " + this.maxLag;
+				}
+			}
+			return null;
+		}
+		catch (SQLException ex) {
+			return "health check failed: " + ex.getMessage();
+		}
+		finally {
+			if (stmt != null) {
+				try {
+					stmt.close();
+				}
+				catch (SQLException ex) {
+					logger.warn("Could not close health check statement", ex);
+				}
+			}
+			if (con != null) {
+				try {
+					con.close();
+				}
+				catch (SQLException ex) {
+					logger.warn("Could not close health check connection", ex);
+				}
+			}
+		}
+	}
+
+
+	//---------------------------------------------------------------------
+	// Replica metrics
+	//---------------------------------------------------------------------
+
+	/**
+	 * Return the number of configured replicas.
+	 */
+	public int getReplicaCount() {
+		synchronized (this.replicaMonitor) {
+			return this.replicas.length;
+		}
+	}
+
+	/**
+	 * Return whether the replica at the given index is currently used for routing.
+	 */
+	public boolean isReplicaHealthy(int index) {
+		synchronized (this.replicaMonitor) {
+			return this.replicas[index].healthy;
+		}
+	}
+
+	/**
+	 * Return the number of connections of the replica at the given index
+	 * that are currently handed out.
+	 */
+	public int getOutstandingCount(int index) {
+		synchronized (this.replicaMonitor) {
+			return this.replicas[index].outstanding;
+		}
+	}
+
+
+	/**
+	 * A replica DataSource with its routing state.
+	 */
+	private static class Replica {
+
+		private final int index;
+
+		private final DataSource dataSource;
+
+		/** Written by the health checker, read by selecting threads */
+		private volatile boolean healthy = true;
+
+		/** Guarded by the replica monitor */
+		private int outstanding;
+
+		private Replica(int index, DataSource dataSource) {
+			this.index = index;
+			this.dataSource = dataSource;
+		}
+	}
+
+
+	/**
+	 * Invocation handler for a replica connection:
+	 * close releases the connection's outstanding count.
+	 */
+	private class ReplicaConnectionHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		private final Replica replica;
+
+		private boolean closed;
+
+		private ReplicaConnectionHandler(Connection target, Replica replica) {
+			this.target = target;
+			this.replica = replica;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			if (methodName.equals("toString")) {
+				return "Replica " + this.replica.index + " connection [" + this.target + "]";
+			}
+			if (methodName.equals("close")) {
+				boolean release;
+				synchronized (this) {
+					release = !this.closed;
+					this.closed = true;
+				}
+				if (release) {
+					release(this.replica);
+				}
+			}
+			try {
+				return method.invoke(this.target, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+	}
+
+
+	/**
+	 * Daemon thread that periodically checks all replicas.
+	 */
+	private class HealthChecker extends Thread {
+
+		private boolean active = true;
+
+		private HealthChecker() {
+			super("ReadWriteRoutingDataSource health checker");
+			setDaemon(true);
+		}
+
+		public void run() {
+			while (true) {
+				synchronized (this) {
+					if (!this.active) {
+						return;
+					}
+					try {
+						wait(healthCheckInterval);
+					}
+					catch (InterruptedException ex) {
+						return;
+					}
+					if (!this.active) {
+						return;
+					}
+				}
+				try {
+					checkReplicas();
+				}
+				catch (RuntimeException ex) {
+					logger.warn("Replica health check failed", ex);
+				}
+			}
+		}
+
+		private synchronized void shutdown() {
+			this.active = false;
+			notifyAll();
+		}
+	}
+
+}
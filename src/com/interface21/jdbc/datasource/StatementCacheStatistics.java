@@ -0,0 +1,84 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.datasource;
+
+/**
+ * Prepared statement cache statistics for one SQL string, aggregated
+ * over the statement caches of all connections of a PoolingDataSource.
+ *
+ * <p>Updates are not synchronized, to keep overhead minimal:
+ * under heavy concurrency, counts may be slightly lower than exact.
+ *
+ * @version $Id$
+ * @see PoolingDataSource#getStatementCacheStatistics
+ */
+public class StatementCacheStatistics {
+
+	private final String sql;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private long evictionCount;
+
+	StatementCacheStatistics(String sql) {
+		this.sql = sql;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	final void hit() {
+		this.hitCount++;
+	}
+
+	final void miss() {
+		this.missCount++;
+	}
+
+	final void evicted() {
+		this.evictionCount++;
+	}
+
+	/**
+	 * Return the number of times a cached statement could be reused.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Return the number of times the statement had to be prepared.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Return the number of times the statement was evicted from a cache
+	 * to make room for another one.
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Return the fraction of requests served from a cache,
+	 * or 0 if the statement hasn't been requested yet.
+	 */
+	public double getHitRatio() {
+		long requests = this.hitCount + this.missCount;
+		return (requests > 0 ? (double) this.hitCount / requests : 0.0);
+	}
+
+	public String toString() {
+		return "[" + this.sql + "]: hits=" + this.hitCount + ", misses=" + this.missCount +
+		    ", evictions=" + this.evictionCount;
+	}
+
+}
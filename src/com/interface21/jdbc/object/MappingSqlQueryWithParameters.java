@@ -21,6 +21,7 @@ import java.util.Map;
 import javax.sql.DataSource;
 
 import com.interface21.jdbc.core.ResultReader;
+import com.interface21.jdbc.core.RowMapper;
 
 /**
  * Reusable RDBMS query in which concrete subclasses must
@@ -71,6 +72,18 @@ public abstract class MappingSqlQueryWithParameters extends SqlQuery {
 		return new ResultReaderImpl(rowsExpected, parameters, context);
 	}
 
+	/**
+	 * Overridden method to support iteration. This invokes the subclass's
+	 * implementation of the mapRow() method for each row as it is iterated over.
+	 */
+	protected final RowMapper newRowMapper(final Object[] parameters, final Map context) {
+		return new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return MappingSqlQueryWithParameters.this.mapRow(rs, rowNum, parameters, context);
+			}
+		};
+	}
+
 	/**
 	 * Subclasses must implement this method to convert each row
 	 * of the ResultSet into an object of the result type.
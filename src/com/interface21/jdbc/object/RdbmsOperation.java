@@ -21,6 +21,7 @@ import org.apache.commons.logging.LogFactory;
 
 import com.interface21.beans.factory.InitializingBean;
 import com.interface21.dao.InvalidDataAccessApiUsageException;
+import com.interface21.jdbc.core.SqlMonitor;
 import com.interface21.jdbc.core.SqlParameter;
 
 /**
@@ -41,6 +42,10 @@ import com.interface21.jdbc.core.SqlParameter;
  * the compile() method. The order in which parameters are added is significant.
  * The appropriate execute or update method can then be invoked.
  *
+ * <p>Fetch size, maximum number of rows, query timeout and streaming of results
+ * can be specified before compilation, analogous to the respective JdbcTemplate
+ * settings.
+ *
  * @see com.interface21.dao
  * @see com.interface21.jdbc.core
  * @author Rod Johnson
@@ -72,6 +77,16 @@ public abstract class RdbmsOperation implements InitializingBean {
 	 */
 	private boolean compiled;
 
+	private int fetchSize = 0;
+
+	private int maxRows = 0;
+
+	private int queryTimeout = 0;
+
+	private boolean streamingResults = false;
+
+	private SqlMonitor sqlMonitor;
+
 
 	/**
 	 * Create a new RdbmsOperation.
@@ -96,6 +111,86 @@ public abstract class RdbmsOperation implements InitializingBean {
 		return this.dataSource;
 	}
 
+	/**
+	 * Set the number of rows that the driver should fetch per round trip.
+	 * Default is 0, meaning to use the driver's default.
+	 * @see com.interface21.jdbc.core.JdbcTemplate#setFetchSize
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Return the fetch size specified for this operation.
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Set the maximum number of rows that this operation should return.
+	 * Default is 0, meaning no limit.
+	 * @see com.interface21.jdbc.core.JdbcTemplate#setMaxRows
+	 */
+	public void setMaxRows(int maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * Return the maximum number of rows specified for this operation.
+	 */
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	/**
+	 * Set the number of seconds the driver should wait for this operation
+	 * to execute. Default is 0, meaning no timeout.
+	 * @see com.interface21.jdbc.core.JdbcTemplate#setQueryTimeout
+	 */
+	public void setQueryTimeout(int queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	/**
+	 * Return the query timeout specified for this operation.
+	 */
+	public int getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	/**
+	 * Set whether results should be streamed by the driver rather than
+	 * read into memory completely. Default is false.
+	 * @see com.interface21.jdbc.core.JdbcTemplate#setStreamingResults
+	 */
+	public void setStreamingResults(boolean streamingResults) {
+		this.streamingResults = streamingResults;
+	}
+
+	/**
+	 * Return whether results are streamed by the driver.
+	 */
+	public boolean isStreamingResults() {
+		return streamingResults;
+	}
+
+	/**
+	 * Set a SqlMonitor to record execution statistics for this operation.
+	 * Default is none.
+	 * @see com.interface21.jdbc.core.JdbcTemplate#setSqlMonitor
+	 */
+	public void setSqlMonitor(SqlMonitor sqlMonitor) {
+		this.sqlMonitor = sqlMonitor;
+	}
+
+	/**
+	 * Return the SqlMonitor that records execution statistics, if any.
+	 */
+	public SqlMonitor getSqlMonitor() {
+		return sqlMonitor;
+	}
+
 	/**
 	 * Add anonymous parameters, specifying only their SQL types as defined in the
 	 * java.sql.Types class.
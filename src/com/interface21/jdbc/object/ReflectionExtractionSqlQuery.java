@@ -1,14 +1,21 @@
 package com.interface21.jdbc.object;
 
+import java.util.Map;
+
 import com.interface21.dao.InvalidDataAccessApiUsageException;
+import com.interface21.jdbc.core.BeanPropertyRowMapper;
 import com.interface21.jdbc.core.ResultReader;
+import com.interface21.jdbc.core.RowMapper;
 
 /**
  * Reusable threadsafe query in which reflection is used to
  * extract each result row. Each object must be of the same type.
  *
- * <p>NOTE: THIS CLASS IS A DEMONSTRATION ONLY OF THIS APPROACH.
- * IT IS NOT FULLY IMPLEMENTED, DOCUMENTED OR TESTED.
+ * <p>Rows are mapped by a BeanPropertyRowMapper that is created on compilation
+ * and shared by all executions, so column to property bindings are only
+ * resolved once. Supports the iterate() methods too.
+ *
+ * @see BeanPropertyRowMapper
  */
 public abstract class ReflectionExtractionSqlQuery extends SqlQuery {
 
@@ -18,6 +25,9 @@ public abstract class ReflectionExtractionSqlQuery extends SqlQuery {
 	 */
 	private Class resultClass;
 
+	/** Shared row mapper, created on compilation */
+	private BeanPropertyRowMapper rowMapper;
+
 	/**
 	 * Only subclasses can use this: They must remember to set
 	 * the result class later.
@@ -46,13 +56,18 @@ public abstract class ReflectionExtractionSqlQuery extends SqlQuery {
 	protected void onCompileInternal() throws InvalidDataAccessApiUsageException {
 		if (resultClass == null)
 			throw new InvalidDataAccessApiUsageException("ResultClass must be set in class " + getClass().getName());
+		this.rowMapper = new BeanPropertyRowMapper(resultClass);
 	}
 
 	/**
 	 * Use reflection to extract an object from each row of the result.
 	 */
-	protected ResultReader newResultReader(int rowsExpected) {
-		return new ReflectionRowExtractor(getResultClass(), rowsExpected);
+	protected ResultReader newResultReader(int rowsExpected, Object[] parameters, Map context) {
+		return new ReflectionRowExtractor(this.rowMapper, rowsExpected);
+	}
+
+	protected RowMapper newRowMapper(Object[] parameters, Map context) {
+		return this.rowMapper;
 	}
 
 }
@@ -67,6 +67,11 @@ public abstract class SqlOperation extends RdbmsOperation {
 	 */
 	protected final void compileInternal() {
 		this.jdbcTemplate = new JdbcTemplate(getDataSource());
+		this.jdbcTemplate.setFetchSize(getFetchSize());
+		this.jdbcTemplate.setMaxRows(getMaxRows());
+		this.jdbcTemplate.setQueryTimeout(getQueryTimeout());
+		this.jdbcTemplate.setStreamingResults(isStreamingResults());
+		this.jdbcTemplate.setSqlMonitor(getSqlMonitor());
 		// Validate parameter count
 		int bindVarCount = 0;
 		try {
@@ -18,7 +18,9 @@ import javax.sql.DataSource;
 
 import com.interface21.dao.DataAccessException;
 import com.interface21.dao.InvalidDataAccessApiUsageException;
+import com.interface21.jdbc.core.ResultIterator;
 import com.interface21.jdbc.core.ResultReader;
+import com.interface21.jdbc.core.RowMapper;
 
 /**
  * Reusable threadsafe object to represent a SQL query. Subclasses must
@@ -102,6 +104,19 @@ public abstract class SqlQuery extends SqlOperation {
 	 */
 	protected abstract ResultReader newResultReader(int rowsExpected, Object[] parameters, Map context);
 
+	/**
+	 * Subclasses can override this method to support the iterate() methods,
+	 * returning an object that maps a single row at a time.
+	 * This implementation throws InvalidDataAccessApiUsageException.
+	 * @param parameters parameters to the iterate() method, in case subclass is interested.
+	 * May be null if there were no parameters.
+	 * @param context contextual information passed to the iterate() method
+	 * @see #iterate(Object[], Map)
+	 */
+	protected RowMapper newRowMapper(Object[] parameters, Map context) {
+		throw new InvalidDataAccessApiUsageException("Query class " + getClass().getName() + " does not support iteration");
+	}
+
 	/**
 	 * All execution goes through this method
 	 * @param parameters parameters, as to JDO queries. Primitive parameters must
@@ -218,6 +233,43 @@ public abstract class SqlQuery extends SqlOperation {
 		return execute(p1, null);
 	}
 
+	/**
+	 * Execute the query, returning an iterator that maps rows on demand
+	 * rather than a List of all results. The JDBC connection and statement
+	 * stay open until the iterator is exhausted or closed: callers that might
+	 * not exhaust the iterator must call close in a finally block.
+	 * <p>Within a transaction, the connection bound to the thread is used.
+	 * Consider setting streamingResults to true for very large result sets.
+	 * @param parameters parameters, as to JDO queries. Primitive parameters must
+	 * be represented by their Object wrapper type. The ordering of parameters is
+	 * significant.
+	 * @param context contextual information passed to the row mapper
+	 * @return an iterator over the mapped results
+	 * @see #newRowMapper
+	 * @see ResultIterator#close
+	 * @see #setStreamingResults
+	 */
+	public final ResultIterator iterate(Object[] parameters, Map context) throws DataAccessException {
+		validateParameters(parameters);
+		RowMapper rowMapper = newRowMapper(parameters, context);
+		return getJdbcTemplate().queryForIterator(newPreparedStatementCreator(parameters), rowMapper);
+	}
+
+	/**
+	 * Convenient method to iterate without context
+	 * @param parameters parameters, as to JDO queries
+	 */
+	public final ResultIterator iterate(Object[] parameters) throws DataAccessException {
+		return iterate(parameters, null);
+	}
+
+	/**
+	 * Convenient method to iterate without parameters nor context
+	 */
+	public final ResultIterator iterate() throws DataAccessException {
+		return iterate((Object[]) null);
+	}
+
 	/**
 	 * Generic findObject method, used by all other findObject() methods.
 	 * findObject() methods are like EJB entity bean finders, in that it is
@@ -14,6 +14,7 @@ package com.interface21.jdbc.object;
 import javax.sql.DataSource;
 
 import com.interface21.dao.InvalidDataAccessApiUsageException;
+import com.interface21.jdbc.core.JdbcTemplate;
 import com.interface21.jdbc.core.JdbcUpdateAffectedIncorrectNumberOfRowsException;
 
 /**
@@ -45,6 +46,11 @@ public class SqlUpdate extends SqlOperation {
 	 */
 	private int requiredRowsAffected;
 
+	/**
+	 * Whether to defer updates within transactions until commit
+	 */
+	private boolean writeBehind;
+
 
 	/**
 	 * Constructor to allow use as a JavaBean. DataSource,
@@ -117,12 +123,44 @@ public class SqlUpdate extends SqlOperation {
 		this.requiredRowsAffected = rowsAffected;
 	}
 
+	/**
+	 * Set whether to defer updates within transactions until commit,
+	 * executing them as JDBC batches. Cannot be combined with a maximum
+	 * or required number of rows affected, as the update count is not
+	 * known when the update() method returns. Default is false.
+	 * @see com.interface21.jdbc.core.JdbcTemplate#setWriteBehindUpdates
+	 */
+	public void setWriteBehind(boolean writeBehind) {
+		this.writeBehind = writeBehind;
+	}
+
+	/**
+	 * Return whether updates within transactions are deferred until commit.
+	 */
+	public boolean isWriteBehind() {
+		return writeBehind;
+	}
+
+	/**
+	 * Apply the write-behind setting to the JdbcTemplate.
+	 */
+	protected void onCompileInternal() {
+		if (this.writeBehind) {
+			if (this.requiredRowsAffected != 0 || (this.maxRowsAffected != 0 && this.maxRowsAffected != Integer.MAX_VALUE)) {
+				throw new InvalidDataAccessApiUsageException("Cannot check rows affected by update [" + getSql() +
+				                                             "] with write-behind");
+			}
+			getJdbcTemplate().setWriteBehindUpdates(true);
+		}
+	}
+
 
 	/**
 	 * Generic method to execute the update given arguments.
 	 * All other update() methods invoke this method.
 	 * @param args array of object arguments
-	 * @return the number of rows affected by the update
+	 * @return the number of rows affected by the update,
+	 * or JdbcTemplate.UPDATE_COUNT_DEFERRED if deferred in write-behind mode
 	 */
 	public int update(Object[] args) throws InvalidDataAccessApiUsageException {
 		validateParameters(args);
@@ -130,6 +168,11 @@ public class SqlUpdate extends SqlOperation {
 		//PreparedStatementCreator psc = new DefaultPreparedStatementCreator(getSql(), getDeclaredParameters(), args);
 		int rowsAffected = getJdbcTemplate().update(newPreparedStatementCreator(args));
 		logger.debug("Executing update statement: " + getSql());
+		if (rowsAffected == JdbcTemplate.UPDATE_COUNT_DEFERRED) {
+			if (logger.isDebugEnabled())
+				logger.debug("SQL update [" + getSql() + "] deferred until commit");
+			return rowsAffected;
+		}
 
 		if (maxRowsAffected != 0 && rowsAffected > maxRowsAffected) {
 			throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(getSql(), maxRowsAffected, rowsAffected);
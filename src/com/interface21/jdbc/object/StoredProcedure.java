@@ -25,7 +25,9 @@ import com.interface21.dao.InvalidDataAccessApiUsageException;
 import com.interface21.jdbc.core.SQLExceptionTranslater;
 import com.interface21.jdbc.core.SQLExceptionTranslaterFactory;
 import com.interface21.jdbc.core.SqlParameter;
+import com.interface21.jdbc.core.WriteBehindQueue;
 import com.interface21.jdbc.datasource.DataSourceUtils;
+import com.interface21.transaction.support.TransactionMonitor;
 
 /**
  * Superclass for object abstractions of RDBMS stored procedures.
@@ -205,22 +207,33 @@ public abstract class StoredProcedure extends RdbmsOperation {
 			throw new InvalidDataAccessApiUsageException("Stored procedure must be compiled before execution");
 
 		DataSource ds = getDataSource();
+		WriteBehindQueue.flush(ds);
 		Connection con = DataSourceUtils.getConnection(ds);
+		long startTime = 0;
 		try {
 			Map inParams = mapper.createMap(con);
 			CallableStatement call = con.prepareCall(this.callString);
+			DataSourceUtils.applyTimeout(call, ds, getQueryTimeout());
 			processInputParameters(inParams, call);
 
 			// Execute the stored procedure
 			logger.info("Executing stored procedure [" + callString + "]");
+			TransactionMonitor.statementExecuted(this.callString);
+			startTime = System.currentTimeMillis();
 			call.execute();
 
 			// Now get output parameters. There need not be any.
 			Map outParams = extractOutputParameters(call);
 			call.close();
+			if (getSqlMonitor() != null) {
+				getSqlMonitor().statementExecuted(this.callString, System.currentTimeMillis() - startTime, -1, false);
+			}
 			return outParams;
 		}
 		catch (SQLException ex) {
+			if (startTime != 0 && getSqlMonitor() != null) {
+				getSqlMonitor().statementExecuted(this.callString, System.currentTimeMillis() - startTime, -1, true);
+			}
 			//throw new UncategorizedSQLException("Call to stored procedure '" + getSql() + "' failed", ex);
 			throw getExceptionTranslater().translate("Call to stored procedure '" + getSql() + "'", this.callString, ex);
 		}
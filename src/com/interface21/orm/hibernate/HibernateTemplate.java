@@ -5,6 +5,7 @@ import java.util.List;
 
 import net.sf.hibernate.HibernateException;
 import net.sf.hibernate.ObjectNotFoundException;
+import net.sf.hibernate.Query;
 import net.sf.hibernate.Session;
 import net.sf.hibernate.SessionFactory;
 import net.sf.hibernate.FlushMode;
@@ -179,6 +180,9 @@ public class HibernateTemplate extends HibernateAccessor {
 	public List find(final String query) throws DataAccessException {
 		return (List) execute(new HibernateCallback() {
 			public Object doInHibernate(Session session) throws HibernateException {
+				if (SessionFactoryUtils.hasTransactionTimeout(getSessionFactory())) {
+					return createQuery(session, query, null, null).list();
+				}
 				return session.find(query);
 			}
 		});
@@ -197,6 +201,9 @@ public class HibernateTemplate extends HibernateAccessor {
 	public List find(final String query, final Object value, final Type type) throws DataAccessException {
 		return (List) execute(new HibernateCallback() {
 			public Object doInHibernate(Session session) throws HibernateException {
+				if (SessionFactoryUtils.hasTransactionTimeout(getSessionFactory())) {
+					return createQuery(session, query, new Object[] {value}, new Type[] {type}).list();
+				}
 				return session.find(query, value, type);
 			}
 		});
@@ -215,6 +222,9 @@ public class HibernateTemplate extends HibernateAccessor {
 	public List find(final String query, final Object[] values, final Type[] types) throws DataAccessException {
 		return (List) execute(new HibernateCallback() {
 			public Object doInHibernate(Session session) throws HibernateException {
+				if (SessionFactoryUtils.hasTransactionTimeout(getSessionFactory())) {
+					return createQuery(session, query, values, types).list();
+				}
 				return session.find(query, values, types);
 			}
 		});
@@ -316,4 +326,29 @@ public class HibernateTemplate extends HibernateAccessor {
 		});
 	}
 
+	/**
+	 * Create a Query object for the given query string and "?" parameter
+	 * values, applying the remaining time of the current transaction as
+	 * timeout. Used by the find methods within transactions that have a
+	 * timeout, as Session.find does not allow for specifying one.
+	 * @param session the current Hibernate Session
+	 * @param queryString a query expressed in Hibernate's query language
+	 * @param values the values of the parameters, or null if none
+	 * @param types the Hibernate types of the parameters
+	 * @return the prepared Query object
+	 * @throws HibernateException if thrown by Hibernate methods
+	 * @see SessionFactoryUtils#applyTransactionTimeout(Query, SessionFactory)
+	 */
+	protected Query createQuery(Session session, String queryString, Object[] values, Type[] types)
+	    throws HibernateException {
+		Query queryObject = session.createQuery(queryString);
+		if (values != null) {
+			for (int i = 0; i < values.length; i++) {
+				queryObject.setParameter(i, values[i], types[i]);
+			}
+		}
+		SessionFactoryUtils.applyTransactionTimeout(queryObject, getSessionFactory());
+		return queryObject;
+	}
+
 }
@@ -30,7 +30,10 @@ import com.interface21.transaction.support.AbstractPlatformTransactionManager;
  * SessionFactoryUtils and HibernateTemplate are aware of thread-bound
  * Sessions and take part in such transactions automatically. Using either
  * is required for proper Hibernate access code supporting this transaction
- * handling mechanism. Supports custom isolation levels but not timeouts.
+ * handling mechanism. Supports custom isolation levels, and timeouts that
+ * get applied to HibernateTemplate queries and to plain JDBC statements.
+ * Supports transaction suspension for PROPAGATION_REQUIRES_NEW and
+ * PROPAGATION_NOT_SUPPORTED, using a separate Session for the new transaction.
  *
  * <p>This implementation is appropriate for applications that solely use
  * Hibernate for transactional data access, but it also supports direct
@@ -164,9 +167,9 @@ public class HibernateTransactionManager extends AbstractPlatformTransactionMana
 	}
 
 	protected Object doGetTransaction() throws CannotCreateTransactionException, TransactionException {
-		if (SessionFactoryUtils.getThreadObjectManager().hasThreadObject(this.sessionFactory)) {
+		SessionHolder sessionHolder = (SessionHolder) SessionFactoryUtils.getThreadObjectManager().getThreadObject(this.sessionFactory);
+		if (sessionHolder != null) {
 			logger.debug("Found thread-bound Session for Hibernate transaction");
-			SessionHolder sessionHolder = (SessionHolder) SessionFactoryUtils.getThreadObjectManager().getThreadObject(this.sessionFactory);
 			return new HibernateTransactionObject(sessionHolder, false);
 		}
 		else {
@@ -182,10 +185,13 @@ public class HibernateTransactionManager extends AbstractPlatformTransactionMana
 	}
 
 	protected void doBegin(Object transaction, TransactionDefinition definition) throws TransactionException {
-		if (definition.getTimeout() != TransactionDefinition.TIMEOUT_DEFAULT) {
-			throw new InvalidTimeoutException("HibernateTransactionManager does not support timeouts", definition.getTimeout());
+		if (definition.getTimeout() < TransactionDefinition.TIMEOUT_DEFAULT) {
+			throw new InvalidTimeoutException("Invalid transaction timeout", definition.getTimeout());
 		}
 		HibernateTransactionObject txObject = (HibernateTransactionObject) transaction;
+		if (definition.getTimeout() != TransactionDefinition.TIMEOUT_DEFAULT) {
+			txObject.getSessionHolder().setTimeoutInSeconds(definition.getTimeout());
+		}
 		logger.debug("Beginning Hibernate transaction");
 		try {
 			Session session = txObject.getSessionHolder().getSession();
@@ -209,6 +215,9 @@ public class HibernateTransactionManager extends AbstractPlatformTransactionMana
 			// register the Hibernate Session's JDBC Connection for the DataSource, if set
 			if (this.dataSource != null) {
 				ConnectionHolder conHolder = new ConnectionHolder(session.connection());
+				if (definition.getTimeout() != TransactionDefinition.TIMEOUT_DEFAULT) {
+					conHolder.setTimeoutInSeconds(definition.getTimeout());
+				}
 				DataSourceUtils.getThreadObjectManager().bindThreadObject(this.dataSource, conHolder);
 			}
 		}
@@ -223,6 +232,25 @@ public class HibernateTransactionManager extends AbstractPlatformTransactionMana
 		}
 	}
 
+	protected Object doSuspend(Object transaction) throws TransactionException {
+		SessionHolder sessionHolder = (SessionHolder) SessionFactoryUtils.getThreadObjectManager().getThreadObject(this.sessionFactory);
+		SessionFactoryUtils.getThreadObjectManager().removeThreadObject(this.sessionFactory);
+		ConnectionHolder connectionHolder = null;
+		if (this.dataSource != null) {
+			connectionHolder = (ConnectionHolder) DataSourceUtils.getThreadObjectManager().getThreadObject(this.dataSource);
+			DataSourceUtils.getThreadObjectManager().removeThreadObject(this.dataSource);
+		}
+		return new SuspendedResourcesHolder(sessionHolder, connectionHolder);
+	}
+
+	protected void doResume(Object transaction, Object suspendedResources) throws TransactionException {
+		SuspendedResourcesHolder resourcesHolder = (SuspendedResourcesHolder) suspendedResources;
+		SessionFactoryUtils.getThreadObjectManager().bindThreadObject(this.sessionFactory, resourcesHolder.getSessionHolder());
+		if (this.dataSource != null) {
+			DataSourceUtils.getThreadObjectManager().bindThreadObject(this.dataSource, resourcesHolder.getConnectionHolder());
+		}
+	}
+
 	protected void doCommit(TransactionStatus status) throws TransactionException {
 		HibernateTransactionObject txObject = (HibernateTransactionObject) status.getTransaction();
 		if (txObject.getSessionHolder().isRollbackOnly()) {
@@ -314,4 +342,30 @@ public class HibernateTransactionManager extends AbstractPlatformTransactionMana
 		}
 	}
 	
+
+
+	/**
+	 * Holder for suspended resources.
+	 * Used internally by doSuspend and doResume.
+	 */
+	private static class SuspendedResourcesHolder {
+
+		private final SessionHolder sessionHolder;
+
+		private final ConnectionHolder connectionHolder;
+
+		private SuspendedResourcesHolder(SessionHolder sessionHolder, ConnectionHolder connectionHolder) {
+			this.sessionHolder = sessionHolder;
+			this.connectionHolder = connectionHolder;
+		}
+
+		private SessionHolder getSessionHolder() {
+			return sessionHolder;
+		}
+
+		private ConnectionHolder getConnectionHolder() {
+			return connectionHolder;
+		}
+	}
+
 }
@@ -1,10 +1,13 @@
 package com.interface21.orm.hibernate;
 
+import net.sf.hibernate.Criteria;
+import net.sf.hibernate.FlushMode;
 import net.sf.hibernate.HibernateException;
 import net.sf.hibernate.Interceptor;
 import net.sf.hibernate.JDBCException;
 import net.sf.hibernate.ObjectDeletedException;
 import net.sf.hibernate.PersistentObjectException;
+import net.sf.hibernate.Query;
 import net.sf.hibernate.QueryException;
 import net.sf.hibernate.Session;
 import net.sf.hibernate.SessionFactory;
@@ -13,13 +16,14 @@ import net.sf.hibernate.TransientObjectException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.interface21.core.Ordered;
 import com.interface21.dao.CleanupFailureDataAccessException;
 import com.interface21.dao.DataAccessException;
 import com.interface21.dao.DataAccessResourceFailureException;
 import com.interface21.dao.InvalidDataAccessApiUsageException;
 import com.interface21.dao.InvalidDataAccessResourceUsageException;
 import com.interface21.dao.OptimisticLockingFailureException;
-import com.interface21.transaction.support.TransactionSynchronization;
+import com.interface21.transaction.support.TransactionSynchronizationAdapter;
 import com.interface21.transaction.support.TransactionSynchronizationManager;
 import com.interface21.util.ThreadObjectManager;
 
@@ -45,12 +49,20 @@ import com.interface21.util.ThreadObjectManager;
  */
 public abstract class SessionFactoryUtils {
 
+	/**
+	 * Order value for the transaction synchronizations that flush and close
+	 * Sessions, lower than the default for non-Ordered synchronizations:
+	 * Sessions get flushed before other resources are synchronized.
+	 * @see com.interface21.core.Ordered
+	 */
+	public static final int SESSION_SYNCHRONIZATION_ORDER = 1000;
+
 	private static final Log logger = LogFactory.getLog(SessionFactoryUtils.class);
 
 	/**
 	 * Per-thread mappings: SessionFactory -> SessionHolder
 	 */
-	private static final ThreadObjectManager threadObjectManager = new ThreadObjectManager();
+	private static final ThreadObjectManager threadObjectManager = new ThreadObjectManager("Hibernate Sessions");
 
 	/**
 	 * Return the thread object manager for Hibernate sessions, keeping a
@@ -127,6 +139,49 @@ public abstract class SessionFactoryUtils {
 		}
 	}
 
+	/**
+	 * Return whether the current transaction for the given SessionFactory,
+	 * if any, has a timeout.
+	 * @param sessionFactory Hibernate SessionFactory that the transaction is for
+	 * @see HibernateTransactionManager
+	 */
+	public static boolean hasTransactionTimeout(SessionFactory sessionFactory) {
+		SessionHolder holder = (SessionHolder) threadObjectManager.getThreadObject(sessionFactory);
+		return (holder != null && holder.hasTimeout());
+	}
+
+	/**
+	 * Apply the remaining time of the current transaction, if it has a timeout,
+	 * as timeout to the given Hibernate Query.
+	 * @param query the Hibernate Query object
+	 * @param sessionFactory Hibernate SessionFactory that the Query was created for
+	 * @throws com.interface21.transaction.TransactionTimedOutException if the
+	 * transaction has already timed out; it gets marked rollback-only then
+	 * @see net.sf.hibernate.Query#setTimeout
+	 */
+	public static void applyTransactionTimeout(Query query, SessionFactory sessionFactory) {
+		SessionHolder holder = (SessionHolder) threadObjectManager.getThreadObject(sessionFactory);
+		if (holder != null && holder.hasTimeout()) {
+			query.setTimeout(holder.getTimeToLiveInSeconds());
+		}
+	}
+
+	/**
+	 * Apply the remaining time of the current transaction, if it has a timeout,
+	 * as timeout to the given Hibernate Criteria.
+	 * @param criteria the Hibernate Criteria object
+	 * @param sessionFactory Hibernate SessionFactory that the Criteria was created for
+	 * @throws com.interface21.transaction.TransactionTimedOutException if the
+	 * transaction has already timed out; it gets marked rollback-only then
+	 * @see net.sf.hibernate.Criteria#setTimeout
+	 */
+	public static void applyTransactionTimeout(Criteria criteria, SessionFactory sessionFactory) {
+		SessionHolder holder = (SessionHolder) threadObjectManager.getThreadObject(sessionFactory);
+		if (holder != null && holder.hasTimeout()) {
+			criteria.setTimeout(holder.getTimeToLiveInSeconds());
+		}
+	}
+
 	/**
 	 * Convert the given HibernateException to an appropriate exception from
 	 * the com.interface21.dao hierarchy.
@@ -200,10 +255,10 @@ public abstract class SessionFactoryUtils {
 
 
 	/**
-	 * Callback for resource cleanup at the end of a non-Hibernate transaction
-	 * (e.g. when participating in a JTA transaction).
+	 * Callback for flushing before commit and resource cleanup at the end of
+	 * a non-Hibernate transaction (e.g. when participating in a JTA transaction).
 	 */
-	private static class SessionSynchronization implements TransactionSynchronization {
+	private static class SessionSynchronization extends TransactionSynchronizationAdapter implements Ordered {
 
 		private Session session;
 		private SessionFactory sessionFactory;
@@ -213,6 +268,22 @@ public abstract class SessionFactoryUtils {
 			this.sessionFactory = sessionFactory;
 		}
 
+		public int getOrder() {
+			return SESSION_SYNCHRONIZATION_ORDER;
+		}
+
+		public void beforeCommit() throws DataAccessException {
+			try {
+				if (this.session.getFlushMode() != FlushMode.NEVER) {
+					logger.debug("Flushing Hibernate session before transaction commit");
+					this.session.flush();
+				}
+			}
+			catch (HibernateException ex) {
+				throw convertHibernateAccessException(ex);
+			}
+		}
+
 		public void afterCompletion(int status) {
 			threadObjectManager.removeThreadObject(this.sessionFactory);
 			doCloseSession(this.session);
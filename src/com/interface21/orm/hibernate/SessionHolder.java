@@ -3,9 +3,12 @@ package com.interface21.orm.hibernate;
 import net.sf.hibernate.Session;
 import net.sf.hibernate.Transaction;
 
+import com.interface21.transaction.support.ResourceHolderSupport;
+
 /**
  * Session holder, wrapping a Hibernate Session and a Hibernate Transaction.
- * Features rollback-only support for nested Hibernate transactions.
+ * Features rollback-only support for nested Hibernate transactions,
+ * and a deadline for transactions with a timeout.
  *
  * <p>HibernateTransactionManager binds instances of this class
  * to the thread, for a given SessionFactory.
@@ -18,14 +21,12 @@ import net.sf.hibernate.Transaction;
  * @see HibernateTransactionObject
  * @see SessionFactoryUtils
  */
-public class SessionHolder {
+public class SessionHolder extends ResourceHolderSupport {
 
 	private final Session session;
 
 	private Transaction transaction;
 
-	private boolean rollbackOnly;
-
 	public SessionHolder(Session session) {
 		this.session = session;
 	}
@@ -42,12 +43,4 @@ public class SessionHolder {
 		return transaction;
 	}
 
-	public void setRollbackOnly() {
-		this.rollbackOnly = true;
-	}
-
-	public boolean isRollbackOnly() {
-		return rollbackOnly;
-	}
-
 }
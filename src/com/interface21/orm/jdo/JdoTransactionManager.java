@@ -22,7 +22,8 @@ import com.interface21.transaction.support.AbstractPlatformTransactionManager;
  * PersistenceManagerFactoryUtils and JdoTemplate are aware of thread-bound
  * persistence managers and take part in such transactions automatically.
  * Using either is required for JDO access code supporting this transaction
- * handling mechanism.
+ * handling mechanism. Supports transaction suspension for
+ * PROPAGATION_REQUIRES_NEW and PROPAGATION_NOT_SUPPORTED.
  *
  * <p>This implementation is appropriate for applications that solely use JDO
  * for transactional data access. JTA resp. JtaTransactionManager is necessary
@@ -85,9 +86,9 @@ public class JdoTransactionManager extends AbstractPlatformTransactionManager im
 	}
 
 	protected Object doGetTransaction() throws CannotCreateTransactionException, TransactionException {
-		if (PersistenceManagerFactoryUtils.getThreadObjectManager().hasThreadObject(this.persistenceManagerFactory)) {
+		PersistenceManagerHolder pmHolder = (PersistenceManagerHolder) PersistenceManagerFactoryUtils.getThreadObjectManager().getThreadObject(this.persistenceManagerFactory);
+		if (pmHolder != null) {
 			logger.debug("Found thread-bound PersistenceManager for JDO transaction");
-			PersistenceManagerHolder pmHolder = (PersistenceManagerHolder) PersistenceManagerFactoryUtils.getThreadObjectManager().getThreadObject(this.persistenceManagerFactory);
 			return new JdoTransactionObject(pmHolder, false);
 		}
 		else {
@@ -123,6 +124,17 @@ public class JdoTransactionManager extends AbstractPlatformTransactionManager im
 		}
 	}
 
+	protected Object doSuspend(Object transaction) throws TransactionException {
+		PersistenceManagerHolder pmHolder = (PersistenceManagerHolder)
+				PersistenceManagerFactoryUtils.getThreadObjectManager().getThreadObject(this.persistenceManagerFactory);
+		PersistenceManagerFactoryUtils.getThreadObjectManager().removeThreadObject(this.persistenceManagerFactory);
+		return pmHolder;
+	}
+
+	protected void doResume(Object transaction, Object suspendedResources) throws TransactionException {
+		PersistenceManagerFactoryUtils.getThreadObjectManager().bindThreadObject(this.persistenceManagerFactory, suspendedResources);
+	}
+
 	protected void doCommit(TransactionStatus status) throws TransactionException {
 		JdoTransactionObject txObject = (JdoTransactionObject) status.getTransaction();
 		if (txObject.getPersistenceManagerHolder().isRollbackOnly()) {
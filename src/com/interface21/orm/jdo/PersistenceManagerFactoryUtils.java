@@ -35,7 +35,7 @@ public abstract class PersistenceManagerFactoryUtils {
 	/**
 	 * Per-thread mappings: PersistenceManagerFactory -> PersistenceManagerHolder
 	 */
-	private static final ThreadObjectManager threadObjectManager = new ThreadObjectManager();
+	private static final ThreadObjectManager threadObjectManager = new ThreadObjectManager("JDO PersistenceManagers");
 
 	/**
 	 * Return the thread object manager for JDO PersistenceManagers keeping a
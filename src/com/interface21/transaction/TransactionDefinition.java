@@ -7,9 +7,9 @@ import java.sql.Connection;
  * Base interface for TransactionAttribute.
  *
  * <p>Note that isolation level and timeout settings will only get
- * applied when starting a new transaction. As only propagation behavior
- * "required" can actually cause that, it doesn't make sense to specify
- * the isolation level or timeout else.
+ * applied when starting a new transaction. As only propagation behaviors
+ * "required" and "requires new" can actually cause that, it doesn't make
+ * sense to specify the isolation level or timeout else.
  *
  * @author Juergen Hoeller
  * @since 08.05.2003
@@ -41,6 +41,25 @@ public interface TransactionDefinition {
 	 */
 	int PROPAGATION_MANDATORY = 2;
 
+	/**
+	 * Create a new transaction, suspending the current transaction if one exists.
+	 * Analogous to EJB transaction attribute of the same name.
+	 * <p>Useful for short independent units of work like audit log writes,
+	 * which should commit immediately instead of holding locks until the end
+	 * of the surrounding transaction. Requires a transaction manager that
+	 * supports transaction suspension.
+	 * @see com.interface21.transaction.support.AbstractPlatformTransactionManager#doSuspend
+	 */
+	int PROPAGATION_REQUIRES_NEW = 3;
+
+	/**
+	 * Execute non-transactionally, suspending the current transaction if one exists.
+	 * Analogous to EJB transaction attribute of the same name.
+	 * <p>Requires a transaction manager that supports transaction suspension.
+	 * @see com.interface21.transaction.support.AbstractPlatformTransactionManager#doSuspend
+	 */
+	int PROPAGATION_NOT_SUPPORTED = 4;
+
 	/**
 	 * Use default isolation level of the underlying database.
 	 * All other levels correspond to java.sql.Connection.
@@ -69,7 +88,8 @@ public interface TransactionDefinition {
 	/**
 	 * Return the isolation level.
 	 * Must return one of the ISOLATION constants.
-	 * <p>Only makes sense in combination with PROPAGATION_REQUIRED.
+	 * <p>Only makes sense in combination with PROPAGATION_REQUIRED
+	 * and PROPAGATION_REQUIRES_NEW.
 	 * @see #ISOLATION_DEFAULT
 	 */
 	int getIsolationLevel();
@@ -77,7 +97,8 @@ public interface TransactionDefinition {
 	/**
 	 * Return the transaction timeout.
 	 * Must return a number of seconds, or TIMEOUT_DEFAULT.
-	 * <p>Only makes sense in combination with PROPAGATION_REQUIRED.
+	 * <p>Only makes sense in combination with PROPAGATION_REQUIRED
+	 * and PROPAGATION_REQUIRES_NEW.
 	 * @see #TIMEOUT_DEFAULT
 	 */
 	public int getTimeout();
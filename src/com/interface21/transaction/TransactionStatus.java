@@ -23,6 +23,8 @@ public class TransactionStatus {
 
 	private boolean rollbackOnly = false;
 
+	private Object suspendedResources = null;
+
 	/**
 	 * Create a new TransactionStatus instance.
 	 * @param transaction underlying transaction object,
@@ -35,6 +37,21 @@ public class TransactionStatus {
 		this.newTransaction = newTransaction;
 	}
 
+	/**
+	 * Create a new TransactionStatus instance.
+	 * @param transaction underlying transaction object,
+	 * e.g. a JTA UserTransaction
+	 * @param newTransaction if the transaction is new,
+	 * else participating in an existing transaction
+	 * @param suspendedResources resources of an outer transaction that
+	 * have been suspended for this transaction, or null if none
+	 */
+	public TransactionStatus(Object transaction, boolean newTransaction, Object suspendedResources) {
+		this.transaction = transaction;
+		this.newTransaction = newTransaction;
+		this.suspendedResources = suspendedResources;
+	}
+
 	/**
 	 * Return the underlying transaction object, e.g. a JTA UserTransaction.
 	 */
@@ -70,4 +87,14 @@ public class TransactionStatus {
 		return rollbackOnly;
 	}
 
+	/**
+	 * Return the resources of an outer transaction that have been
+	 * suspended for this transaction, to be resumed on completion.
+	 * <p>Note: This is an SPI method, not intended to be used by applications.
+	 * @return the suspended resources, or null if none
+	 */
+	public Object getSuspendedResources() {
+		return suspendedResources;
+	}
+
 }
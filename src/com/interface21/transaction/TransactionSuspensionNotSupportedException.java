@@ -0,0 +1,22 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction;
+
+/**
+ * Exception thrown when attempting to suspend an existing transaction
+ * but transaction suspension is not supported by the underlying backend,
+ * i.e. on PROPAGATION_REQUIRES_NEW or PROPAGATION_NOT_SUPPORTED.
+ * @since 19.10.2026
+ * @see TransactionDefinition#PROPAGATION_REQUIRES_NEW
+ * @see TransactionDefinition#PROPAGATION_NOT_SUPPORTED
+ */
+public class TransactionSuspensionNotSupportedException extends TransactionUsageException {
+
+	public TransactionSuspensionNotSupportedException(String msg) {
+		super(msg);
+	}
+
+}
@@ -0,0 +1,21 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction;
+
+/**
+ * Exception to be thrown when a transaction has timed out, i.e. when data
+ * access code tries to execute a statement after the transaction's deadline.
+ * The transaction will have been marked rollback-only.
+ * @since 19.10.2026
+ * @see com.interface21.transaction.support.ResourceHolderSupport#getTimeToLiveInSeconds
+ */
+public class TransactionTimedOutException extends TransactionException {
+
+	public TransactionTimedOutException(String msg) {
+		super(msg);
+	}
+
+}
@@ -9,6 +9,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 /**
  * Implementation of TransactionAttributeSource that uses
@@ -19,6 +21,8 @@ import org.aopalliance.intercept.MethodInvocation;
  */
 public class AttributeRegistryTransactionAttributeSource implements TransactionAttributeSource {
 
+	protected final Log logger = LogFactory.getLog(getClass());
+
 	public TransactionAttribute getTransactionAttribute(MethodInvocation mi) {
 		Class targetClass = mi.getMethod().getDeclaringClass();
 		if (mi.getThis() != null) {
@@ -44,7 +48,6 @@ public class AttributeRegistryTransactionAttributeSource implements TransactionA
 		// TODO: get from target, might need AOPAlliance interface changes
 
 		Object[] atts = invocation.getAttributeRegistry().getAttributes(invocation.getMethod());
-		System.err.println("Atts=" + atts);
 		if (atts == null)
 			return null;
 		boolean found = false;
@@ -57,7 +60,6 @@ public class AttributeRegistryTransactionAttributeSource implements TransactionA
 				found = true;
 		}
 		if (!found) {
-			System.err.println("NOT FOUND");
 			return null;
 		}
 
@@ -68,7 +70,9 @@ public class AttributeRegistryTransactionAttributeSource implements TransactionA
 		}
 		RuleBasedTransactionAttribute txatt = new RuleBasedTransactionAttribute();
 		txatt.setRollbackRules(l);
-		System.err.println("txatt=" + txatt);
+		if (logger.isDebugEnabled())
+			logger.debug("Built rule-based transaction attribute [" + txatt + "] for method '" +
+			             invocation.getMethod().getName() + "'");
 		return txatt;
 		//return null;
 	}
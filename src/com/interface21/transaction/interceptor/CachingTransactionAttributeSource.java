@@ -0,0 +1,148 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Decorator for a TransactionAttributeSource that caches the attribute
+ * resolved for each method, so that expensive lookups such as wildcard
+ * matching in an AttributeRegistry happen only on the first invocation.
+ * Null results, i.e. non-transactional methods, are cached as well.
+ *
+ * <p>Attributes are cached per method, target class and AttributeRegistry of
+ * the invocation. The decorated source must therefore always return the same
+ * attribute for the same combination, which is the case for all sources in
+ * this package.
+ *
+ * <p>Cache hits neither lock nor allocate: the cache is a map from Method to
+ * an immutable chain of entries per target class and AttributeRegistry, and
+ * gets replaced as a whole when an attribute is added. This relies on the
+ * volatile semantics of the Java 5 memory model for safe publication; on
+ * older VMs, use the target source directly if that is a concern.
+ *
+ * @version $Id$
+ * @see TransactionInterceptor#setCacheTransactionAttributes
+ */
+public class CachingTransactionAttributeSource implements TransactionAttributeSource {
+
+	/**
+	 * Canonical value held in cache to indicate no transaction attribute was
+	 * found for this method, and we don't need to look again.
+	 */
+	private static final Object NULL_TRANSACTION_ATTRIBUTE = new Object();
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private TransactionAttributeSource targetSource;
+
+	/**
+	 * Map from Method to CacheEntry chain, never modified once published:
+	 * replaced as a whole, while holding the lock of this object
+	 */
+	private volatile Map cache = new HashMap();
+
+	/**
+	 * Create a new CachingTransactionAttributeSource.
+	 * @see #setTargetSource
+	 */
+	public CachingTransactionAttributeSource() {
+	}
+
+	/**
+	 * Create a new CachingTransactionAttributeSource for the given source.
+	 * @param targetSource the TransactionAttributeSource to cache results of
+	 */
+	public CachingTransactionAttributeSource(TransactionAttributeSource targetSource) {
+		this.targetSource = targetSource;
+	}
+
+	/**
+	 * Set the TransactionAttributeSource that actually resolves attributes.
+	 */
+	public void setTargetSource(TransactionAttributeSource targetSource) {
+		this.targetSource = targetSource;
+	}
+
+	public TransactionAttributeSource getTargetSource() {
+		return targetSource;
+	}
+
+	public TransactionAttribute getTransactionAttribute(MethodInvocation invocation) {
+		Method method = invocation.getMethod();
+		Object target = invocation.getThis();
+		Class targetClass = (target != null ? target.getClass() : null);
+		Object attributeRegistry = invocation.getAttributeRegistry();
+		CacheEntry entry = findEntry((CacheEntry) this.cache.get(method), targetClass, attributeRegistry);
+		if (entry != null) {
+			return (entry.attribute != NULL_TRANSACTION_ATTRIBUTE) ? (TransactionAttribute) entry.attribute : null;
+		}
+
+		// Resolve outside the lock: concurrent first calls may both do so
+		TransactionAttribute transAtt = this.targetSource.getTransactionAttribute(invocation);
+		if (logger.isDebugEnabled())
+			logger.debug("Caching transaction attribute [" + transAtt + "] for method '" + method.getName() + "'");
+		synchronized (this) {
+			CacheEntry head = (CacheEntry) this.cache.get(method);
+			if (findEntry(head, targetClass, attributeRegistry) == null) {
+				Map newCache = new HashMap(this.cache);
+				newCache.put(method, new CacheEntry(targetClass, attributeRegistry,
+				                                    (transAtt != null) ? (Object) transAtt : NULL_TRANSACTION_ATTRIBUTE, head));
+				this.cache = newCache;
+			}
+		}
+		return transAtt;
+	}
+
+	/**
+	 * Clear the cache, e.g. after the attributes of the target source
+	 * have been changed.
+	 */
+	public synchronized void clearCache() {
+		this.cache = new HashMap();
+	}
+
+	private static CacheEntry findEntry(CacheEntry entry, Class targetClass, Object attributeRegistry) {
+		while (entry != null) {
+			if (entry.targetClass == targetClass && entry.attributeRegistry == attributeRegistry) {
+				return entry;
+			}
+			entry = entry.next;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Cached attribute of a method invoked on a given target class,
+	 * with the given attribute registry. Entries for the same method
+	 * are chained.
+	 */
+	private static class CacheEntry {
+
+		private final Class targetClass;
+
+		private final Object attributeRegistry;
+
+		private final Object attribute;
+
+		private final CacheEntry next;
+
+		private CacheEntry(Class targetClass, Object attributeRegistry, Object attribute, CacheEntry next) {
+			this.targetClass = targetClass;
+			this.attributeRegistry = attributeRegistry;
+			this.attribute = attribute;
+			this.next = next;
+		}
+	}
+
+}
@@ -6,8 +6,10 @@
 package com.interface21.transaction.interceptor;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,6 +33,18 @@ public class RuleBasedTransactionAttribute extends DefaultTransactionAttribute {
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	private List rollbackRules;
+
+	/**
+	 * Rules snapshot taken on the first rollback decision,
+	 * with the decisions made so far.
+	 */
+	private RollbackRuleAttribute[] compiledRules;
+
+	/** Size of the rule list when the snapshot was taken */
+	private int compiledRulesSourceSize;
+
+	/** Cache from exception class to Boolean rollback decision */
+	private final Map decisionCache = new HashMap();
 	
 	public RuleBasedTransactionAttribute() {
 		this.rollbackRules = new ArrayList();
@@ -43,8 +57,17 @@ public class RuleBasedTransactionAttribute extends DefaultTransactionAttribute {
 
 	public void setRollbackRules(List rollbackRules) {
 		this.rollbackRules = rollbackRules;
+		synchronized (this.decisionCache) {
+			this.compiledRules = null;
+			this.decisionCache.clear();
+		}
 	}
 
+	/**
+	 * Return the list of rollback rules. Rules added to this list are only
+	 * guaranteed to be taken into account before the first call to rollbackOn;
+	 * use setRollbackRules to change the rules of an attribute in use.
+	 */
 	public List getRollbackRules() {
 		return rollbackRules;
 	}
@@ -53,28 +76,73 @@ public class RuleBasedTransactionAttribute extends DefaultTransactionAttribute {
 	 * Winning rule is the shallowest rule (that is, the closest
 	 * in the inheritance hierarchy to the exception). If no rule applies (-1),
 	 * return false.
+	 * <p>The decision only depends on the class of the throwable, so it is
+	 * computed once per exception class and cached.
 	 * @see com.interface21.transaction.interceptor.TransactionAttribute#rollbackOn(java.lang.Throwable)
 	 */
 	public boolean rollbackOn(Throwable t) {
-		logger.debug("Applying rules to determine whether transaction should rollback on " + t);
-		RollbackRuleAttribute winner = null;
-		int deepest = Integer.MAX_VALUE;
+		Class exceptionClass = t.getClass();
+		RollbackRuleAttribute[] rules = null;
+		synchronized (this.decisionCache) {
+			rules = getCompiledRules();
+			Boolean decision = (Boolean) this.decisionCache.get(exceptionClass);
+			if (decision != null) {
+				return decision.booleanValue();
+			}
+		}
 
-		if (this.rollbackRules != null) {
-			for (Iterator iter = this.rollbackRules.iterator(); iter.hasNext();) {
-				Object next = iter.next();
-				// Ignore elements of unknown type
-				if (next instanceof RollbackRuleAttribute) {
-					RollbackRuleAttribute rule = (RollbackRuleAttribute) next;
-					int depth = rule.getDepth(t);
-					if (depth >= 0 && depth < deepest) {
-						deepest = depth;
-						winner = rule;
+		boolean rollback = decideRollback(t, rules);
+		synchronized (this.decisionCache) {
+			if (this.compiledRules == rules) {
+				this.decisionCache.put(exceptionClass, rollback ? Boolean.TRUE : Boolean.FALSE);
+			}
+		}
+		return rollback;
+	}
+
+	/**
+	 * Take a snapshot of the rollback rules, ignoring elements of unknown type.
+	 * Retakes the snapshot if rules have been added to the list since.
+	 * Must be called while holding the decision cache monitor.
+	 */
+	private RollbackRuleAttribute[] getCompiledRules() {
+		int size = (this.rollbackRules != null) ? this.rollbackRules.size() : 0;
+		if (this.compiledRules == null || this.compiledRulesSourceSize != size) {
+			List rules = new ArrayList(size);
+			if (this.rollbackRules != null) {
+				for (Iterator iter = this.rollbackRules.iterator(); iter.hasNext();) {
+					Object next = iter.next();
+					// Ignore elements of unknown type
+					if (next instanceof RollbackRuleAttribute) {
+						rules.add(next);
 					}
 				}
 			}
+			this.compiledRules = (RollbackRuleAttribute[]) rules.toArray(new RollbackRuleAttribute[rules.size()]);
+			this.compiledRulesSourceSize = size;
+			this.decisionCache.clear();
+		}
+		return this.compiledRules;
+	}
+
+	/**
+	 * Apply the given rules to the given throwable.
+	 */
+	private boolean decideRollback(Throwable t, RollbackRuleAttribute[] rules) {
+		if (logger.isDebugEnabled())
+			logger.debug("Applying rules to determine whether transaction should rollback on " + t);
+		RollbackRuleAttribute winner = null;
+		int deepest = Integer.MAX_VALUE;
+
+		for (int i = 0; i < rules.length; i++) {
+			int depth = rules[i].getDepth(t);
+			if (depth >= 0 && depth < deepest) {
+				deepest = depth;
+				winner = rules[i];
+			}
 		}
-		logger.debug("Winning rollback rule is: " + winner);
+		if (logger.isDebugEnabled())
+			logger.debug("Winning rollback rule is: " + winner);
 		
 		// User superclass behaviour (rollback on unchecked)
 		// if no rule matches
@@ -16,6 +16,7 @@ import com.interface21.beans.factory.InitializingBean;
 import com.interface21.transaction.PlatformTransactionManager;
 import com.interface21.transaction.TransactionStatus;
 import com.interface21.transaction.TransactionException;
+import com.interface21.transaction.support.TransactionMonitor;
 
 /**
  * Interceptor providing declarative transaction management using
@@ -29,6 +30,14 @@ import com.interface21.transaction.TransactionException;
  * <p>This class could set JTA as default transaction manager as that
  * implementation does not need any specific configuration. JTA is
  * <i>not</i> the default though to avoid unnecessary dependencies.
+ *
+ * <p>By default, the resolved transaction attribute of each method is cached,
+ * so that each invocation only performs a map lookup rather than asking the
+ * TransactionAttributeSource again. MapTransactionAttributeSources are not
+ * decorated, as they already perform a single map lookup.
+ *
+ * <p>If the transaction manager records metrics via a TransactionMonitor,
+ * each new transaction is named after the method that it was started for.
  *  
  * @version $Id$
  * @author Rod Johnson
@@ -65,6 +74,11 @@ public class TransactionInterceptor implements MethodInterceptor, InitializingBe
 	/** Helper used to find transaction attributes */
 	private TransactionAttributeSource transactionAttributeSource;
 
+	private boolean cacheTransactionAttributes = true;
+
+	/** Source actually used on invocation: possibly a caching decorator */
+	private TransactionAttributeSource attributeSourceToUse;
+
 	/**
 	 * Create a new TransactionInterceptor.
 	 * Sets AttributeRegistryTransactionAttributeSource as default source.
@@ -75,7 +89,7 @@ public class TransactionInterceptor implements MethodInterceptor, InitializingBe
 	 */
 	public TransactionInterceptor() {
 		// Set default properties, which may be changed later
-		this.transactionAttributeSource = new AttributeRegistryTransactionAttributeSource();
+		setTransactionAttributeSource(new AttributeRegistryTransactionAttributeSource());
 	}
 
 	/**
@@ -100,6 +114,7 @@ public class TransactionInterceptor implements MethodInterceptor, InitializingBe
 	 */
 	public void setTransactionAttributeSource(TransactionAttributeSource transactionAttributeSource) {
 		this.transactionAttributeSource = transactionAttributeSource;
+		initAttributeSourceToUse();
 	}
 
 	/**
@@ -109,6 +124,35 @@ public class TransactionInterceptor implements MethodInterceptor, InitializingBe
 		return transactionAttributeSource;
 	}
 
+	/**
+	 * Set whether to cache the transaction attribute resolved for each method.
+	 * Default is true. Turn this off if the TransactionAttributeSource may
+	 * return different attributes for the same method over time.
+	 * @see CachingTransactionAttributeSource
+	 */
+	public void setCacheTransactionAttributes(boolean cacheTransactionAttributes) {
+		this.cacheTransactionAttributes = cacheTransactionAttributes;
+		initAttributeSourceToUse();
+	}
+
+	/**
+	 * Return whether to cache the transaction attribute resolved for each method.
+	 */
+	public boolean isCacheTransactionAttributes() {
+		return cacheTransactionAttributes;
+	}
+
+	private void initAttributeSourceToUse() {
+		if (this.cacheTransactionAttributes && this.transactionAttributeSource != null &&
+		    !(this.transactionAttributeSource instanceof MapTransactionAttributeSource) &&
+		    !(this.transactionAttributeSource instanceof CachingTransactionAttributeSource)) {
+			this.attributeSourceToUse = new CachingTransactionAttributeSource(this.transactionAttributeSource);
+		}
+		else {
+			this.attributeSourceToUse = this.transactionAttributeSource;
+		}
+	}
+
 	public void afterPropertiesSet() {
 		if (this.transactionManager == null) {
 			throw new IllegalArgumentException("transactionManager is required");
@@ -123,16 +167,21 @@ public class TransactionInterceptor implements MethodInterceptor, InitializingBe
 	 */
 	public final Object invoke(MethodInvocation invocation) throws Throwable {
 		// If this is null, the method is non-transactional
-		TransactionAttribute transAtt = this.transactionAttributeSource.getTransactionAttribute(invocation);
+		TransactionAttribute transAtt = this.attributeSourceToUse.getTransactionAttribute(invocation);
 		TransactionStatus status = null;
 		
 		// Create transaction if necessary
 		if (transAtt != null) {
 			// We need a transaction for this method
-			logger.info("Creating transaction for method '" + invocation.getMethod().getName() + "'");
+			if (logger.isDebugEnabled())
+				logger.debug("Creating transaction for method '" + invocation.getMethod().getName() + "'");
 			
 			// The transaction manager will flag an error if an incompatible tx already exists
 			status = this.transactionManager.getTransaction(transAtt);
+			if (status.isNewTransaction() && TransactionMonitor.isCurrentTransactionMonitored()) {
+				TransactionMonitor.setCurrentTransactionName(
+				    invocation.getMethod().getDeclaringClass().getName() + "." + invocation.getMethod().getName());
+			}
 			
 			// Make the TransactionStatus available to callees
 			invocation.addAttachment(TRANSACTION_STATUS_ATTACHMENT_NAME, status);
@@ -165,7 +214,8 @@ public class TransactionInterceptor implements MethodInterceptor, InitializingBe
 			}
 		}
 		if (status != null) {
-			logger.info("Committing transaction on method '" + invocation.getMethod().getName() + "'");
+			if (logger.isDebugEnabled())
+				logger.debug("Committing transaction on method '" + invocation.getMethod().getName() + "'");
 			this.transactionManager.commit(status);
 		}
 		return retVal;
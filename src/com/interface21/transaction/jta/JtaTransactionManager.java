@@ -48,6 +48,10 @@ import com.interface21.transaction.support.AbstractPlatformTransactionManager;
  * Note that DataSourceTransactionManager and HibernateTransactionManager do
  * support custom isolation levels.
  *
+ * <p>Transaction suspension, i.e. PROPAGATION_REQUIRES_NEW and
+ * PROPAGATION_NOT_SUPPORTED within an existing transaction, is not supported,
+ * as the UserTransaction interface does not allow for it.
+ *
  * @author Juergen Hoeller
  * @since 24.03.2003
  * @see #setAllowNonTransactionalExecution
@@ -9,6 +9,7 @@ import com.interface21.transaction.PlatformTransactionManager;
 import com.interface21.transaction.TransactionDefinition;
 import com.interface21.transaction.TransactionException;
 import com.interface21.transaction.TransactionStatus;
+import com.interface21.transaction.TransactionSuspensionNotSupportedException;
 import com.interface21.transaction.UnexpectedRollbackException;
 
 /**
@@ -19,19 +20,24 @@ import com.interface21.transaction.UnexpectedRollbackException;
  * <ul>
  * <li>determines if there is an existing transaction;
  * <li>applies the appropriate propagation behavior;
+ * <li>suspends and resumes transactions if necessary
+ * (if supported by the concrete transaction manager);
  * <li>supports falling back to non-transactional execution
  * (if allowNonTransactionExecution is set);
  * <li>determines programmatic rollback on commit;
  * <li>applies the appropriate modification on rollback
  * (actual rollback or setting rollback only);
  * <li>triggers registered synchronization callbacks
- * (if transactionSynchronization is active).
+ * (if transactionSynchronization is active);
+ * <li>records transaction metrics
+ * (if a transactionMonitor is set).
  * </ul>
  *
  * @author Juergen Hoeller
  * @since 28.03.2003
  * @see #setAllowNonTransactionalExecution
  * @see #setTransactionSynchronization
+ * @see #setTransactionMonitor
  */
 public abstract class AbstractPlatformTransactionManager implements PlatformTransactionManager {
 
@@ -41,6 +47,8 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 
 	private boolean transactionSynchronization = false;
 
+	private TransactionMonitor transactionMonitor;
+
 	/**
 	 * Set if transaction support does not need to be available,
 	 * e.g. when JTA isn't available in the container.
@@ -78,34 +86,82 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 		return transactionSynchronization;
 	}
 
+	/**
+	 * Set a TransactionMonitor that records metrics for the transactions
+	 * started by this transaction manager. Default is none.
+	 * @see TransactionMonitor
+	 */
+	public final void setTransactionMonitor(TransactionMonitor transactionMonitor) {
+		this.transactionMonitor = transactionMonitor;
+	}
+
+	/**
+	 * Return the TransactionMonitor of this transaction manager, if any.
+	 */
+	public final TransactionMonitor getTransactionMonitor() {
+		return transactionMonitor;
+	}
+
 	/**
 	 * This implementation of getTransaction handles propagation behavior and
 	 * checks non-transactional execution (on CannotCreateTransactionException).
-	 * Delegates to doGetTransaction, isExistingTransaction, doBegin.
+	 * Delegates to doGetTransaction, isExistingTransaction, doBegin, and to
+	 * doSuspend for PROPAGATION_REQUIRES_NEW and PROPAGATION_NOT_SUPPORTED
+	 * within an existing transaction.
 	 */
 	public final TransactionStatus getTransaction(TransactionDefinition definition)
 	    throws TransactionException {
+		SuspendedResourcesHolder suspendedResources = null;
 		try {
 			Object transaction = doGetTransaction();
 			logger.debug("Using transaction object [" + transaction + "]");
-			if (isExistingTransaction(transaction)) {
-				logger.debug("Participating in existing transaction");
-				return new TransactionStatus(transaction, false);
-			}
 			if (definition == null) {
 				// use defaults
 				definition = new DefaultTransactionDefinition();
 			}
+			if (isExistingTransaction(transaction)) {
+				if (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_NOT_SUPPORTED) {
+					logger.debug("Suspending existing transaction for non-transactional execution");
+					return new TransactionStatus(null, false, suspend(transaction));
+				}
+				if (definition.getPropagationBehavior() != TransactionDefinition.PROPAGATION_REQUIRES_NEW) {
+					logger.debug("Participating in existing transaction");
+					return new TransactionStatus(transaction, false);
+				}
+				logger.debug("Suspending existing transaction for new transaction");
+				suspendedResources = suspend(transaction);
+				try {
+					transaction = doGetTransaction();
+				}
+				catch (RuntimeException ex) {
+					resume(null, suspendedResources);
+					throw ex;
+				}
+			}
 			if (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_MANDATORY) {
 				throw new NoTransactionException("Transaction propagation mandatory but no existing transaction context found");
 			}
-			if (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRED) {
+			if (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRED ||
+			    definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW) {
 				// create new transaction
-				doBegin(transaction, definition);
+				try {
+					doBegin(transaction, definition);
+				}
+				catch (RuntimeException ex) {
+					if (suspendedResources != null) {
+						resume(transaction, suspendedResources);
+						suspendedResources = null;
+					}
+					throw ex;
+				}
 				if (this.transactionSynchronization) {
 					TransactionSynchronizationManager.init();
 				}
-				return new TransactionStatus(transaction, true);
+				TransactionStatus status = new TransactionStatus(transaction, true, suspendedResources);
+				if (this.transactionMonitor != null) {
+					this.transactionMonitor.transactionStarted(status);
+				}
+				return status;
 			}
 		}
 		catch (CannotCreateTransactionException ex) {
@@ -128,7 +184,9 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 	/**
 	 * This implementation of commit handles programmatic rollback requests,
 	 * i.e. status.isRollbackOnly(), and non-transactional execution.
-	 * Delegates to doCommit and rollback.
+	 * Delegates to doCheckCommit, doCommit and rollback, and to doResume if an
+	 * outer transaction has been suspended. Rolls back if doCheckCommit or a
+	 * synchronization's beforeCommit callback fails.
 	 */
 	public final void commit(TransactionStatus status) throws TransactionException {
 		if (status.isRollbackOnly()) {
@@ -136,44 +194,80 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 			rollback(status);
 		}
 		else if (status.isNewTransaction()) {
+			int completionStatus = TransactionSynchronization.STATUS_UNKNOWN;
 			try {
+				try {
+					doCheckCommit(status);
+				}
+				catch (TransactionException ex) {
+					logger.debug("Transaction cannot be committed - rolling back");
+					triggerBeforeCompletion();
+					doRollback(status);
+					completionStatus = TransactionSynchronization.STATUS_ROLLED_BACK;
+					throw ex;
+				}
+				try {
+					triggerBeforeCommit();
+				}
+				catch (RuntimeException ex) {
+					logger.error("Transaction synchronization failed before commit - rolling back", ex);
+					triggerBeforeCompletion();
+					doRollback(status);
+					completionStatus = TransactionSynchronization.STATUS_ROLLED_BACK;
+					throw ex;
+				}
+				triggerBeforeCompletion();
 				doCommit(status);
-				triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+				completionStatus = TransactionSynchronization.STATUS_COMMITTED;
 			}
 			catch (UnexpectedRollbackException ex) {
-				triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+				completionStatus = TransactionSynchronization.STATUS_ROLLED_BACK;
 				logger.error(ex.getMessage());
 				throw ex;
 			}
 			catch (TransactionException ex) {
-				triggerAfterCompletion(TransactionSynchronization.STATUS_UNKNOWN);
 				logger.error(ex.getMessage());
 				throw ex;
 			}
 			finally {
+				triggerAfterCompletion(completionStatus);
 				TransactionSynchronizationManager.clear();
+				if (this.transactionMonitor != null) {
+					this.transactionMonitor.transactionCompleted(status, completionStatus);
+				}
+				resumeAfterCompletion(status);
 			}
 		}
+		else {
+			resumeAfterCompletion(status);
+		}
 	}
 
 	/**
 	 * This implementation of rollback handles participating in
 	 * existing transactions and non-transactional execution.
-	 * Delegates to doRollback and doSetRollbackOnly.
+	 * Delegates to doRollback and doSetRollbackOnly, and to doResume
+	 * if an outer transaction has been suspended.
 	 */
 	public final void rollback(TransactionStatus status) throws TransactionException {
 		if (status.isNewTransaction()) {
+			int completionStatus = TransactionSynchronization.STATUS_UNKNOWN;
 			try {
+				triggerBeforeCompletion();
 				doRollback(status);
-				triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+				completionStatus = TransactionSynchronization.STATUS_ROLLED_BACK;
 			}
 			catch (TransactionException ex) {
-				triggerAfterCompletion(TransactionSynchronization.STATUS_UNKNOWN);
 				logger.error(ex.getMessage());
 				throw ex;
 			}
 			finally {
+				triggerAfterCompletion(completionStatus);
 				TransactionSynchronizationManager.clear();
+				if (this.transactionMonitor != null) {
+					this.transactionMonitor.transactionCompleted(status, completionStatus);
+				}
+				resumeAfterCompletion(status);
 			}
 		}
 		else if (status.getTransaction() != null) {
@@ -185,12 +279,69 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 				throw ex;
 			}
 		}
+		else if (status.getSuspendedResources() != null) {
+			// non-transactional execution within suspended transaction
+			resumeAfterCompletion(status);
+		}
 		else {
 			// no transaction support available
 			logger.info("Should roll back transaction but cannot - no transaction support available");
 		}
 	}
 
+	/**
+	 * Suspend the given transaction, including the current synchronizations.
+	 * @param transaction transaction object returned by doGetTransaction()
+	 * @return a holder for the suspended resources
+	 */
+	private SuspendedResourcesHolder suspend(Object transaction) throws TransactionException {
+		Object suspendedResources = doSuspend(transaction);
+		return new SuspendedResourcesHolder(suspendedResources, TransactionSynchronizationManager.suspend());
+	}
+
+	/**
+	 * Resume the given suspended resources, including their synchronizations.
+	 * @param transaction the current transaction object, or null if none
+	 * @param resourcesHolder the holder returned by suspend
+	 */
+	private void resume(Object transaction, SuspendedResourcesHolder resourcesHolder) throws TransactionException {
+		TransactionSynchronizationManager.resume(resourcesHolder.suspendedSynchronizations);
+		doResume(transaction, resourcesHolder.suspendedResources);
+	}
+
+	/**
+	 * Resume the outer transaction after completion of the given status,
+	 * if one has been suspended for it.
+	 */
+	private void resumeAfterCompletion(TransactionStatus status) throws TransactionException {
+		if (status.getSuspendedResources() != null) {
+			logger.debug("Resuming suspended transaction");
+			resume(status.getTransaction(), (SuspendedResourcesHolder) status.getSuspendedResources());
+		}
+	}
+
+	/**
+	 * Trigger beforeCommit callbacks on registered synchronizations,
+	 * if transaction synchronization is active.
+	 * @see #setTransactionSynchronization
+	 */
+	private void triggerBeforeCommit() {
+		if (this.transactionSynchronization) {
+			TransactionSynchronizationManager.triggerBeforeCommit();
+		}
+	}
+
+	/**
+	 * Trigger beforeCompletion callbacks on registered synchronizations,
+	 * if transaction synchronization is active.
+	 * @see #setTransactionSynchronization
+	 */
+	private void triggerBeforeCompletion() {
+		if (this.transactionSynchronization) {
+			TransactionSynchronizationManager.triggerBeforeCompletion();
+		}
+	}
+
 	/**
 	 * Trigger afterCompletion callbacks on registered synchronizations,
 	 * if transaction synchronization is active.
@@ -232,6 +383,56 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 	 */
 	protected abstract void doBegin(Object transaction, TransactionDefinition definition) throws TransactionException;
 
+	/**
+	 * Suspend the resources of the given transaction, i.e. unbind them from
+	 * the thread, so that a new transaction or non-transactional code does not
+	 * see them. Transaction synchronizations have already been suspended by
+	 * the abstract manager.
+	 * <p>Default implementation throws a TransactionSuspensionNotSupportedException,
+	 * to be overridden by transaction managers that support suspension.
+	 * @param transaction transaction object returned by doGetTransaction()
+	 * @return an object that holds the suspended resources, to be passed to doResume
+	 * @throws TransactionSuspensionNotSupportedException if suspension is not supported
+	 * @throws TransactionException in case of system errors
+	 * @see TransactionDefinition#PROPAGATION_REQUIRES_NEW
+	 * @see TransactionDefinition#PROPAGATION_NOT_SUPPORTED
+	 */
+	protected Object doSuspend(Object transaction) throws TransactionException {
+		throw new TransactionSuspensionNotSupportedException(
+		    "Transaction manager [" + getClass().getName() + "] does not support transaction suspension");
+	}
+
+	/**
+	 * Resume the resources of the suspended transaction, i.e. bind them to
+	 * the thread again, after completion of the current transaction.
+	 * <p>Default implementation throws a TransactionSuspensionNotSupportedException,
+	 * to be overridden by transaction managers that support suspension.
+	 * @param transaction the current transaction object, or null if the suspended
+	 * transaction was resumed after non-transactional execution
+	 * @param suspendedResources the object returned by doSuspend
+	 * @throws TransactionSuspensionNotSupportedException if suspension is not supported
+	 * @throws TransactionException in case of system errors
+	 */
+	protected void doResume(Object transaction, Object suspendedResources) throws TransactionException {
+		throw new TransactionSuspensionNotSupportedException(
+		    "Transaction manager [" + getClass().getName() + "] does not support transaction suspension");
+	}
+
+	/**
+	 * Check whether the given new transaction can still be committed,
+	 * before any beforeCommit callbacks get triggered. Throws an exception
+	 * if the transaction has to be rolled back instead, e.g. because a
+	 * participating operation marked its resource rollback-only or because its
+	 * timeout has expired: commit then rolls back and propagates the exception.
+	 * <p>Default implementation does nothing.
+	 * @param status status representation of the transaction
+	 * @throws UnexpectedRollbackException if the transaction is rollback-only
+	 * @throws com.interface21.transaction.TransactionTimedOutException if the
+	 * transaction has timed out
+	 */
+	protected void doCheckCommit(TransactionStatus status) throws TransactionException {
+	}
+
 	/**
 	 * Perform an actual commit on the given transaction.
 	 * An implementation does not need to check the rollback-only flag.
@@ -256,4 +457,22 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 	 */
 	protected abstract void doSetRollbackOnly(TransactionStatus status) throws TransactionException;
 
+
+
+	/**
+	 * Holder for suspended resources and synchronizations,
+	 * kept in the TransactionStatus of the new transaction.
+	 */
+	private static class SuspendedResourcesHolder {
+
+		private final Object suspendedResources;
+
+		private final Object suspendedSynchronizations;
+
+		private SuspendedResourcesHolder(Object suspendedResources, Object suspendedSynchronizations) {
+			this.suspendedResources = suspendedResources;
+			this.suspendedSynchronizations = suspendedSynchronizations;
+		}
+	}
+
 }
@@ -0,0 +1,111 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction.support;
+
+import java.util.Date;
+
+import com.interface21.transaction.TransactionTimedOutException;
+
+/**
+ * Convenient base class for resource holders that transaction managers
+ * bind to the thread, like a JDBC ConnectionHolder or a Hibernate
+ * SessionHolder.
+ *
+ * <p>Features rollback-only support for nested transactions, and a
+ * deadline for transactions with a timeout. Data access code can ask
+ * for the remaining time to live, to apply it as statement timeout.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see com.interface21.jdbc.datasource.ConnectionHolder
+ * @see com.interface21.orm.hibernate.SessionHolder
+ */
+public abstract class ResourceHolderSupport {
+
+	private boolean rollbackOnly;
+
+	private long deadline = -1;
+
+	/**
+	 * Mark the resource transaction as rollback-only.
+	 */
+	public void setRollbackOnly() {
+		this.rollbackOnly = true;
+	}
+
+	/**
+	 * Return whether the resource transaction is marked as rollback-only.
+	 */
+	public boolean isRollbackOnly() {
+		return rollbackOnly;
+	}
+
+	/**
+	 * Set the timeout for this object in seconds,
+	 * starting from now.
+	 * @param seconds number of seconds until expiration
+	 */
+	public void setTimeoutInSeconds(int seconds) {
+		setTimeoutInMillis(seconds * 1000L);
+	}
+
+	/**
+	 * Set the timeout for this object in milliseconds,
+	 * starting from now.
+	 * @param millis number of milliseconds until expiration
+	 */
+	public void setTimeoutInMillis(long millis) {
+		this.deadline = System.currentTimeMillis() + millis;
+	}
+
+	/**
+	 * Return whether this object has an associated timeout.
+	 */
+	public boolean hasTimeout() {
+		return (this.deadline != -1);
+	}
+
+	/**
+	 * Return the expiration deadline of this object.
+	 * @return the deadline, or null if none
+	 */
+	public Date getDeadline() {
+		return (this.deadline != -1 ? new Date(this.deadline) : null);
+	}
+
+	/**
+	 * Return the time to live for this object in seconds, rounded up,
+	 * so that a transaction that has not expired yet gets at least 1.
+	 * @return number of seconds until expiration
+	 * @throws TransactionTimedOutException if the deadline has already
+	 * been reached; the object gets marked rollback-only in this case
+	 * @throws IllegalStateException if no timeout has been set
+	 */
+	public int getTimeToLiveInSeconds() throws TransactionTimedOutException {
+		long millis = getTimeToLiveInMillis();
+		return (int) ((millis + 999) / 1000);
+	}
+
+	/**
+	 * Return the time to live for this object in milliseconds.
+	 * @return number of milliseconds until expiration
+	 * @throws TransactionTimedOutException if the deadline has already
+	 * been reached; the object gets marked rollback-only in this case
+	 * @throws IllegalStateException if no timeout has been set
+	 */
+	public long getTimeToLiveInMillis() throws TransactionTimedOutException {
+		if (this.deadline == -1) {
+			throw new IllegalStateException("No timeout specified for this resource holder");
+		}
+		long timeToLive = this.deadline - System.currentTimeMillis();
+		if (timeToLive <= 0) {
+			setRollbackOnly();
+			throw new TransactionTimedOutException("Transaction timed out: deadline was " + getDeadline());
+		}
+		return timeToLive;
+	}
+
+}
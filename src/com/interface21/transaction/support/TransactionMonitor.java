@@ -0,0 +1,311 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.interface21.transaction.TransactionStatus;
+
+/**
+ * Records metrics for the transactions of a transaction manager:
+ * commit and rollback counts plus duration histograms per transaction
+ * name, and the number of currently open transactions. Optionally logs
+ * slow transactions, including the statements that they executed.
+ *
+ * <p>Activated by setting an instance as "transactionMonitor" on an
+ * AbstractPlatformTransactionManager. TransactionInterceptor names each
+ * transaction after the method that started it; other transactions are
+ * recorded under DEFAULT_TRANSACTION_NAME. JdbcTemplate reports each
+ * statement via statementExecuted; other data access code can do so too.
+ *
+ * <p>Recording a transaction takes two timestamps and one small allocation.
+ * It locks the open transaction gauge on start and on completion, the map of
+ * statistics to look up the transaction's name, and the statistics for that
+ * name to update them. Each lock is only held for a few field updates, and
+ * they are separate, so that transactions with different names only share
+ * the gauge and the map lookup. Statements are only kept if slow transaction
+ * logging is active. Durations are measured in milliseconds.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see AbstractPlatformTransactionManager#setTransactionMonitor
+ * @see com.interface21.transaction.interceptor.TransactionInterceptor
+ * @see com.interface21.jdbc.core.JdbcTemplate
+ */
+public class TransactionMonitor {
+
+	/** Name for transactions that have not been named explicitly */
+	public static final String DEFAULT_TRANSACTION_NAME = "[unnamed]";
+
+	/** Innermost transaction record of the current thread */
+	private static ThreadLocal currentRecord = new ThreadLocal();
+
+	/**
+	 * Return whether the current thread's innermost transaction is monitored.
+	 * Can be called before setCurrentTransactionName to avoid building the name.
+	 * @see #setCurrentTransactionName
+	 */
+	public static boolean isCurrentTransactionMonitored() {
+		return (currentRecord.get() != null);
+	}
+
+	/**
+	 * Set the name of the current thread's transaction, if it is monitored.
+	 * Called by transaction demarcation code after starting a new transaction.
+	 * @param name the name to record the transaction under,
+	 * e.g. the fully qualified name of a service method
+	 */
+	public static void setCurrentTransactionName(String name) {
+		TransactionRecord record = (TransactionRecord) currentRecord.get();
+		if (record != null) {
+			record.name = name;
+		}
+	}
+
+	/**
+	 * Note the execution of the given statement in the current thread's
+	 * transaction, if it is monitored. Called by data access code.
+	 * @param statement the statement, e.g. an SQL string
+	 */
+	public static void statementExecuted(String statement) {
+		TransactionRecord record = (TransactionRecord) currentRecord.get();
+		if (record != null) {
+			record.addStatement(statement);
+		}
+	}
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private long slowTransactionThreshold = 0;
+
+	private int maxLoggedStatements = 20;
+
+	/** Transaction name -> TransactionStatistics, guarded by itself */
+	private final Map statistics = new HashMap();
+
+	/** Lock for the open transaction counts */
+	private final Object openTransactionLock = new Object();
+
+	private int openTransactionCount;
+
+	private int maxOpenTransactionCount;
+
+	/**
+	 * Set the duration in milliseconds from which on transactions get logged
+	 * as slow, at warn level. Default is 0, i.e. no logging of slow transactions.
+	 */
+	public void setSlowTransactionThreshold(long slowTransactionThreshold) {
+		this.slowTransactionThreshold = slowTransactionThreshold;
+	}
+
+	/**
+	 * Return the duration from which on transactions get logged as slow.
+	 */
+	public long getSlowTransactionThreshold() {
+		return slowTransactionThreshold;
+	}
+
+	/**
+	 * Set the maximum number of statements to include in the log message for a
+	 * slow transaction. Further statements are only counted. Default is 20.
+	 */
+	public void setMaxLoggedStatements(int maxLoggedStatements) {
+		this.maxLoggedStatements = maxLoggedStatements;
+	}
+
+	/**
+	 * Return the maximum number of statements to log for a slow transaction.
+	 */
+	public int getMaxLoggedStatements() {
+		return maxLoggedStatements;
+	}
+
+	/**
+	 * Note the start of a new transaction in the current thread.
+	 * Called by transaction manager on transaction begin.
+	 * @param status the status of the new transaction
+	 */
+	public void transactionStarted(TransactionStatus status) {
+		int statementsToKeep = (this.slowTransactionThreshold > 0 ? this.maxLoggedStatements : 0);
+		TransactionRecord record = new TransactionRecord((TransactionRecord) currentRecord.get(), status, statementsToKeep);
+		currentRecord.set(record);
+		synchronized (this.openTransactionLock) {
+			this.openTransactionCount++;
+			if (this.openTransactionCount > this.maxOpenTransactionCount) {
+				this.maxOpenTransactionCount = this.openTransactionCount;
+			}
+		}
+	}
+
+	/**
+	 * Note the completion of the current thread's innermost transaction.
+	 * Called by transaction manager after transaction commit/rollback.
+	 * <p>Ignored if the given transaction is not the innermost monitored one,
+	 * so that a transaction is only recorded once, and a repeated completion
+	 * cannot end the record of a suspended outer transaction.
+	 * @param status the status of the completed transaction
+	 * @param completionStatus completion status according to TransactionSynchronization constants
+	 */
+	public void transactionCompleted(TransactionStatus status, int completionStatus) {
+		TransactionRecord record = (TransactionRecord) currentRecord.get();
+		if (record == null || record.status != status) {
+			logger.debug("Ignoring completion of transaction that is not the current monitored one");
+			return;
+		}
+		currentRecord.set(record.previous);
+		long time = System.currentTimeMillis() - record.startTime;
+		String name = (record.name != null ? record.name : DEFAULT_TRANSACTION_NAME);
+		synchronized (this.openTransactionLock) {
+			this.openTransactionCount--;
+		}
+		TransactionStatistics stats = null;
+		synchronized (this.statistics) {
+			stats = (TransactionStatistics) this.statistics.get(name);
+			if (stats == null) {
+				stats = new TransactionStatistics(name);
+				this.statistics.put(name, stats);
+			}
+		}
+		synchronized (stats) {
+			stats.record(completionStatus, time);
+		}
+		if (this.slowTransactionThreshold > 0 && time >= this.slowTransactionThreshold) {
+			String[] statements = new String[Math.min(record.statementCount, record.statements.length)];
+			System.arraycopy(record.statements, 0, statements, 0, statements.length);
+			logSlowTransaction(name, completionStatus, time, statements, record.statementCount);
+		}
+	}
+
+	/**
+	 * Log a slow transaction. Can be overridden to use a different log format.
+	 * @param name the name of the transaction
+	 * @param status completion status according to TransactionSynchronization constants
+	 * @param time the duration of the transaction in milliseconds
+	 * @param statements the first statements that the transaction executed
+	 * @param statementCount the total number of statements that it executed
+	 */
+	protected void logSlowTransaction(String name, int status, long time, String[] statements, int statementCount) {
+		StringBuffer msg = new StringBuffer("Slow transaction [");
+		msg.append(name).append("] ");
+		if (status == TransactionSynchronization.STATUS_COMMITTED) {
+			msg.append("committed");
+		}
+		else if (status == TransactionSynchronization.STATUS_ROLLED_BACK) {
+			msg.append("rolled back");
+		}
+		else {
+			msg.append("completed with unknown outcome");
+		}
+		msg.append(" after ").append(time).append(" ms, executing ").append(statementCount).append(" statements");
+		for (int i = 0; i < statements.length; i++) {
+			msg.append(i == 0 ? ": [" : ", [").append(statements[i]).append("]");
+		}
+		if (statementCount > statements.length) {
+			msg.append(", ...");
+		}
+		logger.warn(msg.toString());
+	}
+
+	/**
+	 * Return the names of all transactions recorded so far, sorted.
+	 */
+	public String[] getTransactionNames() {
+		List names = null;
+		synchronized (this.statistics) {
+			names = new ArrayList(this.statistics.keySet());
+		}
+		Collections.sort(names);
+		return (String[]) names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Return a snapshot of the statistics for the given transaction name.
+	 * @param name the transaction name
+	 * @return the statistics, or null if no such transaction has been recorded
+	 */
+	public TransactionStatistics getStatistics(String name) {
+		TransactionStatistics stats = null;
+		synchronized (this.statistics) {
+			stats = (TransactionStatistics) this.statistics.get(name);
+		}
+		return (stats != null ? new TransactionStatistics(stats) : null);
+	}
+
+	/**
+	 * Return the number of currently open transactions.
+	 */
+	public int getOpenTransactionCount() {
+		synchronized (this.openTransactionLock) {
+			return openTransactionCount;
+		}
+	}
+
+	/**
+	 * Return the maximum number of concurrently open transactions
+	 * since creation or the last reset.
+	 */
+	public int getMaxOpenTransactionCount() {
+		synchronized (this.openTransactionLock) {
+			return maxOpenTransactionCount;
+		}
+	}
+
+	/**
+	 * Discard all statistics recorded so far.
+	 */
+	public void reset() {
+		synchronized (this.statistics) {
+			this.statistics.clear();
+		}
+		synchronized (this.openTransactionLock) {
+			this.maxOpenTransactionCount = this.openTransactionCount;
+		}
+	}
+
+
+	/**
+	 * Data about one transaction of a thread, linked to the record of
+	 * the suspended outer transaction, if any.
+	 */
+	private static class TransactionRecord {
+
+		private static final String[] NO_STATEMENTS = new String[0];
+
+		private final TransactionRecord previous;
+
+		private final TransactionStatus status;
+
+		private final long startTime = System.currentTimeMillis();
+
+		private String name;
+
+		private final String[] statements;
+
+		private int statementCount;
+
+		private TransactionRecord(TransactionRecord previous, TransactionStatus status, int statementsToKeep) {
+			this.previous = previous;
+			this.status = status;
+			this.statements = (statementsToKeep > 0 ? new String[statementsToKeep] : NO_STATEMENTS);
+		}
+
+		private void addStatement(String statement) {
+			if (this.statementCount < this.statements.length) {
+				this.statements[this.statementCount] = statement;
+			}
+			this.statementCount++;
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction.support;
+
+/**
+ * Extension of the TransactionSynchronization interface that adds callbacks
+ * before commit and before completion. TransactionSynchronizationManager
+ * invokes these phases only for synchronizations implementing this interface;
+ * plain TransactionSynchronizations just receive afterCompletion.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see TransactionSynchronizationManager#triggerBeforeCommit
+ * @see TransactionSynchronizationManager#triggerBeforeCompletion
+ * @see TransactionSynchronizationAdapter
+ */
+public interface TransactionPhaseSynchronization extends TransactionSynchronization {
+
+	/**
+	 * Invoked before transaction commit, i.e. not on rollback.
+	 * Can e.g. flush transactional changes to the database.
+	 * <p>An exception thrown here causes the transaction to be rolled back,
+	 * and gets propagated to the caller of commit.
+	 */
+	void beforeCommit();
+
+	/**
+	 * Invoked before transaction commit or rollback.
+	 * Can e.g. perform resource cleanup before transaction completion.
+	 * Exceptions thrown here get logged but do not affect the transaction.
+	 */
+	void beforeCompletion();
+
+}
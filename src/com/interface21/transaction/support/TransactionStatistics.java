@@ -0,0 +1,165 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction.support;
+
+/**
+ * Statistics for all transactions with a given name, as recorded by a
+ * TransactionMonitor: commit and rollback counts, total and maximum duration,
+ * and a duration histogram. Instances returned by TransactionMonitor are
+ * snapshots, i.e. they do not change with further transactions.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ * @see TransactionMonitor#getStatistics
+ */
+public class TransactionStatistics {
+
+	/**
+	 * Upper bounds of the duration histogram buckets in milliseconds,
+	 * each exclusive. A final bucket counts all longer transactions.
+	 */
+	public static final long[] HISTOGRAM_BUCKET_BOUNDS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+	private final String name;
+
+	private long commitCount;
+
+	private long rollbackCount;
+
+	private long unknownCount;
+
+	private long totalTime;
+
+	private long maxTime;
+
+	private final long[] histogram = new long[HISTOGRAM_BUCKET_BOUNDS.length + 1];
+
+	/**
+	 * Create a new TransactionStatistics instance for the given name.
+	 */
+	protected TransactionStatistics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Create a snapshot of the given statistics.
+	 */
+	protected TransactionStatistics(TransactionStatistics other) {
+		this.name = other.name;
+		synchronized (other) {
+			this.commitCount = other.commitCount;
+			this.rollbackCount = other.rollbackCount;
+			this.unknownCount = other.unknownCount;
+			this.totalTime = other.totalTime;
+			this.maxTime = other.maxTime;
+			System.arraycopy(other.histogram, 0, this.histogram, 0, this.histogram.length);
+		}
+	}
+
+	/**
+	 * Record a completed transaction. Not synchronized: callers need to
+	 * synchronize on this instance.
+	 * @param status completion status according to TransactionSynchronization constants
+	 * @param time duration of the transaction in milliseconds
+	 */
+	protected void record(int status, long time) {
+		if (status == TransactionSynchronization.STATUS_COMMITTED) {
+			this.commitCount++;
+		}
+		else if (status == TransactionSynchronization.STATUS_ROLLED_BACK) {
+			this.rollbackCount++;
+		}
+		else {
+			this.unknownCount++;
+		}
+		this.totalTime += time;
+		if (time > this.maxTime) {
+			this.maxTime = time;
+		}
+		int bucket = 0;
+		while (bucket < HISTOGRAM_BUCKET_BOUNDS.length && time >= HISTOGRAM_BUCKET_BOUNDS[bucket]) {
+			bucket++;
+		}
+		this.histogram[bucket]++;
+	}
+
+	/**
+	 * Return the transaction name that these statistics apply to.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Return the number of committed transactions.
+	 */
+	public long getCommitCount() {
+		return commitCount;
+	}
+
+	/**
+	 * Return the number of rolled back transactions.
+	 */
+	public long getRollbackCount() {
+		return rollbackCount;
+	}
+
+	/**
+	 * Return the number of transactions with unknown outcome,
+	 * i.e. failed on commit or rollback with a system error.
+	 */
+	public long getUnknownCount() {
+		return unknownCount;
+	}
+
+	/**
+	 * Return the total number of completed transactions.
+	 */
+	public long getTransactionCount() {
+		return this.commitCount + this.rollbackCount + this.unknownCount;
+	}
+
+	/**
+	 * Return the total duration of all transactions in milliseconds.
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * Return the average duration of a transaction in milliseconds.
+	 */
+	public long getAverageTime() {
+		long count = getTransactionCount();
+		return (count > 0 ? this.totalTime / count : 0);
+	}
+
+	/**
+	 * Return the duration of the longest transaction in milliseconds.
+	 */
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Return the duration histogram: the number of transactions per bucket,
+	 * with the buckets defined by HISTOGRAM_BUCKET_BOUNDS.
+	 * @return a copy of the histogram counts
+	 * @see #HISTOGRAM_BUCKET_BOUNDS
+	 */
+	public long[] getHistogram() {
+		long[] copy = new long[this.histogram.length];
+		System.arraycopy(this.histogram, 0, copy, 0, copy.length);
+		return copy;
+	}
+
+	public String toString() {
+		return "TransactionStatistics for [" + this.name + "]: commits=" + this.commitCount +
+		    ", rollbacks=" + this.rollbackCount + ", unknown=" + this.unknownCount +
+		    ", averageTime=" + getAverageTime() + "ms, maxTime=" + this.maxTime + "ms";
+	}
+
+}
@@ -3,10 +3,19 @@ package com.interface21.transaction.support;
 /**
  * Interface for callbacks after transaction completion.
  * Supported by AbstractPlatformTransactionManager.
+ * Implement TransactionPhaseSynchronization to receive
+ * callbacks before commit and before completion too.
+ *
+ * <p>Implementations can implement the Ordered interface to influence
+ * their execution order. Non-Ordered synchronizations get invoked last,
+ * in registration order.
+ *
  * @author Juergen Hoeller
  * @since 02.06.2003
  * @see TransactionSynchronizationManager
+ * @see TransactionPhaseSynchronization
  * @see AbstractPlatformTransactionManager
+ * @see com.interface21.core.Ordered
  */
 public interface TransactionSynchronization {
 
@@ -0,0 +1,27 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction.support;
+
+/**
+ * Adapter for the TransactionPhaseSynchronization interface,
+ * with empty implementations of all callback methods.
+ * Subclasses only need to override the callbacks they are interested in.
+ *
+ * @since 19.10.2026
+ * @version $Id$
+ */
+public abstract class TransactionSynchronizationAdapter implements TransactionPhaseSynchronization {
+
+	public void beforeCommit() {
+	}
+
+	public void beforeCompletion() {
+	}
+
+	public void afterCompletion(int status) {
+	}
+
+}
@@ -1,9 +1,14 @@
 package com.interface21.transaction.support;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.interface21.core.Ordered;
+
 /**
  * Manages a list of transactions synchronizations per thread.
  * Must be activated and deactivated by a transaction manager via init and clear.
@@ -15,7 +20,12 @@ import java.util.List;
  * If transaction synchronization isn't active, there is either no current
  * transaction, or the transaction manager doesn't support synchronizations.
  *
- * <p>E.g. used for Hibernate Session close calls when using JTA,
+ * <p>Synchronizations get invoked according to their order value if they
+ * implement the Ordered interface, else in registration order after all
+ * Ordered ones. Each thread keeps a reusable synchronization registry, so
+ * activating synchronization for a new transaction does not allocate.
+ *
+ * <p>E.g. used for Hibernate Session flush and close calls when using JTA,
  * for proper transactional handling of the JVM-level cache.
  *
  * @author Juergen Hoeller
@@ -26,17 +36,33 @@ import java.util.List;
  * @see AbstractPlatformTransactionManager
  * @see com.interface21.transaction.jta.JtaTransactionManager
  * @see com.interface21.orm.hibernate.SessionFactoryUtils#closeSessionIfNecessary
+ * @see com.interface21.core.Ordered
  */
 public abstract class TransactionSynchronizationManager {
 
+	private static final Log logger = LogFactory.getLog(TransactionSynchronizationManager.class);
+
 	private static ThreadLocal synchronizations = new ThreadLocal();
 
+	/**
+	 * Return the current thread's registry, or null if not active.
+	 */
+	private static SynchronizationRegistry getActiveRegistry() {
+		SynchronizationRegistry registry = (SynchronizationRegistry) synchronizations.get();
+		return (registry != null && registry.active ? registry : null);
+	}
+
 	/**
 	 * Activate thread synchronizations for the current thread.
 	 * Called by transaction manager on transaction begin.
 	 */
 	public static void init() {
-		synchronizations.set(new ArrayList());
+		SynchronizationRegistry registry = (SynchronizationRegistry) synchronizations.get();
+		if (registry == null) {
+			registry = new SynchronizationRegistry();
+			synchronizations.set(registry);
+		}
+		registry.active = true;
 	}
 
 	/**
@@ -45,17 +71,79 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #register
 	 */
 	public static boolean isActive() {
-		return (synchronizations.get() != null);
+		return (getActiveRegistry() != null);
 	}
 
 	/**
-	 * Register a new JTA synchronization for the current thread.
+	 * Register a new transaction synchronization for the current thread.
 	 * Called by resource management code.
 	 * Calls get ignored if transaction synchronization isn't active.
+	 * @see com.interface21.core.Ordered
 	 */
 	public static void register(TransactionSynchronization synchronization) {
-		if (isActive()) {
-			((List) synchronizations.get()).add(synchronization);
+		SynchronizationRegistry registry = getActiveRegistry();
+		if (registry != null) {
+			registry.add(synchronization);
+		}
+	}
+
+	/**
+	 * Return an unmodifiable snapshot of the synchronizations
+	 * registered for the current thread, in invocation order.
+	 * @return List of TransactionSynchronization instances,
+	 * empty if transaction synchronization isn't active
+	 */
+	public static List getSynchronizations() {
+		SynchronizationRegistry registry = getActiveRegistry();
+		if (registry == null) {
+			return Collections.EMPTY_LIST;
+		}
+		List list = new ArrayList(registry.size);
+		for (int i = 0; i < registry.size; i++) {
+			list.add(registry.synchronizations[i]);
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Trigger beforeCommit calls for the current thread,
+	 * on synchronizations that implement TransactionPhaseSynchronization.
+	 * Called by transaction manager before transaction commit.
+	 * Calls get ignored if transaction synchronization isn't active.
+	 * @throws RuntimeException if thrown by a beforeCommit callback,
+	 * skipping the remaining synchronizations
+	 */
+	public static void triggerBeforeCommit() {
+		SynchronizationRegistry registry = getActiveRegistry();
+		if (registry != null) {
+			for (int i = 0; i < registry.size; i++) {
+				if (registry.synchronizations[i] instanceof TransactionPhaseSynchronization) {
+					((TransactionPhaseSynchronization) registry.synchronizations[i]).beforeCommit();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Trigger beforeCompletion calls for the current thread,
+	 * on synchronizations that implement TransactionPhaseSynchronization.
+	 * Called by transaction manager before transaction commit/rollback.
+	 * Calls get ignored if transaction synchronization isn't active.
+	 * Exceptions thrown by callbacks get logged.
+	 */
+	public static void triggerBeforeCompletion() {
+		SynchronizationRegistry registry = getActiveRegistry();
+		if (registry != null) {
+			for (int i = 0; i < registry.size; i++) {
+				if (registry.synchronizations[i] instanceof TransactionPhaseSynchronization) {
+					try {
+						((TransactionPhaseSynchronization) registry.synchronizations[i]).beforeCompletion();
+					}
+					catch (RuntimeException ex) {
+						logger.error("TransactionSynchronization.beforeCompletion threw exception", ex);
+					}
+				}
+			}
 		}
 	}
 
@@ -63,24 +151,113 @@ public abstract class TransactionSynchronizationManager {
 	 * Trigger afterCompletion calls for the current thread.
 	 * Called by transaction manager after transaction commit/rollback.
 	 * Calls get ignored if transaction synchronization isn't active.
+	 * Exceptions thrown by callbacks get logged.
 	 * @param status completion status according to TransactionSynchronization constants
 	 * @see com.interface21.transaction.support.TransactionSynchronization
 	 */
 	public static void triggerAfterCompletion(int status) {
-		if (isActive()) {
-			for (Iterator it = ((List) synchronizations.get()).iterator(); it.hasNext();) {
-				TransactionSynchronization synchronization = (TransactionSynchronization) it.next();
-				synchronization.afterCompletion(status);
+		SynchronizationRegistry registry = getActiveRegistry();
+		if (registry != null) {
+			for (int i = 0; i < registry.size; i++) {
+				try {
+					registry.synchronizations[i].afterCompletion(status);
+				}
+				catch (RuntimeException ex) {
+					logger.error("TransactionSynchronization.afterCompletion threw exception", ex);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Deactivate thread synchronizations for the current thread, returning the
+	 * current synchronizations. Called by transaction manager on suspension of
+	 * the current transaction.
+	 * @return the suspended synchronizations, or null if not active
+	 * @see #resume
+	 */
+	public static Object suspend() {
+		SynchronizationRegistry registry = getActiveRegistry();
+		if (registry != null) {
+			// hand the registry over to the suspended transaction,
+			// a new one gets created on the next init call
+			synchronizations.set(null);
+		}
+		return registry;
+	}
+
+	/**
+	 * Reactivate the given synchronizations for the current thread.
+	 * Called by transaction manager on resumption of a suspended transaction.
+	 * @param suspended the synchronizations returned by suspend
+	 * @see #suspend
+	 */
+	public static void resume(Object suspended) {
+		if (suspended != null) {
+			synchronizations.set(suspended);
+		}
+		else {
+			clear();
+		}
+	}
+
 	/**
 	 * Deactivate thread synchronizations for the current thread.
 	 * Called by transaction manager on transaction cleanup.
+	 * Keeps the thread's registry for reuse by the next transaction.
 	 */
 	public static void clear() {
-		synchronizations.set(null);
+		SynchronizationRegistry registry = (SynchronizationRegistry) synchronizations.get();
+		if (registry != null) {
+			registry.clear();
+		}
+	}
+
+
+	/**
+	 * Growable array of synchronizations, sorted by order value.
+	 * Reused across the transactions of a thread.
+	 */
+	private static class SynchronizationRegistry {
+
+		private boolean active;
+
+		private TransactionSynchronization[] synchronizations = new TransactionSynchronization[8];
+
+		private int[] orders = new int[8];
+
+		private int size;
+
+		private void add(TransactionSynchronization synchronization) {
+			int order = (synchronization instanceof Ordered ?
+			             ((Ordered) synchronization).getOrder() : Integer.MAX_VALUE);
+			if (this.size == this.synchronizations.length) {
+				TransactionSynchronization[] newSynchronizations = new TransactionSynchronization[this.size * 2];
+				System.arraycopy(this.synchronizations, 0, newSynchronizations, 0, this.size);
+				this.synchronizations = newSynchronizations;
+				int[] newOrders = new int[this.size * 2];
+				System.arraycopy(this.orders, 0, newOrders, 0, this.size);
+				this.orders = newOrders;
+			}
+			// insert after all synchronizations with the same or a lower order value
+			int index = this.size;
+			while (index > 0 && this.orders[index - 1] > order) {
+				this.synchronizations[index] = this.synchronizations[index - 1];
+				this.orders[index] = this.orders[index - 1];
+				index--;
+			}
+			this.synchronizations[index] = synchronization;
+			this.orders[index] = order;
+			this.size++;
+		}
+
+		private void clear() {
+			for (int i = 0; i < this.size; i++) {
+				this.synchronizations[i] = null;
+			}
+			this.size = 0;
+			this.active = false;
+		}
 	}
 
 }
@@ -28,6 +28,9 @@ import com.interface21.beans.SortDefinition;
  * the respective JSTL EL expressions, like "myModelAttr.pageSize" and
  * "myModelAttr.sort.ascending".
  *
+ * <p>Lists that implement SortableList, like ColumnarResult's row list,
+ * are sorted by the list itself instead of by bean property.
+ *
  * <p>This class just provides support for an unmodifiable List of beans.
  * If you need on-demand refresh because of Locale or filter changes,
  * consider RefreshablePagedListHolder.
@@ -239,11 +242,18 @@ public class PagedListHolder {
 
 	/**
 	 * Resort the list if necessary, i.e. if the current sort instance isn't equal
-	 * to the backed-up sortUsed instance.
+	 * to the backed-up sortUsed instance. A SortableList source sorts itself,
+	 * other lists are sorted by bean property via PropertyComparator.
+	 * @see SortableList
 	 */
 	public void resort() {
 		if (this.sort != null && !"".equals(this.sort.getProperty()) && !this.sort.equals(this.sortUsed)) {
-			PropertyComparator.sort(this.source, this.sort);
+			if (this.source instanceof SortableList) {
+				((SortableList) this.source).sort(this.sort);
+			}
+			else {
+				PropertyComparator.sort(this.source, this.sort);
+			}
 			this.sortUsed = (MutableSortDefinition) BeanUtils.instantiateClass(this.sort.getClass());
 			BeanUtils.copyProperties(this.sort, this.sortUsed);
 			setPage(0);
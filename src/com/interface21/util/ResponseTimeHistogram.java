@@ -0,0 +1,181 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.util;
+
+/**
+ * ResponseTimeMonitor implementation that records response times in a
+ * histogram with logarithmic bucket sizes, allowing for percentile queries
+ * such as median or 99th percentile response times.
+ *
+ * <p>Times below 16 milliseconds are counted exactly. Above that, each power
+ * of two is divided into 16 buckets, so any reported percentile is accurate to
+ * about 6%. Memory usage is fixed, whatever the number of recorded times.
+ *
+ * <p>Like ResponseTimeMonitorImpl, this class uses no synchronization and
+ * doesn't allocate objects when recording, so it is cheap enough to be updated
+ * on every request. Concurrent updates may occasionally be lost, which is
+ * acceptable for monitoring purposes.
+ *
+ * @version $Id$
+ * @see ResponseTimeMonitorImpl
+ */
+public class ResponseTimeHistogram implements ResponseTimeMonitor {
+
+	/** Number of buckets per power of two; also the exactly counted range */
+	private static final int SUB_BUCKETS = 16;
+
+	/** log2 of SUB_BUCKETS */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/** Highest power of two tracked: about 35 years in milliseconds */
+	private static final int MAX_EXPONENT = 40;
+
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final int[] buckets = new int[BUCKET_COUNT];
+
+	private long count;
+
+	private long totalTime;
+
+	private long minTime = Long.MAX_VALUE;
+
+	private long maxTime;
+
+	/**
+	 * Record the given response time.
+	 * @param time response time in milliseconds. Negative values,
+	 * e.g. caused by system clock changes, are treated as 0.
+	 */
+	public void recordResponseTime(long time) {
+		if (time < 0) {
+			time = 0;
+		}
+		this.buckets[bucketIndex(time)]++;
+		this.count++;
+		this.totalTime += time;
+		if (time < this.minTime) {
+			this.minTime = time;
+		}
+		if (time > this.maxTime) {
+			this.maxTime = time;
+		}
+	}
+
+	/**
+	 * Return the number of recorded response times.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Return the sum of all recorded response times in milliseconds.
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	public int getAccessCount() {
+		return (int) this.count;
+	}
+
+	public int getAverageResponseTimeMillis() {
+		long count = this.count;
+		return (count > 0) ? (int) (this.totalTime / count) : 0;
+	}
+
+	public int getBestResponseTimeMillis() {
+		return (this.count > 0) ? (int) this.minTime : 0;
+	}
+
+	public int getWorstResponseTimeMillis() {
+		return (int) this.maxTime;
+	}
+
+	/**
+	 * Return the response time in milliseconds that the given fraction of
+	 * recorded times is less than or equal to, e.g. 0.99 for the 99th percentile.
+	 * Returns the upper bound of the bucket the percentile falls into,
+	 * but never more than the worst recorded time.
+	 * @param fraction fraction between 0 and 1
+	 * @return the percentile, or 0 if no times have been recorded
+	 */
+	public long getPercentile(double fraction) {
+		if (fraction < 0 || fraction > 1)
+			throw new IllegalArgumentException("Fraction must be between 0 and 1");
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			total += this.buckets[i];
+		}
+		if (total == 0)
+			return 0;
+		long threshold = (long) Math.ceil(total * fraction);
+		if (threshold < 1) {
+			threshold = 1;
+		}
+		long cumulative = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			cumulative += this.buckets[i];
+			if (cumulative >= threshold) {
+				// The last bucket also counts times beyond the tracked range
+				return (i < BUCKET_COUNT - 1) ? Math.min(bucketUpperBound(i), this.maxTime) : this.maxTime;
+			}
+		}
+		return this.maxTime;
+	}
+
+	/**
+	 * Return the median response time in milliseconds.
+	 */
+	public long getMedian() {
+		return getPercentile(0.5);
+	}
+
+	/**
+	 * Clear all recorded response times.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			this.buckets[i] = 0;
+		}
+		this.count = 0;
+		this.totalTime = 0;
+		this.minTime = Long.MAX_VALUE;
+		this.maxTime = 0;
+	}
+
+	private static int bucketIndex(long time) {
+		if (time < SUB_BUCKETS) {
+			return (int) time;
+		}
+		int exponent = SUB_BUCKET_BITS;
+		while (exponent < MAX_EXPONENT && (time >> (exponent + 1)) != 0) {
+			exponent++;
+		}
+		if ((time >> (exponent + 1)) != 0) {
+			// Beyond the tracked range: count in the last bucket
+			return BUCKET_COUNT - 1;
+		}
+		int shift = exponent - SUB_BUCKET_BITS;
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) (time >> shift) - SUB_BUCKETS;
+	}
+
+	private static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowerBound = ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+
+	public String toString() {
+		return "count=" + getCount() + "; avg=" + getAverageResponseTimeMillis() + "; median=" + getMedian() +
+		    "; 99%=" + getPercentile(0.99) + "; 99.9%=" + getPercentile(0.999) + "; worst=" + getWorstResponseTimeMillis();
+	}
+
+}
@@ -0,0 +1,29 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.util;
+
+import java.util.List;
+
+import com.interface21.beans.SortDefinition;
+
+/**
+ * List that knows how to sort itself according to a SortDefinition,
+ * for elements that don't expose the sort property as bean property.
+ * PagedListHolder uses this instead of a PropertyComparator.
+ *
+ * @version $Id$
+ * @see PagedListHolder#resort
+ * @see com.interface21.beans.PropertyComparator
+ */
+public interface SortableList extends List {
+
+	/**
+	 * Sort this list according to the given sort definition.
+	 * @param sortDefinition the parameters to sort by
+	 */
+	void sort(SortDefinition sortDefinition);
+
+}
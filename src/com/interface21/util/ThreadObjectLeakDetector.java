@@ -0,0 +1,86 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Detects values that get bound to the current thread via any
+ * ThreadObjectManager during a unit of work, typically a request,
+ * and are still bound at its end. Such values usually indicate
+ * transactions or sessions that have not been completed properly,
+ * holding on to resources like JDBC Connections.
+ *
+ * <p>A detector takes a snapshot of the thread's bindings on creation:
+ * values that were bound before, for example by an enclosing filter,
+ * are not reported. Use one detector per unit of work, in the thread
+ * that performs it.
+ *
+ * @version $Id$
+ * @see ThreadObjectManager
+ * @see com.interface21.web.servlet.FrameworkServlet#setDetectThreadObjectLeaks
+ */
+public class ThreadObjectLeakDetector {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final ThreadObjectManager[] managers;
+
+	/** Keys bound at creation, per manager */
+	private final Object[][] keysBefore;
+
+	/**
+	 * Create a new ThreadObjectLeakDetector for the current thread,
+	 * taking a snapshot of the values bound via all ThreadObjectManagers.
+	 */
+	public ThreadObjectLeakDetector() {
+		this.managers = ThreadObjectManager.getThreadObjectManagers();
+		this.keysBefore = new Object[this.managers.length][];
+		for (int i = 0; i < this.managers.length; i++) {
+			this.keysBefore[i] = this.managers[i].getThreadObjectKeys();
+		}
+	}
+
+	/**
+	 * Check for values that have been bound to the current thread since the
+	 * creation of this detector and are still bound, logging a warning for each.
+	 * @param context description of the unit of work for log messages,
+	 * e.g. the request URI
+	 * @param unbind whether to remove leaked values from the thread. Note that
+	 * this does not close any resources held by them.
+	 * @return the number of leaked values
+	 */
+	public int checkForLeaks(String context, boolean unbind) {
+		int leakCount = 0;
+		for (int i = 0; i < this.managers.length; i++) {
+			ThreadObjectManager manager = this.managers[i];
+			Object[] keys = manager.getThreadObjectKeys();
+			for (int j = 0; j < keys.length; j++) {
+				if (!containsKey(this.keysBefore[i], keys[j])) {
+					leakCount++;
+					logger.warn("Value [" + manager.getThreadObject(keys[j]) + "] for key [" + keys[j] + "] of " +
+					            manager.getName() + " still bound to thread [" + Thread.currentThread().getName() +
+					            "] after " + context + (unbind ? " - removing it" : ""));
+					if (unbind) {
+						manager.removeThreadObject(keys[j]);
+					}
+				}
+			}
+		}
+		return leakCount;
+	}
+
+	private static boolean containsKey(Object[] keys, Object key) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
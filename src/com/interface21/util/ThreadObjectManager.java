@@ -1,6 +1,10 @@
 package com.interface21.util;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -14,23 +18,93 @@ import org.apache.commons.logging.LogFactory;
  * <p>Used e.g. by DataSourceTransactionManager to keep a JDBC transaction per
  * DataSource and thread. Does not need to be used by application developers.
  *
+ * <p>Keys are compared by identity, as they are typically factories like
+ * DataSources and SessionFactories. The values of each thread are kept in
+ * small arrays instead of a HashMap: there are rarely more than a few
+ * bindings per thread, and a linear identity scan over them is cheaper than
+ * hashing, which matters as every DAO call performs several lookups.
+ *
+ * <p>All instances register themselves, so that ThreadObjectLeakDetector can
+ * check all of them for values that are still bound at the end of a request.
+ * The registry only holds weak references, so it does not keep instances
+ * alive that are no longer used otherwise.
+ *
  * @author Juergen Hoeller
  * @since 02.05.2003
  * @see com.interface21.jdbc.datasource.DataSourceUtils#getConnection
  * @see com.interface21.jdbc.datasource.DataSourceTransactionManager
+ * @see ThreadObjectLeakDetector
  */
 public class ThreadObjectManager {
 
+	private static final Object[] EMPTY_KEYS = new Object[0];
+
+	/** WeakReferences to all ThreadObjectManager instances */
+	private static final List managerReferences = new ArrayList();
+
+	/**
+	 * Return all ThreadObjectManager instances that have been created
+	 * and are still in use.
+	 */
+	public static ThreadObjectManager[] getThreadObjectManagers() {
+		List managers = new ArrayList();
+		synchronized (managerReferences) {
+			for (Iterator it = managerReferences.iterator(); it.hasNext();) {
+				ThreadObjectManager manager = (ThreadObjectManager) ((WeakReference) it.next()).get();
+				if (manager != null) {
+					managers.add(manager);
+				}
+				else {
+					it.remove();
+				}
+			}
+		}
+		return (ThreadObjectManager[]) managers.toArray(new ThreadObjectManager[managers.size()]);
+	}
+
+	private static void registerThreadObjectManager(ThreadObjectManager manager) {
+		synchronized (managerReferences) {
+			managerReferences.add(new WeakReference(manager));
+		}
+	}
+
+
 	private final Log logger = LogFactory.getLog(getClass());
 
+	private final String name;
+
 	private ThreadLocal threadLocal = new ThreadLocal() {
 		protected Object initialValue() {
-			return new HashMap();
+			return new ThreadObjects();
 		}
 	};
 
-	private Map getThreadObjectMap() {
-		return (Map) threadLocal.get();
+	/**
+	 * Create a new ThreadObjectManager without specific name.
+	 */
+	public ThreadObjectManager() {
+		this(null);
+	}
+
+	/**
+	 * Create a new ThreadObjectManager with the given name,
+	 * describing the kind of values for log messages.
+	 * @param name the name of this manager, e.g. "JDBC Connection"
+	 */
+	public ThreadObjectManager(String name) {
+		this.name = (name != null ? name : "thread object");
+		registerThreadObjectManager(this);
+	}
+
+	/**
+	 * Return the name of this manager.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	private ThreadObjects getThreadObjects() {
+		return (ThreadObjects) threadLocal.get();
 	}
 
 	/**
@@ -39,7 +113,7 @@ public class ThreadObjectManager {
 	 * @return if there is a value bound to the current thread
 	 */
 	public boolean hasThreadObject(Object key) {
-		return getThreadObjectMap().containsKey(key);
+		return getThreadObjects().indexOf(key) != -1;
 	}
 
 	/**
@@ -48,11 +122,9 @@ public class ThreadObjectManager {
 	 * @return a value bound to the current thread, or null if none
 	 */
 	public Object getThreadObject(Object key) {
-		Object value = getThreadObjectMap().get(key);
-		if (value != null && logger.isDebugEnabled()) {
-			logger.debug("Retrieved value [" + value + "] for key [" + key + "] bound to thread [" + Thread.currentThread().getName() + "]");
-		}
-		return value;
+		ThreadObjects objects = getThreadObjects();
+		int index = objects.indexOf(key);
+		return (index != -1 ? objects.values[index] : null);
 	}
 
 	/**
@@ -62,29 +134,120 @@ public class ThreadObjectManager {
 	 * @throws java.lang.IllegalStateException if there is already a value bound to the thread
 	 */
 	public void bindThreadObject(Object key, Object value) {
-		if (hasThreadObject(key)) {
+		ThreadObjects objects = getThreadObjects();
+		if (objects.indexOf(key) != -1) {
 			throw new IllegalStateException("Already a value for key [" + key + "] bound to thread");
 		}
-		getThreadObjectMap().put(key, value);
+		objects.add(key, value);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Bound value [" + value + "] for key [" + key + "] to thread [" + Thread.currentThread().getName() + "]");
 		}
 	}
 
-
 	/**
 	 * Remove a value for the key from the current thread.
 	 * @param key key to check
 	 * @throws java.lang.IllegalStateException if there is no value bound to the thread
 	 */
 	public void removeThreadObject(Object key) {
-		if (!hasThreadObject(key)) {
+		ThreadObjects objects = getThreadObjects();
+		int index = objects.indexOf(key);
+		if (index == -1) {
 			throw new IllegalStateException("No value for key " + key + " bound to thread");
 		}
-		Object value = getThreadObjectMap().remove(key);
+		Object value = objects.remove(index);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Removed value [" + value + "] for key [" + key + "] from thread [" + Thread.currentThread().getName() + "]");
 		}
 	}
 
+	/**
+	 * Return the keys of all values bound to the current thread.
+	 * @return the keys, in binding order (a new array, or an empty array if none)
+	 */
+	public Object[] getThreadObjectKeys() {
+		ThreadObjects objects = getThreadObjects();
+		if (objects.size == 0) {
+			return EMPTY_KEYS;
+		}
+		Object[] keys = new Object[objects.size];
+		System.arraycopy(objects.keys, 0, keys, 0, objects.size);
+		return keys;
+	}
+
+	/**
+	 * Remove all values from the current thread, for example at the end of a
+	 * request. Any resources behind the values need to be released by the caller.
+	 * @return a Map from key to removed value (empty if none)
+	 */
+	public Map removeThreadObjects() {
+		ThreadObjects objects = getThreadObjects();
+		Map removed = new HashMap();
+		for (int i = 0; i < objects.size; i++) {
+			removed.put(objects.keys[i], objects.values[i]);
+		}
+		objects.clear();
+		if (!removed.isEmpty() && logger.isDebugEnabled()) {
+			logger.debug("Removed values " + removed + " from thread [" + Thread.currentThread().getName() + "]");
+		}
+		return removed;
+	}
+
+
+	/**
+	 * Key/value pairs of one thread, in parallel arrays.
+	 */
+	private static class ThreadObjects {
+
+		private Object[] keys = new Object[4];
+
+		private Object[] values = new Object[4];
+
+		private int size;
+
+		private int indexOf(Object key) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.keys[i] == key) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private void add(Object key, Object value) {
+			if (this.size == this.keys.length) {
+				Object[] newKeys = new Object[this.size * 2];
+				Object[] newValues = new Object[this.size * 2];
+				System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+				System.arraycopy(this.values, 0, newValues, 0, this.size);
+				this.keys = newKeys;
+				this.values = newValues;
+			}
+			this.keys[this.size] = key;
+			this.values[this.size] = value;
+			this.size++;
+		}
+
+		private Object remove(int index) {
+			Object value = this.values[index];
+			int moved = this.size - index - 1;
+			if (moved > 0) {
+				System.arraycopy(this.keys, index + 1, this.keys, index, moved);
+				System.arraycopy(this.values, index + 1, this.values, index, moved);
+			}
+			this.size--;
+			this.keys[this.size] = null;
+			this.values[this.size] = null;
+			return value;
+		}
+
+		private void clear() {
+			for (int i = 0; i < this.size; i++) {
+				this.keys[i] = null;
+				this.values[i] = null;
+			}
+			this.size = 0;
+		}
+	}
+
 }
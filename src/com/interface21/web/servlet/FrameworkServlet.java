@@ -21,6 +21,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.interface21.context.ApplicationContext;
+import com.interface21.util.ThreadObjectLeakDetector;
 import com.interface21.web.context.support.RequestHandledEvent;
 import com.interface21.web.context.WebApplicationContext;
 import com.interface21.web.context.support.WebApplicationContextUtils;
@@ -38,6 +39,8 @@ import com.interface21.web.util.WebUtils;
  * if not overridden via the namespace property.
  * <li>Publishes events on request processing, whether or not a request is
  * successfully handled.
+ * <li>Reports transactional resources like JDBC Connections that are still
+ * bound to the thread after a request, if "detectThreadObjectLeaks" is on.
  * </ul>
  *
  * <p>Subclasses must implement doService() to handle requests. Because this extends
@@ -76,6 +79,12 @@ public abstract class FrameworkServlet extends HttpServletBean {
 	 */
 	private boolean publishContext = true;
 
+	/** Should we report values still bound to the thread after a request? */
+	private boolean detectThreadObjectLeaks = false;
+
+	/** Should we remove values still bound to the thread after a request? */
+	private boolean unbindLeakedThreadObjects = false;
+
 	/** WebApplicationContext for this servlet */
 	private WebApplicationContext webApplicationContext;
 
@@ -118,6 +127,28 @@ public abstract class FrameworkServlet extends HttpServletBean {
 		this.publishContext = publishContext;
 	}
 
+	/**
+	 * Set whether to log a warning for each value that got bound to the thread
+	 * via a ThreadObjectManager during a request and is still bound at its end,
+	 * like the ConnectionHolder of a transaction that has not been completed.
+	 * Default is false, as the check adds work to every request; turn it on
+	 * to track down transactions or sessions that are not completed.
+	 * @see com.interface21.util.ThreadObjectLeakDetector
+	 */
+	public final void setDetectThreadObjectLeaks(boolean detectThreadObjectLeaks) {
+		this.detectThreadObjectLeaks = detectThreadObjectLeaks;
+	}
+
+	/**
+	 * Set whether to remove detected leaked values from the thread, so that
+	 * they do not affect the next request served by the same thread.
+	 * Default is false. Only applies if "detectThreadObjectLeaks" is true.
+	 * Note that the resources held by the values are not released.
+	 */
+	public final void setUnbindLeakedThreadObjects(boolean unbindLeakedThreadObjects) {
+		this.unbindLeakedThreadObjects = unbindLeakedThreadObjects;
+	}
+
 	/**
 	 * Return this servlet's WebApplicationContext.
 	 */
@@ -232,6 +263,7 @@ public abstract class FrameworkServlet extends HttpServletBean {
 	 */
 	private void serviceWrapper(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		long startTime = System.currentTimeMillis();
+		ThreadObjectLeakDetector leakDetector = (this.detectThreadObjectLeaks ? new ThreadObjectLeakDetector() : null);
 		Exception failureCause = null;
 		try {
 			doService(request, response);
@@ -249,6 +281,9 @@ public abstract class FrameworkServlet extends HttpServletBean {
 			throw new ServletException("Unexpected runtime exception", ex);
 		}
 		finally {
+			if (leakDetector != null) {
+				leakDetector.checkForLeaks("request [" + WebUtils.getRequestUri(request) + "]", this.unbindLeakedThreadObjects);
+			}
 			long processingTime = System.currentTimeMillis() - startTime;
 			// Whether or not we succeeded, publish an event
 			if (failureCause != null) {
@@ -0,0 +1,69 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.framework.autoproxy;
+
+import java.lang.reflect.Proxy;
+
+import junit.framework.TestCase;
+
+import com.interface21.aop.interceptor.DebugInterceptor;
+import com.interface21.beans.ITestBean;
+import com.interface21.beans.TestBean;
+import com.interface21.beans.factory.support.BeanPostProcessor;
+import com.interface21.beans.factory.xml.XmlBeanFactory;
+
+/**
+ * @version $Id$
+ */
+public class AutoProxyCreatorTests extends TestCase {
+
+	private XmlBeanFactory factory;
+
+	public AutoProxyCreatorTests(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		this.factory = new XmlBeanFactory(getClass().getResourceAsStream("autoProxyTests.xml"), null);
+		this.factory.addBeanPostProcessor((BeanPostProcessor) this.factory.getBean("autoProxyCreator"));
+		this.factory.addBeanPostProcessor((BeanPostProcessor) this.factory.getBean("getterProxyCreator"));
+	}
+
+	public void testBeansMatchingNamePatternAreProxied() {
+		ITestBean service = (ITestBean) this.factory.getBean("testService");
+		assertTrue(Proxy.isProxyClass(service.getClass()));
+		assertEquals("service", service.getName());
+		ITestBean exact = (ITestBean) this.factory.getBean("exactBean");
+		assertTrue(Proxy.isProxyClass(exact.getClass()));
+	}
+
+	public void testNonMatchingBeanIsNotProxied() {
+		Object bean = this.factory.getBean("notProxied");
+		assertTrue(bean instanceof TestBean);
+		assertTrue(this.factory.getBean("debugInterceptor") instanceof DebugInterceptor);
+	}
+
+	public void testBeanWithoutApplicablePointcutIsNotProxied() {
+		Object bean = this.factory.getBean("getterOnlyBean");
+		assertTrue(bean instanceof TestBean);
+	}
+
+	public void testInterceptorChainIsShared() {
+		DebugInterceptor di = (DebugInterceptor) this.factory.getBean("debugInterceptor");
+		ITestBean service = (ITestBean) this.factory.getBean("testService");
+		ITestBean other = (ITestBean) this.factory.getBean("otherService");
+		assertEquals(0, di.getCount());
+		service.getName();
+		other.getName();
+		other.getAge();
+		assertEquals(3, di.getCount());
+	}
+
+	public void testSingletonProxyIsCached() {
+		assertSame(this.factory.getBean("testService"), this.factory.getBean("testService"));
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.interceptor;
+
+import junit.framework.TestCase;
+
+import com.interface21.aop.framework.ProxyFactory;
+import com.interface21.beans.ITestBean;
+import com.interface21.beans.TestBean;
+
+/**
+ * @version $Id$
+ */
+public class SamplingPerformanceMonitorInterceptorTests extends TestCase {
+
+	public void testRecordsInvocationsErrorsAndSamples() throws Throwable {
+		PerformanceStatisticsRegistry registry = new PerformanceStatisticsRegistry();
+		SamplingPerformanceMonitorInterceptor pmi = new SamplingPerformanceMonitorInterceptor();
+		pmi.setStatisticsRegistry(registry);
+		pmi.setSampleInterval(2);
+
+		ProxyFactory pf = new ProxyFactory(new TestBean());
+		pf.addInterceptor(0, pmi);
+		ITestBean proxy = (ITestBean) pf.getProxy();
+
+		for (int i = 0; i < 10; i++) {
+			proxy.getAge();
+		}
+		Exception ex = new Exception();
+		try {
+			proxy.exceptional(ex);
+			fail("Should have thrown exception");
+		}
+		catch (Exception thrown) {
+			assertTrue(thrown == ex);
+		}
+
+		PerformanceStatistics getAge = registry.getStatistics(ITestBean.class.getName() + ".getAge()");
+		assertEquals(10, getAge.getInvocationCount());
+		assertEquals(0, getAge.getErrorCount());
+		assertEquals(5, getAge.getSampleCount());
+		assertTrue(getAge.getMedianTime() >= 0);
+
+		PerformanceStatistics exceptional = registry.getStatistics(ITestBean.class.getName() + ".exceptional(java.lang.Throwable)");
+		assertEquals(1, exceptional.getInvocationCount());
+		assertEquals(1, exceptional.getErrorCount());
+		assertEquals(0, exceptional.getSampleCount());
+		assertEquals(2, registry.getAllStatistics().length);
+
+		registry.reset();
+		assertEquals(0, getAge.getInvocationCount());
+	}
+
+	public void testRecordsOverloadedMethodsSeparately() {
+		PerformanceStatisticsRegistry registry = new PerformanceStatisticsRegistry();
+		SamplingPerformanceMonitorInterceptor pmi = new SamplingPerformanceMonitorInterceptor();
+		pmi.setStatisticsRegistry(registry);
+
+		ProxyFactory pf = new ProxyFactory(new Adder() {
+			public int add(int a) {
+				return a;
+			}
+			public int add(int a, int b) {
+				return a + b;
+			}
+			public int add(int[][] values) {
+				return values.length;
+			}
+		});
+		pf.addInterceptor(0, pmi);
+		Adder proxy = (Adder) pf.getProxy();
+		proxy.add(1);
+		proxy.add(1, 2);
+		proxy.add(1, 2);
+		proxy.add(new int[0][]);
+
+		String prefix = Adder.class.getName() + ".add";
+		assertEquals(1, registry.getStatistics(prefix + "(int)").getInvocationCount());
+		assertEquals(2, registry.getStatistics(prefix + "(int,int)").getInvocationCount());
+		assertEquals(1, registry.getStatistics(prefix + "(int[][])").getInvocationCount());
+		assertEquals(3, registry.getAllStatistics().length);
+	}
+
+
+	public interface Adder {
+
+		int add(int a);
+
+		int add(int a, int b);
+
+		int add(int[][] values);
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.target;
+
+import junit.framework.TestCase;
+
+import com.interface21.aop.framework.AopConfigException;
+import com.interface21.aop.framework.InvokerInterceptor;
+import com.interface21.aop.framework.ProxyFactory;
+import com.interface21.beans.ITestBean;
+import com.interface21.beans.TestBean;
+
+/**
+ * @version $Id$
+ */
+public class HotSwappableTargetSourceTests extends TestCase {
+
+	public void testSwapTarget() {
+		TestBean tb1 = new TestBean("tb1", 1);
+		TestBean tb2 = new TestBean("tb2", 2);
+		HotSwappableTargetSource swapper = new HotSwappableTargetSource(tb1);
+
+		ProxyFactory pf = new ProxyFactory(new Class[] { ITestBean.class });
+		pf.addInterceptor(new InvokerInterceptor(swapper));
+		ITestBean proxy = (ITestBean) pf.getProxy();
+		assertEquals(1, proxy.getAge());
+
+		Object old = swapper.swap(tb2);
+		assertTrue(old == tb1);
+		assertEquals(2, proxy.getAge());
+		assertEquals(TestBean.class, swapper.getTargetClass());
+	}
+
+	public void testRejectsNullTarget() {
+		HotSwappableTargetSource swapper = new HotSwappableTargetSource(new TestBean());
+		try {
+			swapper.swap(null);
+			fail("Should not allow null target");
+		}
+		catch (AopConfigException ex) {
+			// expected
+		}
+	}
+
+}
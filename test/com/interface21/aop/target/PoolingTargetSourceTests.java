@@ -0,0 +1,145 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.aop.target;
+
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.AspectException;
+
+import com.interface21.aop.framework.AopConfigException;
+import com.interface21.beans.ITestBean;
+import com.interface21.beans.factory.xml.XmlBeanFactory;
+
+/**
+ * Tests for PoolingTargetSource and ThreadLocalTargetSource,
+ * used directly and through a ProxyFactoryBean.
+ * @version $Id$
+ */
+public class PoolingTargetSourceTests extends TestCase {
+
+	private XmlBeanFactory factory;
+
+	protected void setUp() throws Exception {
+		InputStream is = getClass().getResourceAsStream("targetSourceTests.xml");
+		this.factory = new XmlBeanFactory(is, null);
+	}
+
+	public void testProxyUsesPooledTarget() {
+		ITestBean pooled = (ITestBean) factory.getBean("pooled");
+		PoolingTargetSource pool = (PoolingTargetSource) factory.getBean("poolTargetSource");
+		assertEquals(1, pool.getIdleCount());
+
+		pooled.setAge(20);
+		// Single thread: the same instance is returned to and taken from the pool
+		assertEquals(20, pooled.getAge());
+		assertEquals(2, pool.getBorrowCount());
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(1, pool.getPeakActiveCount());
+	}
+
+	public void testExhaustedPoolFailsWithoutWaiting() throws Exception {
+		PoolingTargetSource pool = (PoolingTargetSource) factory.getBean("poolTargetSource");
+		Object t1 = pool.getTarget();
+		Object t2 = pool.getTarget();
+		assertTrue("Distinct instances", t1 != t2);
+		assertEquals(2, pool.getActiveCount());
+		try {
+			pool.getTarget();
+			fail("Pool should be exhausted");
+		}
+		catch (AspectException ex) {
+			// expected
+		}
+		assertEquals(1, pool.getTimeoutCount());
+
+		pool.releaseTarget(t2);
+		assertTrue("Most recently released instance is reused", pool.getTarget() == t2);
+		pool.releaseTarget(t2);
+		pool.releaseTarget(t1);
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	public void testWaitsForReleasedTarget() throws Exception {
+		final PoolingTargetSource pool = new PoolingTargetSource();
+		pool.setTargetBeanName("prototypeTest");
+		pool.setMaxSize(1);
+		pool.setMaxWait(5000);
+		pool.setBeanFactory(factory);
+
+		final Object target = pool.getTarget();
+		Thread releaser = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+					pool.releaseTarget(target);
+				}
+				catch (Exception ex) {
+					// ignore
+				}
+			}
+		};
+		releaser.start();
+		assertTrue("Got released instance", pool.getTarget() == target);
+		assertEquals(1, pool.getWaitCount());
+		releaser.join();
+	}
+
+	public void testWaitTimesOut() throws Exception {
+		PoolingTargetSource pool = new PoolingTargetSource();
+		pool.setTargetBeanName("prototypeTest");
+		pool.setMaxSize(1);
+		pool.setMaxWait(50);
+		pool.setBeanFactory(factory);
+
+		pool.getTarget();
+		try {
+			pool.getTarget();
+			fail("Should have timed out");
+		}
+		catch (AspectException ex) {
+			// expected
+		}
+		assertEquals(1, pool.getWaitCount());
+		assertEquals(1, pool.getTimeoutCount());
+		assertTrue(pool.getTotalWaitTime() >= 40);
+	}
+
+	public void testSingletonTargetIsRejected() throws Exception {
+		PoolingTargetSource pool = new PoolingTargetSource();
+		pool.setTargetBeanName("singletonTest");
+		try {
+			pool.setBeanFactory(factory);
+			fail("Should not pool a singleton");
+		}
+		catch (AopConfigException ex) {
+			// expected
+		}
+	}
+
+	public void testThreadLocalTargets() throws Exception {
+		final ITestBean proxy = (ITestBean) factory.getBean("threadLocal");
+		ThreadLocalTargetSource tlts = (ThreadLocalTargetSource) factory.getBean("threadLocalTargetSource");
+		proxy.setAge(30);
+		assertEquals(30, proxy.getAge());
+		assertEquals(1, tlts.getObjectCount());
+
+		final int[] ageInOtherThread = new int[1];
+		Thread t = new Thread() {
+			public void run() {
+				ageInOtherThread[0] = proxy.getAge();
+			}
+		};
+		t.start();
+		t.join();
+		assertEquals("Other thread sees its own target", 10, ageInOtherThread[0]);
+		assertEquals(2, tlts.getObjectCount());
+		assertEquals(30, proxy.getAge());
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.interface21.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.easymock.MockControl;
+
+import com.interface21.beans.TestBean;
+import com.interface21.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * @version $Id$
+ */
+public class BeanPropertyRowMapperTestSuite extends TestCase {
+
+	public BeanPropertyRowMapperTestSuite(String name) {
+		super(name);
+	}
+
+	public void testMapRowsByColumnIndex() throws Exception {
+		MockControl rsmdControl = EasyMock.controlFor(ResultSetMetaData.class);
+		ResultSetMetaData rsmd = (ResultSetMetaData) rsmdControl.getMock();
+		rsmd.getColumnCount();
+		rsmdControl.setReturnValue(5, 1);
+		rsmd.getColumnName(1);
+		rsmdControl.setReturnValue("NAME", 1);
+		rsmd.getColumnName(2);
+		rsmdControl.setReturnValue("AGE", 1);
+		rsmd.getColumnName(3);
+		rsmdControl.setReturnValue("MY_FLOAT", 1);
+		rsmd.getColumnName(4);
+		rsmdControl.setReturnValue("DATE", 1);
+		rsmd.getColumnName(5);
+		rsmdControl.setReturnValue("UNKNOWN", 1);
+		rsmdControl.activate();
+
+		Timestamp date = new Timestamp(System.currentTimeMillis());
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.getMetaData();
+		rsControl.setReturnValue(rsmd, 1);
+		rs.getString(1);
+		rsControl.setReturnValue("tony", 1);
+		rsControl.setReturnValue("rod", 1);
+		rs.getInt(2);
+		rsControl.setReturnValue(30, 1);
+		rsControl.setReturnValue(0, 1);
+		rs.getFloat(3);
+		rsControl.setReturnValue(1.5f, 1);
+		rsControl.setReturnValue(0.0f, 1);
+		rs.wasNull();
+		rsControl.setReturnValue(false, 2);
+		rsControl.setReturnValue(true, 2);
+		rs.getTimestamp(4);
+		rsControl.setReturnValue(date, 1);
+		rsControl.setReturnValue(null, 1);
+		rsControl.activate();
+
+		BeanPropertyRowMapper mapper = new BeanPropertyRowMapper(TestBean.class);
+		TestBean tb = (TestBean) mapper.mapRow(rs, 0);
+		assertEquals("tony", tb.getName());
+		assertEquals(30, tb.getAge());
+		assertEquals(new Float(1.5f), tb.getMyFloat());
+		assertEquals(date, tb.getDate());
+
+		tb = (TestBean) mapper.mapRow(rs, 1);
+		assertEquals("rod", tb.getName());
+		assertEquals(0, tb.getAge());
+		assertNull(tb.getMyFloat());
+		assertNull(tb.getDate());
+
+		rsmdControl.verify();
+		rsControl.verify();
+	}
+
+	public void testBindingsReusedForSameColumns() throws Exception {
+		MockControl rsmdControl = EasyMock.controlFor(ResultSetMetaData.class);
+		ResultSetMetaData rsmd = (ResultSetMetaData) rsmdControl.getMock();
+		rsmd.getColumnCount();
+		rsmdControl.setReturnValue(1, 2);
+		rsmd.getColumnName(1);
+		rsmdControl.setReturnValue("name", 2);
+		rsmdControl.activate();
+
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.getMetaData();
+		rsControl.setReturnValue(rsmd, 2);
+		rs.getString(1);
+		rsControl.setReturnValue("tony", 3);
+		rsControl.activate();
+
+		BeanPropertyRowMapper mapper = new BeanPropertyRowMapper(TestBean.class);
+		// each first row checks the columns of a new ResultSet
+		assertEquals("tony", ((TestBean) mapper.mapRow(rs, 0)).getName());
+		assertEquals("tony", ((TestBean) mapper.mapRow(rs, 1)).getName());
+		assertEquals("tony", ((TestBean) mapper.mapRow(rs, 0)).getName());
+
+		rsmdControl.verify();
+		rsControl.verify();
+	}
+
+	public void testInterleavedResultSetsWithDifferentColumns() throws Exception {
+		MockControl rsmd1Control = EasyMock.controlFor(ResultSetMetaData.class);
+		ResultSetMetaData rsmd1 = (ResultSetMetaData) rsmd1Control.getMock();
+		rsmd1.getColumnCount();
+		rsmd1Control.setReturnValue(1, 2);
+		rsmd1.getColumnName(1);
+		rsmd1Control.setReturnValue("NAME", 2);
+		rsmd1Control.activate();
+		MockControl rs1Control = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs1 = (ResultSet) rs1Control.getMock();
+		rs1.getMetaData();
+		rs1Control.setReturnValue(rsmd1, 2);
+		rs1.getString(1);
+		rs1Control.setReturnValue("tony", 3);
+		rs1Control.activate();
+
+		MockControl rsmd2Control = EasyMock.controlFor(ResultSetMetaData.class);
+		ResultSetMetaData rsmd2 = (ResultSetMetaData) rsmd2Control.getMock();
+		rsmd2.getColumnCount();
+		rsmd2Control.setReturnValue(1, 2);
+		rsmd2.getColumnName(1);
+		rsmd2Control.setReturnValue("AGE", 2);
+		rsmd2Control.activate();
+		MockControl rs2Control = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs2 = (ResultSet) rs2Control.getMock();
+		rs2.getMetaData();
+		rs2Control.setReturnValue(rsmd2, 2);
+		rs2.getInt(1);
+		rs2Control.setReturnValue(30, 2);
+		rs2.wasNull();
+		rs2Control.setReturnValue(false, 2);
+		rs2Control.activate();
+
+		BeanPropertyRowMapper mapper = new BeanPropertyRowMapper(TestBean.class);
+		assertEquals("tony", ((TestBean) mapper.mapRow(rs1, 0)).getName());
+		assertEquals(30, ((TestBean) mapper.mapRow(rs2, 0)).getAge());
+		// each switch to another ResultSet checks its columns again
+		assertEquals("tony", ((TestBean) mapper.mapRow(rs1, 1)).getName());
+		assertEquals("tony", ((TestBean) mapper.mapRow(rs1, 2)).getName());
+		assertEquals(30, ((TestBean) mapper.mapRow(rs2, 1)).getAge());
+
+		rsmd1Control.verify();
+		rs1Control.verify();
+		rsmd2Control.verify();
+		rs2Control.verify();
+	}
+
+	public void testRejectsInterface() {
+		try {
+			new BeanPropertyRowMapper(ResultSet.class);
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.interface21.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.easymock.MockControl;
+
+import com.interface21.beans.MutableSortDefinition;
+import com.interface21.util.PagedListHolder;
+
+/**
+ * @version $Id$
+ */
+public class ColumnarResultSetExtracterTestSuite extends TestCase {
+
+	private MockControl rsControl;
+
+	private ColumnarResult result;
+
+	public ColumnarResultSetExtracterTestSuite(String name) {
+		super(name);
+	}
+
+	/**
+	 * Read rows (ID, NAME, AMOUNT): (1, b, 10.5), (2, a, NULL), (3, NULL, 2.0), (4, b, 4.0)
+	 */
+	protected void setUp() throws Exception {
+		MockControl rsmdControl = EasyMock.controlFor(ResultSetMetaData.class);
+		ResultSetMetaData rsmd = (ResultSetMetaData) rsmdControl.getMock();
+		rsmd.getColumnCount();
+		rsmdControl.setReturnValue(3, 1);
+		rsmd.getColumnName(1);
+		rsmdControl.setReturnValue("ID", 1);
+		rsmd.getColumnName(2);
+		rsmdControl.setReturnValue("NAME", 1);
+		rsmd.getColumnName(3);
+		rsmdControl.setReturnValue("AMOUNT", 1);
+		rsmd.getColumnType(1);
+		rsmdControl.setReturnValue(Types.INTEGER, 1);
+		rsmd.getColumnType(2);
+		rsmdControl.setReturnValue(Types.VARCHAR, 1);
+		rsmd.getColumnType(3);
+		rsmdControl.setReturnValue(Types.DOUBLE, 1);
+		rsmdControl.activate();
+
+		rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.getMetaData();
+		rsControl.setReturnValue(rsmd, 1);
+		rs.next();
+		rsControl.setReturnValue(true, 4);
+		rsControl.setReturnValue(false, 1);
+		rs.getInt(1);
+		rsControl.setReturnValue(1, 1);
+		rsControl.setReturnValue(2, 1);
+		rsControl.setReturnValue(3, 1);
+		rsControl.setReturnValue(4, 1);
+		rs.getString(2);
+		rsControl.setReturnValue("b", 1);
+		rsControl.setReturnValue("a", 1);
+		rsControl.setReturnValue(null, 1);
+		rsControl.setReturnValue("b", 1);
+		rs.getDouble(3);
+		rsControl.setReturnValue(10.5, 1);
+		rsControl.setReturnValue(0.0, 1);
+		rsControl.setReturnValue(2.0, 1);
+		rsControl.setReturnValue(4.0, 1);
+		rs.wasNull();
+		rsControl.setReturnValue(false, 5);
+		rsControl.setReturnValue(true, 1);
+		rsControl.setReturnValue(false, 1);
+		rsControl.setReturnValue(true, 1);
+		rsControl.setReturnValue(false, 4);
+		rsControl.activate();
+
+		ColumnarResultSetExtracter rse = new ColumnarResultSetExtracter(2);
+		rse.extractData(rs);
+		result = rse.getResult();
+
+		rsmdControl.verify();
+		rsControl.verify();
+	}
+
+	public void testRandomAccess() {
+		assertEquals(4, result.getRowCount());
+		assertEquals(3, result.getColumnCount());
+		assertEquals(2, result.getColumnIndex("amount"));
+		assertEquals(3, result.getInt(2, 0));
+		assertEquals(3L, result.getLong(2, 0));
+		assertEquals("a", result.getString(1, 1));
+		assertEquals(new Integer(4), result.getObject(3, 0));
+		assertTrue(result.isNull(2, 1));
+		assertNull(result.getObject(2, 1));
+		assertTrue(result.isNull(1, 2));
+		assertFalse(result.isNull(1, 1));
+		assertEquals(10.5, result.getDouble(0, 2), 0.0);
+		// same dictionary entry for equal values
+		assertSame(result.getObject(0, 1), result.getObject(3, 1));
+	}
+
+	public void testSort() {
+		result.sort("NAME", true, false);
+		assertNull(result.getString(0, 1));
+		assertEquals("a", result.getString(1, 1));
+		// stable: rows with equal names keep their order
+		assertEquals(1, result.getInt(2, 0));
+		assertEquals(4, result.getInt(3, 0));
+
+		result.sort("amount", false, false);
+		assertEquals(1, result.getInt(0, 0));
+		assertEquals(4, result.getInt(1, 0));
+		assertEquals(3, result.getInt(2, 0));
+		assertEquals(2, result.getInt(3, 0));
+	}
+
+	public void testAggregates() {
+		assertEquals(new Long(10), result.sum("ID"));
+		assertEquals(new Double(16.5), result.sum("AMOUNT"));
+
+		Map counts = result.groupCount("NAME");
+		assertEquals(3, counts.size());
+		Iterator it = counts.keySet().iterator();
+		assertNull(it.next());
+		assertEquals("a", it.next());
+		assertEquals(new Integer(2), counts.get("b"));
+
+		Map sums = result.groupSum("NAME", "AMOUNT");
+		assertEquals(new Double(14.5), sums.get("b"));
+		assertEquals(new Double(0.0), sums.get("a"));
+		assertEquals(new Double(2.0), sums.get(null));
+	}
+
+	public void testPagedListHolder() {
+		PagedListHolder holder = new PagedListHolder(result.asList());
+		holder.setPageSize(3);
+		assertEquals(2, holder.getNrOfPages());
+		((MutableSortDefinition) holder.getSort()).setProperty("ID");
+		((MutableSortDefinition) holder.getSort()).setAscending(false);
+		holder.resort();
+		List page = holder.getPageList();
+		assertEquals(3, page.size());
+		ColumnarResult.Row row = (ColumnarResult.Row) page.get(0);
+		assertEquals(new Integer(4), row.getObject("ID"));
+		assertEquals("b", row.getString("NAME"));
+		assertEquals(3, row.getValues().length);
+		holder.setPage(1);
+		row = (ColumnarResult.Row) holder.getPageList().get(0);
+		assertEquals(new Integer(1), row.getObject(0));
+	}
+
+}
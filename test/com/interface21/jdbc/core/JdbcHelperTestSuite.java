@@ -0,0 +1,134 @@
+package com.interface21.jdbc.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.easymock.MockControl;
+
+/**
+ * @version $Id$
+ */
+public class JdbcHelperTestSuite extends TestCase {
+
+	private static final String SQL = "SELECT ID FROM CUSTMR WHERE STATUS = ?";
+
+	private MockControl rsControl;
+	private ResultSet rs;
+	private MockControl psControl;
+	private MockControl conControl;
+	private MockControl dsControl;
+	private JdbcHelper helper;
+
+	public JdbcHelperTestSuite(String name) {
+		super(name);
+	}
+
+	/**
+	 * Prepare mocks for a query returning the given number of rows.
+	 */
+	private void prepareQuery(int rows) throws Exception {
+		rsControl = EasyMock.controlFor(ResultSet.class);
+		rs = (ResultSet) rsControl.getMock();
+		rs.next();
+		if (rows > 0) {
+			rsControl.setReturnValue(true, rows);
+		}
+		rsControl.setReturnValue(false, 1);
+		rs.close();
+		rsControl.setVoidCallable(1);
+
+		psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.setObject(1, "active");
+		psControl.setVoidCallable(1);
+		ps.executeQuery();
+		psControl.setReturnValue(rs, 1);
+		ps.getWarnings();
+		psControl.setReturnValue(null, 1);
+		ps.close();
+		psControl.setVoidCallable(1);
+		psControl.activate();
+
+		conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.prepareStatement(SQL);
+		conControl.setReturnValue(ps, 1);
+		con.close();
+		conControl.setVoidCallable(1);
+		conControl.activate();
+
+		dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		// no connection for the exception translater
+		dsControl.setReturnValue(null, 1);
+		dsControl.setReturnValue(con, 1);
+		dsControl.activate();
+
+		helper = new JdbcHelper(ds);
+	}
+
+	private void verify() {
+		rsControl.verify();
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testGetIntIDs() throws Exception {
+		prepareQuery(20);
+		for (int i = 0; i < 20; i++) {
+			rs.getInt(1);
+			rsControl.setReturnValue(i * 10, 1);
+		}
+		rsControl.activate();
+
+		int[] ids = helper.getIDs(SQL, new Object[] {"active"});
+		assertEquals(20, ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(i * 10, ids[i]);
+		}
+		verify();
+	}
+
+	public void testGetLongIDs() throws Exception {
+		prepareQuery(2);
+		rs.getLong(1);
+		rsControl.setReturnValue(5000000000L, 1);
+		rsControl.setReturnValue(7L, 1);
+		rsControl.activate();
+
+		long[] ids = helper.getLongIDs(SQL, new Object[] {"active"});
+		assertEquals(2, ids.length);
+		assertEquals(5000000000L, ids[0]);
+		assertEquals(7L, ids[1]);
+		verify();
+	}
+
+	public void testGetIDsAsObjects() throws Exception {
+		prepareQuery(1);
+		rs.getObject(1);
+		rsControl.setReturnValue("y", 1);
+		rsControl.activate();
+
+		Object[] ids = helper.getIDs(SQL, Boolean.class, new Object[] {"active"});
+		assertEquals(1, ids.length);
+		assertEquals(Boolean.TRUE, ids[0]);
+		verify();
+	}
+
+	public void testNoIDs() throws Exception {
+		prepareQuery(0);
+		rsControl.activate();
+
+		assertEquals(0, helper.getIDs(SQL, new Object[] {"active"}).length);
+		verify();
+	}
+
+}
@@ -1,13 +1,22 @@
 package com.interface21.jdbc.core;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
+import java.sql.Types;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -21,7 +30,12 @@ import com.interface21.dao.DataAccessException;
 import com.interface21.dao.DataAccessResourceFailureException;
 import com.interface21.dao.InvalidDataAccessApiUsageException;
 import com.interface21.dao.UncategorizedDataAccessException;
+import com.interface21.core.TaskExecutor;
+import com.interface21.jdbc.datasource.ConnectionHolder;
+import com.interface21.jdbc.datasource.DataSourceUtils;
 import com.interface21.jdbc.datasource.SingleConnectionDataSource;
+import com.interface21.transaction.support.TransactionSynchronization;
+import com.interface21.transaction.support.TransactionSynchronizationManager;
 
 import com.mockobjects.sql.MockConnection;
 
@@ -1000,4 +1014,1050 @@ public class JdbcTemplateTestSuite extends TestCase {
 
 	}
 	
+	public void testQueryWithStatementSettings() throws Exception {
+		final String sql = "SELECT ID FROM CUSTMR";
+
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.next();
+		rsControl.setReturnValue(false);
+		rs.close();
+		rsControl.setVoidCallable();
+		rsControl.activate();
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.setFetchSize(50);
+		psControl.setVoidCallable();
+		ps.setMaxRows(200);
+		psControl.setVoidCallable();
+		ps.setQueryTimeout(10);
+		psControl.setVoidCallable();
+		ps.executeQuery();
+		psControl.setReturnValue(rs);
+		ps.getWarnings();
+		psControl.setReturnValue(null);
+		ps.close();
+		psControl.setVoidCallable();
+		psControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps);
+		con.close();
+		conControl.setVoidCallable();
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con);
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setFetchSize(50);
+		template.setMaxRows(200);
+		template.setQueryTimeout(10);
+		template.query(sql, JdbcTemplate.PREPARE_STATEMENT, new RowCallbackHandler() {
+			public void processRow(ResultSet rs) {
+				fail("Should not be called");
+			}
+		});
+
+		rsControl.verify();
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testStreamingResultsOnMySQL() throws Exception {
+		final String sql = "SELECT ID FROM CUSTMR";
+
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.next();
+		rsControl.setReturnValue(false, 2);
+		rs.close();
+		rsControl.setVoidCallable(2);
+		rsControl.activate();
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.setFetchSize(Integer.MIN_VALUE);
+		psControl.setVoidCallable(2);
+		ps.executeQuery();
+		psControl.setReturnValue(rs, 2);
+		ps.getWarnings();
+		psControl.setReturnValue(null, 2);
+		ps.close();
+		psControl.setVoidCallable(2);
+		psControl.activate();
+
+		MockControl dbmdControl = EasyMock.controlFor(DatabaseMetaData.class);
+		DatabaseMetaData dbmd = (DatabaseMetaData) dbmdControl.getMock();
+		dbmd.getDatabaseProductName();
+		dbmdControl.setReturnValue("MySQL", 1);
+		dbmdControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.getMetaData();
+		conControl.setReturnValue(dbmd, 1);
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps, 2);
+		con.close();
+		conControl.setVoidCallable(2);
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 2);
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setStreamingResults(true);
+		RowCountCallbackHandler rcch = new RowCountCallbackHandler();
+		// database product name is determined only once
+		template.query(sql, JdbcTemplate.PREPARE_STATEMENT, rcch);
+		template.query(sql, JdbcTemplate.PREPARE_STATEMENT, rcch);
+		assertEquals(0, rcch.getRowCount());
+
+		rsControl.verify();
+		psControl.verify();
+		dbmdControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testQueryForIterator() throws Exception {
+		final String sql = "SELECT FORENAME FROM CUSTMR";
+
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.next();
+		rsControl.setReturnValue(true, 2);
+		rsControl.setReturnValue(false, 1);
+		rs.getString(1);
+		rsControl.setReturnValue("rod", 1);
+		rsControl.setReturnValue("juergen", 1);
+		rs.close();
+		rsControl.setVoidCallable();
+		rsControl.activate();
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.executeQuery();
+		psControl.setReturnValue(rs);
+		ps.getWarnings();
+		psControl.setReturnValue(null);
+		ps.close();
+		psControl.setVoidCallable();
+		psControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps);
+		con.close();
+		conControl.setVoidCallable();
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con);
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		ResultIterator it = template.queryForIterator(PreparedStatementCreatorFactory.newPreparedStatementCreator(sql),
+		    new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return rowNum + ":" + rs.getString(1);
+			}
+		});
+		assertTrue(it.hasNext());
+		assertTrue(it.hasNext());
+		assertEquals("0:rod", it.next());
+		assertEquals("1:juergen", it.next());
+		assertFalse(it.hasNext());
+		// resources have been released on exhaustion
+		conControl.verify();
+		it.close();
+
+		rsControl.verify();
+		psControl.verify();
+		dsControl.verify();
+	}
+
+	public void testQueryForIteratorClosedEarly() throws Exception {
+		final String sql = "SELECT FORENAME FROM CUSTMR";
+
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.next();
+		rsControl.setReturnValue(true);
+		rs.getString(1);
+		rsControl.setReturnValue("rod");
+		rs.close();
+		rsControl.setVoidCallable();
+		rsControl.activate();
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.executeQuery();
+		psControl.setReturnValue(rs);
+		ps.getWarnings();
+		psControl.setReturnValue(null);
+		ps.close();
+		psControl.setVoidCallable();
+		psControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps);
+		con.close();
+		conControl.setVoidCallable();
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con);
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		ResultIterator it = template.queryForIterator(PreparedStatementCreatorFactory.newPreparedStatementCreator(sql),
+		    new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return rs.getString(1);
+			}
+		});
+		try {
+			assertEquals("rod", it.next());
+		}
+		finally {
+			it.close();
+		}
+		it.close();
+		assertFalse(it.hasNext());
+
+		rsControl.verify();
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testQueryForIteratorReleasesResourcesOnMappingFailure() throws Exception {
+		final String sql = "SELECT FORENAME FROM CUSTMR";
+		final SQLException sex = new SQLException("bad column");
+
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.next();
+		rsControl.setReturnValue(true);
+		rsControl.activate();
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.executeQuery();
+		psControl.setReturnValue(rs);
+		ps.close();
+		psControl.setVoidCallable();
+		psControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps);
+		con.close();
+		conControl.setVoidCallable();
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con);
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		ResultIterator it = template.queryForIterator(PreparedStatementCreatorFactory.newPreparedStatementCreator(sql),
+		    new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				throw sex;
+			}
+		});
+		try {
+			it.next();
+			fail("Should have thrown DataAccessException");
+		}
+		catch (DataAccessException ex) {
+			assertTrue(sex == ex.getRootCause());
+		}
+		assertFalse(it.hasNext());
+
+		rsControl.verify();
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testUpdateGroupsSameSqlIntoBatches() throws Exception {
+		final String sql = "UPDATE CUSTMR SET NAME = ? WHERE ID = 1";
+		final String otherSql = "DELETE FROM CUSTMR WHERE NAME = ?";
+		PreparedStatementCreatorFactory pscf = new PreparedStatementCreatorFactory(sql, new int[] {Types.VARCHAR});
+		PreparedStatementCreatorFactory otherPscf = new PreparedStatementCreatorFactory(otherSql, new int[] {Types.VARCHAR});
+		PreparedStatementCreator[] pscs = new PreparedStatementCreator[] {
+			pscf.newPreparedStatementCreator(new Object[] {"a"}),
+			pscf.newPreparedStatementCreator(new Object[] {"b"}),
+			pscf.newPreparedStatementCreator(new Object[] {"c"}),
+			otherPscf.newPreparedStatementCreator(new Object[] {"d"})
+		};
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.setString(1, "a");
+		psControl.setVoidCallable(1);
+		ps.addBatch();
+		psControl.setVoidCallable(2);
+		ps.setString(1, "b");
+		psControl.setVoidCallable(1);
+		ps.executeBatch();
+		psControl.setReturnValue(new int[] {1, 0}, 1);
+		ps.close();
+		psControl.setVoidCallable(2);
+		// remainder of the group: executed on its own
+		ps.setString(1, "c");
+		psControl.setVoidCallable(1);
+		ps.executeUpdate();
+		psControl.setReturnValue(1, 1);
+		psControl.activate();
+
+		MockControl otherPsControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement otherPs = (PreparedStatement) otherPsControl.getMock();
+		otherPs.setString(1, "d");
+		otherPsControl.setVoidCallable(1);
+		otherPs.executeUpdate();
+		otherPsControl.setReturnValue(5, 1);
+		otherPs.close();
+		otherPsControl.setVoidCallable(1);
+		otherPsControl.activate();
+
+		MockControl dbmdControl = EasyMock.controlFor(DatabaseMetaData.class);
+		DatabaseMetaData dbmd = (DatabaseMetaData) dbmdControl.getMock();
+		dbmd.supportsBatchUpdates();
+		dbmdControl.setReturnValue(true, 1);
+		dbmdControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.getMetaData();
+		conControl.setReturnValue(dbmd, 1);
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps, 2);
+		con.prepareStatement(otherSql);
+		conControl.setReturnValue(otherPs, 1);
+		con.close();
+		conControl.setVoidCallable(1);
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setUpdateBatchSize(2);
+		int[] counts = template.update(pscs);
+		assertEquals(4, counts.length);
+		assertEquals(1, counts[0]);
+		assertEquals(0, counts[1]);
+		assertEquals(1, counts[2]);
+		assertEquals(5, counts[3]);
+
+		psControl.verify();
+		otherPsControl.verify();
+		dbmdControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testUpdateBatchFailureReportsFailedStatement() throws Exception {
+		final String sql = "UPDATE CUSTMR SET NAME = ? WHERE ID = 1";
+		PreparedStatementCreatorFactory pscf = new PreparedStatementCreatorFactory(sql, new int[] {Types.VARCHAR});
+		PreparedStatementCreator[] pscs = new PreparedStatementCreator[] {
+			pscf.newPreparedStatementCreator(new Object[] {"a"}),
+			pscf.newPreparedStatementCreator(new Object[] {"b"}),
+			pscf.newPreparedStatementCreator(new Object[] {"c"})
+		};
+		BatchUpdateException sex = new BatchUpdateException("constraint violated", new int[] {1});
+
+		MockControl psControl = EasyMock.niceControlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.executeBatch();
+		psControl.setThrowable(sex);
+		ps.close();
+		psControl.setVoidCallable(1);
+		psControl.activate();
+
+		MockControl dbmdControl = EasyMock.controlFor(DatabaseMetaData.class);
+		DatabaseMetaData dbmd = (DatabaseMetaData) dbmdControl.getMock();
+		dbmd.supportsBatchUpdates();
+		dbmdControl.setReturnValue(true, 1);
+		dbmdControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.getMetaData();
+		conControl.setReturnValue(dbmd, 1);
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps, 1);
+		con.close();
+		conControl.setVoidCallable(1);
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		try {
+			template.update(pscs);
+			fail("Should have thrown DataAccessException");
+		}
+		catch (DataAccessException ex) {
+			assertTrue(sex == ex.getRootCause());
+			assertTrue(ex.getMessage().indexOf("updates 1 to 3 of 3") != -1);
+			assertTrue(ex.getMessage().indexOf("failed update was 2") != -1);
+			assertTrue(ex.getMessage().indexOf("params={b}") != -1);
+		}
+
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	private List integerList(int size) {
+		List items = new ArrayList(size);
+		for (int i = 0; i < size; i++) {
+			items.add(new Integer(i));
+		}
+		return items;
+	}
+
+	private static class IntegerItemSetter implements ItemPreparedStatementSetter {
+
+		public void setValues(PreparedStatement ps, Object item) throws SQLException {
+			ps.setInt(1, ((Integer) item).intValue());
+		}
+	}
+
+	public void testStreamingBatchUpdateCommitsPerChunk() throws Exception {
+		final String sql = "UPDATE CUSTMR SET STATUS = 1 WHERE ID = ?";
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		for (int i = 0; i < 5; i++) {
+			ps.setInt(1, i);
+			psControl.setVoidCallable(1);
+		}
+		ps.addBatch();
+		psControl.setVoidCallable(5);
+		ps.executeBatch();
+		psControl.setReturnValue(new int[] {1, 1}, 2);
+		psControl.setReturnValue(new int[] {0}, 1);
+		ps.close();
+		psControl.setVoidCallable(1);
+		psControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.getAutoCommit();
+		conControl.setReturnValue(true, 1);
+		con.setAutoCommit(false);
+		conControl.setVoidCallable(1);
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps, 1);
+		con.commit();
+		conControl.setVoidCallable(3);
+		con.setAutoCommit(true);
+		conControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		dsControl.activate();
+
+		final List reported = new ArrayList();
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		BatchUpdateProgress progress = template.batchUpdate(sql, integerList(5).iterator(), new IntegerItemSetter(), 2, 1,
+		    new BatchUpdateProgressListener() {
+			public void chunkCompleted(BatchUpdateProgress progress) {
+				reported.add(new Long(progress.getRowCount()));
+			}
+		});
+		assertEquals(5, progress.getRowCount());
+		assertEquals(3, progress.getChunkCount());
+		assertEquals(4, progress.getUpdateCount());
+		assertEquals(3, reported.size());
+		assertEquals(new Long(2), reported.get(0));
+		assertEquals(new Long(5), reported.get(2));
+
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testStreamingBatchUpdateRollsBackFailedChunk() throws Exception {
+		final String sql = "UPDATE CUSTMR SET STATUS = 1 WHERE ID = ?";
+		SQLException sex = new SQLException("constraint violated");
+
+		MockControl psControl = EasyMock.niceControlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.executeBatch();
+		psControl.setReturnValue(new int[] {1, 1}, 1);
+		psControl.setThrowable(sex, 1);
+		ps.close();
+		psControl.setVoidCallable(1);
+		psControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.getAutoCommit();
+		conControl.setReturnValue(true, 1);
+		con.setAutoCommit(false);
+		conControl.setVoidCallable(1);
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps, 1);
+		con.commit();
+		conControl.setVoidCallable(1);
+		con.rollback();
+		conControl.setVoidCallable(1);
+		con.setAutoCommit(true);
+		conControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		try {
+			template.batchUpdate(sql, integerList(5).iterator(), new IntegerItemSetter(), 2);
+			fail("Should have thrown DataAccessException");
+		}
+		catch (DataAccessException ex) {
+			assertTrue(sex == ex.getRootCause());
+			assertTrue(ex.getMessage().indexOf("after 2 successful rows") != -1);
+		}
+
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testStreamingBatchUpdateInParallelPartitions() throws Exception {
+		final Set executed = Collections.synchronizedSet(new HashSet());
+		final Set connections = Collections.synchronizedSet(new HashSet());
+		final InvocationHandler psHandler = new InvocationHandler() {
+			private final ThreadLocal pending = new ThreadLocal();
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("setInt")) {
+					pending.set(args[1]);
+				}
+				else if (method.getName().equals("addBatch")) {
+					assertTrue("Item executed once", executed.add(pending.get()));
+				}
+				else if (method.getName().equals("executeBatch")) {
+					return new int[0];
+				}
+				return null;
+			}
+		};
+		final DataSource ds = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {DataSource.class},
+		    new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("hashCode")) {
+					return new Integer(System.identityHashCode(proxy));
+				}
+				if (method.getName().equals("equals")) {
+					return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+				}
+				if (!method.getName().equals("getConnection")) {
+					return null;
+				}
+				connections.add(Thread.currentThread());
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class},
+				    new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("hashCode")) {
+							return new Integer(System.identityHashCode(proxy));
+						}
+						if (method.getName().equals("equals")) {
+							return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+						}
+						if (method.getName().equals("getAutoCommit")) {
+							return Boolean.TRUE;
+						}
+						if (method.getName().equals("prepareStatement")) {
+							return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {PreparedStatement.class}, psHandler);
+						}
+						return null;
+					}
+				});
+			}
+		});
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		BatchUpdateProgress progress = template.batchUpdate("UPDATE CUSTMR SET STATUS = 1 WHERE ID = ?",
+		    integerList(1000).iterator(), new IntegerItemSetter(), 10, 3, null);
+		assertEquals(1000, progress.getRowCount());
+		assertEquals(100, progress.getChunkCount());
+		assertEquals(1000, executed.size());
+		assertEquals(3, connections.size());
+	}
+
+	public void testStreamingBatchUpdateInParallelPartitionsWithinTransaction() throws Exception {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		conControl.activate();
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		DataSourceUtils.getThreadObjectManager().bindThreadObject(ds, new ConnectionHolder(con));
+		try {
+			template.batchUpdate("UPDATE CUSTMR SET STATUS = 1 WHERE ID = ?", integerList(10).iterator(),
+			                     new IntegerItemSetter(), 2, 2, null);
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+		finally {
+			DataSourceUtils.getThreadObjectManager().removeThreadObject(ds);
+		}
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testWriteBehindUpdates() throws Exception {
+		final String sql = "UPDATE CUSTMR SET NAME = ? WHERE ID = 1";
+		final String otherSql = "DELETE FROM CUSTMR WHERE NAME = ?";
+		PreparedStatementCreatorFactory pscf = new PreparedStatementCreatorFactory(sql, new int[] {Types.VARCHAR});
+		PreparedStatementCreatorFactory otherPscf = new PreparedStatementCreatorFactory(otherSql, new int[] {Types.VARCHAR});
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.setString(1, "a");
+		psControl.setVoidCallable(1);
+		ps.setString(1, "b");
+		psControl.setVoidCallable(1);
+		ps.addBatch();
+		psControl.setVoidCallable(2);
+		ps.executeBatch();
+		psControl.setReturnValue(new int[] {1, 1}, 1);
+		ps.setString(1, "d");
+		psControl.setVoidCallable(1);
+		ps.executeUpdate();
+		psControl.setReturnValue(1, 1);
+		ps.close();
+		psControl.setVoidCallable(2);
+		psControl.activate();
+
+		MockControl otherPsControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement otherPs = (PreparedStatement) otherPsControl.getMock();
+		otherPs.setString(1, "c");
+		otherPsControl.setVoidCallable(1);
+		otherPs.executeUpdate();
+		otherPsControl.setReturnValue(5, 1);
+		otherPs.close();
+		otherPsControl.setVoidCallable(1);
+		otherPsControl.activate();
+
+		MockControl dbmdControl = EasyMock.controlFor(DatabaseMetaData.class);
+		DatabaseMetaData dbmd = (DatabaseMetaData) dbmdControl.getMock();
+		dbmd.supportsBatchUpdates();
+		dbmdControl.setReturnValue(true, 1);
+		dbmdControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.getMetaData();
+		conControl.setReturnValue(dbmd, 1);
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps, 2);
+		con.prepareStatement(otherSql);
+		conControl.setReturnValue(otherPs, 1);
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		template.setWriteBehindUpdates(true);
+		DataSourceUtils.getThreadObjectManager().bindThreadObject(ds, new ConnectionHolder(con));
+		TransactionSynchronizationManager.init();
+		try {
+			assertEquals(JdbcTemplate.UPDATE_COUNT_DEFERRED, template.update(pscf.newPreparedStatementCreator(new Object[] {"a"})));
+			assertEquals(JdbcTemplate.UPDATE_COUNT_DEFERRED, template.update(pscf.newPreparedStatementCreator(new Object[] {"b"})));
+			assertEquals(JdbcTemplate.UPDATE_COUNT_DEFERRED, template.update(otherPscf.newPreparedStatementCreator(new Object[] {"c"})));
+			assertEquals(3, WriteBehindQueue.getQueuedUpdateCount(ds));
+			int[] counts = WriteBehindQueue.flush(ds);
+			assertEquals(3, counts.length);
+			assertEquals(1, counts[0]);
+			assertEquals(1, counts[1]);
+			assertEquals(5, counts[2]);
+			assertEquals(0, WriteBehindQueue.getQueuedUpdateCount(ds));
+
+			assertEquals(JdbcTemplate.UPDATE_COUNT_DEFERRED, template.update(pscf.newPreparedStatementCreator(new Object[] {"d"})));
+			TransactionSynchronizationManager.triggerBeforeCommit();
+			TransactionSynchronizationManager.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+		}
+		finally {
+			TransactionSynchronizationManager.clear();
+			DataSourceUtils.getThreadObjectManager().removeThreadObject(ds);
+		}
+		assertEquals(0, WriteBehindQueue.getQueuedUpdateCount(ds));
+
+		psControl.verify();
+		otherPsControl.verify();
+		dbmdControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testWriteBehindUpdatesWithReusedArguments() throws Exception {
+		final String sql = "UPDATE CUSTMR SET NAME = ? WHERE ID = 1";
+		PreparedStatementCreatorFactory pscf = new PreparedStatementCreatorFactory(sql, new int[] {Types.VARCHAR});
+
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.setString(1, "a");
+		psControl.setVoidCallable(1);
+		ps.setString(1, "b");
+		psControl.setVoidCallable(1);
+		ps.addBatch();
+		psControl.setVoidCallable(2);
+		ps.executeBatch();
+		psControl.setReturnValue(new int[] {1, 1}, 1);
+		ps.close();
+		psControl.setVoidCallable(1);
+		psControl.activate();
+
+		MockControl dbmdControl = EasyMock.controlFor(DatabaseMetaData.class);
+		DatabaseMetaData dbmd = (DatabaseMetaData) dbmdControl.getMock();
+		dbmd.supportsBatchUpdates();
+		dbmdControl.setReturnValue(true, 1);
+		dbmdControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.getMetaData();
+		conControl.setReturnValue(dbmd, 1);
+		con.prepareStatement(sql);
+		conControl.setReturnValue(ps, 1);
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		template.setWriteBehindUpdates(true);
+		DataSourceUtils.getThreadObjectManager().bindThreadObject(ds, new ConnectionHolder(con));
+		TransactionSynchronizationManager.init();
+		try {
+			Object[] args = new Object[1];
+			args[0] = "a";
+			template.update(pscf.newPreparedStatementCreator(args));
+			args[0] = "b";
+			template.update(pscf.newPreparedStatementCreator(args));
+			args[0] = "c";
+			assertEquals(2, WriteBehindQueue.getQueuedUpdateCount(ds));
+			WriteBehindQueue.flush(ds);
+		}
+		finally {
+			TransactionSynchronizationManager.clear();
+			DataSourceUtils.getThreadObjectManager().removeThreadObject(ds);
+		}
+
+		psControl.verify();
+		dbmdControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testWriteBehindUpdatesDiscardedOnRollback() throws Exception {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		conControl.activate();
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		dsControl.activate();
+
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		template.setWriteBehindUpdates(true);
+		DataSourceUtils.getThreadObjectManager().bindThreadObject(ds, new ConnectionHolder(con));
+		TransactionSynchronizationManager.init();
+		try {
+			template.update("DELETE FROM CUSTMR WHERE ID = ?", new PreparedStatementSetter() {
+				public void setValues(PreparedStatement ps) throws SQLException {
+					ps.setInt(1, 1);
+				}
+			});
+			assertEquals(1, WriteBehindQueue.getQueuedUpdateCount(ds));
+			TransactionSynchronizationManager.triggerBeforeCompletion();
+			TransactionSynchronizationManager.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			assertEquals(0, WriteBehindQueue.getQueuedUpdateCount(ds));
+		}
+		finally {
+			TransactionSynchronizationManager.clear();
+			DataSourceUtils.getThreadObjectManager().removeThreadObject(ds);
+		}
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testQueryInParallelWithConcurrencyLimit() throws Exception {
+		final List connections = Collections.synchronizedList(new ArrayList());
+		final DataSource ds = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {DataSource.class},
+		    new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("hashCode")) {
+					return new Integer(System.identityHashCode(proxy));
+				}
+				if (method.getName().equals("equals")) {
+					return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+				}
+				if (!method.getName().equals("getConnection")) {
+					return null;
+				}
+				final Connection con = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class},
+				    new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("hashCode")) {
+							return new Integer(System.identityHashCode(proxy));
+						}
+						if (method.getName().equals("equals")) {
+							return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+						}
+						if (method.getName().equals("prepareStatement")) {
+							final String sql = (String) args[0];
+							return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {PreparedStatement.class},
+							    new InvocationHandler() {
+								public Object invoke(Object proxy, Method method, Object[] args) {
+									if (method.getName().equals("executeQuery")) {
+										return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ResultSet.class},
+										    new InvocationHandler() {
+											private boolean read;
+											public Object invoke(Object proxy, Method method, Object[] args) {
+												if (method.getName().equals("next")) {
+													boolean hasRow = !this.read;
+													this.read = true;
+													return (hasRow ? Boolean.TRUE : Boolean.FALSE);
+												}
+												if (method.getName().equals("getString")) {
+													return sql;
+												}
+												return null;
+											}
+										});
+									}
+									return null;
+								}
+							});
+						}
+						return null;
+					}
+				});
+				connections.add(con);
+				return con;
+			}
+		});
+		final List tasks = new ArrayList();
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		template.setTaskExecutor(new TaskExecutor() {
+			public void execute(Runnable task) {
+				tasks.add(task);
+			}
+		});
+		template.setAsyncConcurrencyLimit(2);
+
+		RowMapper rowMapper = new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return rs.getString(1);
+			}
+		};
+		QueryFuture[] futures = new QueryFuture[3];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = template.queryAsync(PreparedStatementCreatorFactory.newPreparedStatementCreator("SELECT " + i),
+			                                 new RowMapperResultReader(rowMapper));
+		}
+		assertEquals("Concurrency limit respected", 2, tasks.size());
+		assertTrue(!futures[0].isDone());
+		try {
+			futures[0].get(10);
+			fail("Should have thrown AsyncQueryTimeoutException");
+		}
+		catch (AsyncQueryTimeoutException ex) {
+			// expected
+		}
+
+		((Runnable) tasks.get(1)).run();
+		assertEquals("Next query started in finished slot", 3, tasks.size());
+		((Runnable) tasks.get(0)).run();
+		((Runnable) tasks.get(2)).run();
+		assertEquals(3, tasks.size());
+		Object[] results = template.awaitAll(futures, 1000);
+		for (int i = 0; i < results.length; i++) {
+			assertEquals(Collections.singletonList("SELECT " + i), results[i]);
+		}
+		assertEquals("Each query used its own connection", 3, connections.size());
+	}
+
+	public void testQueryInParallelWithTimeout() throws Exception {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		dsControl.activate();
+
+		final List tasks = new ArrayList();
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		template.setTaskExecutor(new TaskExecutor() {
+			public void execute(Runnable task) {
+				tasks.add(task);
+			}
+		});
+		template.setAsyncConcurrencyLimit(1);
+		RowMapper rowMapper = new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) {
+				return null;
+			}
+		};
+		PreparedStatementCreator[] pscs = new PreparedStatementCreator[] {
+			PreparedStatementCreatorFactory.newPreparedStatementCreator("SELECT 1"),
+			PreparedStatementCreatorFactory.newPreparedStatementCreator("SELECT 2")
+		};
+		ResultReader[] readers = new ResultReader[] {
+			new RowMapperResultReader(rowMapper), new RowMapperResultReader(rowMapper)
+		};
+		try {
+			template.queryInParallel(pscs, readers, 20);
+			fail("Should have thrown AsyncQueryTimeoutException");
+		}
+		catch (AsyncQueryTimeoutException ex) {
+			// expected
+		}
+		assertEquals(1, tasks.size());
+		// both queries have been cancelled before they could start
+		((Runnable) tasks.get(0)).run();
+		assertEquals(1, tasks.size());
+		dsControl.verify();
+	}
+
+	public void testSqlMonitor() throws Exception {
+		String sql = "SELECT FORENAME FROM CUSTMR WHERE ID > 0";
+		String[][] results = {{"rod"}, {"gary"}, {"portia"}};
+		MockConnection con = MockConnectionFactory.statement(sql, results, true, null, null);
+		con.setExpectedCloseCalls(2);
+
+		String updateSql = "UPDATE FOO SET NAME=? WHERE ID = 1";
+		SQLException sex = new SQLException();
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement mockPs = (PreparedStatement) psControl.getMock();
+		mockPs.executeUpdate();
+		psControl.setThrowable(sex);
+		psControl.activate();
+		MockConnection con2 = MockConnectionFactory.update(updateSql, mockPs);
+		con2.setExpectedCloseCalls(2);
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con);
+		dsControl.activate();
+		MockControl ds2Control = EasyMock.controlFor(DataSource.class);
+		DataSource ds2 = (DataSource) ds2Control.getMock();
+		ds2.getConnection();
+		ds2Control.setReturnValue(con2);
+		ds2Control.activate();
+
+		// one monitor shared by two templates
+		SqlMonitor sqlMonitor = new SqlMonitor();
+		JdbcTemplate template = new JdbcTemplate();
+		template.setDataSource(ds);
+		template.setSqlMonitor(sqlMonitor);
+		JdbcTemplate template2 = new JdbcTemplate();
+		template2.setDataSource(ds2);
+		template2.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		template2.setSqlMonitor(sqlMonitor);
+
+		template.query(sql, new RowCallbackHandler() {
+			public void processRow(ResultSet rs) {
+			}
+		});
+		try {
+			template2.update(updateSql, new PreparedStatementSetter() {
+				public void setValues(PreparedStatement ps) {
+				}
+			});
+			fail("Should have thrown DataAccessException");
+		}
+		catch (DataAccessException ex) {
+			assertTrue("root cause was preserved", ex.getRootCause() == sex);
+		}
+
+		SqlStatistics queryStats = sqlMonitor.getStatistics("SELECT FORENAME FROM CUSTMR WHERE ID > ?");
+		assertEquals(1, queryStats.getExecutionCount());
+		assertEquals(0, queryStats.getErrorCount());
+		assertEquals(3, queryStats.getRowCount());
+		SqlStatistics updateStats = sqlMonitor.getStatistics(updateSql);
+		assertEquals("UPDATE FOO SET NAME=? WHERE ID = ?", updateStats.getSql());
+		assertEquals(1, updateStats.getExecutionCount());
+		assertEquals(1, updateStats.getErrorCount());
+		assertEquals(0, updateStats.getRowCount());
+		dsControl.verify();
+		ds2Control.verify();
+		psControl.verify();
+	}
+
 }
@@ -0,0 +1,119 @@
+package com.interface21.jdbc.core;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.easymock.MockControl;
+
+import com.interface21.dao.DataAccessException;
+import com.interface21.dao.DataIntegrityViolationException;
+
+/**
+ * @version $Id$
+ */
+public class SQLErrorCodeExceptionTranslaterTestSuite extends TestCase {
+
+	public SQLErrorCodeExceptionTranslaterTestSuite(String name) {
+		super(name);
+	}
+
+	public void testTranslateByIntCode() {
+		SQLErrorCodes sec = new SQLErrorCodes();
+		// unsorted, with whitespace, a duplicate, a negative and a non-numeric code
+		sec.setBadSqlGrammarCodes(new String[] {"942", " 1054", "-204", "x1"});
+		sec.setDataIntegrityViolationCodes(new String[] {"2291", "1", "942"});
+		SQLErrorCodeSQLExceptionTranslater translater = new SQLErrorCodeSQLExceptionTranslater(sec);
+
+		assertTrue(translater.translate("task", "sql", new SQLException("", "", 1054)) instanceof BadSqlGrammarException);
+		assertTrue(translater.translate("task", "sql", new SQLException("", "", -204)) instanceof BadSqlGrammarException);
+		assertTrue(translater.translate("task", "sql", new SQLException("", "", 942)) instanceof BadSqlGrammarException);
+		assertTrue(translater.translate("task", "sql", new SQLException("", "", 1)) instanceof DataIntegrityViolationException);
+		assertTrue(translater.translate("task", "sql", new SQLException("", "", 2291)) instanceof DataIntegrityViolationException);
+
+		// falls back to SQLState
+		DataAccessException ex = translater.translate("task", "sql", new SQLException("", "99999", 5));
+		assertTrue(ex instanceof UncategorizedSQLException);
+	}
+
+	public void testCodesRecompiledWhenSet() {
+		SQLErrorCodeSQLExceptionTranslater translater = new SQLErrorCodeSQLExceptionTranslater();
+		SQLException sex = new SQLException("", "99999", 1054);
+		assertTrue(translater.translate("task", "sql", sex) instanceof UncategorizedSQLException);
+
+		SQLErrorCodes sec = new SQLErrorCodes();
+		sec.setBadSqlGrammarCodes(new String[] {"1054"});
+		translater.setSqlErrorCodes(sec);
+		assertTrue(translater.translate("task", "sql", sex) instanceof BadSqlGrammarException);
+	}
+
+	public void testDefaultTranslaterCachedPerDataSource() throws Exception {
+		MockControl dbmdControl = EasyMock.controlFor(DatabaseMetaData.class);
+		DatabaseMetaData dbmd = (DatabaseMetaData) dbmdControl.getMock();
+		dbmd.getDatabaseProductName();
+		dbmdControl.setReturnValue("MySQL", 2);
+		dbmdControl.activate();
+
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.getMetaData();
+		conControl.setReturnValue(dbmd, 2);
+		con.close();
+		conControl.setVoidCallable(2);
+		conControl.activate();
+
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		dsControl.activate();
+
+		MockControl ds2Control = EasyMock.controlFor(DataSource.class);
+		DataSource ds2 = (DataSource) ds2Control.getMock();
+		ds2.getConnection();
+		ds2Control.setReturnValue(con, 1);
+		ds2Control.activate();
+
+		SQLExceptionTranslaterFactory factory = SQLExceptionTranslaterFactory.getInstance();
+		SQLExceptionTranslater translater = factory.getDefaultTranslater(ds);
+		assertTrue(translater instanceof SQLErrorCodeSQLExceptionTranslater);
+		SQLExceptionTranslater translater2 = factory.getDefaultTranslater(ds);
+		assertTrue(translater2 instanceof SQLErrorCodeSQLExceptionTranslater);
+		assertNotSame(translater, translater2);
+		factory.getDefaultTranslater(ds2);
+		SQLExceptionTranslater translater3 = factory.getDefaultTranslater(ds2);
+
+		// configuring one translater does not affect the others
+		SQLException sex = new SQLException("", "99999", 1054);
+		assertTrue(translater2.translate("task", "sql", sex) instanceof BadSqlGrammarException);
+		((SQLErrorCodeSQLExceptionTranslater) translater).setSqlErrorCodes(new SQLErrorCodes());
+		assertTrue(translater.translate("task", "sql", sex) instanceof UncategorizedSQLException);
+		assertTrue(translater2.translate("task", "sql", sex) instanceof BadSqlGrammarException);
+		assertTrue(translater3.translate("task", "sql", sex) instanceof BadSqlGrammarException);
+
+		dbmdControl.verify();
+		conControl.verify();
+		dsControl.verify();
+		ds2Control.verify();
+	}
+
+	public void testDefaultTranslaterNotCachedWithoutConnection() throws Exception {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(null, 2);
+		dsControl.activate();
+
+		SQLExceptionTranslaterFactory factory = SQLExceptionTranslaterFactory.getInstance();
+		assertTrue(factory.getDefaultTranslater(ds) instanceof SQLStateSQLExceptionTranslater);
+		assertTrue(factory.getDefaultTranslater(ds) instanceof SQLStateSQLExceptionTranslater);
+
+		dsControl.verify();
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.interface21.jdbc.core;
+
+import junit.framework.TestCase;
+
+import com.interface21.beans.MutablePropertyValues;
+import com.interface21.context.ApplicationEvent;
+import com.interface21.context.ApplicationListener;
+import com.interface21.context.support.StaticApplicationContext;
+
+/**
+ * @since 19.10.2026
+ */
+public class SqlMonitorTestSuite extends TestCase {
+
+	public void testNormalizeSql() {
+		assertEquals("SELECT * FROM T1 WHERE ID = ? AND NAME = ?",
+		             SqlMonitor.normalizeSql("SELECT *\n  FROM T1\tWHERE ID = 42 AND NAME = 'O''Brien'"));
+		assertEquals("UPDATE T SET X=? WHERE Y IN (?, ?)",
+		             SqlMonitor.normalizeSql(" UPDATE T SET X=1.5 WHERE Y IN ('a', 7) "));
+		assertEquals("SELECT COL_2 FROM T WHERE ID = ?", SqlMonitor.normalizeSql("SELECT COL_2 FROM T WHERE ID = ?"));
+	}
+
+	public void testStatisticsAggregatedByNormalizedSql() {
+		SqlMonitor sqlMonitor = new SqlMonitor();
+		sqlMonitor.statementExecuted("SELECT NAME FROM T WHERE ID = 1", 10, 1, false);
+		sqlMonitor.statementExecuted("SELECT NAME FROM T WHERE ID = 2", 30, 0, false);
+		sqlMonitor.statementExecuted("SELECT NAME FROM T WHERE ID = 3", 5, -1, true);
+		sqlMonitor.statementsExecuted("INSERT INTO T VALUES (?, ?)", 4, 20, 4, false);
+
+		SqlStatistics stats = sqlMonitor.getStatistics("SELECT NAME FROM T WHERE ID = 4");
+		assertEquals("SELECT NAME FROM T WHERE ID = ?", stats.getSql());
+		assertEquals(3, stats.getExecutionCount());
+		assertEquals(1, stats.getErrorCount());
+		assertEquals(45, stats.getTotalTime());
+		assertEquals(15, stats.getAverageTime());
+		assertEquals(30, stats.getMaxTime());
+		assertEquals(1, stats.getRowCount());
+
+		stats = sqlMonitor.getStatistics("INSERT INTO T VALUES (?, ?)");
+		assertEquals(4, stats.getExecutionCount());
+		assertEquals(0, stats.getErrorCount());
+		assertEquals(4, stats.getRowCount());
+
+		sqlMonitor.reset();
+		assertNull(sqlMonitor.getStatistics("INSERT INTO T VALUES (?, ?)"));
+	}
+
+	public void testMaxStatements() {
+		SqlMonitor sqlMonitor = new SqlMonitor();
+		sqlMonitor.setMaxStatements(2);
+		sqlMonitor.statementExecuted("SELECT A FROM T", 1, 0, false);
+		sqlMonitor.statementExecuted("SELECT B FROM T", 1, 0, false);
+		sqlMonitor.statementExecuted("SELECT C FROM T", 1, 0, false);
+		sqlMonitor.statementExecuted("SELECT D FROM T", 1, 0, false);
+		assertNull(sqlMonitor.getStatistics("SELECT C FROM T"));
+		assertEquals(2, sqlMonitor.getStatistics(SqlMonitor.OTHER_STATEMENTS).getExecutionCount());
+	}
+
+	public void testStatisticsBeyondCachedSql() {
+		SqlMonitor sqlMonitor = new SqlMonitor();
+		sqlMonitor.setMaxStatements(2);
+		for (int i = 0; i < 10; i++) {
+			sqlMonitor.statementExecuted("SELECT A FROM T WHERE ID = " + i, 1, 0, false);
+		}
+		sqlMonitor.statementExecuted("SELECT B FROM T", 1, 0, false);
+		for (int i = 0; i < 10; i++) {
+			sqlMonitor.statementExecuted("SELECT C FROM T WHERE ID = " + i, 1, 0, false);
+		}
+		assertEquals(10, sqlMonitor.getStatistics("SELECT A FROM T WHERE ID = ?").getExecutionCount());
+		assertEquals(1, sqlMonitor.getStatistics("SELECT B FROM T").getExecutionCount());
+		assertNull(sqlMonitor.getStatistics("SELECT C FROM T WHERE ID = ?"));
+		assertEquals(10, sqlMonitor.getStatistics(SqlMonitor.OTHER_STATEMENTS).getExecutionCount());
+
+		sqlMonitor.reset();
+		sqlMonitor.statementExecuted("SELECT A FROM T WHERE ID = 1", 1, 0, false);
+		assertEquals(1, sqlMonitor.getStatistics("SELECT A FROM T WHERE ID = ?").getExecutionCount());
+	}
+
+	public void testConcurrentExecutionsCountedExactly() throws InterruptedException {
+		final SqlMonitor sqlMonitor = new SqlMonitor();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						sqlMonitor.statementExecuted("SELECT A FROM T WHERE ID = " + (j % 10), 2, 1, false);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		SqlStatistics stats = sqlMonitor.getStatistics("SELECT A FROM T WHERE ID = ?");
+		assertEquals(40000, stats.getExecutionCount());
+		assertEquals(80000, stats.getTotalTime());
+		assertEquals(40000, stats.getRowCount());
+	}
+
+	public void testTopStatements() {
+		SqlMonitor sqlMonitor = new SqlMonitor();
+		sqlMonitor.statementExecuted("SELECT A FROM T", 100, 0, false);
+		sqlMonitor.statementExecuted("SELECT B FROM T", 10, 0, false);
+		sqlMonitor.statementExecuted("SELECT B FROM T", 10, 0, false);
+		sqlMonitor.statementExecuted("SELECT B FROM T", 10, 0, false);
+		sqlMonitor.statementExecuted("SELECT C FROM T", 50, 0, false);
+		sqlMonitor.statementExecuted("SELECT C FROM T", 60, 0, false);
+
+		SqlStatistics[] top = sqlMonitor.getTopStatementsByTotalTime(2);
+		assertEquals(2, top.length);
+		assertEquals("SELECT C FROM T", top[0].getSql());
+		assertEquals("SELECT A FROM T", top[1].getSql());
+
+		top = sqlMonitor.getTopStatementsByMaxTime(5);
+		assertEquals(3, top.length);
+		assertEquals("SELECT A FROM T", top[0].getSql());
+		assertEquals("SELECT C FROM T", top[1].getSql());
+		assertEquals("SELECT B FROM T", top[2].getSql());
+
+		top = sqlMonitor.getTopStatementsByExecutionCount(1);
+		assertEquals(1, top.length);
+		assertEquals("SELECT B FROM T", top[0].getSql());
+		assertEquals(3, top[0].getExecutionCount());
+	}
+
+	public void testPublishReport() throws Exception {
+		StaticApplicationContext ac = new StaticApplicationContext();
+		ac.registerSingleton("reportListener", ReportListener.class, new MutablePropertyValues());
+		ac.rebuild();
+		ReportListener listener = (ReportListener) ac.getBean("reportListener");
+
+		SqlMonitor sqlMonitor = new SqlMonitor();
+		try {
+			sqlMonitor.publishReport();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+
+		sqlMonitor.setApplicationContext(ac);
+		sqlMonitor.setReportSize(1);
+		sqlMonitor.statementExecuted("SELECT A FROM T", 100, 0, false);
+		sqlMonitor.statementExecuted("SELECT B FROM T", 10, 0, false);
+		sqlMonitor.statementExecuted("SELECT B FROM T", 10, 0, false);
+		SqlStatisticsEvent event = sqlMonitor.publishReport();
+		assertSame(event, listener.lastEvent);
+		assertEquals(1, event.getMostExpensiveStatements().length);
+		assertEquals("SELECT A FROM T", event.getMostExpensiveStatements()[0].getSql());
+		assertEquals(1, event.getMostFrequentStatements().length);
+		assertEquals("SELECT B FROM T", event.getMostFrequentStatements()[0].getSql());
+	}
+
+
+	public static class ReportListener implements ApplicationListener {
+
+		private SqlStatisticsEvent lastEvent;
+
+		public void onApplicationEvent(ApplicationEvent event) {
+			if (event instanceof SqlStatisticsEvent) {
+				this.lastEvent = (SqlStatisticsEvent) event;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,403 @@
+package com.interface21.jdbc.core.support;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+import org.easymock.EasyMock;
+import org.easymock.MockControl;
+
+import com.interface21.dao.DataAccessResourceFailureException;
+
+public class DataFieldMaxValueIncrementerTests extends TestCase {
+
+	public void testMySQLMaxValueIncrementerReservesBlockWithSingleUpdate() throws SQLException {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		MockControl stmtControl = EasyMock.controlFor(Statement.class);
+		Statement stmt = (Statement) stmtControl.getMock();
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+
+		ds.getConnection();
+		dsControl.setReturnValue(con, 2);
+		con.createStatement();
+		conControl.setReturnValue(stmt, 2);
+		stmt.executeUpdate("update myseq set seq = last_insert_id(seq + 3)");
+		stmtControl.setReturnValue(1, 2);
+		stmt.executeQuery("select last_insert_id()");
+		stmtControl.setReturnValue(rs, 2);
+		rs.next();
+		rsControl.setReturnValue(true, 2);
+		rs.getLong(1);
+		rsControl.setReturnValue(3L, 1);
+		rsControl.setReturnValue(6L, 1);
+		rs.close();
+		rsControl.setVoidCallable(2);
+		stmt.close();
+		stmtControl.setVoidCallable(2);
+		con.close();
+		conControl.setVoidCallable(2);
+		dsControl.activate();
+		conControl.activate();
+		stmtControl.activate();
+		rsControl.activate();
+
+		MySQLMaxValueIncrementer incrementer = new MySQLMaxValueIncrementer();
+		incrementer.setDataSource(ds);
+		incrementer.setIncrementerName("myseq");
+		incrementer.setColumnName("seq");
+		incrementer.setCacheSize(3);
+		incrementer.setPrefixWithZero(true, 3);
+
+		assertEquals(1, incrementer.nextIntValue());
+		assertEquals(2, incrementer.nextLongValue());
+		assertEquals(3, incrementer.nextDoubleValue(), 0.0);
+		assertEquals("004", incrementer.nextStringValue());
+
+		dsControl.verify();
+		conControl.verify();
+		stmtControl.verify();
+		rsControl.verify();
+	}
+
+	public void testHsqlMaxValueIncrementerReservesBlockWithSingleInsert() throws SQLException {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		MockControl stmtControl = EasyMock.controlFor(Statement.class);
+		Statement stmt = (Statement) stmtControl.getMock();
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		con.createStatement();
+		conControl.setReturnValue(stmt, 1);
+		stmt.executeQuery("select max(value) from myseq");
+		stmtControl.setReturnValue(rs, 1);
+		rs.next();
+		rsControl.setReturnValue(true, 1);
+		rs.getLong(1);
+		rsControl.setReturnValue(10L, 1);
+		rs.close();
+		rsControl.setVoidCallable(1);
+		stmt.executeUpdate("insert into myseq values(15)");
+		stmtControl.setReturnValue(1, 1);
+		stmt.executeUpdate("delete from myseq where value < 15");
+		stmtControl.setReturnValue(1, 1);
+		stmt.close();
+		stmtControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		dsControl.activate();
+		conControl.activate();
+		stmtControl.activate();
+		rsControl.activate();
+
+		HsqlMaxValueIncrementer incrementer = new HsqlMaxValueIncrementer(ds, "myseq", "value", 5);
+		for (int i = 11; i <= 15; i++) {
+			assertEquals(i, incrementer.nextIntValue());
+		}
+
+		dsControl.verify();
+		conControl.verify();
+		stmtControl.verify();
+		rsControl.verify();
+	}
+
+	public void testHsqlMaxValueIncrementerRetriesConcurrentReservation() throws SQLException {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		MockControl stmtControl = EasyMock.controlFor(Statement.class);
+		Statement stmt = (Statement) stmtControl.getMock();
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		con.createStatement();
+		conControl.setReturnValue(stmt, 1);
+		stmt.executeQuery("select max(value) from myseq");
+		stmtControl.setReturnValue(rs, 2);
+		rs.next();
+		rsControl.setReturnValue(true, 2);
+		rs.getLong(1);
+		rsControl.setReturnValue(10L, 1);
+		// another process has reserved up to 15 in the meantime
+		rsControl.setReturnValue(15L, 1);
+		rs.close();
+		rsControl.setVoidCallable(2);
+		stmt.executeUpdate("insert into myseq values(15)");
+		stmtControl.setThrowable(new SQLException("Violation of unique index", "23000", -104));
+		stmt.executeUpdate("insert into myseq values(20)");
+		stmtControl.setReturnValue(1, 1);
+		stmt.executeUpdate("delete from myseq where value < 20");
+		stmtControl.setReturnValue(1, 1);
+		stmt.close();
+		stmtControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		dsControl.activate();
+		conControl.activate();
+		stmtControl.activate();
+		rsControl.activate();
+
+		HsqlMaxValueIncrementer incrementer = new HsqlMaxValueIncrementer(ds, "myseq", "value", 5);
+		for (int i = 16; i <= 20; i++) {
+			assertEquals(i, incrementer.nextIntValue());
+		}
+
+		dsControl.verify();
+		conControl.verify();
+		stmtControl.verify();
+		rsControl.verify();
+	}
+
+	public void testHsqlMaxValueIncrementerRetriesWhileConcurrentReservationsAdvance() throws SQLException {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		MockControl stmtControl = EasyMock.controlFor(Statement.class);
+		Statement stmt = (Statement) stmtControl.getMock();
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+
+		int collisions = HsqlMaxValueIncrementer.MAX_RESERVATION_ATTEMPTS + 2;
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		con.createStatement();
+		conControl.setReturnValue(stmt, 1);
+		stmt.executeQuery("select max(value) from myseq");
+		stmtControl.setReturnValue(rs, collisions + 1);
+		rs.next();
+		rsControl.setReturnValue(true, collisions + 1);
+		rs.getLong(1);
+		for (int i = 0; i <= collisions; i++) {
+			// other processes keep reserving blocks in the meantime
+			rsControl.setReturnValue(10L + i * 5, 1);
+		}
+		rs.close();
+		rsControl.setVoidCallable(collisions + 1);
+		for (int i = 0; i < collisions; i++) {
+			stmt.executeUpdate("insert into myseq values(" + (15 + i * 5) + ")");
+			stmtControl.setThrowable(new SQLException("Violation of unique index", "23000", -104));
+		}
+		long maxValue = 15 + collisions * 5;
+		stmt.executeUpdate("insert into myseq values(" + maxValue + ")");
+		stmtControl.setReturnValue(1, 1);
+		stmt.executeUpdate("delete from myseq where value < " + maxValue);
+		stmtControl.setReturnValue(1, 1);
+		stmt.close();
+		stmtControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		dsControl.activate();
+		conControl.activate();
+		stmtControl.activate();
+		rsControl.activate();
+
+		HsqlMaxValueIncrementer incrementer = new HsqlMaxValueIncrementer(ds, "myseq", "value", 5);
+		assertEquals(maxValue - 4, incrementer.nextLongValue());
+
+		dsControl.verify();
+		conControl.verify();
+		stmtControl.verify();
+		rsControl.verify();
+	}
+
+	public void testHsqlMaxValueIncrementerFailsWithoutProgress() throws SQLException {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		MockControl stmtControl = EasyMock.controlFor(Statement.class);
+		Statement stmt = (Statement) stmtControl.getMock();
+		MockControl rsControl = EasyMock.controlFor(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+
+		int attempts = HsqlMaxValueIncrementer.MAX_RESERVATION_ATTEMPTS;
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		con.createStatement();
+		conControl.setReturnValue(stmt, 1);
+		stmt.executeQuery("select max(value) from myseq");
+		stmtControl.setReturnValue(rs, attempts);
+		rs.next();
+		rsControl.setReturnValue(true, attempts);
+		rs.getLong(1);
+		rsControl.setReturnValue(10L, attempts);
+		rs.close();
+		rsControl.setVoidCallable(attempts);
+		stmt.executeUpdate("insert into myseq values(15)");
+		stmtControl.setThrowable(new SQLException("Violation of unique index", "23000", -104));
+		stmt.close();
+		stmtControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		dsControl.activate();
+		conControl.activate();
+		stmtControl.activate();
+		rsControl.activate();
+
+		HsqlMaxValueIncrementer incrementer = new HsqlMaxValueIncrementer(ds, "myseq", "value", 5);
+		try {
+			incrementer.nextIntValue();
+			fail("Should have thrown DataAccessResourceFailureException");
+		}
+		catch (DataAccessResourceFailureException ex) {
+			// expected
+		}
+
+		dsControl.verify();
+		conControl.verify();
+		stmtControl.verify();
+		rsControl.verify();
+	}
+
+	public void testNextValueByClass() {
+		AbstractDataFieldMaxValueIncrementer incrementer = new TestIncrementer();
+		assertEquals(new Integer(1), incrementer.nextValue(int.class));
+		assertEquals(new Integer(2), incrementer.nextValue(Integer.class));
+		assertEquals(new Long(3), incrementer.nextValue(long.class));
+		assertEquals(new Double(4), incrementer.nextValue(Double.class));
+		assertEquals("5", incrementer.nextValue(String.class));
+		try {
+			incrementer.nextValue(Object.class);
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testConcurrentKeysAreUniqueWithPrefetch() throws InterruptedException {
+		final CountingProvider provider = new CountingProvider(10);
+		provider.setPrefetchThreshold(3);
+		final Set keys = new HashSet();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < 250; j++) {
+						Long key = new Long(provider.getNextLongValue());
+						synchronized (keys) {
+							keys.add(key);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertEquals("All keys unique", 1000, keys.size());
+		for (long key = 1; key <= 1000; key++) {
+			assertTrue("Key " + key + " served", keys.contains(new Long(key)));
+		}
+		// at most one block prefetched beyond the keys served
+		assertTrue(provider.getBlockCount() <= 101);
+	}
+
+	public void testPrefetchReservesNextBlockBeforeExhaustion() throws InterruptedException {
+		CountingProvider provider = new CountingProvider(5);
+		provider.setPrefetchThreshold(2);
+		assertEquals(1, provider.getNextIntValue());
+		assertEquals(1, provider.getBlockCount());
+		assertEquals(2, provider.getNextIntValue());
+		assertEquals(3, provider.getNextIntValue());
+		// 2 keys remaining: background reservation of the next block
+		provider.waitForBlockCount(2);
+		assertEquals(4, provider.getNextIntValue());
+		assertEquals(5, provider.getNextIntValue());
+		assertEquals(6, provider.getNextIntValue());
+		assertEquals(2, provider.getBlockCount());
+	}
+
+	public void testFailedReservationIsRethrownToCaller() {
+		CountingProvider provider = new CountingProvider(5);
+		provider.fail = true;
+		try {
+			provider.getNextIntValue();
+			fail("Should have thrown DataAccessResourceFailureException");
+		}
+		catch (com.interface21.dao.DataAccessResourceFailureException ex) {
+			// expected
+		}
+		provider.fail = false;
+		assertEquals(1, provider.getNextIntValue());
+	}
+
+
+	private static class CountingProvider extends AbstractNextMaxValueProvider {
+
+		private final int blockSize;
+
+		private long nextStart = 1;
+
+		private int blockCount;
+
+		private volatile boolean fail;
+
+		private CountingProvider(int blockSize) {
+			this.blockSize = blockSize;
+		}
+
+		protected synchronized KeyBlock reserveBlock() {
+			if (this.fail)
+				throw new com.interface21.dao.DataAccessResourceFailureException("Reservation failed", null);
+			KeyBlock block = new KeyBlock(this.nextStart, this.blockSize);
+			this.nextStart += this.blockSize;
+			this.blockCount++;
+			notifyAll();
+			return block;
+		}
+
+		public synchronized int getBlockCount() {
+			return blockCount;
+		}
+
+		public synchronized void waitForBlockCount(int count) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (this.blockCount < count && System.currentTimeMillis() < deadline) {
+				wait(100);
+			}
+		}
+	}
+
+
+	private static class TestIncrementer extends AbstractDataFieldMaxValueIncrementer {
+
+		private long value;
+
+		protected int incrementIntValue() {
+			return (int) ++this.value;
+		}
+
+		protected long incrementLongValue() {
+			return ++this.value;
+		}
+
+		protected double incrementDoubleValue() {
+			return ++this.value;
+		}
+
+		protected String incrementStringValue() {
+			return Long.toString(++this.value);
+		}
+	}
+
+}
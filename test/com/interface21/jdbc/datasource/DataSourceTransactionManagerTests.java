@@ -1,7 +1,10 @@
 package com.interface21.jdbc.datasource;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.sql.DataSource;
 
@@ -9,14 +12,20 @@ import junit.framework.TestCase;
 import org.easymock.EasyMock;
 import org.easymock.MockControl;
 
+import com.interface21.jdbc.core.JdbcTemplate;
+import com.interface21.jdbc.core.SQLStateSQLExceptionTranslater;
 import com.interface21.transaction.CannotCreateTransactionException;
 import com.interface21.transaction.InvalidTimeoutException;
 import com.interface21.transaction.PlatformTransactionManager;
 import com.interface21.transaction.TransactionDefinition;
 import com.interface21.transaction.TransactionStatus;
 import com.interface21.transaction.TransactionSystemException;
+import com.interface21.transaction.TransactionTimedOutException;
 import com.interface21.transaction.UnexpectedRollbackException;
 import com.interface21.transaction.support.TransactionCallbackWithoutResult;
+import com.interface21.transaction.support.TransactionSynchronization;
+import com.interface21.transaction.support.TransactionSynchronizationAdapter;
+import com.interface21.transaction.support.TransactionSynchronizationManager;
 import com.interface21.transaction.support.TransactionTemplate;
 
 /**
@@ -116,24 +125,19 @@ public class DataSourceTransactionManagerTests extends TestCase {
 		Connection con = (Connection) conControl.getMock();
 		MockControl dsControl = EasyMock.controlFor(DataSource.class);
 		final DataSource ds = (DataSource) dsControl.getMock();
-		ds.getConnection();
-		dsControl.setReturnValue(con, 1);
 		conControl.activate();
 		dsControl.activate();
 
-		PlatformTransactionManager tm = new DataSourceTransactionManager(ds) {
-			protected boolean isExistingTransaction(Object transaction) {
-				return true;
-			}
-		};
+		PlatformTransactionManager tm = new DataSourceTransactionManager(ds);
 		TransactionTemplate tt = new TransactionTemplate(tm);
-		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		ConnectionHolder holder = new ConnectionHolder(con);
+		DataSourceUtils.getThreadObjectManager().bindThreadObject(ds, holder);
 
 		final RuntimeException ex = new RuntimeException("Application exception");
 		try {
 			tt.execute(new TransactionCallbackWithoutResult() {
 				protected void doInTransactionWithoutResult(TransactionStatus status) throws RuntimeException {
-					assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+					assertTrue("Has thread connection", DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
 					assertTrue("Is existing transaction", !status.isNewTransaction());
 					throw ex;
 				}
@@ -142,8 +146,11 @@ public class DataSourceTransactionManagerTests extends TestCase {
 		}
 		catch (RuntimeException ex2) {
 			// expected
-			assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
 			assertTrue("Correct exception thrown", ex2.equals(ex));
+			assertTrue("Marked rollback-only", holder.isRollbackOnly());
+		}
+		finally {
+			DataSourceUtils.getThreadObjectManager().removeThreadObject(ds);
 		}
 		conControl.verify();
 		dsControl.verify();
@@ -174,30 +181,260 @@ public class DataSourceTransactionManagerTests extends TestCase {
 		final TransactionTemplate tt = new TransactionTemplate(tm);
 		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
 
+		try {
+			tt.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) throws RuntimeException {
+					assertTrue("Is new transaction", status.isNewTransaction());
+					tt.execute(new TransactionCallbackWithoutResult() {
+						protected void doInTransactionWithoutResult(TransactionStatus status) throws RuntimeException {
+							assertTrue("Has thread connection", DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+							assertTrue("Is existing transaction", !status.isNewTransaction());
+							status.setRollbackOnly();
+						}
+					});
+					assertTrue("Is new transaction", status.isNewTransaction());
+				}
+			});
+			fail("Should have thrown UnexpectedRollbackException");
+		}
+		catch (UnexpectedRollbackException ex) {
+			// expected
+		}
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testDataSourceTransactionManagerWithPropagationRequiresNew() throws Exception {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		final Connection con = (Connection) conControl.getMock();
+		con.setAutoCommit(false);
+		conControl.setVoidCallable(1);
+		con.rollback();
+		conControl.setVoidCallable(1);
+		con.isReadOnly();
+		conControl.setReturnValue(false, 1);
+		con.setAutoCommit(true);
+		conControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		MockControl con2Control = EasyMock.controlFor(Connection.class);
+		final Connection con2 = (Connection) con2Control.getMock();
+		con2.setAutoCommit(false);
+		con2Control.setVoidCallable(1);
+		con2.commit();
+		con2Control.setVoidCallable(1);
+		con2.isReadOnly();
+		con2Control.setReturnValue(false, 1);
+		con2.setAutoCommit(true);
+		con2Control.setVoidCallable(1);
+		con2.close();
+		con2Control.setVoidCallable(1);
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		final DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		dsControl.setReturnValue(con2, 1);
+		conControl.activate();
+		con2Control.activate();
+		dsControl.activate();
+
+		PlatformTransactionManager tm = new DataSourceTransactionManager(ds);
+		TransactionTemplate tt = new TransactionTemplate(tm);
+		final TransactionTemplate innerTt = new TransactionTemplate(tm);
+		innerTt.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
 		tt.execute(new TransactionCallbackWithoutResult() {
-			protected void doInTransactionWithoutResult(TransactionStatus status) throws RuntimeException {
-				assertTrue("Is new transaction", status.isNewTransaction());
-				tt.execute(new TransactionCallbackWithoutResult() {
-					protected void doInTransactionWithoutResult(TransactionStatus status) throws RuntimeException {
-						assertTrue("Has thread connection", DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
-						assertTrue("Is existing transaction", !status.isNewTransaction());
-						status.setRollbackOnly();
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertTrue("Outer connection bound", DataSourceUtils.getConnection(ds) == con);
+				innerTt.execute(new TransactionCallbackWithoutResult() {
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						assertTrue("Is new transaction", status.isNewTransaction());
+						assertTrue("Inner connection bound", DataSourceUtils.getConnection(ds) == con2);
 					}
 				});
-				assertTrue("Is new transaction", status.isNewTransaction());
+				assertTrue("Outer connection bound again", DataSourceUtils.getConnection(ds) == con);
+				status.setRollbackOnly();
+			}
+		});
+
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		conControl.verify();
+		con2Control.verify();
+		dsControl.verify();
+	}
+
+	public void testDataSourceTransactionManagerWithPropagationNotSupported() throws Exception {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		final Connection con = (Connection) conControl.getMock();
+		con.setAutoCommit(false);
+		conControl.setVoidCallable(1);
+		con.commit();
+		conControl.setVoidCallable(1);
+		con.isReadOnly();
+		conControl.setReturnValue(false, 1);
+		con.setAutoCommit(true);
+		conControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		final DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		conControl.activate();
+		dsControl.activate();
+
+		PlatformTransactionManager tm = new DataSourceTransactionManager(ds);
+		TransactionTemplate tt = new TransactionTemplate(tm);
+		final TransactionTemplate innerTt = new TransactionTemplate(tm);
+		innerTt.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				try {
+					innerTt.execute(new TransactionCallbackWithoutResult() {
+						protected void doInTransactionWithoutResult(TransactionStatus status) {
+							assertTrue("Isn't new transaction", !status.isNewTransaction());
+							assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+							throw new IllegalStateException("application exception");
+						}
+					});
+					fail("Should have thrown IllegalStateException");
+				}
+				catch (IllegalStateException ex) {
+					// expected
+				}
+				assertTrue("Outer connection bound again", DataSourceUtils.getConnection(ds) == con);
+			}
+		});
+
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testDataSourceTransactionManagerWithPropagationRequiresNewAndParticipantRollback() throws Exception {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		final Connection con = (Connection) conControl.getMock();
+		con.setAutoCommit(false);
+		conControl.setVoidCallable(1);
+		con.commit();
+		conControl.setVoidCallable(1);
+		con.isReadOnly();
+		conControl.setReturnValue(false, 1);
+		con.setAutoCommit(true);
+		conControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		MockControl con2Control = EasyMock.controlFor(Connection.class);
+		final Connection con2 = (Connection) con2Control.getMock();
+		con2.setAutoCommit(false);
+		con2Control.setVoidCallable(1);
+		con2.rollback();
+		con2Control.setVoidCallable(1);
+		con2.isReadOnly();
+		con2Control.setReturnValue(false, 1);
+		con2.setAutoCommit(true);
+		con2Control.setVoidCallable(1);
+		con2.close();
+		con2Control.setVoidCallable(1);
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		final DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		dsControl.setReturnValue(con2, 1);
+		conControl.activate();
+		con2Control.activate();
+		dsControl.activate();
+
+		DataSourceTransactionManager tm = new DataSourceTransactionManager(ds);
+		tm.setTransactionSynchronization(true);
+		final TransactionTemplate tt = new TransactionTemplate(tm);
+		final TransactionTemplate innerTt = new TransactionTemplate(tm);
+		innerTt.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		final List outerCompletions = new ArrayList();
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				TransactionSynchronizationManager.register(new TransactionSynchronizationAdapter() {
+					public void afterCompletion(int status) {
+						outerCompletions.add(new Integer(status));
+					}
+				});
+				try {
+					innerTt.execute(new TransactionCallbackWithoutResult() {
+						protected void doInTransactionWithoutResult(TransactionStatus status) {
+							assertTrue("Is new transaction", status.isNewTransaction());
+							tt.execute(new TransactionCallbackWithoutResult() {
+								protected void doInTransactionWithoutResult(TransactionStatus status) {
+									assertTrue("Is existing transaction", !status.isNewTransaction());
+									assertTrue("Inner connection bound", DataSourceUtils.getConnection(ds) == con2);
+									status.setRollbackOnly();
+								}
+							});
+						}
+					});
+					fail("Should have thrown UnexpectedRollbackException");
+				}
+				catch (UnexpectedRollbackException ex) {
+					// expected
+				}
+				assertTrue("Outer connection bound again", DataSourceUtils.getConnection(ds) == con);
+				assertTrue("Outer synchronization not triggered by inner transaction", outerCompletions.isEmpty());
 			}
 		});
+
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		assertEquals(1, outerCompletions.size());
+		assertEquals(new Integer(TransactionSynchronization.STATUS_COMMITTED), outerCompletions.get(0));
 		conControl.verify();
+		con2Control.verify();
+		dsControl.verify();
+	}
+
+	public void testDataSourceTransactionManagerWithPropagationNotSupportedAndNoTransaction() throws Exception {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		final DataSource ds = (DataSource) dsControl.getMock();
+		dsControl.activate();
+
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(ds));
+		tt.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertTrue("Isn't new transaction", !status.isNewTransaction());
+				assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+			}
+		});
+
+		// no connection fetched for non-transactional execution
 		dsControl.verify();
 	}
 
 	public void testDataSourceTransactionManagerWithTimeout() throws Exception {
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		ps.setQueryTimeout(10);
+		psControl.setVoidCallable(1);
+		ps.executeUpdate();
+		psControl.setReturnValue(1, 1);
+		ps.close();
+		psControl.setVoidCallable(1);
 		MockControl conControl = EasyMock.controlFor(Connection.class);
 		Connection con = (Connection) conControl.getMock();
+		con.setAutoCommit(false);
+		conControl.setVoidCallable(1);
+		con.prepareStatement("UPDATE T SET X = 1");
+		conControl.setReturnValue(ps, 1);
+		con.commit();
+		conControl.setVoidCallable(1);
+		con.isReadOnly();
+		conControl.setReturnValue(false, 1);
+		con.setAutoCommit(true);
+		conControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
 		MockControl dsControl = EasyMock.controlFor(DataSource.class);
-		DataSource ds = (DataSource) dsControl.getMock();
+		final DataSource ds = (DataSource) dsControl.getMock();
 		ds.getConnection();
 		dsControl.setReturnValue(con, 1);
+		psControl.activate();
 		conControl.activate();
 		dsControl.activate();
 
@@ -208,6 +445,143 @@ public class DataSourceTransactionManagerTests extends TestCase {
 		TransactionTemplate tt = new TransactionTemplate(tm);
 		tt.setTimeout(10);
 		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				ConnectionHolder holder = (ConnectionHolder) DataSourceUtils.getThreadObjectManager().getThreadObject(ds);
+				assertTrue("Has timeout", holder.hasTimeout());
+				createJdbcTemplate(ds).update("UPDATE T SET X = 1");
+			}
+		});
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testDataSourceTransactionManagerWithExpiredTimeout() throws Exception {
+		MockControl psControl = EasyMock.controlFor(PreparedStatement.class);
+		PreparedStatement ps = (PreparedStatement) psControl.getMock();
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.setAutoCommit(false);
+		conControl.setVoidCallable(1);
+		con.prepareStatement("UPDATE T SET X = 1");
+		conControl.setReturnValue(ps, 1);
+		con.rollback();
+		conControl.setVoidCallable(1);
+		con.isReadOnly();
+		conControl.setReturnValue(false, 1);
+		con.setAutoCommit(true);
+		conControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		final DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		psControl.activate();
+		conControl.activate();
+		dsControl.activate();
+
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(ds));
+		tt.setTimeout(10);
+		try {
+			tt.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					ConnectionHolder holder = (ConnectionHolder) DataSourceUtils.getThreadObjectManager().getThreadObject(ds);
+					// simulate expiration of the deadline
+					holder.setTimeoutInMillis(-1);
+					try {
+						createJdbcTemplate(ds).update("UPDATE T SET X = 1");
+						fail("Should have thrown TransactionTimedOutException");
+					}
+					finally {
+						assertTrue("Marked rollback-only", holder.isRollbackOnly());
+					}
+				}
+			});
+			fail("Should have thrown TransactionTimedOutException");
+		}
+		catch (TransactionTimedOutException ex) {
+			// expected
+		}
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		psControl.verify();
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	public void testDataSourceTransactionManagerWithTimeoutExpiredBeforeCommit() throws Exception {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		con.setAutoCommit(false);
+		conControl.setVoidCallable(1);
+		con.rollback();
+		conControl.setVoidCallable(1);
+		con.isReadOnly();
+		conControl.setReturnValue(false, 1);
+		con.setAutoCommit(true);
+		conControl.setVoidCallable(1);
+		con.close();
+		conControl.setVoidCallable(1);
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		final DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		conControl.activate();
+		dsControl.activate();
+
+		DataSourceTransactionManager tm = new DataSourceTransactionManager(ds);
+		tm.setTransactionSynchronization(true);
+		TransactionTemplate tt = new TransactionTemplate(tm);
+		tt.setTimeout(10);
+		final List calls = new ArrayList();
+		try {
+			tt.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					TransactionSynchronizationManager.register(new TransactionSynchronizationAdapter() {
+						public void beforeCommit() {
+							calls.add("beforeCommit");
+						}
+						public void afterCompletion(int status) {
+							calls.add("afterCompletion " + status);
+						}
+					});
+					ConnectionHolder holder = (ConnectionHolder) DataSourceUtils.getThreadObjectManager().getThreadObject(ds);
+					// simulate expiration of the deadline without further statements
+					holder.setTimeoutInMillis(-1);
+				}
+			});
+			fail("Should have thrown TransactionTimedOutException");
+		}
+		catch (TransactionTimedOutException ex) {
+			// expected
+		}
+		assertEquals("[afterCompletion " + TransactionSynchronization.STATUS_ROLLED_BACK + "]", calls.toString());
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		conControl.verify();
+		dsControl.verify();
+	}
+
+	private JdbcTemplate createJdbcTemplate(DataSource ds) {
+		JdbcTemplate jt = new JdbcTemplate();
+		jt.setDataSource(ds);
+		jt.setExceptionTranslater(new SQLStateSQLExceptionTranslater());
+		return jt;
+	}
+
+	public void testDataSourceTransactionManagerWithInvalidTimeout() throws Exception {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		DataSource ds = (DataSource) dsControl.getMock();
+		ds.getConnection();
+		dsControl.setReturnValue(con, 1);
+		conControl.activate();
+		dsControl.activate();
+
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(ds));
+		tt.setTimeout(-5);
 		try {
 			tt.execute(new TransactionCallbackWithoutResult() {
 				protected void doInTransactionWithoutResult(TransactionStatus status) {
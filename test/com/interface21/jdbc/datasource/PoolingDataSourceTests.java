@@ -0,0 +1,424 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.interface21.jdbc.core.JdbcTemplate;
+import com.interface21.jdbc.core.PreparedStatementSetter;
+import com.interface21.transaction.TransactionStatus;
+import com.interface21.transaction.support.TransactionCallbackWithoutResult;
+import com.interface21.transaction.support.TransactionTemplate;
+
+/**
+ * @version $Id$
+ */
+public class PoolingDataSourceTests extends TestCase {
+
+	private TestPoolingDataSource ds;
+
+	public PoolingDataSourceTests(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		this.ds = new TestPoolingDataSource();
+		this.ds.setUrl("url");
+	}
+
+	public void testConnectionIsReused() throws Exception {
+		this.ds.afterPropertiesSet();
+		Connection con1 = this.ds.getConnection();
+		assertEquals(1, this.ds.getActiveCount());
+		assertTrue(this.ds.shouldClose(con1));
+		con1.close();
+		assertTrue(con1.isClosed());
+		assertEquals(0, this.ds.getActiveCount());
+		assertEquals(1, this.ds.getIdleCount());
+
+		Connection con2 = this.ds.getConnection();
+		assertTrue("New handle per borrow", con1 != con2);
+		assertEquals(1, this.ds.physicalConnections.size());
+		assertFalse(con2.isClosed());
+		try {
+			con1.createStatement();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+		// closing a stale handle again must not affect the new borrower
+		con1.close();
+		assertEquals(1, this.ds.getActiveCount());
+		con2.close();
+		assertEquals(2, this.ds.getBorrowCount());
+	}
+
+	public void testMinSizeCreatesInitialConnections() throws Exception {
+		this.ds.setMinSize(3);
+		this.ds.afterPropertiesSet();
+		assertEquals(3, this.ds.getIdleCount());
+		assertEquals(3, this.ds.getTotalCount());
+		this.ds.destroy();
+		assertEquals(0, this.ds.getTotalCount());
+		assertTrue(this.ds.physicalConnection(0).closed);
+		assertTrue(this.ds.physicalConnection(2).closed);
+		try {
+			this.ds.getConnection();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+	}
+
+	public void testExhaustedPoolFailsFast() throws Exception {
+		this.ds.setMaxSize(1);
+		this.ds.setMaxWait(0);
+		this.ds.afterPropertiesSet();
+		Connection con = this.ds.getConnection();
+		try {
+			this.ds.getConnection();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+		assertEquals(1, this.ds.getTimeoutCount());
+		con.close();
+		this.ds.getConnection().close();
+	}
+
+	public void testWaitTimesOut() throws Exception {
+		this.ds.setMaxSize(1);
+		this.ds.setMaxWait(20);
+		this.ds.afterPropertiesSet();
+		this.ds.getConnection();
+		try {
+			this.ds.getConnection();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+		assertEquals(1, this.ds.getWaitCount());
+		assertEquals(1, this.ds.getTimeoutCount());
+		assertEquals(0, this.ds.getWaitingCount());
+	}
+
+	public void testWaiterIsHandedReturnedConnection() throws Exception {
+		this.ds.setMaxSize(1);
+		this.ds.afterPropertiesSet();
+		final Connection con = this.ds.getConnection();
+		Thread returner = new Thread() {
+			public void run() {
+				try {
+					while (ds.getWaitingCount() == 0) {
+						Thread.sleep(5);
+					}
+					con.close();
+				}
+				catch (Exception ex) {
+					throw new RuntimeException(ex.getMessage());
+				}
+			}
+		};
+		returner.start();
+		Connection con2 = this.ds.getConnection();
+		returner.join();
+		assertEquals(1, this.ds.physicalConnections.size());
+		assertEquals(1, this.ds.getWaitCount());
+		assertEquals(1, this.ds.getWaitTimeHistogram().getCount());
+		assertEquals(1, this.ds.getPeakActiveCount());
+		con2.close();
+	}
+
+	public void testInvalidConnectionIsReplaced() throws Exception {
+		this.ds.setValidationQuery("SELECT 1");
+		this.ds.afterPropertiesSet();
+		this.ds.getConnection().close();
+		this.ds.physicalConnection(0).broken = true;
+		Connection con = this.ds.getConnection();
+		assertEquals(2, this.ds.physicalConnections.size());
+		assertTrue(this.ds.physicalConnection(0).closed);
+		assertEquals(1, this.ds.getValidationFailureCount());
+		assertEquals(1, this.ds.getTotalCount());
+		con.close();
+	}
+
+	public void testMaxIdleClosesSurplusConnections() throws Exception {
+		this.ds.setMaxIdle(1);
+		this.ds.afterPropertiesSet();
+		Connection con1 = this.ds.getConnection();
+		Connection con2 = this.ds.getConnection();
+		con1.close();
+		con2.close();
+		assertEquals(1, this.ds.getIdleCount());
+		assertEquals(1, this.ds.getTotalCount());
+		assertTrue(this.ds.physicalConnection(1).closed);
+	}
+
+	public void testManualCommitConnectionIsRolledBackOnReturn() throws Exception {
+		this.ds.afterPropertiesSet();
+		Connection con = this.ds.getConnection();
+		con.setAutoCommit(false);
+		con.close();
+		assertTrue(this.ds.physicalConnection(0).rolledBack);
+		assertTrue(this.ds.physicalConnection(0).autoCommit);
+	}
+
+	public void testChangedSettingsAreRestoredOnReturn() throws Exception {
+		this.ds.afterPropertiesSet();
+		Connection con = this.ds.getConnection();
+		con.setReadOnly(true);
+		con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+		con.setCatalog("other");
+		con.close();
+		StubConnection stub = this.ds.physicalConnection(0);
+		assertFalse(stub.readOnly);
+		assertEquals(Connection.TRANSACTION_READ_COMMITTED, stub.transactionIsolation);
+		assertEquals("catalog", stub.catalog);
+		assertEquals(1, this.ds.getIdleCount());
+	}
+
+	public void testStatementsLeftOpenAreClosedWithHandle() throws Exception {
+		this.ds.afterPropertiesSet();
+		Connection con = this.ds.getConnection();
+		PreparedStatement ps1 = con.prepareStatement("A");
+		PreparedStatement ps2 = con.prepareStatement("B");
+		assertSame(con, ps1.getConnection());
+		ps1.close();
+		StubConnection stub = this.ds.physicalConnection(0);
+		assertEquals(1, stub.closedStatementCount);
+		con.close();
+		assertEquals(2, stub.closedStatementCount);
+		assertFalse(stub.closed);
+	}
+
+	public void testLeakDetection() throws Exception {
+		this.ds.setLeakDetectionThreshold(1);
+		this.ds.afterPropertiesSet();
+		Connection con = this.ds.getConnection();
+		Thread.sleep(20);
+		assertEquals(1, this.ds.logSuspectedLeaks());
+		con.close();
+		assertEquals(0, this.ds.logSuspectedLeaks());
+	}
+
+	public void testWithDataSourceTransactionManager() throws Exception {
+		this.ds.afterPropertiesSet();
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.ds));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) throws RuntimeException {
+				Connection con = DataSourceUtils.getConnection(ds);
+				assertEquals(1, ds.getActiveCount());
+				DataSourceUtils.closeConnectionIfNecessary(con, ds);
+				assertEquals(1, ds.getActiveCount());
+			}
+		});
+		assertEquals(0, this.ds.getActiveCount());
+		assertEquals(1, this.ds.getIdleCount());
+		assertTrue(this.ds.physicalConnection(0).committed);
+		assertTrue(this.ds.physicalConnection(0).autoCommit);
+	}
+
+	public void testStatementCacheWithJdbcTemplate() throws Exception {
+		this.ds.setStatementCacheSize(2);
+		this.ds.afterPropertiesSet();
+		JdbcTemplate template = new JdbcTemplate(this.ds);
+		PreparedStatementSetter pss = new PreparedStatementSetter() {
+			public void setValues(PreparedStatement ps) throws SQLException {
+				ps.setInt(1, 1);
+				ps.setMaxRows(10);
+			}
+		};
+		for (int i = 0; i < 3; i++) {
+			template.update("UPDATE T SET A = 1 WHERE B = ?", pss);
+		}
+		assertEquals(1, this.ds.physicalConnection(0).preparedCount);
+		assertEquals(0, this.ds.physicalConnection(0).closedStatementCount);
+		StatementCacheStatistics stats = this.ds.getStatementCacheStatistics("UPDATE T SET A = 1 WHERE B = ?");
+		assertEquals(2, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(1, this.ds.getAllStatementCacheStatistics().length);
+
+		this.ds.destroy();
+		assertEquals(1, this.ds.physicalConnection(0).closedStatementCount);
+	}
+
+	public void testStatementCacheEvictsLeastRecentlyUsed() throws Exception {
+		this.ds.setStatementCacheSize(2);
+		this.ds.afterPropertiesSet();
+		Connection con = this.ds.getConnection();
+		con.prepareStatement("A").close();
+		con.prepareStatement("B").close();
+		con.prepareStatement("A").close();
+		con.prepareStatement("C").close();
+		StubConnection stub = this.ds.physicalConnection(0);
+		assertEquals(3, stub.preparedCount);
+		assertEquals(1, stub.closedStatementCount);
+		assertEquals(1, this.ds.getStatementCacheStatistics("B").getEvictionCount());
+		con.prepareStatement("A").close();
+		assertEquals(3, stub.preparedCount);
+		con.close();
+	}
+
+	public void testStatementInUseIsNotShared() throws Exception {
+		this.ds.setStatementCacheSize(2);
+		this.ds.afterPropertiesSet();
+		Connection con = this.ds.getConnection();
+		PreparedStatement ps1 = con.prepareStatement("A");
+		PreparedStatement ps2 = con.prepareStatement("A");
+		StubConnection stub = this.ds.physicalConnection(0);
+		assertEquals(2, stub.preparedCount);
+		assertSame(con, ps1.getConnection());
+		ps2.close();
+		assertEquals(1, stub.closedStatementCount);
+		ps1.close();
+		assertEquals(1, stub.closedStatementCount);
+		try {
+			ps1.executeUpdate();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+		ps1 = con.prepareStatement("A");
+		assertEquals(2, stub.preparedCount);
+		// returning the connection invalidates statements still in use
+		con.close();
+		try {
+			ps1.executeUpdate();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+	}
+
+
+	private static class TestPoolingDataSource extends PoolingDataSource {
+
+		private final List physicalConnections = new ArrayList();
+
+		protected Connection getConnectionFromDriverManager(String url, String username, String password) {
+			StubConnection stub = new StubConnection();
+			synchronized (this.physicalConnections) {
+				this.physicalConnections.add(stub);
+			}
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class}, stub);
+		}
+
+		private StubConnection physicalConnection(int index) {
+			synchronized (this.physicalConnections) {
+				return (StubConnection) this.physicalConnections.get(index);
+			}
+		}
+	}
+
+
+	private static class StubConnection implements InvocationHandler {
+
+		private boolean autoCommit = true;
+
+		private boolean closed;
+
+		private boolean broken;
+
+		private boolean committed;
+
+		private boolean rolledBack;
+
+		private int preparedCount;
+
+		private int closedStatementCount;
+
+		private boolean readOnly;
+
+		private int transactionIsolation = Connection.TRANSACTION_READ_COMMITTED;
+
+		private String catalog = "catalog";
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("getAutoCommit")) {
+				return (this.autoCommit ? Boolean.TRUE : Boolean.FALSE);
+			}
+			if (name.equals("setAutoCommit")) {
+				this.autoCommit = ((Boolean) args[0]).booleanValue();
+			}
+			else if (name.equals("isClosed")) {
+				return (this.closed ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (name.equals("isReadOnly")) {
+				return (this.readOnly ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (name.equals("setReadOnly")) {
+				this.readOnly = ((Boolean) args[0]).booleanValue();
+			}
+			else if (name.equals("getTransactionIsolation")) {
+				return new Integer(this.transactionIsolation);
+			}
+			else if (name.equals("setTransactionIsolation")) {
+				this.transactionIsolation = ((Integer) args[0]).intValue();
+			}
+			else if (name.equals("getCatalog")) {
+				return this.catalog;
+			}
+			else if (name.equals("setCatalog")) {
+				this.catalog = (String) args[0];
+			}
+			else if (name.equals("close")) {
+				this.closed = true;
+			}
+			else if (name.equals("commit")) {
+				this.committed = true;
+			}
+			else if (name.equals("rollback")) {
+				this.rolledBack = true;
+			}
+			else if (name.equals("createStatement")) {
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Statement.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("execute") && broken) {
+							throw new SQLException("Connection broken");
+						}
+						return (method.getReturnType() == boolean.class ? Boolean.TRUE : null);
+					}
+				});
+			}
+			else if (name.equals("prepareStatement")) {
+				this.preparedCount++;
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {PreparedStatement.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("close")) {
+							closedStatementCount++;
+						}
+						return (method.getReturnType() == int.class ? new Integer(1) : null);
+					}
+				});
+			}
+			else if (name.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (name.equals("toString")) {
+				return "StubConnection";
+			}
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,254 @@
+package com.interface21.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import com.interface21.transaction.TransactionStatus;
+import com.interface21.transaction.support.TransactionCallbackWithoutResult;
+import com.interface21.transaction.support.TransactionTemplate;
+
+public class ReadWriteRoutingDataSourceTests extends TestCase {
+
+	private FakeDataSource primary;
+
+	private FakeDataSource replica0;
+
+	private FakeDataSource replica1;
+
+	private ReadWriteRoutingDataSource routingDataSource;
+
+	protected void setUp() {
+		this.primary = new FakeDataSource("primary");
+		this.replica0 = new FakeDataSource("replica0");
+		this.replica1 = new FakeDataSource("replica1");
+		this.routingDataSource = new ReadWriteRoutingDataSource();
+		this.routingDataSource.setPrimaryDataSource(this.primary.proxy);
+		List replicas = new ArrayList();
+		replicas.add(this.replica0.proxy);
+		replicas.add(this.replica1.proxy);
+		this.routingDataSource.setReplicaDataSources(replicas);
+	}
+
+	protected void tearDown() {
+		this.routingDataSource.destroy();
+	}
+
+	public void testReadOnlyTransactionUsesReplica() {
+		this.routingDataSource.afterPropertiesSet();
+		DataSourceTransactionManager tm = new DataSourceTransactionManager(this.routingDataSource);
+		TransactionTemplate tt = new TransactionTemplate(tm);
+		tt.setReadOnly(true);
+		final List used = new ArrayList();
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				used.add(DataSourceUtils.getConnection(routingDataSource).toString());
+				used.add(new Integer(routingDataSource.getOutstandingCount(0)));
+			}
+		});
+		assertTrue("Replica connection used", ((String) used.get(0)).startsWith("Replica 0"));
+		assertEquals(new Integer(1), used.get(1));
+		assertEquals(0, this.routingDataSource.getOutstandingCount(0));
+		assertEquals(0, this.primary.connectionCount);
+		assertEquals(1, this.replica0.connectionCount);
+		assertEquals(1, this.replica0.closeCount);
+		assertEquals("Read-only flag applied", 1, this.replica0.readOnlyCount);
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(this.routingDataSource));
+	}
+
+	public void testReadWriteTransactionUsesPrimary() {
+		this.routingDataSource.afterPropertiesSet();
+		DataSourceTransactionManager tm = new DataSourceTransactionManager(this.routingDataSource);
+		TransactionTemplate tt = new TransactionTemplate(tm);
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				DataSourceUtils.getConnection(routingDataSource);
+			}
+		});
+		assertEquals(1, this.primary.connectionCount);
+		assertEquals(1, this.primary.closeCount);
+		assertEquals(0, this.replica0.connectionCount);
+		assertEquals(0, this.replica1.connectionCount);
+	}
+
+	public void testRoundRobin() throws SQLException {
+		this.routingDataSource.afterPropertiesSet();
+		for (int i = 0; i < 4; i++) {
+			this.routingDataSource.getReadOnlyConnection().close();
+		}
+		assertEquals(2, this.replica0.connectionCount);
+		assertEquals(2, this.replica1.connectionCount);
+		assertEquals(2, this.replica0.closeCount);
+	}
+
+	public void testLeastOutstanding() throws SQLException {
+		this.routingDataSource.setSelectionPolicyName("SELECTION_LEAST_OUTSTANDING");
+		this.routingDataSource.afterPropertiesSet();
+		Connection con1 = this.routingDataSource.getReadOnlyConnection();
+		Connection con2 = this.routingDataSource.getReadOnlyConnection();
+		assertTrue(!con1.toString().substring(0, 9).equals(con2.toString().substring(0, 9)));
+		con1.close();
+		con1.close();
+		assertEquals("Double close releases once", 0, this.routingDataSource.getOutstandingCount(0) +
+		             this.routingDataSource.getOutstandingCount(1) - 1);
+		for (int i = 0; i < 3; i++) {
+			Connection con = this.routingDataSource.getReadOnlyConnection();
+			assertEquals("Replica with fewest outstanding selected",
+			             con1.toString().substring(0, 9), con.toString().substring(0, 9));
+			con.close();
+		}
+		con2.close();
+	}
+
+	public void testFailingReplicaIsSkippedAndEjected() throws SQLException {
+		this.routingDataSource.setHealthCheckInterval(60000);
+		this.routingDataSource.setValidationQuery("SELECT 1");
+		this.routingDataSource.afterPropertiesSet();
+		this.replica0.fail = true;
+		for (int i = 0; i < 3; i++) {
+			Connection con = this.routingDataSource.getReadOnlyConnection();
+			assertTrue(con.toString().startsWith("Replica 1"));
+			con.close();
+		}
+		assertEquals("Ejected after first failure", 1, this.replica0.connectionCount);
+		assertTrue(!this.routingDataSource.isReplicaHealthy(0));
+		assertEquals(0, this.routingDataSource.getOutstandingCount(0));
+
+		this.replica0.fail = false;
+		this.routingDataSource.checkReplicas();
+		assertTrue("Re-admitted", this.routingDataSource.isReplicaHealthy(0));
+	}
+
+	public void testLaggingReplicaIsEjected() {
+		this.routingDataSource.setLagQuery("SELECT LAG");
+		this.routingDataSource.setMaxLag(10);
+		this.routingDataSource.afterPropertiesSet();
+		this.replica1.lag = 30;
+		this.routingDataSource.checkReplicas();
+		assertTrue(this.routingDataSource.isReplicaHealthy(0));
+		assertTrue(!this.routingDataSource.isReplicaHealthy(1));
+		this.replica1.lag = 5;
+		this.routingDataSource.checkReplicas();
+		assertTrue(this.routingDataSource.isReplicaHealthy(1));
+	}
+
+	public void testFallbackToPrimaryWithoutAvailableReplica() throws SQLException {
+		this.routingDataSource.setReplicaDataSources(null);
+		this.routingDataSource.afterPropertiesSet();
+		Connection con = this.routingDataSource.getReadOnlyConnection();
+		assertEquals(1, this.primary.connectionCount);
+		assertTrue(this.routingDataSource.shouldClose(con));
+	}
+
+
+	/**
+	 * DataSource that hands out fake connections, counting calls.
+	 */
+	private static class FakeDataSource implements InvocationHandler {
+
+		private final String name;
+
+		private final DataSource proxy;
+
+		private volatile boolean fail;
+
+		private volatile long lag;
+
+		private int connectionCount;
+
+		private int closeCount;
+
+		private int readOnlyCount;
+
+		private FakeDataSource(String name) {
+			this.name = name;
+			this.proxy = (DataSource) newProxy(DataSource.class, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("getConnection")) {
+				synchronized (this) {
+					this.connectionCount++;
+				}
+				if (this.fail) {
+					throw new SQLException("Replica down");
+				}
+				return newProxy(Connection.class, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String methodName = method.getName();
+						if (methodName.equals("close")) {
+							synchronized (FakeDataSource.this) {
+								closeCount++;
+							}
+						}
+						else if (methodName.equals("setReadOnly") && ((Boolean) args[0]).booleanValue()) {
+							readOnlyCount++;
+						}
+						else if (methodName.equals("createStatement")) {
+							return newProxy(Statement.class, new InvocationHandler() {
+								public Object invoke(Object proxy, Method method, Object[] args) {
+									if (method.getName().equals("executeQuery")) {
+										return newProxy(ResultSet.class, new InvocationHandler() {
+											public Object invoke(Object proxy, Method method, Object[] args) {
+												if (method.getName().equals("getLong")) {
+													return new Long(lag);
+												}
+												return defaultValue(proxy, method, args);
+											}
+										});
+									}
+									return defaultValue(proxy, method, args);
+								}
+							});
+						}
+						else if (methodName.equals("toString")) {
+							return name + " connection";
+						}
+						return defaultValue(proxy, method, args);
+					}
+				});
+			}
+			return defaultValue(proxy, method, args);
+		}
+
+		private static Object newProxy(Class intf, InvocationHandler handler) {
+			return Proxy.newProxyInstance(FakeDataSource.class.getClassLoader(), new Class[] {intf}, handler);
+		}
+
+		private static Object defaultValue(Object proxy, Method method, Object[] args) {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			if (methodName.equals("toString")) {
+				return "fake";
+			}
+			Class returnType = method.getReturnType();
+			if (returnType == boolean.class) {
+				return (methodName.equals("isReadOnly") || methodName.equals("next") ? Boolean.TRUE : Boolean.FALSE);
+			}
+			if (returnType == int.class) {
+				return new Integer(0);
+			}
+			if (returnType == long.class) {
+				return new Long(0);
+			}
+			return null;
+		}
+	}
+
+}
@@ -10,7 +10,9 @@ import javax.transaction.Status;
 import javax.transaction.UserTransaction;
 
 import junit.framework.TestCase;
+import net.sf.hibernate.FlushMode;
 import net.sf.hibernate.HibernateException;
+import net.sf.hibernate.Query;
 import net.sf.hibernate.Session;
 import net.sf.hibernate.SessionFactory;
 import net.sf.hibernate.Transaction;
@@ -18,12 +20,14 @@ import net.sf.hibernate.Interceptor;
 import org.easymock.EasyMock;
 import org.easymock.MockControl;
 
+import com.interface21.jdbc.datasource.ConnectionHolder;
 import com.interface21.jdbc.datasource.DataSourceUtils;
 import com.interface21.transaction.InvalidTimeoutException;
 import com.interface21.transaction.JtaTransactionTestSuite;
 import com.interface21.transaction.PlatformTransactionManager;
 import com.interface21.transaction.TransactionDefinition;
 import com.interface21.transaction.TransactionStatus;
+import com.interface21.transaction.TransactionTimedOutException;
 import com.interface21.transaction.jta.JtaTransactionManager;
 import com.interface21.transaction.support.TransactionCallback;
 import com.interface21.transaction.support.TransactionCallbackWithoutResult;
@@ -389,19 +393,204 @@ public class HibernateTransactionManagerTests extends TestCase {
 		txControl.verify();
 	}
 
-	public void testInvalidTimeout() throws HibernateException {
+	public void testTransactionWithPropagationRequiresNew() throws SQLException, HibernateException {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		MockControl sfControl = EasyMock.controlFor(SessionFactory.class);
+		final SessionFactory sf = (SessionFactory) sfControl.getMock();
+		MockControl session1Control = EasyMock.controlFor(Session.class);
+		final Session session1 = (Session) session1Control.getMock();
+		MockControl session2Control = EasyMock.controlFor(Session.class);
+		final Session session2 = (Session) session2Control.getMock();
+		MockControl tx1Control = EasyMock.controlFor(Transaction.class);
+		Transaction tx1 = (Transaction) tx1Control.getMock();
+		MockControl tx2Control = EasyMock.controlFor(Transaction.class);
+		Transaction tx2 = (Transaction) tx2Control.getMock();
+		con.isReadOnly();
+		conControl.setReturnValue(false, 2);
+		sf.openSession();
+		sfControl.setReturnValue(session1, 1);
+		sfControl.setReturnValue(session2, 1);
+		session1.beginTransaction();
+		session1Control.setReturnValue(tx1, 1);
+		session1.connection();
+		session1Control.setReturnValue(con, 1);
+		session1.close();
+		session1Control.setReturnValue(null, 1);
+		session2.beginTransaction();
+		session2Control.setReturnValue(tx2, 1);
+		session2.connection();
+		session2Control.setReturnValue(con, 1);
+		session2.close();
+		session2Control.setReturnValue(null, 1);
+		tx1.commit();
+		tx1Control.setVoidCallable(1);
+		tx2.commit();
+		tx2Control.setVoidCallable(1);
+		conControl.activate();
+		sfControl.activate();
+		session1Control.activate();
+		session2Control.activate();
+		tx1Control.activate();
+		tx2Control.activate();
+
+		PlatformTransactionManager tm = new HibernateTransactionManager(sf, null);
+		final TransactionTemplate tt = new TransactionTemplate(tm);
+		tt.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertTrue("Outer session bound", SessionFactoryUtils.getSession(sf, false) == session1);
+				tt.execute(new TransactionCallbackWithoutResult() {
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						assertTrue("Is new transaction", status.isNewTransaction());
+						assertTrue("Inner session bound", SessionFactoryUtils.getSession(sf, false) == session2);
+					}
+				});
+				assertTrue("Outer session bound again", SessionFactoryUtils.getSession(sf, false) == session1);
+			}
+		});
+
+		assertTrue("Hasn't thread session", !SessionFactoryUtils.getThreadObjectManager().hasThreadObject(sf));
+		conControl.verify();
+		sfControl.verify();
+		session1Control.verify();
+		session2Control.verify();
+		tx1Control.verify();
+		tx2Control.verify();
+	}
+
+	public void testTransactionWithTimeout() throws SQLException, HibernateException {
+		MockControl dsControl = EasyMock.controlFor(DataSource.class);
+		final DataSource ds = (DataSource) dsControl.getMock();
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
 		MockControl sfControl = EasyMock.controlFor(SessionFactory.class);
 		final SessionFactory sf = (SessionFactory) sfControl.getMock();
 		MockControl sessionControl = EasyMock.controlFor(Session.class);
 		Session session = (Session) sessionControl.getMock();
+		MockControl txControl = EasyMock.controlFor(Transaction.class);
+		Transaction tx = (Transaction) txControl.getMock();
+		MockControl queryControl = EasyMock.controlFor(Query.class);
+		Query query = (Query) queryControl.getMock();
+		final List l = new ArrayList();
+		l.add("test");
+		con.isReadOnly();
+		conControl.setReturnValue(false, 1);
 		sf.openSession();
 		sfControl.setReturnValue(session, 1);
+		session.beginTransaction();
+		sessionControl.setReturnValue(tx, 1);
+		session.connection();
+		sessionControl.setReturnValue(con, 2);
+		session.createQuery("some query");
+		sessionControl.setReturnValue(query, 1);
+		query.setTimeout(10);
+		queryControl.setReturnValue(query, 1);
+		query.list();
+		queryControl.setReturnValue(l, 1);
+		session.close();
+		sessionControl.setReturnValue(null, 1);
+		tx.commit();
+		txControl.setVoidCallable(1);
+		dsControl.activate();
+		conControl.activate();
 		sfControl.activate();
 		sessionControl.activate();
+		txControl.activate();
+		queryControl.activate();
+
+		PlatformTransactionManager tm = new HibernateTransactionManager(sf, ds);
+		TransactionTemplate tt = new TransactionTemplate(tm);
+		tt.setTimeout(10);
+		Object result = tt.execute(new TransactionCallback() {
+			public Object doInTransaction(TransactionStatus status) {
+				ConnectionHolder conHolder = (ConnectionHolder) DataSourceUtils.getThreadObjectManager().getThreadObject(ds);
+				assertTrue("JDBC connection has timeout", conHolder.hasTimeout());
+				return new HibernateTemplate(sf).find("some query");
+			}
+		});
+		assertTrue("Correct result list", result == l);
+
+		assertTrue("Hasn't thread session", !SessionFactoryUtils.getThreadObjectManager().hasThreadObject(sf));
+		assertTrue("Hasn't thread connection", !DataSourceUtils.getThreadObjectManager().hasThreadObject(ds));
+		dsControl.verify();
+		conControl.verify();
+		sfControl.verify();
+		sessionControl.verify();
+		txControl.verify();
+		queryControl.verify();
+	}
+
+	public void testTransactionWithExpiredTimeout() throws SQLException, HibernateException {
+		MockControl conControl = EasyMock.controlFor(Connection.class);
+		Connection con = (Connection) conControl.getMock();
+		MockControl sfControl = EasyMock.controlFor(SessionFactory.class);
+		final SessionFactory sf = (SessionFactory) sfControl.getMock();
+		MockControl sessionControl = EasyMock.controlFor(Session.class);
+		Session session = (Session) sessionControl.getMock();
+		MockControl txControl = EasyMock.controlFor(Transaction.class);
+		Transaction tx = (Transaction) txControl.getMock();
+		MockControl queryControl = EasyMock.controlFor(Query.class);
+		Query query = (Query) queryControl.getMock();
+		con.isReadOnly();
+		conControl.setReturnValue(false, 1);
+		sf.openSession();
+		sfControl.setReturnValue(session, 1);
+		session.beginTransaction();
+		sessionControl.setReturnValue(tx, 1);
+		session.createQuery("some query");
+		sessionControl.setReturnValue(query, 1);
+		session.connection();
+		sessionControl.setReturnValue(con, 1);
+		session.close();
+		sessionControl.setReturnValue(null, 1);
+		tx.rollback();
+		txControl.setVoidCallable(1);
+		conControl.activate();
+		sfControl.activate();
+		sessionControl.activate();
+		txControl.activate();
+		queryControl.activate();
 
 		PlatformTransactionManager tm = new HibernateTransactionManager(sf, null);
 		TransactionTemplate tt = new TransactionTemplate(tm);
 		tt.setTimeout(10);
+		try {
+			tt.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					SessionHolder holder = (SessionHolder) SessionFactoryUtils.getThreadObjectManager().getThreadObject(sf);
+					// simulate expiration of the deadline
+					holder.setTimeoutInMillis(-1);
+					new HibernateTemplate(sf).find("some query");
+				}
+			});
+			fail("Should have thrown TransactionTimedOutException");
+		}
+		catch (TransactionTimedOutException ex) {
+			// expected
+		}
+
+		assertTrue("Hasn't thread session", !SessionFactoryUtils.getThreadObjectManager().hasThreadObject(sf));
+		conControl.verify();
+		sfControl.verify();
+		sessionControl.verify();
+		txControl.verify();
+		queryControl.verify();
+	}
+
+	public void testInvalidTimeout() throws HibernateException {
+		MockControl sfControl = EasyMock.controlFor(SessionFactory.class);
+		final SessionFactory sf = (SessionFactory) sfControl.getMock();
+		MockControl sessionControl = EasyMock.controlFor(Session.class);
+		Session session = (Session) sessionControl.getMock();
+		sf.openSession();
+		sfControl.setReturnValue(session, 1);
+		sfControl.activate();
+		sessionControl.activate();
+
+		PlatformTransactionManager tm = new HibernateTransactionManager(sf, null);
+		TransactionTemplate tt = new TransactionTemplate(tm);
+		tt.setTimeout(-5);
 		try {
 			tt.execute(new TransactionCallbackWithoutResult() {
 				protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -457,6 +646,10 @@ public class HibernateTransactionManagerTests extends TestCase {
 					sessionControl.verify();
 					sessionControl.reset();
 					try {
+						session.getFlushMode();
+						sessionControl.setReturnValue(FlushMode.AUTO, 1);
+						session.flush();
+						sessionControl.setVoidCallable(1);
 						session.close();
 					}
 					catch (HibernateException e) {
@@ -125,6 +125,30 @@ public class JtaTransactionTestSuite extends TestCase {
 		utControl.verify();
 	}
 
+	public void testJtaTransactionManagerWithPropagationRequiresNew() throws Exception {
+		MockControl utControl = EasyMock.controlFor(UserTransaction.class);
+		UserTransaction ut = (UserTransaction) utControl.getMock();
+		ut.getStatus();
+		utControl.setReturnValue(Status.STATUS_ACTIVE, 1);
+		utControl.activate();
+
+		TransactionTemplate tt = getTransactionTemplateForJta(JtaTransactionManager.DEFAULT_USER_TRANSACTION_NAME, ut);
+		tt.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		try {
+			tt.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					fail("Shouldn't have been invoked");
+				}
+			});
+			fail("Should have thrown TransactionSuspensionNotSupportedException");
+		}
+		catch (TransactionSuspensionNotSupportedException ex) {
+			// expected
+		}
+
+		utControl.verify();
+	}
+
 	public void testJtaTransactionManagerWithIsolationLevel() throws Exception {
 		MockControl utControl = EasyMock.controlFor(UserTransaction.class);
 		UserTransaction ut = (UserTransaction) utControl.getMock();
@@ -1,10 +1,19 @@
 package com.interface21.transaction;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
+import com.interface21.core.Ordered;
 import com.interface21.transaction.support.AbstractPlatformTransactionManager;
 import com.interface21.transaction.support.DefaultTransactionDefinition;
 import com.interface21.transaction.support.TransactionCallbackWithoutResult;
+import com.interface21.transaction.support.TransactionMonitor;
+import com.interface21.transaction.support.TransactionStatistics;
+import com.interface21.transaction.support.TransactionSynchronization;
+import com.interface21.transaction.support.TransactionSynchronizationAdapter;
+import com.interface21.transaction.support.TransactionSynchronizationManager;
 import com.interface21.transaction.support.TransactionTemplate;
 
 /**
@@ -243,4 +252,257 @@ public class TransactionTestSuite extends TestCase {
 
 	}
 
+	public void testTransactionMonitor() {
+		TestTransactionManager tm = new TestTransactionManager(false, true);
+		final TransactionMonitor monitor = new TransactionMonitor();
+		tm.setTransactionMonitor(monitor);
+		TransactionTemplate template = new TransactionTemplate(tm);
+		template.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertTrue("Is monitored", TransactionMonitor.isCurrentTransactionMonitored());
+				assertEquals(1, monitor.getOpenTransactionCount());
+				TransactionMonitor.setCurrentTransactionName("myService.myMethod");
+			}
+		});
+		try {
+			template.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					TransactionMonitor.setCurrentTransactionName("myService.myMethod");
+					throw new IllegalStateException();
+				}
+			});
+			fail("Should have propagated IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+		template.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+			}
+		});
+		assertTrue("Not monitored anymore", !TransactionMonitor.isCurrentTransactionMonitored());
+		assertEquals(0, monitor.getOpenTransactionCount());
+		assertEquals(1, monitor.getMaxOpenTransactionCount());
+
+		String[] names = monitor.getTransactionNames();
+		assertEquals(2, names.length);
+		assertEquals(TransactionMonitor.DEFAULT_TRANSACTION_NAME, names[0]);
+		assertEquals("myService.myMethod", names[1]);
+		TransactionStatistics stats = monitor.getStatistics("myService.myMethod");
+		assertEquals(1, stats.getCommitCount());
+		assertEquals(1, stats.getRollbackCount());
+		assertEquals(2, stats.getTransactionCount());
+		long[] histogram = stats.getHistogram();
+		long total = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			total += histogram[i];
+		}
+		assertEquals(2, total);
+		assertEquals(1, monitor.getStatistics(TransactionMonitor.DEFAULT_TRANSACTION_NAME).getCommitCount());
+
+		monitor.reset();
+		assertEquals(0, monitor.getTransactionNames().length);
+		assertNull(monitor.getStatistics("myService.myMethod"));
+	}
+
+	public void testTransactionMonitorWithSlowTransaction() {
+		TestTransactionManager tm = new TestTransactionManager(false, true);
+		final List logged = new ArrayList();
+		TransactionMonitor monitor = new TransactionMonitor() {
+			protected void logSlowTransaction(String name, int status, long time, String[] statements, int statementCount) {
+				logged.add(name);
+				logged.add(statements);
+				logged.add(new Integer(statementCount));
+			}
+		};
+		monitor.setSlowTransactionThreshold(1);
+		monitor.setMaxLoggedStatements(2);
+		tm.setTransactionMonitor(monitor);
+		TransactionTemplate template = new TransactionTemplate(tm);
+		template.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				TransactionMonitor.setCurrentTransactionName("slow");
+				TransactionMonitor.statementExecuted("select 1");
+				TransactionMonitor.statementExecuted("select 2");
+				TransactionMonitor.statementExecuted("select 3");
+				try {
+					Thread.sleep(20);
+				}
+				catch (InterruptedException ex) {
+				}
+			}
+		});
+		assertEquals(3, logged.size());
+		assertEquals("slow", logged.get(0));
+		String[] statements = (String[]) logged.get(1);
+		assertEquals(2, statements.length);
+		assertEquals("select 1", statements[0]);
+		assertEquals("select 2", statements[1]);
+		assertEquals(new Integer(3), logged.get(2));
+		assertTrue(monitor.getStatistics("slow").getMaxTime() >= 1);
+	}
+
+	public void testTransactionMonitorWithRepeatedCompletion() {
+		TransactionMonitor monitor = new TransactionMonitor();
+		TransactionStatus outer = new TransactionStatus(new Object(), true);
+		TransactionStatus inner = new TransactionStatus(new Object(), true);
+		monitor.transactionStarted(outer);
+		TransactionMonitor.setCurrentTransactionName("outer");
+		monitor.transactionStarted(inner);
+		TransactionMonitor.setCurrentTransactionName("inner");
+		assertEquals(2, monitor.getOpenTransactionCount());
+
+		monitor.transactionCompleted(inner, TransactionSynchronization.STATUS_ROLLED_BACK);
+		monitor.transactionCompleted(inner, TransactionSynchronization.STATUS_ROLLED_BACK);
+		assertTrue("Outer transaction still monitored", TransactionMonitor.isCurrentTransactionMonitored());
+		assertEquals(1, monitor.getOpenTransactionCount());
+		assertEquals(1, monitor.getStatistics("inner").getTransactionCount());
+		assertNull(monitor.getStatistics("outer"));
+
+		monitor.transactionCompleted(outer, TransactionSynchronization.STATUS_COMMITTED);
+		assertTrue("Not monitored anymore", !TransactionMonitor.isCurrentTransactionMonitored());
+		assertEquals(0, monitor.getOpenTransactionCount());
+		assertEquals(1, monitor.getStatistics("outer").getCommitCount());
+	}
+
+	public void testTransactionMonitorWithConcurrentTransactions() throws InterruptedException {
+		final TransactionMonitor monitor = new TransactionMonitor();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final String name = "tx" + (i % 2);
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < 5000; j++) {
+						TransactionStatus status = new TransactionStatus(new Object(), true);
+						monitor.transactionStarted(status);
+						TransactionMonitor.setCurrentTransactionName(name);
+						monitor.transactionCompleted(status, TransactionSynchronization.STATUS_COMMITTED);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertEquals(0, monitor.getOpenTransactionCount());
+		assertTrue(monitor.getMaxOpenTransactionCount() >= 1);
+		assertEquals(10000, monitor.getStatistics("tx0").getCommitCount());
+		assertEquals(10000, monitor.getStatistics("tx1").getCommitCount());
+	}
+
+	public void testTransactionSynchronizationOrderAndPhases() {
+		TestTransactionManager tm = new TestTransactionManager(false, true);
+		tm.setTransactionSynchronization(true);
+		final List calls = new ArrayList();
+		TransactionTemplate template = new TransactionTemplate(tm);
+		template.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				TransactionSynchronizationManager.register(new RecordingSynchronization("a", Integer.MAX_VALUE, calls));
+				TransactionSynchronizationManager.register(new RecordingSynchronization("b", 10, calls));
+				TransactionSynchronizationManager.register(new RecordingSynchronization("c", 5, calls));
+				TransactionSynchronizationManager.register(new RecordingSynchronization("d", 10, calls));
+				assertEquals(4, TransactionSynchronizationManager.getSynchronizations().size());
+			}
+		});
+		assertTrue("triggered commit", tm.commit);
+		assertEquals("[beforeCommit c, beforeCommit b, beforeCommit d, beforeCommit a, " +
+		             "beforeCompletion c, beforeCompletion b, beforeCompletion d, beforeCompletion a, " +
+		             "afterCompletion 0 c, afterCompletion 0 b, afterCompletion 0 d, afterCompletion 0 a]",
+		             calls.toString());
+		assertTrue("Synchronization not active", !TransactionSynchronizationManager.isActive());
+		assertEquals(0, TransactionSynchronizationManager.getSynchronizations().size());
+
+		calls.clear();
+		template.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertEquals("Registry has been cleared", 0, TransactionSynchronizationManager.getSynchronizations().size());
+				TransactionSynchronizationManager.register(new RecordingSynchronization("e", 1, calls));
+				status.setRollbackOnly();
+			}
+		});
+		assertTrue("triggered rollback", tm.rollback);
+		assertEquals("[beforeCompletion e, afterCompletion 1 e]", calls.toString());
+	}
+
+	public void testTransactionSynchronizationWithAfterCompletionOnly() {
+		TestTransactionManager tm = new TestTransactionManager(false, true);
+		tm.setTransactionSynchronization(true);
+		final List calls = new ArrayList();
+		TransactionTemplate template = new TransactionTemplate(tm);
+		template.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				TransactionSynchronizationManager.register(new TransactionSynchronization() {
+					public void afterCompletion(int status) {
+						calls.add("afterCompletion " + status + " plain");
+					}
+				});
+				TransactionSynchronizationManager.register(new RecordingSynchronization("a", 1, calls));
+			}
+		});
+		assertTrue("triggered commit", tm.commit);
+		assertEquals("[beforeCommit a, beforeCompletion a, afterCompletion 0 a, afterCompletion 0 plain]",
+		             calls.toString());
+	}
+
+	public void testTransactionSynchronizationWithBeforeCommitFailure() {
+		TestTransactionManager tm = new TestTransactionManager(false, true);
+		tm.setTransactionSynchronization(true);
+		final List calls = new ArrayList();
+		TransactionTemplate template = new TransactionTemplate(tm);
+		try {
+			template.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					TransactionSynchronizationManager.register(new RecordingSynchronization("a", 1, calls) {
+						public void beforeCommit() {
+							throw new IllegalStateException("flush failed");
+						}
+					});
+					TransactionSynchronizationManager.register(new RecordingSynchronization("b", 2, calls));
+				}
+			});
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			assertEquals("flush failed", ex.getMessage());
+		}
+		assertTrue("no commit", !tm.commit);
+		assertTrue("triggered rollback", tm.rollback);
+		assertEquals("[beforeCompletion a, beforeCompletion b, afterCompletion 1 a, afterCompletion 1 b]",
+		             calls.toString());
+		assertTrue("Synchronization not active", !TransactionSynchronizationManager.isActive());
+	}
+
+
+	private static class RecordingSynchronization extends TransactionSynchronizationAdapter implements Ordered {
+
+		private final String name;
+
+		private final int order;
+
+		private final List calls;
+
+		private RecordingSynchronization(String name, int order, List calls) {
+			this.name = name;
+			this.order = order;
+			this.calls = calls;
+		}
+
+		public int getOrder() {
+			return order;
+		}
+
+		public void beforeCommit() {
+			this.calls.add("beforeCommit " + this.name);
+		}
+
+		public void beforeCompletion() {
+			this.calls.add("beforeCompletion " + this.name);
+		}
+
+		public void afterCompletion(int status) {
+			this.calls.add("afterCompletion " + status + " " + this.name);
+		}
+	}
+
 }
@@ -0,0 +1,77 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.transaction.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+
+import com.interface21.aop.framework.AlwaysInvoked;
+import com.interface21.aop.framework.InvokerInterceptor;
+import com.interface21.aop.framework.MethodInvocationImpl;
+import com.interface21.beans.Employee;
+import com.interface21.beans.ITestBean;
+import com.interface21.beans.TestBean;
+
+/**
+ * @version $Id$
+ */
+public class CachingTransactionAttributeSourceTests extends TestCase {
+
+	public void testCachesAttributesAndNullResults() throws Exception {
+		final Method getName = ITestBean.class.getMethod("getName", null);
+		final TransactionAttribute txatt = new DefaultTransactionAttribute();
+		final int[] lookups = new int[1];
+		TransactionAttributeSource source = new TransactionAttributeSource() {
+			public TransactionAttribute getTransactionAttribute(MethodInvocation invocation) {
+				lookups[0]++;
+				return (invocation.getMethod().equals(getName)) ? txatt : null;
+			}
+		};
+		CachingTransactionAttributeSource cache = new CachingTransactionAttributeSource(source);
+
+		TestBean tb = new TestBean();
+		Method getAge = ITestBean.class.getMethod("getAge", null);
+		for (int i = 0; i < 3; i++) {
+			assertTrue(cache.getTransactionAttribute(invocation(tb, getName)) == txatt);
+			assertNull(cache.getTransactionAttribute(invocation(tb, getAge)));
+		}
+		assertEquals("Looked up once per method", 2, lookups[0]);
+
+		cache.clearCache();
+		assertTrue(cache.getTransactionAttribute(invocation(tb, getName)) == txatt);
+		assertEquals(3, lookups[0]);
+	}
+
+	public void testCachesPerTargetClass() throws Exception {
+		final Method getName = ITestBean.class.getMethod("getName", null);
+		final TransactionAttribute txatt = new DefaultTransactionAttribute();
+		final int[] lookups = new int[1];
+		TransactionAttributeSource source = new TransactionAttributeSource() {
+			public TransactionAttribute getTransactionAttribute(MethodInvocation invocation) {
+				lookups[0]++;
+				return (invocation.getThis() instanceof Employee) ? txatt : null;
+			}
+		};
+		CachingTransactionAttributeSource cache = new CachingTransactionAttributeSource(source);
+
+		for (int i = 0; i < 3; i++) {
+			assertNull(cache.getTransactionAttribute(invocation(new TestBean(), getName)));
+			assertTrue(cache.getTransactionAttribute(invocation(new Employee(), getName)) == txatt);
+		}
+		assertEquals("Looked up once per target class", 2, lookups[0]);
+	}
+
+	private MethodInvocation invocation(Object target, Method method) {
+		List pointcuts = new LinkedList();
+		pointcuts.add(new AlwaysInvoked(new InvokerInterceptor(target)));
+		return new MethodInvocationImpl(null, target, method.getDeclaringClass(), method, null, pointcuts, null);
+	}
+
+}
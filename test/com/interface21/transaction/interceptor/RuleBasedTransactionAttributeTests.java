@@ -92,4 +92,32 @@ public class RuleBasedTransactionAttributeTests extends TestCase {
 		assertTrue(!rta.rollbackOn(new ServletException()));
 	}
 
+	public void testShallowestRuleWinsForCachedDecisions() {
+		List l = new LinkedList();
+		l.add(new RollbackRuleAttribute("java.lang.Exception"));
+		l.add(new NoRollbackRuleAttribute("javax.servlet.ServletException"));
+		RuleBasedTransactionAttribute rta = new RuleBasedTransactionAttribute(TransactionDefinition.PROPAGATION_REQUIRED, l);
+
+		for (int i = 0; i < 2; i++) {
+			// Exception rule is deeper in the hierarchy of ServletException
+			assertTrue(!rta.rollbackOn(new ServletException()));
+			assertTrue(rta.rollbackOn(new RemoteException()));
+			assertTrue(rta.rollbackOn(new RuntimeException()));
+		}
+	}
+
+	public void testRulesChangedAfterUse() {
+		RuleBasedTransactionAttribute rta = new RuleBasedTransactionAttribute();
+		assertTrue(!rta.rollbackOn(new ServletException()));
+
+		rta.getRollbackRules().add(new RollbackRuleAttribute("javax.servlet.ServletException"));
+		assertTrue(rta.rollbackOn(new ServletException()));
+
+		List l = new LinkedList();
+		l.add(new NoRollbackRuleAttribute("java.lang.RuntimeException"));
+		rta.setRollbackRules(l);
+		assertTrue(!rta.rollbackOn(new ServletException()));
+		assertTrue(!rta.rollbackOn(new RuntimeException()));
+	}
+
 }
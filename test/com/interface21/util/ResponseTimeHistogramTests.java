@@ -0,0 +1,69 @@
+/*
+ * The Spring Framework is published under the terms
+ * of the Apache Software License.
+ */
+
+package com.interface21.util;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class ResponseTimeHistogramTests extends TestCase {
+
+	public void testEmpty() {
+		ResponseTimeHistogram h = new ResponseTimeHistogram();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getMedian());
+		assertEquals(0, h.getBestResponseTimeMillis());
+	}
+
+	public void testExactBelowSixteen() {
+		ResponseTimeHistogram h = new ResponseTimeHistogram();
+		for (int i = 1; i <= 10; i++) {
+			h.recordResponseTime(i);
+		}
+		assertEquals(10, h.getCount());
+		assertEquals(5, h.getMedian());
+		assertEquals(9, h.getPercentile(0.9));
+		assertEquals(10, h.getPercentile(1.0));
+		assertEquals(1, h.getBestResponseTimeMillis());
+		assertEquals(10, h.getWorstResponseTimeMillis());
+		assertEquals(5, h.getAverageResponseTimeMillis());
+	}
+
+	public void testPercentilesWithinPrecision() {
+		ResponseTimeHistogram h = new ResponseTimeHistogram();
+		for (int i = 1; i <= 10000; i++) {
+			h.recordResponseTime(i);
+		}
+		assertWithin(5000, h.getMedian());
+		assertWithin(9900, h.getPercentile(0.99));
+		assertWithin(9990, h.getPercentile(0.999));
+		assertEquals(10000, h.getPercentile(1.0));
+	}
+
+	public void testOutliers() {
+		ResponseTimeHistogram h = new ResponseTimeHistogram();
+		for (int i = 0; i < 999; i++) {
+			h.recordResponseTime(2);
+		}
+		h.recordResponseTime(60000);
+		assertEquals(2, h.getPercentile(0.99));
+		assertEquals(2, h.getPercentile(0.999));
+		assertEquals(60000, h.getPercentile(1.0));
+		h.recordResponseTime(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, h.getPercentile(1.0));
+
+		h.reset();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getPercentile(1.0));
+	}
+
+	private void assertWithin(long expected, long actual) {
+		assertTrue("Expected about " + expected + " but was " + actual,
+		           Math.abs(actual - expected) <= expected / 16);
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.interface21.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ThreadObjectManagerTests extends TestCase {
+
+	public void testBindAndRemove() {
+		ThreadObjectManager manager = new ThreadObjectManager("test");
+		Object key = new Object();
+		assertFalse(manager.hasThreadObject(key));
+		assertNull(manager.getThreadObject(key));
+		manager.bindThreadObject(key, "value");
+		assertTrue(manager.hasThreadObject(key));
+		assertEquals("value", manager.getThreadObject(key));
+		try {
+			manager.bindThreadObject(key, "other");
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+		manager.removeThreadObject(key);
+		assertFalse(manager.hasThreadObject(key));
+		try {
+			manager.removeThreadObject(key);
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+
+	public void testKeysComparedByIdentity() {
+		ThreadObjectManager manager = new ThreadObjectManager("test");
+		String key = new String("key");
+		manager.bindThreadObject(key, "value");
+		assertNull(manager.getThreadObject(new String("key")));
+		assertEquals("value", manager.getThreadObject(key));
+		manager.removeThreadObject(key);
+	}
+
+	public void testManyBindingsAndRemovalOrder() {
+		ThreadObjectManager manager = new ThreadObjectManager("test");
+		Object[] keys = new Object[10];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = new Object();
+			manager.bindThreadObject(keys[i], new Integer(i));
+		}
+		manager.removeThreadObject(keys[3]);
+		manager.removeThreadObject(keys[0]);
+		Object[] bound = manager.getThreadObjectKeys();
+		assertEquals(8, bound.length);
+		assertSame(keys[1], bound[0]);
+		assertSame(keys[4], bound[2]);
+		for (int i = 0; i < keys.length; i++) {
+			if (i != 0 && i != 3) {
+				assertEquals(new Integer(i), manager.getThreadObject(keys[i]));
+			}
+		}
+		Map removed = manager.removeThreadObjects();
+		assertEquals(8, removed.size());
+		assertEquals(new Integer(9), removed.get(keys[9]));
+		assertEquals(0, manager.getThreadObjectKeys().length);
+	}
+
+	public void testBindingsAreThreadLocal() throws InterruptedException {
+		final ThreadObjectManager manager = new ThreadObjectManager("test");
+		final Object key = new Object();
+		manager.bindThreadObject(key, "value");
+		final Object[] seen = new Object[1];
+		Thread thread = new Thread() {
+			public void run() {
+				seen[0] = manager.getThreadObject(key);
+			}
+		};
+		thread.start();
+		thread.join();
+		assertNull(seen[0]);
+		manager.removeThreadObject(key);
+	}
+
+	public void testLeakDetector() {
+		ThreadObjectManager manager = new ThreadObjectManager("test");
+		Object outerKey = new Object();
+		manager.bindThreadObject(outerKey, "outer");
+		ThreadObjectLeakDetector detector = new ThreadObjectLeakDetector();
+		assertEquals(0, detector.checkForLeaks("test", false));
+
+		Object leakedKey = new Object();
+		manager.bindThreadObject(leakedKey, "leaked");
+		assertEquals(1, detector.checkForLeaks("test", false));
+		assertTrue(manager.hasThreadObject(leakedKey));
+		assertEquals(1, detector.checkForLeaks("test", true));
+		assertFalse(manager.hasThreadObject(leakedKey));
+		assertTrue("Value bound before detector creation not removed", manager.hasThreadObject(outerKey));
+		assertEquals(0, detector.checkForLeaks("test", true));
+		manager.removeThreadObject(outerKey);
+	}
+
+	public void testUnusedManagersAreNotKeptRegistered() {
+		ThreadObjectManager manager = new ThreadObjectManager("test");
+		assertTrue(isRegistered(manager));
+		WeakReference ref = new WeakReference(manager);
+		manager = null;
+		for (int i = 0; i < 10 && ref.get() != null; i++) {
+			System.gc();
+		}
+		assertNull("Manager collected", ref.get());
+	}
+
+	private boolean isRegistered(ThreadObjectManager manager) {
+		ThreadObjectManager[] managers = ThreadObjectManager.getThreadObjectManagers();
+		for (int i = 0; i < managers.length; i++) {
+			if (managers[i] == manager) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}